@@ -0,0 +1,103 @@
+import java.util.Random;
+
+// 📶 AutomaticGainControl against synthetic scenes, 8 kHz, 20 ms frames:
+//   steady noise    30 s of white or low-pass (fan-like) noise at a fixed level (VadSimulation's
+//                   source): it should not be levelled like a talker, so the gain ends near 0 dB
+//   noise step      10 s at -60 dBFS, then 20 s at -40
+//   talk over noise 1.5 s talkspurts of a voiced source at -40 dBFS with 1.5 s pauses, over -60 dBFS
+//                   noise: the talkspurts should be brought up towards the -18 dBFS target
+//   steady talk     CodecBenchmark's talker at -40 dBFS with no pauses at all, as CaptureBenchmark plays it
+// Reports the highest gain reached, the gain at the end, the output level over the last 10 s
+// (talk scenes: of the talkspurts, and of the pauses) and the floor the AGC ended on.
+//   java AgcSimulation [seed]
+public class AgcSimulation {
+    private static final int RATE = 8000;
+    private static final int PTIME = 20;
+    private static final int FRAME = RATE * PTIME / 1000;
+    private static final int SECONDS = 30;
+    private static final int LAST_FRAMES = 10 * 1000 / PTIME;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        System.out.printf("%-26s %9s %9s %10s %10s %10s%n", "scene", "max gain", "end gain", "out dBFS", "pauses", "floor");
+        for (boolean lowPass : new boolean[] { false, true }) {
+            for (double dbfs : new double[] { -60, -50, -45, -40 }) {
+                String name = String.format("%s noise %.0f dBFS", lowPass ? "low-pass" : "white", dbfs);
+                VadSimulation.Noise noise = new VadSimulation.Noise(dbfs, lowPass, seed);
+                run(name, (f, frame) -> noise.fill(frame), null);
+            }
+        }
+        VadSimulation.Noise quiet = new VadSimulation.Noise(-60, false, seed), loud = new VadSimulation.Noise(-40, false, seed + 1);
+        run("noise step -60 -> -40", (f, frame) -> (f < 10 * 1000 / PTIME ? quiet : loud).fill(frame), null);
+        talk(seed);
+        short[] speech = CodecBenchmark.speech(RATE, SECONDS * RATE, 220, 23);
+        double scale = 32768 * Math.pow(10, -40 / 20.0) / rms(speech);
+        run("steady talk -40 dBFS", (f, frame) -> {
+            for (int i = 0; i < FRAME; i++) frame[i] = (short) Math.round(speech[f * FRAME + i] * scale);
+        }, null);
+        System.out.println("out dBFS: output RMS over the last 10 s (talk: of the talkspurts); pauses: of the pauses");
+    }
+
+    private interface Scene {
+        void fill(int frameIndex, short[] frame);
+    }
+
+    private static void talk(long seed) {
+        VadSimulation.Noise noise = new VadSimulation.Noise(-60, false, seed);
+        Random random = new Random(seed);
+        int spurt = 1500 / PTIME;
+        double pitch = 120 + random.nextInt(80), amplitude = 32768 * Math.pow(10, -40 / 20.0);
+        double[] phase = new double[1];
+        run("talk -40 over -60 noise", (f, frame) -> {
+            noise.fill(frame);
+            if ((f / spurt) % 2 == 0) return;
+            for (int i = 0; i < FRAME; i++) {
+                // Harmonics of the pitch under a 4 Hz syllable envelope
+                double t = (double) (f * FRAME + i) / RATE;
+                double envelope = 0.55 + 0.45 * Math.sin(2 * Math.PI * 4 * t);
+                phase[0] += 2 * Math.PI * pitch / RATE;
+                double s = Math.sin(phase[0]) + 0.5 * Math.sin(2 * phase[0]) + 0.25 * Math.sin(3 * phase[0]);
+                frame[i] = (short) Math.max(-32768, Math.min(32767, frame[i] + amplitude * envelope * s / 1.75));
+            }
+        }, f -> (f / spurt) % 2 == 1);
+    }
+
+    // 'talking' splits the last 10 s into talkspurts and pauses; null measures every frame
+    private static void run(String name, Scene scene, java.util.function.IntPredicate talking) {
+        AutomaticGainControl agc = new AutomaticGainControl(RATE);
+        short[] pcm = new short[FRAME];
+        float[] frame = new float[FRAME];
+        int frames = SECONDS * 1000 / PTIME;
+        double maxGain = 0, talkEnergy = 0, pauseEnergy = 0;
+        long talkSamples = 0, pauseSamples = 0;
+        for (int f = 0; f < frames; f++) {
+            scene.fill(f, pcm);
+            for (int i = 0; i < FRAME; i++) frame[i] = pcm[i];
+            agc.process(frame, FRAME);
+            maxGain = Math.max(maxGain, agc.getGainDb());
+            if (f < frames - LAST_FRAMES) continue;
+            double energy = 0;
+            for (int i = 0; i < FRAME; i++) energy += frame[i] * frame[i];
+            if (talking == null || talking.test(f)) {
+                talkEnergy += energy;
+                talkSamples += FRAME;
+            } else {
+                pauseEnergy += energy;
+                pauseSamples += FRAME;
+            }
+        }
+        System.out.printf("%-26s %6.1f dB %6.1f dB %10.1f %10s %5.1f dBFS%n", name, maxGain, agc.getGainDb(),
+                dbfs(talkEnergy, talkSamples), talking == null ? "-" : String.format("%.1f", dbfs(pauseEnergy, pauseSamples)),
+                agc.getNoiseFloorDbfs());
+    }
+
+    private static double dbfs(double energy, long samples) {
+        return energy == 0 ? -96 : 10 * Math.log10(energy / samples / (32768.0 * 32768.0));
+    }
+
+    private static double rms(short[] s) {
+        double energy = 0;
+        for (short v : s) energy += (double) v * v;
+        return Math.sqrt(energy / s.length);
+    }
+}
@@ -0,0 +1,36 @@
+import javax.sound.sampled.LineUnavailableException;
+
+// 🔌 Where the engines get their audio: capture and playback lines as 16-bit little-endian mono
+// PCM. AudioDevices.JAVA_SOUND (the default) opens the sound card; SyntheticAudio stands in for it
+// with generated or recorded audio so senders and receivers can run headless.
+// Both line types block the way Java Sound lines do: read() until the bytes have been captured,
+// write() until the device queue has room.
+public interface AudioBackend {
+    Source openCapture(StreamConfig config) throws LineUnavailableException;
+
+    // A playback line at sampleRate, or at a rate the backend prefers (see Sink.getSampleRate)
+    Sink openPlayback(StreamConfig config, int sampleRate) throws LineUnavailableException;
+
+    interface Source {
+        int getSampleRate();
+        void start();
+        // Blocks until len bytes have been captured; returns the bytes read
+        int read(byte[] buffer, int off, int len);
+        // Bytes captured but not yet read
+        int available();
+        void close();
+    }
+
+    interface Sink {
+        int getSampleRate();
+        void start();
+        // Blocks until all len bytes are queued to the device; returns the bytes written
+        int write(byte[] buffer, int off, int len);
+        // Device queue size and its free space, in bytes
+        int getBufferSize();
+        int available();
+        // Blocks until everything queued has played
+        void drain();
+        void close();
+    }
+}
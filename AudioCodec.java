@@ -0,0 +1,42 @@
+import java.nio.ByteBuffer;
+
+// 🎛 Codec SPI: turns frames of 16-bit PCM into RTP payloads and back. The payload type on every
+// packet names the codec and clock rate (RtpHeader), so receivers pick the decoder per stream from
+// what arrives and a sender can switch codec without anything negotiated out of band.
+// Instances may keep state between frames: use one per stream and direction, from one thread.
+public interface AudioCodec {
+    String PCMU = "PCMU";
+    String DVI4 = "DVI4";
+
+    String getName();
+    int getPayloadType();
+    int getClockRate();
+
+    // Encoded size of a frame of 'samples', and the samples in a payload of 'bytes' (-1 if no
+    // frame encodes to that size)
+    int getPayloadBytes(int samples);
+    int getSamples(int bytes);
+
+    // Encodes 'samples' of pcm into dst at its position, advancing it by getPayloadBytes(samples)
+    void encode(short[] pcm, int pcmOff, int samples, ByteBuffer dst);
+
+    // Decodes one payload of 'bytes' into pcm; returns the samples written
+    int decode(byte[] src, int srcOff, int bytes, short[] pcm, int pcmOff);
+
+    // A fresh codec for an audio payload type, or null if there is none for it
+    static AudioCodec forPayloadType(int payloadType) {
+        int rate = RtpHeader.clockRate(payloadType);
+        if (rate < 0) return null;
+        switch (payloadType) {
+            case RtpHeader.PT_DVI4: case RtpHeader.PT_DVI4_16K: case RtpHeader.PT_DVI4_48K:
+                return new ImaAdpcmCodec(payloadType, rate);
+            default:
+                return new G711Codec(payloadType, rate);
+        }
+    }
+
+    // A fresh codec by name (PCMU or DVI4, any case) at one of StreamConfig.SUPPORTED_RATES
+    static AudioCodec create(String name, int sampleRate) {
+        return forPayloadType(RtpHeader.payloadTypeFor(name.toUpperCase(), sampleRate));
+    }
+}
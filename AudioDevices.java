@@ -0,0 +1,97 @@
+import javax.sound.sampled.*;
+
+// 🔌 Opens capture/playback lines at the wire rate, falling back to 48 kHz (which every supported
+// wire rate divides evenly) when the device refuses; callers resample when the rates differ.
+// JAVA_SOUND is the sound-card AudioBackend the engines use unless the config names another.
+public final class AudioDevices {
+    public static final int FALLBACK_RATE = 48000;
+
+    public static final AudioBackend JAVA_SOUND = new AudioBackend() {
+        @Override
+        public Source openCapture(StreamConfig config) throws LineUnavailableException {
+            return new CaptureLine(AudioDevices.openCapture(config));
+        }
+
+        @Override
+        public Sink openPlayback(StreamConfig config, int sampleRate) throws LineUnavailableException {
+            return new PlaybackLine(AudioDevices.openPlayback(config, sampleRate));
+        }
+
+        @Override
+        public String toString() { return "Java Sound"; }
+    };
+
+    private AudioDevices() {}
+
+    public static AudioFormat format(int sampleRate) {
+        return new AudioFormat(sampleRate, 16, 1, true, false);
+    }
+
+    public static TargetDataLine openCapture(StreamConfig config) throws LineUnavailableException {
+        try {
+            return openCapture(config, config.getSampleRate());
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            if (config.getSampleRate() == FALLBACK_RATE) throw e;
+            return openCapture(config, FALLBACK_RATE);
+        }
+    }
+
+    public static SourceDataLine openPlayback(StreamConfig config, int sampleRate) throws LineUnavailableException {
+        try {
+            return openPlaybackAt(config, sampleRate);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            if (sampleRate == FALLBACK_RATE) throw e;
+            return openPlaybackAt(config, FALLBACK_RATE);
+        }
+    }
+
+    // Device rate of an opened line
+    public static int rateOf(DataLine line) {
+        return (int) line.getFormat().getSampleRate();
+    }
+
+    private static TargetDataLine openCapture(StreamConfig config, int rate) throws LineUnavailableException {
+        AudioFormat format = format(rate);
+        TargetDataLine mic = AudioSystem.getTargetDataLine(format);
+        mic.open(format, config.getLineBufferBytes(rate));
+        return mic;
+    }
+
+    private static SourceDataLine openPlaybackAt(StreamConfig config, int rate) throws LineUnavailableException {
+        AudioFormat format = format(rate);
+        SourceDataLine speakers = AudioSystem.getSourceDataLine(format);
+        speakers.open(format, config.getLineBufferBytes(rate));
+        return speakers;
+    }
+
+    private static final class CaptureLine implements AudioBackend.Source {
+        private final TargetDataLine line;
+
+        CaptureLine(TargetDataLine line) { this.line = line; }
+
+        @Override public int getSampleRate() { return rateOf(line); }
+        @Override public void start() { line.start(); }
+        @Override public int read(byte[] buffer, int off, int len) { return line.read(buffer, off, len); }
+        @Override public int available() { return line.available(); }
+
+        @Override
+        public void close() {
+            line.stop();
+            line.close();
+        }
+    }
+
+    private static final class PlaybackLine implements AudioBackend.Sink {
+        private final SourceDataLine line;
+
+        PlaybackLine(SourceDataLine line) { this.line = line; }
+
+        @Override public int getSampleRate() { return rateOf(line); }
+        @Override public void start() { line.start(); }
+        @Override public int write(byte[] buffer, int off, int len) { return line.write(buffer, off, len); }
+        @Override public int getBufferSize() { return line.getBufferSize(); }
+        @Override public int available() { return line.available(); }
+        @Override public void drain() { line.drain(); }
+        @Override public void close() { line.close(); }
+    }
+}
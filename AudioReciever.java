@@ -1,19 +1,15 @@
 
-import javax.sound.sampled.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.net.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 // 🎧 Enhanced for a futuristic, cyberpunk aesthetic to match the Sender
 public class AudioReceiver extends JFrame {
-    private JTextField portField;
+    private JTextField portField, keyField;
     private JButton startButton, stopButton;
     private JTextArea logArea;
-    private final AtomicBoolean receiving = new AtomicBoolean(false);
-    // ⭐ FIX: Hold a reference to the DatagramSocket for safe closing/unblocking
-    private DatagramSocket socket = null; 
+    // ⭐ FIX: Hold a reference to the receiver core for safe closing/unblocking
+    private AudioStreamReceiver receiver = null;
 
     // Color Palette (MUST MATCH Sender)
     private static final Color DARK_BG = new Color(15, 15, 25); // Deep Blue/Black
@@ -61,8 +57,15 @@ public class AudioReceiver extends JFrame {
         portField = createTextField("50005");
         portField.setColumns(8);
 
+        JLabel keyLabel = createLabel("SRTP KEY:");
+        keyField = createTextField("");
+        keyField.setColumns(16);
+        keyField.setToolTipText("Base64 master key shared with the sender; leave blank for plain RTP");
+
         inputPanel.add(portLabel);
         inputPanel.add(portField);
+        inputPanel.add(keyLabel);
+        inputPanel.add(keyField);
         centerPanel.add(inputPanel);
 
         // 2b. Controls
@@ -153,100 +156,49 @@ public class AudioReceiver extends JFrame {
         return btn;
     }
 
-    // --- Core Functionality with Fixes ---
+    // --- Core Functionality (delegates to the headless AudioStreamReceiver) ---
 
     private void startReceiving() {
-        receiving.set(true);
+        int port;
+        try {
+            port = Integer.parseInt(portField.getText().trim());
+        } catch (NumberFormatException e) {
+            log("❌ CRITICAL ERROR: Invalid port " + portField.getText().trim());
+            return;
+        }
+        StreamConfig config;
+        try {
+            config = new StreamConfig().setPort(port).setSrtpKey(keyField.getText());
+        } catch (IllegalArgumentException e) {
+            log("❌ CRITICAL ERROR: " + e.getMessage());
+            return;
+        }
         startButton.setEnabled(false);
         stopButton.setEnabled(true);
         log("🎧 PROTOCOL ACTIVE: Monitoring port " + portField.getText().trim() + " for incoming audio data.");
 
-        new Thread(() -> {
-            DatagramSocket currentSocket = null;
-            SourceDataLine speakers = null;
-
-            try {
-                int port = Integer.parseInt(portField.getText().trim());
-                currentSocket = new DatagramSocket(port);
-                socket = currentSocket; // Store socket reference for safe closing
-                currentSocket.setSoTimeout(0); 
-
-                AudioFormat format = new AudioFormat(8000f, 16, 1, true, false);
-                speakers = AudioSystem.getSourceDataLine(format);
-                speakers.open(format, 3200);
-                speakers.start();
-                log("🔊 Audio line established. Ready for data stream.");
-
-                byte[] ulawBuffer = new byte[320];
-                byte[] pcmBuffer = new byte[640];
-                DatagramPacket packet = new DatagramPacket(ulawBuffer, ulawBuffer.length);
-
-                long nextPlay = System.nanoTime();
-                long frameTime = 40_000_000L; // 40ms
-
-                while (receiving.get()) {
-                    currentSocket.receive(packet); // Blocking call
-
-                    // u-Law decoding
-                    for (int i = 0, j = 0; i < ulawBuffer.length; i++, j += 2) {
-                        short s = uLawToLinear(ulawBuffer[i]);
-                        pcmBuffer[j] = (byte) s;
-                        pcmBuffer[j + 1] = (byte) (s >> 8);
-                    }
-
-                    // Simple timing synchronization
-                    long now = System.nanoTime();
-                    if (now < nextPlay)
-                        Thread.sleep((nextPlay - now) / 1_000_000);
-                    nextPlay += frameTime;
-
-                    speakers.write(pcmBuffer, 0, pcmBuffer.length);
-                }
-
-                log("🛑 RECEIVER STOPPED gracefully.");
-
-            } catch (SocketException e) {
-                // This is expected when the socket is closed externally via stopReceiving()
-                if (receiving.get()) {
-                    log("❌ Socket Error (unexpected): " + e.getMessage());
-                } else {
-                    log("✅ Shutdown complete.");
-                }
-            } catch (Exception e) {
-                log("❌ CRITICAL ERROR: " + e.getMessage());
-            } finally {
-                // ⭐ FIX: Ensure all resources are cleaned up and buttons are reset
-                if (speakers != null) {
-                    speakers.drain();
-                    speakers.close();
-                }
-                if (currentSocket != null && !currentSocket.isClosed()) {
-                    currentSocket.close();
-                }
-                // Reset the global socket reference
-                socket = null;
-                receiving.set(false);
-                
+        receiver = new AudioStreamReceiver(config, new AudioStreamListener() {
+            public void onStopped() {
+                log("✅ Shutdown complete.");
+                // ⭐ FIX: Buttons are reset once all resources have been cleaned up
                 SwingUtilities.invokeLater(() -> {
                     startButton.setEnabled(true);
                     stopButton.setEnabled(false);
                 });
             }
-        }).start();
+            public void onError(Exception e) { log("❌ CRITICAL ERROR: " + e.getMessage()); }
+            public void onEvent(String message) { log(message); }
+        });
+        receiver.start();
     }
 
     private void stopReceiving() {
         log("🛑 INITIATING SHUTDOWN SEQUENCE...");
-        receiving.set(false);
-        // ⭐ FIX: Unblock the DatagramSocket.receive() call immediately by closing the socket
-        if (socket != null) {
-            SwingUtilities.invokeLater(() -> {
-                // Must be run in a separate runnable to avoid deadlock if called from the AWT thread,
-                // but since stopReceiving() is called from an ActionListener, this is safe.
-                socket.close();
-            });
+        if (receiver != null && receiver.isRunning()) {
+            // ⭐ FIX: Closing the socket unblocks the receive() call immediately
+            receiver.stop();
         } else {
-             // If socket is null, the thread probably hasn't started or already finished.
+             // If the receiver is not running, the thread probably hasn't started or already finished.
              log("STATUS: Socket not active or already closed.");
              startButton.setEnabled(true);
              stopButton.setEnabled(false);
@@ -257,17 +209,6 @@ public class AudioReceiver extends JFrame {
         SwingUtilities.invokeLater(() -> logArea.append(msg + "\n"));
     }
 
-    // µ-Law decoder (unchanged)
-    private static final int BIAS = 0x84;
-    private static short uLawToLinear(byte ulaw) {
-        ulaw = (byte) ~ulaw;
-        int sign = ulaw & 0x80;
-        int exponent = (ulaw & 0x70) >> 4;
-        int mantissa = ulaw & 0x0F;
-        int sample = (((mantissa << 4) + 0x08) << (exponent + 3)) - BIAS;
-        return (short) ((sign != 0) ? -sample : sample);
-    }
-
     public static void main(String[] args) {
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -275,4 +216,4 @@ public class AudioReceiver extends JFrame {
         
         SwingUtilities.invokeLater(AudioReceiver::new);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,16 +1,14 @@
-import javax.sound.sampled.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.net.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 // 🚀 Enhanced for a futuristic, cyberpunk aesthetic
 public class AudioSenderUI extends JFrame {
-    private JTextField ipField, portField;
+    private JTextField ipField, portField, keyField;
+    private JCheckBox adaptiveBox;
     private JButton startButton, stopButton;
     private JTextArea logArea;
-    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private AudioStreamSender sender;
 
     // Color Palette
     private static final Color DARK_BG = new Color(15, 15, 25); // Deep Blue/Black
@@ -62,6 +60,7 @@ public class AudioSenderUI extends JFrame {
         gbc.gridx = 0; gbc.gridy = 0; gbc.weightx = 0.3; inputPanel.add(ipLabel, gbc);
         
         ipField = createTextField("127.0.0.1");
+        ipField.setToolTipText("One address, a multicast group, or a comma-separated list (host[:port], ...) to fan out to");
         gbc.gridx = 1; gbc.gridy = 0; gbc.weightx = 0.7; inputPanel.add(ipField, gbc);
         
         // Port
@@ -71,6 +70,25 @@ public class AudioSenderUI extends JFrame {
         portField = createTextField("50005");
         gbc.gridx = 1; gbc.gridy = 1; gbc.weightx = 0.7; inputPanel.add(portField, gbc);
 
+        // SRTP master key (blank: plain RTP)
+        JLabel keyLabel = createLabel("SRTP KEY:");
+        gbc.gridx = 0; gbc.gridy = 2; gbc.weightx = 0.3; inputPanel.add(keyLabel, gbc);
+
+        keyField = createTextField("");
+        keyField.setToolTipText("Base64 master key shared with the receiver (AudioStreamCli keygen); leave blank for plain RTP");
+        gbc.gridx = 1; gbc.gridy = 2; gbc.weightx = 0.7; inputPanel.add(keyField, gbc);
+
+        // Rate adaptation from the receiver's reports
+        JLabel adaptiveLabel = createLabel("ADAPTIVE BITRATE:");
+        gbc.gridx = 0; gbc.gridy = 3; gbc.weightx = 0.3; inputPanel.add(adaptiveLabel, gbc);
+
+        adaptiveBox = new JCheckBox("Step codec/packing down on congestion");
+        adaptiveBox.setBackground(MEDIUM_DARK_BG);
+        adaptiveBox.setForeground(Color.WHITE);
+        adaptiveBox.setFont(new Font("Consolas", Font.PLAIN, 12));
+        adaptiveBox.setToolTipText("Follow the receiver's loss and round-trip reports: switch codec, packing and redundancy");
+        gbc.gridx = 1; gbc.gridy = 3; gbc.weightx = 0.7; inputPanel.add(adaptiveBox, gbc);
+
         // Controls
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         controlPanel.setBackground(MEDIUM_DARK_BG);
@@ -82,7 +100,7 @@ public class AudioSenderUI extends JFrame {
         controlPanel.add(startButton);
         controlPanel.add(stopButton);
         
-        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 2; gbc.weighty = 1.0; gbc.anchor = GridBagConstraints.SOUTH;
+        gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2; gbc.weighty = 1.0; gbc.anchor = GridBagConstraints.SOUTH;
         inputPanel.add(controlPanel, gbc);
         
         centerPanel.add(inputPanel);
@@ -163,57 +181,45 @@ public class AudioSenderUI extends JFrame {
         return btn;
     }
 
-    // --- Core Functionality (No change needed) ---
+    // --- Core Functionality (delegates to the headless AudioStreamSender) ---
 
     private void startSending() {
-        sending.set(true);
+        int port;
+        try {
+            port = Integer.parseInt(portField.getText().trim());
+        } catch (NumberFormatException ex) {
+            log("❌ CRITICAL ERROR: Invalid port " + portField.getText().trim());
+            return;
+        }
+        StreamConfig config;
+        try {
+            config = new StreamConfig().setPort(port).setDestinations(ipField.getText(), port).setSrtpKey(keyField.getText())
+                    .setAdaptiveBitrate(adaptiveBox.isSelected());
+        } catch (IllegalArgumentException ex) {
+            log("❌ CRITICAL ERROR: " + ex.getMessage());
+            return;
+        }
         startButton.setEnabled(false);
         stopButton.setEnabled(true);
-        log("🎤 PROTOCOL ACTIVE: Streaming to " + ipField.getText().trim() + ":" + portField.getText().trim());
-
-        new Thread(() -> {
-            try {
-                InetAddress targetIP = InetAddress.getByName(ipField.getText().trim());
-                int port = Integer.parseInt(portField.getText().trim());
-                DatagramSocket socket = new DatagramSocket();
-
-                AudioFormat format = new AudioFormat(8000f, 16, 1, true, false);
-                TargetDataLine mic = AudioSystem.getTargetDataLine(format);
-                mic.open(format);
-                mic.start();
-
-                byte[] buffer = new byte[640];
-                byte[] ulawBuffer = new byte[320];
-
-                while (sending.get()) {
-                    int bytesRead = mic.read(buffer, 0, buffer.length);
-                    if (bytesRead > 0) {
-                        for (int i = 0, j = 0; i < ulawBuffer.length; i++, j += 2) {
-                            short sample = (short) ((buffer[j + 1] << 8) | (buffer[j] & 0xFF));
-                            ulawBuffer[i] = linearToULaw(sample);
-                        }
-                        socket.send(new DatagramPacket(ulawBuffer, ulawBuffer.length, targetIP, port));
-                    }
-                }
+        log("🎤 PROTOCOL ACTIVE: Streaming to " + config);
 
-                mic.stop();
-                mic.close();
-                socket.close();
+        sender = new AudioStreamSender(config, new AudioStreamListener() {
+            public void onStopped() {
                 log("⏹ TRANSMISSION ENDED. Resources de-allocated.");
-            } catch (Exception ex) {
-                log("❌ CRITICAL ERROR: " + ex.getMessage());
                 SwingUtilities.invokeLater(() -> {
                     startButton.setEnabled(true);
                     stopButton.setEnabled(false);
-                    sending.set(false);
                 });
             }
-        }).start();
+            public void onError(Exception ex) { log("❌ CRITICAL ERROR: " + ex.getMessage()); }
+            public void onEvent(String message) { log(message); }
+        });
+        sender.start();
     }
 
     private void stopSending() {
-        sending.set(false);
-        // Buttons will be re-enabled/disabled in the thread's catch/finally block
+        if (sender != null) sender.stop();
+        // Buttons are reset from the sender's onStopped callback
         log("🛑 INITIATING TERMINATION SEQUENCE...");
     }
 
@@ -221,21 +227,6 @@ public class AudioSenderUI extends JFrame {
         SwingUtilities.invokeLater(() -> logArea.append(msg + "\n"));
     }
 
-    // µ-Law encoder (unchanged)
-    private static final int BIAS = 0x84, CLIP = 32635;
-    private static byte linearToULaw(short sample) {
-        int sign = (sample >> 8) & 0x80;
-        if (sign != 0) sample = (short) -sample;
-        if (sample > CLIP) sample = CLIP;
-        sample += BIAS;
-
-        int exponent = 7;
-        for (int expMask = 0x4000; (sample & expMask) == 0 && exponent > 0; exponent--, expMask >>= 1);
-        int mantissa = (sample >> ((exponent == 0) ? 4 : (exponent + 3))) & 0x0F;
-        return (byte) ~(sign | (
-exponent << 4) | mantissa);
-    }
-
     public static void main(String[] args) {
         // Set a modern look and feel if available (e.g., Nimbus, but metal is default)
         try {
@@ -244,4 +235,4 @@ exponent << 4) | mantissa);
         
         SwingUtilities.invokeLater(AudioSenderUI::new);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+// 💻 Headless entry point for media servers where no JFrame can be created.
+//   java AudioStreamCli send <host[:port],host[:port],...> <port> [options]   (fan-out; hosts may be multicast groups)
+//   java AudioStreamCli receive <port> [options]
+//   java AudioStreamCli call <host[:port]> <port> [options]  (both directions; --aec uses what it plays)
+//   java AudioStreamCli monitor <port> [options]     (multi-stream engine, counters only)
+//   java AudioStreamCli bridge <port> [options]      (conference mixer)
+//   java AudioStreamCli keygen                       (prints a fresh SRTP master key for --srtp)
+// Options: --ptime <10|20|30|40|60>  --rate <8000|16000|48000>  --codec <pcmu|dvi4>  --vad <on|off>
+//          --fec <none|red|parity>  --fec-group <2..16>  --metrics <port>
+//          --exec <platform|virtual|loop>  --drift <on|off>  --record <dir>
+//          --group <multicast-address>  --iface <name>  --ttl <hops>
+//          --aec <on|off>  --aec-tail <ms>  --ns <on|off>  --agc <on|off>  --srtp <base64-key>
+//          --rtcp <report-ms, 0 = off>  --adapt <on|off>  (sender follows receiver reports)
+public class AudioStreamCli {
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals("keygen")) {
+            System.out.println(SrtpContext.generateKey());
+            return;
+        }
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        String mode = args[0];
+        try {
+            switch (mode) {
+                case "send": {
+                    if (args.length < 3) {
+                        usage();
+                        return;
+                    }
+                    int port = Integer.parseInt(args[2]);
+                    StreamConfig config = options(new StreamConfig().setPort(port).setDestinations(args[1], port), args, 3);
+                    AudioStreamSender sender = new AudioStreamSender(config, printer("SENDER"));
+                    Runtime.getRuntime().addShutdownHook(new Thread(sender::stop));
+                    serveMetrics(config, sender.getMetrics());
+                    sender.start();
+                    awaitStopped(sender::isRunning);
+                    break;
+                }
+                case "receive": {
+                    StreamConfig config = options(new StreamConfig().setPort(Integer.parseInt(args[1])), args, 2);
+                    AudioStreamReceiver receiver = new AudioStreamReceiver(config, printer("RECEIVER"));
+                    Runtime.getRuntime().addShutdownHook(new Thread(receiver::stop));
+                    serveMetrics(config, receiver.getMetrics());
+                    receiver.start();
+                    awaitStopped(receiver::isRunning);
+                    break;
+                }
+                case "call": {
+                    if (args.length < 3) {
+                        usage();
+                        return;
+                    }
+                    // Two engines in one process, so the sender can cancel the echo of what the receiver plays
+                    int port = Integer.parseInt(args[2]);
+                    StreamConfig rx = options(new StreamConfig().setPort(port), args, 3);
+                    StreamConfig tx = options(new StreamConfig().setPort(port).setDestinations(args[1], port), args, 3);
+                    EchoReference echo = new EchoReference(tx.getSampleRate());
+                    rx.setEchoReference(echo);
+                    tx.setEchoReference(echo);
+                    AudioStreamReceiver receiver = new AudioStreamReceiver(rx, printer("RECEIVER"));
+                    AudioStreamSender sender = new AudioStreamSender(tx, printer("SENDER"));
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        sender.stop();
+                        receiver.stop();
+                    }));
+                    serveMetrics(tx, sender.getMetrics());
+                    receiver.start();
+                    sender.start();
+                    awaitStopped(() -> sender.isRunning() || receiver.isRunning());
+                    break;
+                }
+                case "monitor": {
+                    StreamConfig config = options(new StreamConfig().setPort(Integer.parseInt(args[1])), args, 2);
+                    MultiStreamReceiver.serve(config);
+                    break;
+                }
+                case "bridge": {
+                    StreamConfig config = options(new StreamConfig().setPort(Integer.parseInt(args[1])), args, 2);
+                    ConferenceMixer.serve(config);
+                    break;
+                }
+                default:
+                    usage();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            usage();
+        }
+    }
+
+    // Applies "--name value" pairs from args[from..] to the config (LoadTest reuses it)
+    static StreamConfig options(StreamConfig config, String[] args, int from) {
+        for (int i = from; i < args.length; i += 2) {
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--ptime": config.setPtimeMillis(Integer.parseInt(value)); break;
+                case "--rate": config.setSampleRate(Integer.parseInt(value)); break;
+                case "--codec": config.setCodec(value); break;
+                case "--vad": config.setVadEnabled(parseSwitch(args[i], value)); break;
+                case "--fec": config.setFecMode(parseFec(value)); break;
+                case "--fec-group": config.setFecGroupSize(Integer.parseInt(value)); break;
+                case "--metrics": config.setMetricsPort(Integer.parseInt(value)); break;
+                case "--exec": config.setExecutionMode(parseExec(value)); break;
+                case "--drift": config.setDriftCompensation(parseSwitch(args[i], value)); break;
+                case "--record": config.setRecordDirectory(Path.of(value)); break;
+                case "--group": config.setMulticastGroup(value); break;
+                case "--iface": config.setMulticastInterface(value); break;
+                case "--ttl": config.setMulticastTtl(Integer.parseInt(value)); break;
+                case "--aec": config.setEchoCancellation(parseSwitch(args[i], value)); break;
+                case "--aec-tail": config.setEchoTailMillis(Integer.parseInt(value)); break;
+                case "--ns": config.setNoiseSuppression(parseSwitch(args[i], value)); break;
+                case "--agc": config.setAutoGain(parseSwitch(args[i], value)); break;
+                case "--srtp": config.setSrtpKey(value); break;
+                case "--rtcp": config.setReportIntervalMillis(Integer.parseInt(value)); break;
+                case "--adapt": config.setAdaptiveBitrate(parseSwitch(args[i], value)); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        return config;
+    }
+
+    private static boolean parseSwitch(String name, String value) {
+        if (value.equals("on")) return true;
+        if (value.equals("off")) return false;
+        throw new IllegalArgumentException(name + " expects on|off");
+    }
+
+    private static void serveMetrics(StreamConfig config, MetricsRegistry metrics) throws IOException {
+        if (config.getMetricsPort() <= 0) return;
+        MetricsServer server = MetricsServer.start(config.getMetricsPort(), metrics);
+        System.out.println("📊 Metrics on http://127.0.0.1:" + server.getPort() + "/metrics");
+    }
+
+    private static MediaExecutor.Mode parseExec(String value) {
+        switch (value) {
+            case "platform": return MediaExecutor.Mode.PLATFORM;
+            case "virtual":
+                if (!MediaExecutor.isVirtualThreadSupported()) System.err.println("⚠ Virtual threads need JDK 21+, using platform threads");
+                return MediaExecutor.Mode.VIRTUAL;
+            case "loop": return MediaExecutor.Mode.EVENT_LOOP;
+            default: throw new IllegalArgumentException("--exec expects platform|virtual|loop");
+        }
+    }
+
+    // Virtual-thread workers are daemon threads, so main keeps the JVM alive until the engine stops
+    private static void awaitStopped(BooleanSupplier running) throws InterruptedException {
+        while (running.getAsBoolean()) Thread.sleep(200);
+    }
+
+    private static FecEncoder.Mode parseFec(String value) {
+        switch (value) {
+            case "none": return FecEncoder.Mode.NONE;
+            case "red": return FecEncoder.Mode.REDUNDANT;
+            case "parity": return FecEncoder.Mode.PARITY;
+            default: throw new IllegalArgumentException("--fec expects none|red|parity");
+        }
+    }
+
+    private static AudioStreamListener printer(String name) {
+        return new AudioStreamListener() {
+            public void onStarted() { System.out.println("▶ " + name + " started"); }
+            public void onStopped() { System.out.println("⏹ " + name + " stopped"); }
+            public void onError(Exception e) { System.err.println("❌ " + name + " ERROR: " + e.getMessage()); }
+            public void onEvent(String message) { System.out.println(message); }
+        };
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java AudioStreamCli send <host[:port],host[:port],...> <port> [options]");
+        System.err.println("       java AudioStreamCli receive <port> [options]");
+        System.err.println("       java AudioStreamCli call <host[:port]> <port> [options]");
+        System.err.println("       java AudioStreamCli monitor <port> [options]");
+        System.err.println("       java AudioStreamCli bridge <port> [options]");
+        System.err.println("       java AudioStreamCli keygen");
+        System.err.println("Options: --ptime <10|20|30|40|60>  --rate <8000|16000|48000>  --codec <pcmu|dvi4>  --vad <on|off>");
+        System.err.println("         --fec <none|red|parity>  --fec-group <2..16>  --metrics <port>");
+        System.err.println("         --exec <platform|virtual|loop>  --drift <on|off>  --record <dir>");
+        System.err.println("         --group <multicast-address>  --iface <name>  --ttl <hops>");
+        System.err.println("         --aec <on|off>  --aec-tail <ms>  --ns <on|off>  --agc <on|off>  --srtp <base64-key>");
+        System.err.println("         --rtcp <report-ms, 0 = off>  --adapt <on|off>");
+    }
+}
@@ -0,0 +1,9 @@
+// 📣 Lifecycle and status callbacks from AudioStreamSender / AudioStreamReceiver.
+// Called on the stream's own worker threads: keep them short and hand off to a UI thread if needed.
+public interface AudioStreamListener {
+    default void onStarted() {}
+    default void onStopped() {}
+    default void onError(Exception e) {}
+    // Human-readable status (line opened, source changed, periodic stats); never per packet
+    default void onEvent(String message) {}
+}
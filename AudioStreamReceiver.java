@@ -0,0 +1,508 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+// 🎧 Headless receiver core: UDP receive and RTP parse on one thread, clocked playout through the
+// jitter buffer and decode stage as a periodic task on the configured MediaExecutor (its own thread
+// in EVENT_LOOP mode, see StreamConfig.getDeviceExecutor). AudioReceiver and AudioStreamCli are thin clients.
+// Codec, sample rate and ptime are learned from each stream (payload type and payload size), so
+// the decoder, speaker line, buffers and pacing always follow whatever the sender chose. Receiver
+// reports (RtcpReport) go back to the sender's address every few seconds so it can adapt to them.
+public class AudioStreamReceiver {
+    // Format of the stream being played; replaced whenever the source or its format changes
+    private static final class Session {
+        final long ssrc;
+        final AudioCodec codec;
+        final int sampleRate;
+        final int frameSamples;
+        final int payloadBytes;
+        final long frameNanos;
+        // Newest RTP timestamp, and its distance from the first packet's past any 32-bit wrap
+        long newestTimestamp, newestExtended;
+        final JitterBuffer jitter;
+        final DecodeStage decoder;
+        // Sequence numbers run on across format changes, so a sender's loss history does too
+        final ReceptionStats reception;
+        // Sender's clock against the local playout clock, from packet timestamps vs. arrival
+        final ClockDriftEstimator drift = new ClockDriftEstimator();
+        // Queueing delay: transit time above the smallest seen, i.e. excluding fixed path delay
+        long minTransit = Long.MAX_VALUE;
+        volatile long queueingNanos;
+
+        Session(long ssrc, AudioCodec codec, int payloadBytes, long baseTimestamp, ReceptionStats reception) {
+            this.ssrc = ssrc;
+            this.reception = reception;
+            this.codec = codec;
+            this.sampleRate = codec.getClockRate();
+            this.frameSamples = codec.getSamples(payloadBytes);
+            this.payloadBytes = payloadBytes;
+            this.frameNanos = frameSamples * 1_000_000_000L / sampleRate;
+            this.newestTimestamp = baseTimestamp;
+            this.jitter = new JitterBuffer(payloadBytes, frameNanos);
+            this.decoder = new DecodeStage(jitter, frameSamples, codec, true);
+        }
+
+        int ptimeMillis() { return (int) (frameNanos / 1_000_000L); }
+    }
+
+    private final StreamConfig config;
+    private final AudioStreamListener listener;
+    private final AtomicBoolean receiving = new AtomicBoolean(false);
+    // Held so stop() can unblock a waiting receive by closing it
+    private volatile UdpTransport transport;
+    private volatile Session session;
+    private Thread worker;
+
+    // Receive-thread state for onDatagram(): FEC unwraps redundant/parity packets into deliver()
+    private final RtpHeader header = new RtpHeader();
+    private final FecDecoder fec = new FecDecoder(UdpTransport.MAX_DATAGRAM - RtpHeader.SIZE);
+    private final FecDecoder.Sink sink = this::deliver;
+    private long currentSsrc, currentArrival;
+    private boolean currentMarker;
+    // Decrypts in place ahead of everything else when the config has an SRTP key
+    private SrtpContext srtp;
+    // One recording per session when the config asks for it; opened and closed by the receive thread
+    private CallRecorder recorder;
+    // Return channel: the newest sender report (middle NTP bits, when it came, from which source)
+    // and when the next receiver report is due
+    private final RtcpReport rtcp = new RtcpReport();
+    private final ByteBuffer reportBuffer = ByteBuffer.allocateDirect(RtcpReport.RR_SIZE + SrtpContext.CONTROL_OVERHEAD);
+    private long reportSsrc, lastSr, lastSrArrival, lastSrSsrc, nextReport, reportNanos;
+
+    // Receive-path metrics; gauges read the active session when sampled
+    private final MetricsRegistry metrics = new MetricsRegistry("voip_receiver");
+    private final LongAdder packetsReceived = metrics.counter("packets_received_total", "Datagrams received");
+    private final LongAdder invalidPackets = metrics.counter("packets_invalid_total", "Datagrams that were not playable RTP");
+    private final LongAdder packetsRecovered = metrics.counter("packets_recovered_total", "Media packets rebuilt by FEC in time to play");
+    private final LongAdder srtpRejected = metrics.counter("srtp_rejected_total", "Datagrams failing SRTP authentication (wrong key, tampered, plain RTP)");
+    private final LongAdder srtpReplayed = metrics.counter("srtp_replayed_total", "SRTP packets dropped as replays or too old for the window");
+    private final LongAdder reportsSent = metrics.counter("rtcp_reports_sent_total", "Receiver reports sent back to the sender");
+    private final LatencyHistogram unprotectTime = metrics.histogram("srtp_unprotect_seconds",
+            "SRTP authentication and decryption per packet (only with a key)");
+    private final LatencyHistogram decodeTime = metrics.histogram("decode_seconds", "Jitter-buffer poll, decode/conceal and resample per frame");
+    private final LatencyHistogram delayVariation = metrics.histogram("network_delay_variation_seconds",
+            "Per-packet transit time above the fastest packet of the stream (queueing delay)");
+    // Speaker DAC clock against the local playout clock, from samples consumed vs. nanoTime
+    private final ClockDriftEstimator deviceDrift = new ClockDriftEstimator();
+    private final LatencyHistogram mouthToEar = metrics.histogram("mouth_to_ear_seconds",
+            "Estimated delay from capture to speaker, excluding fixed path and sender capture delay");
+
+    public AudioStreamReceiver(StreamConfig config, AudioStreamListener listener) {
+        this.config = config;
+        this.listener = listener;
+        metrics.gauge("packets_lost", "Packets of the current stream never received", () -> sessionValue(s -> s.reception.getLost()));
+        metrics.gauge("packets_reordered", "Packets of the current stream received out of order", () -> sessionValue(s -> s.reception.getReordered()));
+        metrics.gauge("jitter_seconds", "RFC 3550 interarrival jitter estimate", () -> sessionValue(s -> s.jitter.getJitterMillis() / 1000));
+        metrics.gauge("buffer_depth_frames", "Frames queued in the jitter buffer", () -> sessionValue(s -> s.jitter.depth()));
+        metrics.gauge("buffer_target_frames", "Adaptive jitter-buffer target depth", () -> sessionValue(s -> s.jitter.getTargetDepth()));
+        metrics.gauge("underruns", "Times the jitter buffer ran dry", () -> sessionValue(s -> s.jitter.getUnderruns()));
+        metrics.gauge("clock_drift_ppm", "Sender clock drift against the playout clock", () -> sessionValue(s -> s.drift.getPpm()));
+        metrics.gauge("device_drift_ppm", "Speaker clock drift against the playout clock", deviceDrift::getPpm);
+        metrics.gauge("frames_concealed", "Frames synthesised by loss concealment", () -> sessionValue(s -> s.jitter.getFramesConcealed()));
+    }
+
+    private double sessionValue(ToDoubleFunction<Session> value) {
+        Session s = session;
+        return s != null ? value.applyAsDouble(s) : 0;
+    }
+
+    public void start() {
+        if (!receiving.compareAndSet(false, true)) return;
+        worker = config.getExecutor().startWorker("audio-receiver", false, this::run);
+    }
+
+    public void stop() {
+        receiving.set(false);
+        UdpTransport t = transport;
+        if (t != null) t.close();
+    }
+
+    public boolean isRunning() { return receiving.get(); }
+    public StreamConfig getConfig() { return config; }
+    public MetricsRegistry getMetrics() { return metrics; }
+    public long getPacketsReceived() { return packetsReceived.sum(); }
+    // UDP port actually bound (for a config port of 0), or -1 until the receiver is listening
+    public int getLocalPort() {
+        UdpTransport t = transport;
+        return t != null ? t.getLocalPort() : -1;
+    }
+    public long getInvalidPackets() { return invalidPackets.sum(); }
+    public long getPacketsRecovered() { return packetsRecovered.sum(); }
+    public long getReportsSent() { return reportsSent.sum(); }
+    // Measured clock drift in ppm: sender vs. this host, and the speaker device vs. this host
+    public double getDriftPpm() { return sessionValue(s -> s.drift.getPpm()); }
+    public double getDeviceDriftPpm() { return deviceDrift.getPpm(); }
+    // Loss and reordering of the active session (null before the first packet)
+    public ReceptionStats getReceptionStats() {
+        Session s = session;
+        return s != null ? s.reception : null;
+    }
+    // Playout buffer of the active session (null before the first packet), for its counters
+    public JitterBuffer getJitterBuffer() {
+        Session s = session;
+        return s != null ? s.jitter : null;
+    }
+
+    private void run() {
+        UdpTransport currentTransport = null;
+        Playout playout = null;
+
+        try {
+            currentTransport = UdpTransport.listen(config);
+            transport = currentTransport;
+            if (!receiving.get()) currentTransport.close(); // stop() raced with start()
+            session = null;
+            srtp = config.isSrtp() ? new SrtpContext(config.getSrtpKey()) : null;
+            reportSsrc = ThreadLocalRandom.current().nextInt() & 0xFFFFFFFFL;
+            lastSr = lastSrArrival = 0;
+            reportNanos = config.getReportIntervalMillis() * 1_000_000L;
+            nextReport = System.nanoTime() + reportNanos / 2;
+            metrics.registerMBean("AudioStreamReceiver", "udp-" + currentTransport.getLocalPort());
+            listener.onStarted();
+
+            // Playout runs on the media clock so late bursts no longer stall or skew it; it opens
+            // the speaker line once the first packet tells it the stream format
+            playout = new Playout();
+            playout.start();
+
+            // Drain everything queued per wakeup straight out of the transport's direct buffer
+            UdpTransport.Handler handler = this::onDatagram;
+            while (receiving.get()) {
+                currentTransport.receiveBatch(handler, 64, 0);
+            }
+        } catch (ClosedChannelException e) {
+            // Expected when stop() closes the transport to unblock the receive
+            if (receiving.get()) listener.onError(e);
+        } catch (Exception e) {
+            listener.onError(e);
+        } finally {
+            receiving.set(false);
+            if (playout != null) {
+                try {
+                    playout.awaitClosed();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (currentTransport != null) currentTransport.close();
+            transport = null;
+            closeRecorder();
+            JitterBuffer jitter = getJitterBuffer();
+            if (jitter != null) listener.onEvent("📊 JITTER BUFFER: " + jitter.stats());
+            metrics.unregisterMBean();
+            listener.onStopped();
+        }
+    }
+
+    // A datagram that trips a parser is counted and dropped rather than ending the session
+    private void onDatagram(ByteBuffer datagram, SocketAddress from, long arrival) throws IOException {
+        try {
+            handle(datagram, from, arrival);
+        } catch (RuntimeException e) {
+            invalidPackets.increment();
+        }
+    }
+
+    private void handle(ByteBuffer datagram, SocketAddress from, long arrival) throws IOException {
+        packetsReceived.increment();
+        // Sender reports share the media port; one byte tells them apart
+        if (RtcpReport.isRtcp(datagram, datagram.limit())) {
+            onControl(datagram, arrival);
+            return;
+        }
+        if (srtp != null) {
+            long start = System.nanoTime();
+            int length = srtp.unprotect(datagram);
+            if (length < 0) {
+                if (length == SrtpContext.REPLAYED) {
+                    srtpReplayed.increment();
+                } else {
+                    if (srtpRejected.sum() == 0) listener.onEvent("⚠ Dropping datagrams that fail SRTP authentication from " + from + " (wrong key, or plain RTP?)");
+                    srtpRejected.increment();
+                }
+                return;
+            }
+            datagram.limit(length);
+            unprotectTime.record(System.nanoTime() - start);
+        }
+        int payload = header.parse(datagram, 0, datagram.limit());
+        if (payload < 0 || !fecAccepts(header.payloadType)) {
+            if (invalidPackets.sum() == 0) listener.onEvent("⚠ Ignoring non-RTP/unsupported-codec datagram from " + from);
+            invalidPackets.increment();
+            return;
+        }
+        currentSsrc = header.ssrc;
+        currentArrival = arrival;
+        currentMarker = header.marker;
+        if (!fec.process(header, datagram, payload, sink)) invalidPackets.increment();
+        if (reportNanos > 0 && arrival >= nextReport) sendReport(from, arrival);
+    }
+
+    // Keeps the newest sender report for the LSR/DLSR fields; receiver reports from other
+    // listeners of a multicast group are no concern of ours
+    private void onControl(ByteBuffer datagram, long arrival) {
+        if (srtp != null) {
+            int length = srtp.unprotectRtcp(datagram);
+            if (length < 0) {
+                (length == SrtpContext.REPLAYED ? srtpReplayed : srtpRejected).increment();
+                return;
+            }
+            datagram.limit(length);
+        }
+        if (!rtcp.parse(datagram, 0, datagram.limit()) || rtcp.packetType != RtcpReport.PT_SR) return;
+        lastSr = rtcp.ntp;
+        lastSrArrival = arrival;
+        lastSrSsrc = rtcp.ssrc;
+    }
+
+    // Reports on the current stream to whoever is sending it: loss since the last report, the
+    // running totals, jitter in timestamp units, and the newest sender report echoed with how long
+    // it was held here, from which the sender works out the round trip
+    private void sendReport(SocketAddress to, long now) throws IOException {
+        nextReport = now + (long) (reportNanos * (0.5 + ThreadLocalRandom.current().nextDouble()));
+        Session s = session;
+        UdpTransport t = transport;
+        if (s == null || t == null || s.ssrc != currentSsrc) return;
+        ReceptionStats r = s.reception;
+        boolean echo = lastSrSsrc == s.ssrc && lastSrArrival != 0;
+        int length = RtcpReport.writeReceiverReport(reportBuffer, 0, reportSsrc, s.ssrc, r.intervalFractionLost(), r.getLost(),
+                r.getExtendedHighest(), (long) (s.jitter.getJitterMillis() * s.sampleRate / 1000),
+                echo ? lastSr : 0, echo ? RtcpReport.toCompact(now - lastSrArrival) : 0);
+        if (srtp != null) length = srtp.protectRtcp(reportBuffer, length);
+        reportBuffer.clear().limit(length);
+        if (t.send(reportBuffer, to)) reportsSent.increment();
+    }
+
+    private static boolean fecAccepts(int payloadType) {
+        return RtpHeader.clockRate(payloadType) > 0 || payloadType == RtpHeader.PT_CN
+                || payloadType == RtpHeader.PT_RED || payloadType == RtpHeader.PT_PARITY;
+    }
+
+    // Every original or rebuilt packet out of the FEC decoder lands here
+    private void deliver(int payloadType, int sequence, long timestamp, ByteBuffer data, int off, int len, boolean recovered) {
+        Session s = session;
+        if (payloadType == RtpHeader.PT_CN) {
+            // Sender went silent: queue the descriptor in sequence so playout switches to comfort noise
+            if (s != null && currentSsrc == s.ssrc && !recovered) {
+                s.reception.received(sequence);
+                s.jitter.putSilence(sequence, mediaNanos(s, timestamp), currentArrival, len > 0 ? data.get(off) & 0x7F : 127);
+            }
+            return;
+        }
+        boolean sameFormat = s != null && currentSsrc == s.ssrc && payloadType == s.codec.getPayloadType() && len == s.payloadBytes;
+        if (recovered) {
+            if (sameFormat
+                    && s.jitter.putRecovered(sequence, data, off, len)) {
+                packetsRecovered.increment();
+                record(payloadType, false, sequence, timestamp, data, off, len);
+            }
+            return;
+        }
+        if (!sameFormat) {
+            // New sender or new format: start a fresh playout timeline and decoder sized for it
+            AudioCodec codec = AudioCodec.forPayloadType(payloadType);
+            if (codec == null || codec.getSamples(len) <= 0) {
+                invalidPackets.increment();
+                return;
+            }
+            boolean switched = s != null && currentSsrc == s.ssrc;
+            boolean sameRate = switched && codec.getClockRate() == s.sampleRate;
+            s = new Session(currentSsrc, codec, len, timestamp, switched ? s.reception : new ReceptionStats());
+            session = s;
+            listener.onEvent("🔁 Stream " + String.format("%08x", s.ssrc) + (switched ? " switched to " : ": ") + codec.getName() + " "
+                    + s.sampleRate + " Hz, " + s.ptimeMillis() + " ms frames" + (switched ? "." : ", resynchronising playout."));
+            // Records carry their payload type, so a recording only restarts with the clock rate
+            if (!sameRate) openRecorder(s);
+        }
+        record(payloadType, currentMarker, sequence, timestamp, data, off, len);
+        long media = mediaNanos(s, timestamp);
+        s.jitter.put(sequence, media, currentArrival, data, off, len);
+        s.reception.received(sequence);
+        s.drift.update(currentArrival, media);
+        long transit = currentArrival - media;
+        if (transit < s.minTransit) s.minTransit = transit;
+        s.queueingNanos = transit - s.minTransit;
+        delayVariation.record(s.queueingNanos);
+        // Give the sender's protection scheme time to deliver before a frame's playout slot
+        int wanted = fec.getProtectionDelayFrames() + 1;
+        if (wanted > s.jitter.getMinDepth()) s.jitter.setMinDepth(wanted);
+    }
+
+    // --- Recording (receive thread only) ---
+
+    private void openRecorder(Session s) {
+        closeRecorder();
+        if (config.getRecordDirectory() == null) return;
+        try {
+            recorder = new CallRecorder(CallRecorder.callDirectory(config.getRecordDirectory(), "rx", s.ssrc), s.ssrc, s.sampleRate);
+            listener.onEvent("💾 Recording to " + recorder.getDirectory());
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+    }
+
+    private void record(int payloadType, boolean marker, int sequence, long timestamp, ByteBuffer data, int off, int len) {
+        if (recorder == null) return;
+        try {
+            recorder.append(payloadType, marker, sequence, timestamp, currentArrival, data, off, len);
+        } catch (IOException e) {
+            // Disk full or similar: stop recording, keep the call going
+            listener.onError(e);
+            closeRecorder();
+        }
+    }
+
+    private void closeRecorder() {
+        CallRecorder r = recorder;
+        recorder = null;
+        if (r == null) return;
+        try {
+            r.close();
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+    }
+
+    // Media time since the session's first packet. Timestamps are taken as signed distances from
+    // the newest, so packets older than the first (reordered, duplicated) land just before it
+    // rather than 2^32 samples ahead
+    private static long mediaNanos(Session s, long timestamp) {
+        int delta = (int) (timestamp - s.newestTimestamp);
+        long extended = s.newestExtended + delta;
+        if (delta > 0) {
+            s.newestTimestamp = timestamp;
+            s.newestExtended = extended;
+        }
+        return extended * 1_000_000_000L / s.sampleRate;
+    }
+
+    // Pulls one frame per frame period through the decode stage (which conceals the gaps). Runs as
+    // a periodic task on the device executor (never an event loop: the speaker line blocks),
+    // re-scheduled whenever the stream's ptime changes.
+    // When a sender switches format, what it sent before is played out first and the speaker line
+    // stays open unless the clock rate changed, so an adaptation step is not heard as a gap.
+    private final class Playout implements MediaExecutor.Task {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile MediaExecutor.Periodic schedule;
+        private Session active;
+        private AudioBackend.Sink speakers;
+        private Resampler resampler;
+        private short[] pcm, devicePcm;
+        private byte[] pcmBytes;
+        private long deviceRate;
+        private long samplesWritten;
+        private int drainTicks = -1;
+        private long nextStats = System.nanoTime() + config.getStatsIntervalNanos();
+
+        // Polls for the first packet every 5 ms until the stream format is known
+        void start() {
+            schedule = config.getDeviceExecutor().schedule("audio-playout", 5_000_000L, this);
+        }
+
+        // Waits for the task to release the speaker line after receiving stopped
+        void awaitClosed() throws InterruptedException {
+            closed.await(1, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void run(long deadline) {
+            try {
+                if (!receiving.get()) {
+                    close();
+                    return;
+                }
+                Session s = session;
+                if (s != active && active != null && s.ssrc == active.ssrc) {
+                    // Same sender, new format: finish what is queued in the old one (bounded, as a
+                    // buffer still refilling would never drain)
+                    if (drainTicks < 0) drainTicks = active.jitter.depth();
+                    if (drainTicks-- > 0 && active.jitter.depth() > 0) s = active;
+                }
+                if (s != active) {
+                    // Format changed: size every buffer and tick at the new ptime, and (re)open the
+                    // line if the rate changed
+                    drainTicks = -1;
+                    boolean reopen = active == null || s.sampleRate != active.sampleRate;
+                    active = s;
+                    if (reopen) {
+                        if (speakers != null) speakers.close();
+                        speakers = config.getAudioBackend().openPlayback(config, s.sampleRate);
+                        speakers.start();
+                        deviceRate = speakers.getSampleRate();
+                        resampler = new Resampler(s.sampleRate, (int) deviceRate);
+                        samplesWritten = 0;
+                        deviceDrift.reset();
+                    }
+                    pcm = new short[s.frameSamples];
+                    // Two spare samples: drift correction can make a frame a sample longer
+                    devicePcm = new short[StreamConfig.frameSamples((int) deviceRate, s.ptimeMillis()) + 2];
+                    pcmBytes = new byte[Math.max(pcm.length, devicePcm.length) * 2];
+                    schedule.cancel();
+                    schedule = config.getDeviceExecutor().schedule("audio-playout", s.frameNanos, this);
+                    if (reopen) listener.onEvent("🔊 Audio line established at " + deviceRate + " Hz. Ready for data stream.");
+                }
+                if (active == null) return; // nothing received yet
+
+                // Drain the jitter buffer at the sender's rate and feed the speaker at its own
+                if (config.isDriftCompensation()) {
+                    active.decoder.setDriftPpm(active.drift.getPpm());
+                    resampler.setDriftPpm(deviceDrift.getPpm());
+                }
+
+                // Nothing is written while the buffer refills to its target depth
+                long now = System.nanoTime();
+                int written = 0;
+                if (resampler.isPassThrough()) {
+                    if (active.decoder.next(pcmBytes)) written = active.frameSamples * 2;
+                } else if (active.decoder.next(pcm)) {
+                    int n = resampler.process(pcm, pcm.length, devicePcm);
+                    for (int i = 0, j = 0; i < n; i++, j += 2) {
+                        pcmBytes[j] = (byte) devicePcm[i];
+                        pcmBytes[j + 1] = (byte) (devicePcm[i] >> 8);
+                    }
+                    written = n * 2;
+                }
+                if (written > 0) {
+                    decodeTime.record(System.nanoTime() - now);
+                    speakers.write(pcmBytes, 0, written);
+                    // Packetisation + network queueing + jitter buffer + speaker device queue
+                    long deviceQueued = (speakers.getBufferSize() - speakers.available()) / 2;
+                    mouthToEar.record(active.frameNanos + active.queueingNanos + active.jitter.getBufferedNanos()
+                            + deviceQueued * 1_000_000_000L / deviceRate);
+                    EchoReference echo = config.getEchoReference();
+                    if (echo != null) echo.write(pcmBytes, 0, written / 2, (int) deviceRate, (int) deviceQueued);
+                    samplesWritten += written / 2;
+                    deviceDrift.update(System.nanoTime(), (samplesWritten - deviceQueued) * 1_000_000_000L / deviceRate);
+                }
+
+                if (now >= nextStats) {
+                    listener.onEvent("📊 JITTER BUFFER: " + active.jitter.stats()
+                            + String.format(" drift=%+.1fppm device=%+.1fppm", active.drift.getPpm(), deviceDrift.getPpm()));
+                    nextStats = now + config.getStatsIntervalNanos();
+                }
+            } catch (Exception e) {
+                // Device failure ends the session just like a socket failure would
+                listener.onError(e);
+                stop();
+                close();
+            }
+        }
+
+        private void close() {
+            schedule.cancel();
+            if (speakers != null) {
+                speakers.drain();
+                speakers.close();
+                speakers = null;
+            }
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,436 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// 🎤 Headless sender core: capture, encode (µ-law or another AudioCodec), RTP framing and UDP send on one worker thread.
+// AudioSenderUI and AudioStreamCli are thin clients on top of this class.
+public class AudioStreamSender {
+    private final StreamConfig config;
+    private final AudioStreamListener listener;
+    private final AtomicBoolean sending = new AtomicBoolean(false);
+    private Thread worker;
+
+    // Send-path metrics: lock-free counters and histograms recorded once per frame
+    private final MetricsRegistry metrics = new MetricsRegistry("voip_sender");
+    private final LongAdder framesSent = metrics.counter("packets_sent_total", "Media packets sent");
+    private final LongAdder bytesSent = metrics.counter("bytes_sent_total", "RTP bytes sent per destination, all packet types");
+    private final LongAdder datagramsSent = metrics.counter("datagrams_sent_total", "Datagrams queued, counting each destination");
+    private final LongAdder sendDrops = metrics.counter("send_drops_total", "Datagrams the socket could not queue");
+    private final LongAdder framesSuppressed = metrics.counter("frames_suppressed_total", "Silent frames not sent (VAD)");
+    private final LongAdder bytesSaved = metrics.counter("bytes_saved_total", "Bytes saved by silence suppression, net of comfort noise");
+    private final LongAdder fecBytes = metrics.counter("fec_bytes_total", "Bytes spent on redundancy and parity");
+    private final LatencyHistogram captureDelay = metrics.histogram("capture_delay_seconds",
+            "Age of the oldest sample in a frame when the mic read returns (device queue + one ptime)");
+    private final LatencyHistogram encodeTime = metrics.histogram("encode_seconds", "Codec encode and RTP/FEC framing per frame");
+    private final LatencyHistogram dspTime = metrics.histogram("capture_dsp_seconds",
+            "Echo cancellation, noise suppression and AGC per frame (only with capture DSP on)");
+    private final LatencyHistogram protectTime = metrics.histogram("srtp_protect_seconds",
+            "SRTP encryption and authentication per packet (only with a key)");
+    private final LatencyHistogram captureToSend = metrics.histogram("capture_to_send_seconds",
+            "From the mic read returning to the datagram being handed to the socket");
+    private final LongAdder reportsReceived = metrics.counter("rtcp_reports_received_total", "Receiver reports about this stream");
+
+    private volatile int destinations;
+    private volatile CaptureProcessor dsp;
+    // Latest receiver report (round trip -1 until one echoes a sender report) and the current step
+    private volatile long rttNanos = -1, reportedJitterNanos;
+    private volatile double reportedLoss;
+    private volatile int bitsPerSecond;
+    private volatile String sendFormat = "";
+
+    // Worker-thread state for onDatagram(): receiver reports arriving on the media socket
+    private final RtcpReport report = new RtcpReport();
+    private long ssrc;
+    private int clockRate;
+    private SrtpContext srtp;
+    private BitrateController controller;
+    private BitrateController.Change pendingChange;
+    private long lastReportAt;
+    private boolean reportsSeen;
+
+    public AudioStreamSender(StreamConfig config, AudioStreamListener listener) {
+        this.config = config;
+        this.listener = listener;
+        metrics.gauge("destinations", "Unicast/multicast destinations each frame is sent to", () -> destinations);
+        metrics.gauge("echo_erle_db", "Echo return loss enhancement of the canceller", () -> {
+            CaptureProcessor p = dsp;
+            return p == null || p.getEchoCanceller() == null ? 0 : p.getEchoCanceller().getErleDb();
+        });
+        metrics.gauge("agc_gain_db", "Gain applied by automatic gain control", () -> {
+            CaptureProcessor p = dsp;
+            return p == null || p.getGainControl() == null ? 0 : p.getGainControl().getGainDb();
+        });
+        metrics.gauge("rtt_seconds", "Round trip from the latest receiver report", () -> rttNanos < 0 ? 0 : rttNanos / 1e9);
+        metrics.gauge("reported_loss_ratio", "Loss the latest receiver report saw over its interval", () -> reportedLoss);
+        metrics.gauge("reported_jitter_seconds", "Interarrival jitter from the latest receiver report", () -> reportedJitterNanos / 1e9);
+        metrics.gauge("bitrate_bps", "Nominal send bitrate of the current codec and packing, headers included", () -> bitsPerSecond);
+    }
+
+    public void start() {
+        if (!sending.compareAndSet(false, true)) return;
+        // Capture blocks on the mic, so this is always a dedicated (platform or virtual) thread
+        worker = config.getExecutor().startWorker("audio-sender", false, this::run);
+    }
+
+    // Asks the worker to finish its current frame and release the mic and socket
+    public void stop() {
+        sending.set(false);
+    }
+
+    public boolean isRunning() { return sending.get(); }
+    public StreamConfig getConfig() { return config; }
+    public MetricsRegistry getMetrics() { return metrics; }
+    public long getFramesSent() { return framesSent.sum(); }
+    public long getBytesSent() { return bytesSent.sum(); }
+    // Datagrams queued across all destinations, and how many destinations there are
+    public long getDatagramsSent() { return datagramsSent.sum(); }
+    public int getDestinationCount() { return destinations; }
+    // Silence suppression: frames not sent, and bytes saved net of comfort-noise packets
+    public long getFramesSuppressed() { return framesSuppressed.sum(); }
+    public long getBytesSaved() { return bytesSaved.sum(); }
+    // Bytes spent on redundancy and parity packets beyond the plain stream
+    public long getFecBytes() { return fecBytes.sum(); }
+    // Capture DSP chain of the running stream, null when it is off or not started
+    public CaptureProcessor getCaptureProcessor() { return dsp; }
+    // Return channel: reports received, and the latest round trip (-1 before one), loss and jitter
+    public long getReportsReceived() { return reportsReceived.sum(); }
+    public long getRttNanos() { return rttNanos; }
+    public double getReportedLoss() { return reportedLoss; }
+    public long getReportedJitterNanos() { return reportedJitterNanos; }
+    // What is going out now, e.g. "DVI4 40 ms +RED", and its nominal bitrate
+    public String getSendFormat() { return sendFormat; }
+    public int getBitsPerSecond() { return bitsPerSecond; }
+
+    private void run() {
+        UdpTransport transport = null;
+        ByteBuffer packet = null;
+        AudioBackend.Source mic = null;
+        CallRecorder recorder = null;
+        try {
+            transport = UdpTransport.open();
+            InetSocketAddress[] targets = resolve(config, transport);
+            destinations = targets.length;
+            if (targets.length > 1) listener.onEvent("📡 Fan-out: each frame encoded once, sent to " + targets.length + " destinations");
+            packet = UdpTransport.acquireBuffer();
+            metrics.registerMBean("AudioStreamSender", config.getHost() + ":" + config.getPort());
+
+            mic = config.getAudioBackend().openCapture(config);
+            mic.start();
+            listener.onStarted();
+
+            // Frame sizes all follow from the configured ptime and rate
+            int wireRate = config.getSampleRate();
+            int deviceRate = mic.getSampleRate();
+            int samplesPerFrame = config.getFrameSamples();
+            AudioCodec codec = config.newCodec();
+            int payloadType = codec.getPayloadType();
+            long frameNanos = config.getFrameNanos();
+            byte[] buffer = new byte[StreamConfig.frameSamples(deviceRate, config.getPtimeMillis()) * 2];
+            Resampler resampler = new Resampler(deviceRate, wireRate);
+            short[] wireFrame = new short[samplesPerFrame];
+            short[] deviceFrame = resampler.isPassThrough() ? wireFrame : new short[buffer.length / 2];
+            if (!resampler.isPassThrough()) {
+                listener.onEvent("🔁 Mic runs at " + deviceRate + " Hz, resampling to " + wireRate + " Hz");
+            }
+
+            // Capture DSP between resampling and VAD, so silence detection sees the cleaned signal
+            CaptureProcessor processor = null;
+            if (config.isCaptureProcessing()) {
+                processor = new CaptureProcessor(config, samplesPerFrame);
+                if (config.isEchoCancellation() && processor.getEchoCanceller() == null) {
+                    listener.onEvent("⚠️ Echo cancellation needs a receiver at " + wireRate + " Hz sharing an echo reference; left off");
+                }
+                if (processor.isEnabled()) listener.onEvent("🎚 Capture DSP: " + processor);
+                else processor = null;
+            }
+            dsp = processor;
+
+            // Random initial values as recommended by RFC 3550
+            Random random = new Random();
+            ssrc = random.nextInt() & 0xFFFFFFFFL;
+            int sequence = random.nextInt(0x10000);
+            long timestamp = random.nextInt() & 0xFFFFFFFFL;
+            boolean talkspurtStart = true;
+
+            // Silence suppression: VAD between capture and encode, RFC 3389 comfort noise while silent
+            VoiceActivityDetector vad = config.isVadEnabled() ? new VoiceActivityDetector(config.getPtimeMillis()) : null;
+            int silentPackets = 0;
+            // Room is left for the SRTP tag, which protect() appends after the payload
+            int maxPayload = UdpTransport.MAX_DATAGRAM - RtpHeader.SIZE - SrtpContext.TAG_BYTES;
+            FecEncoder fec = new FecEncoder(config.getFecMode(), config.getFecGroupSize(), maxPayload);
+            // SRTP: send() encrypts each packet in place
+            srtp = config.isSrtp() ? new SrtpContext(config.getSrtpKey()) : null;
+            if (srtp != null) {
+                listener.onEvent("🔐 SRTP on: AES-128 counter mode, HMAC-SHA1 80-bit tags, " + SrtpContext.TAG_BYTES + " bytes per packet");
+            }
+
+            // Return channel: sender reports out, receiver reports back on the same socket. With
+            // adaptation on, the controller may pack several capture frames into one packet, switch
+            // codec or toggle redundancy; those take effect between packets.
+            clockRate = wireRate;
+            ByteBuffer control = ByteBuffer.allocateDirect(RtcpReport.SR_SIZE + SrtpContext.CONTROL_OVERHEAD);
+            UdpTransport.Handler reports = this::onDatagram;
+            long reportNanos = config.getReportIntervalMillis() * 1_000_000L;
+            long nextSenderReport = System.nanoTime() + reportNanos / 2;
+            long packetsSent = 0, octetsSent = 0;
+            controller = config.isAdaptiveBitrate() ? new BitrateController(config) : null;
+            pendingChange = null;
+            reportsSeen = false;
+            List<BitrateController.Step> ladder = controller != null ? controller.getLadder() : BitrateController.ladder(config);
+            int maxFrames = 1;
+            if (controller != null) {
+                for (BitrateController.Step step : ladder) maxFrames = Math.max(maxFrames, step.getFramesPerPacket());
+                listener.onEvent("📶 Adaptive bitrate: " + ladder.size() + " steps, " + ladder.get(0) + " down to " + ladder.get(ladder.size() - 1)
+                        + (reportNanos == 0 ? " (⚠ receiver reports are off, it will never move)" : ""));
+            }
+            int framesPerPacket = 1;
+            int payloadBytes = codec.getPayloadBytes(samplesPerFrame);
+            int cnIntervalPackets = Math.max(1, config.getComfortNoiseIntervalMillis() / config.getPtimeMillis());
+            bitsPerSecond = ladder.get(0).getBitsPerSecond();
+            sendFormat = format(codec, config.getPtimeMillis(), fec);
+            // Capture frames waiting to go out together; the frame itself when each goes alone
+            short[] packing = maxFrames == 1 ? wireFrame : new short[maxFrames * samplesPerFrame];
+            int packed = 0;
+            boolean voiced = false;
+            long packetCaptured = 0, packetTimestamp = 0;
+            long nextStats = System.nanoTime() + config.getStatsIntervalNanos();
+            if (config.getRecordDirectory() != null) {
+                recorder = new CallRecorder(CallRecorder.callDirectory(config.getRecordDirectory(), "tx", ssrc), ssrc, wireRate);
+                listener.onEvent("💾 Recording to " + recorder.getDirectory());
+            }
+
+            while (sending.get()) {
+                int bytesRead = mic.read(buffer, 0, buffer.length);
+                if (bytesRead > 0) {
+                    long captured = System.nanoTime();
+                    captureDelay.record(frameNanos + mic.available() / 2 * 1_000_000_000L / deviceRate);
+                    for (int i = 0, j = 0; i < deviceFrame.length; i++, j += 2) {
+                        deviceFrame[i] = (short) ((buffer[j + 1] << 8) | (buffer[j] & 0xFF));
+                    }
+                    if (!resampler.isPassThrough()) resampler.process(deviceFrame, deviceFrame.length, wireFrame);
+                    if (processor != null) {
+                        long dspStart = System.nanoTime();
+                        int queued = (int) ((long) mic.available() / 2 * wireRate / deviceRate);
+                        processor.process(wireFrame, samplesPerFrame, queued);
+                        dspTime.record(System.nanoTime() - dspStart);
+                    }
+
+                    if (packed == 0) {
+                        packetCaptured = captured;
+                        packetTimestamp = timestamp;
+                    }
+                    if (packing != wireFrame) System.arraycopy(wireFrame, 0, packing, packed * samplesPerFrame, samplesPerFrame);
+                    // A packet carries speech if any of its frames does
+                    if (vad == null || vad.process(wireFrame, samplesPerFrame)) voiced = true;
+                    packed++;
+                    // Media time advances through silence too, so the receiver sees the real gap
+                    timestamp = (timestamp + samplesPerFrame) & 0xFFFFFFFFL;
+                }
+                if (packed == framesPerPacket) {
+                    if (voiced) {
+                        // Payload encoded straight into the direct buffer, headers sealed around it.
+                        // The marker bit flags the first packet of each talkspurt so receivers can resync.
+                        long encodeStart = System.nanoTime();
+                        packet.clear();
+                        int payloadAt = fec.payloadOffset(payloadType);
+                        packet.position(payloadAt);
+                        codec.encode(packing, 0, packed * samplesPerFrame, packet);
+                        int length = fec.seal(packet, payloadType, talkspurtStart, sequence, packetTimestamp, ssrc, payloadBytes);
+                        packet.position(0).limit(length);
+                        encodeTime.record(System.nanoTime() - encodeStart);
+                        // Encryption happens in place, so an SRTP call has to be recorded before it
+                        if (recorder != null && srtp != null) {
+                            recorder.append(payloadType, talkspurtStart, sequence, packetTimestamp, packetCaptured, packet, payloadAt, payloadBytes);
+                        }
+                        int sent = send(transport, packet, targets, srtp);
+                        captureToSend.record(System.nanoTime() - packetCaptured);
+                        // Otherwise recorded after the send so the disk never sits on the latency path
+                        if (recorder != null && srtp == null) {
+                            recorder.append(payloadType, talkspurtStart, sequence, packetTimestamp, packetCaptured, packet, payloadAt, payloadBytes);
+                        }
+                        sequence = (sequence + 1) & 0xFFFF;
+                        talkspurtStart = false;
+                        silentPackets = 0;
+                        framesSent.increment();
+                        bytesSent.add(sent);
+                        fecBytes.add(length - RtpHeader.SIZE - payloadBytes);
+                        packetsSent++;
+                        octetsSent += length - RtpHeader.SIZE;
+                    } else {
+                        int suppressed = RtpHeader.SIZE + payloadBytes;
+                        if (silentPackets % cnIntervalPackets == 0) {
+                            // Comfort-noise descriptor: one byte of noise level, at silence start and periodically
+                            packet.clear();
+                            packet.put(fec.payloadOffset(RtpHeader.PT_CN), (byte) vad.getComfortNoiseLevel());
+                            int length = fec.seal(packet, RtpHeader.PT_CN, false, sequence, packetTimestamp, ssrc, 1);
+                            packet.limit(length);
+                            int sent = send(transport, packet, targets, srtp);
+                            sequence = (sequence + 1) & 0xFFFF;
+                            suppressed -= sent;
+                            bytesSent.add(sent);
+                            packetsSent++;
+                            octetsSent += 1;
+                        }
+                        silentPackets++;
+                        talkspurtStart = true;
+                        framesSuppressed.add(packed);
+                        bytesSaved.add(suppressed);
+                    }
+                    if (fec.isParityDue()) {
+                        packet.clear();
+                        packet.limit(fec.writeParity(packet, ssrc));
+                        int sent = send(transport, packet, targets, srtp);
+                        bytesSent.add(sent);
+                        fecBytes.add(sent);
+                    }
+                    packed = 0;
+                    voiced = false;
+
+                    // Between packets is the only place the format may change
+                    BitrateController.Change change = pendingChange;
+                    if (change != null) {
+                        pendingChange = null;
+                        BitrateController.Step step = controller.getStep();
+                        if (!step.getCodec().equals(codec.getName())) {
+                            codec = AudioCodec.create(step.getCodec(), wireRate);
+                            payloadType = codec.getPayloadType();
+                        }
+                        framesPerPacket = step.getFramesPerPacket();
+                        payloadBytes = codec.getPayloadBytes(framesPerPacket * samplesPerFrame);
+                        cnIntervalPackets = Math.max(1, config.getComfortNoiseIntervalMillis() / step.getPtimeMillis());
+                        FecEncoder.Mode mode = controller.getFecMode(config.getFecMode());
+                        if (mode != fec.getMode()) fec = new FecEncoder(mode, config.getFecGroupSize(), maxPayload);
+                        bitsPerSecond = step.getBitsPerSecond();
+                        sendFormat = format(codec, step.getPtimeMillis(), fec);
+                        listener.onEvent(describe(change, step));
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (reportNanos > 0) {
+                    transport.drain(reports, 8);
+                    if (now >= nextSenderReport) {
+                        control.clear();
+                        int length = RtcpReport.writeSenderReport(control, 0, ssrc, now, packetTimestamp, packetsSent, octetsSent);
+                        if (srtp != null) length = srtp.protectRtcp(control, length);
+                        control.position(0).limit(length);
+                        transport.sendAll(control, targets);
+                        // Randomised around the interval (RFC 3550 6.3.1) so many senders never fall into step
+                        nextSenderReport = now + (long) (reportNanos * (0.5 + random.nextDouble()));
+                    }
+                    // Media is going out but nothing comes back: as congested as a link gets
+                    if (controller != null && reportsSeen && now - lastReportAt > 3 * reportNanos && pendingChange == null) {
+                        pendingChange = controller.onReportsLost(now);
+                        lastReportAt = now;
+                    }
+                }
+                if (now >= nextStats) {
+                    listener.onEvent("📊 SENDER: frames=" + framesSent + " bytes=" + bytesSent
+                            + " suppressed=" + framesSuppressed + " saved=" + bytesSaved + "B fec=" + fecBytes + "B"
+                            + " encode p99=" + encodeTime.snapshot().getValueAt(0.99) / 1000 + "us"
+                            + (reportsSeen ? String.format(" rtt=%.0fms loss=%.1f%% %s", rttNanos / 1e6, reportedLoss * 100, sendFormat) : ""));
+                    nextStats = now + config.getStatsIntervalNanos();
+                }
+            }
+        } catch (Exception ex) {
+            listener.onError(ex);
+        } finally {
+            dsp = null;
+            controller = null;
+            if (mic != null) mic.close();
+            if (transport != null) transport.close();
+            UdpTransport.releaseBuffer(packet);
+            closeQuietly(recorder);
+            metrics.unregisterMBean();
+            sending.set(false);
+            listener.onStopped();
+        }
+    }
+
+    // A receiver report on the media socket (the worker drains it between frames). Anything else
+    // arriving here, e.g. a bridge's mix sent back to this port, is not for the sender to play.
+    private void onDatagram(ByteBuffer datagram, SocketAddress from, long arrival) {
+        if (!RtcpReport.isRtcp(datagram, datagram.limit())) return;
+        if (srtp != null) {
+            int length = srtp.unprotectRtcp(datagram);
+            if (length < 0) return;
+            datagram.limit(length);
+        }
+        if (!report.parse(datagram, 0, datagram.limit()) || report.packetType != RtcpReport.PT_RR || report.sourceSsrc != ssrc) return;
+        reportsReceived.increment();
+        // Round trip = now - when the echoed SR left - how long the receiver held it, all on our clock
+        long rtt = -1;
+        if (report.lastSr != 0) {
+            long units = (RtcpReport.compact(arrival) - report.lastSr - report.delaySinceLastSr) & 0xFFFFFFFFL;
+            rtt = units >= 0x80000000L ? 0 : RtcpReport.fromCompact(units);
+        }
+        double loss = report.fractionLost / 256.0;
+        rttNanos = rtt;
+        reportedLoss = loss;
+        reportedJitterNanos = report.jitter * 1_000_000_000L / clockRate;
+        reportsSeen = true;
+        lastReportAt = arrival;
+        if (controller != null) {
+            BitrateController.Change change = controller.onReport(arrival, loss, rtt);
+            if (change != null) pendingChange = change;
+        }
+    }
+
+    private String describe(BitrateController.Change change, BitrateController.Step step) {
+        switch (change) {
+            case DOWN: return "📉 Down to " + step + " (" + controller.getReason() + ")";
+            case UP: return "📈 Up to " + step + " (" + controller.getReason() + ")";
+            case REDUNDANCY_ON: return "🛟 Redundancy on (" + controller.getReason() + ")";
+            default: return "🛟 Redundancy off (" + controller.getReason() + ")";
+        }
+    }
+
+    private static String format(AudioCodec codec, int ptimeMillis, FecEncoder fec) {
+        return codec.getName() + " " + ptimeMillis + " ms" + (fec.getMode() == FecEncoder.Mode.REDUNDANT ? " +RED" : "");
+    }
+
+    // One datagram to every destination from the same buffer (packet at position 0, limit at its
+    // end), protected first when 'srtp' is set. Returns the datagram length.
+    private int send(UdpTransport transport, ByteBuffer packet, InetSocketAddress[] targets, SrtpContext srtp) throws IOException {
+        if (srtp != null) {
+            long start = System.nanoTime();
+            srtp.protect(packet, packet.limit());
+            protectTime.record(System.nanoTime() - start);
+        }
+        int queued = transport.sendAll(packet, targets);
+        datagramsSent.add(queued);
+        if (queued < targets.length) sendDrops.add(targets.length - queued);
+        return packet.limit();
+    }
+
+    // Resolves the destinations once, and sets multicast options if any of them is a group
+    private static InetSocketAddress[] resolve(StreamConfig config, UdpTransport transport) throws IOException {
+        List<InetSocketAddress> destinations = config.getDestinations();
+        InetSocketAddress[] targets = new InetSocketAddress[destinations.size()];
+        InetAddress group = null;
+        for (int i = 0; i < targets.length; i++) {
+            InetSocketAddress d = destinations.get(i);
+            targets[i] = new InetSocketAddress(InetAddress.getByName(d.getHostString()), d.getPort());
+            if (targets[i].getAddress().isMulticastAddress()) group = targets[i].getAddress();
+        }
+        if (group != null) {
+            // Same interface choice as the receivers, so a single-host setup hears itself
+            transport.setMulticastOptions(config.getMulticastTtl(),
+                    UdpTransport.multicastInterface(config.getMulticastInterface(), group));
+        }
+        return targets;
+    }
+
+    private void closeQuietly(CallRecorder recorder) {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+// 📶 Automatic gain control for the capture path: steers speech towards a target level, turning
+// down quickly (attack) and up slowly (release), and only moving while somebody is talking so
+// pauses are not pumped up into audible noise. A per-frame peak limit stops the gain from ever
+// clipping, and the gain is ramped across each frame so changes do not click.
+// The noise floor follows pauses, and while frames are called speech it can still rise to the
+// quietest frame of the last few seconds, as in VoiceActivityDetector: steady noise louder than the
+// floor has no pauses and would otherwise be levelled like a talker. The gain holds between words,
+// but a pause longer than any between words lets it settle back to unity, so whatever it gained
+// on noise before the floor caught up is not kept.
+// Not thread-safe: owned by the CaptureProcessor of one stream.
+public class AutomaticGainControl {
+    private static final double TARGET_DBFS = -18.0;       // speech RMS
+    private static final double MAX_GAIN_DB = 30.0, MIN_GAIN_DB = -12.0;
+    private static final double ATTACK_DB_PER_SECOND = 30.0, RELEASE_DB_PER_SECOND = 6.0;
+    private static final double SPEECH_MARGIN_DB = 10.0;   // above the noise floor
+    private static final double MIN_SPEECH_DBFS = -55.0;
+    private static final double PAUSE_HOLD_SECONDS = 2.0;   // longer than this is not between words
+    private static final double MIN_WINDOW_SECONDS = 5.0;   // no pause in this long: it is not talk
+    private static final float PEAK_LIMIT = 32000f;
+
+    private final int sampleRate;
+    private double gainDb = 0;
+    private float lastGain = 1;
+    private double noiseFloorDbfs = -70;
+    // Running minimum of frame levels over the last one to two half windows (no per-frame history)
+    private double currentMinDbfs = 0, previousMinDbfs = 0;
+    private double windowSeconds = 0;
+    private boolean windowFilled = false;
+    private double pauseSeconds = 0;
+
+    public AutomaticGainControl(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public double getGainDb() { return gainDb; }
+    public double getNoiseFloorDbfs() { return noiseFloorDbfs; }
+
+    // Levels 'count' samples in place
+    public void process(float[] frame, int count) {
+        double energy = 0;
+        float peak = 0;
+        for (int i = 0; i < count; i++) {
+            energy += frame[i] * frame[i];
+            peak = Math.max(peak, Math.abs(frame[i]));
+        }
+        double level = energy == 0 ? -96 : 10 * Math.log10(energy / count / (32768.0 * 32768.0));
+        double seconds = (double) count / sampleRate;
+        trackMinimum(level, seconds);
+
+        if (level > noiseFloorDbfs + SPEECH_MARGIN_DB && level > MIN_SPEECH_DBFS) {
+            // Nothing quieter than the floor for a whole window: the floor is too low, lift it
+            double windowMin = Math.min(currentMinDbfs, previousMinDbfs);
+            if (windowFilled && windowMin > noiseFloorDbfs) noiseFloorDbfs += (windowMin - noiseFloorDbfs) * 0.05;
+            double wanted = Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, TARGET_DBFS - level));
+            if (wanted < gainDb) gainDb = Math.max(wanted, gainDb - ATTACK_DB_PER_SECOND * seconds);
+            else gainDb = Math.min(wanted, gainDb + RELEASE_DB_PER_SECOND * seconds);
+            pauseSeconds = 0;
+        } else {
+            // Track the floor down at once and up slowly, only between words
+            noiseFloorDbfs = level < noiseFloorDbfs ? level : noiseFloorDbfs + (level - noiseFloorDbfs) * 0.05;
+            pauseSeconds += seconds;
+            if (pauseSeconds > PAUSE_HOLD_SECONDS && gainDb > 0) gainDb = Math.max(0, gainDb - RELEASE_DB_PER_SECOND * seconds);
+        }
+        float gain = (float) Math.pow(10, gainDb / 20);
+        float from = lastGain;
+        if (peak * gain > PEAK_LIMIT) {
+            // No ramp down into a peak: the whole frame gets the limited gain
+            gain = PEAK_LIMIT / peak;
+            gainDb = 20 * Math.log10(gain);
+            from = Math.min(from, gain);
+        }
+
+        float step = (gain - from) / count;
+        float g = from;
+        for (int i = 0; i < count; i++) {
+            g += step;
+            frame[i] *= g;
+        }
+        lastGain = gain;
+    }
+
+    private void trackMinimum(double level, double seconds) {
+        if (windowSeconds == 0 || level < currentMinDbfs) currentMinDbfs = level;
+        if (!windowFilled && windowSeconds == 0) previousMinDbfs = level;
+        windowSeconds += seconds;
+        if (windowSeconds >= MIN_WINDOW_SECONDS / 2) {
+            previousMinDbfs = currentMinDbfs;
+            windowSeconds = 0;
+            windowFilled = true;
+        }
+    }
+}
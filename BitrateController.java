@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 📶 Sender-side rate adaptation from receiver reports (RtcpReport). The ladder is every codec and
+// packing the sender can switch to without renegotiating: the configured codec, then DVI4, each at
+// the configured ptime or several capture frames per packet (any ptime in SUPPORTED_PTIMES). Steps
+// are ordered by wire bitrate, IP/UDP/RTP headers and SRTP tag included, the configured one on top.
+// RFC 2198 redundancy is a separate switch when the configured FEC mode is NONE or REDUNDANT.
+//   congested     loss > 10% or round trip 80 ms above its minimum: redundancy off first, then a step down
+//                 (the minimum of the last 30-60 s, so a route change to a longer path becomes the
+//                 new baseline within a minute instead of reading as queueing forever)
+//   random loss   3-10% with no queue building: redundancy on (it repairs loss, congestion it would worsen)
+//   clean         under 3% for the up-hold time: a step up; the hold doubles (to 60 s) each time an
+//                 up-step runs straight back into congestion, so a capped link is probed less and less
+// The first reports after a change still describe the old rate, so they are skipped.
+// Not thread-safe: owned by the sender's worker thread.
+public class BitrateController {
+    static final double CONGESTED_LOSS = 0.10, RANDOM_LOSS = 0.03, CLEAN_LOSS = 0.01;
+    static final long CONGESTED_QUEUE_NANOS = 80_000_000L, CALM_QUEUE_NANOS = 40_000_000L;
+    static final long BASE_UP_HOLD_NANOS = 5_000_000_000L, MAX_UP_HOLD_NANOS = 60_000_000_000L;
+    static final int SKIP_AFTER_CHANGE = 2;
+    static final long RTT_WINDOW_NANOS = 30_000_000_000L;    // half of the baseline's window
+    private static final int IP_UDP_HEADERS = 28;
+
+    public enum Change { DOWN, UP, REDUNDANCY_ON, REDUNDANCY_OFF }
+
+    // One rung: 'framesPerPacket' capture frames of the configured ptime encoded as one packet
+    public static final class Step {
+        private final String codec;
+        private final int framesPerPacket, ptimeMillis, bitsPerSecond;
+
+        Step(String codec, int framesPerPacket, int ptimeMillis, int bitsPerSecond) {
+            this.codec = codec;
+            this.framesPerPacket = framesPerPacket;
+            this.ptimeMillis = ptimeMillis;
+            this.bitsPerSecond = bitsPerSecond;
+        }
+
+        public String getCodec() { return codec; }
+        public int getFramesPerPacket() { return framesPerPacket; }
+        public int getPtimeMillis() { return ptimeMillis; }
+        public int getBitsPerSecond() { return bitsPerSecond; }
+
+        @Override
+        public String toString() {
+            return codec + " " + ptimeMillis + " ms, " + bitsPerSecond / 1000 + " kbit/s";
+        }
+    }
+
+    private final List<Step> ladder;
+    private final boolean redundancyAllowed, redundancyConfigured;
+    private int index;
+    private boolean redundant;
+
+    private long lastQueueNanos;
+    // Windowed minimum round trip: minima of this and the previous RTT_WINDOW_NANOS, no history
+    private long currentMinRttNanos = Long.MAX_VALUE, previousMinRttNanos = Long.MAX_VALUE;
+    private long rttWindowStart = Long.MIN_VALUE / 2;
+    private double lastLoss;
+    private int skipReports;
+    private long cleanSince = -1, lossyCleanSince = -1;
+    private long upHoldNanos = BASE_UP_HOLD_NANOS;
+    private long lastUpAt = Long.MIN_VALUE / 2, lastCongestedAt = Long.MIN_VALUE / 2;
+    private String reason = "";
+
+    public BitrateController(StreamConfig config) {
+        this.ladder = Collections.unmodifiableList(ladder(config));
+        FecEncoder.Mode mode = config.getFecMode();
+        this.redundancyAllowed = mode == FecEncoder.Mode.NONE || mode == FecEncoder.Mode.REDUNDANT;
+        this.redundancyConfigured = mode == FecEncoder.Mode.REDUNDANT;
+        this.redundant = redundancyConfigured;
+    }
+
+    // Every step for this config, highest bitrate (the configured codec and ptime) first. Steps
+    // within 5% of the one above them are left out: they would cost a switch for nothing.
+    static List<Step> ladder(StreamConfig config) {
+        int base = config.getPtimeMillis(), rate = config.getSampleRate();
+        int overhead = IP_UDP_HEADERS + RtpHeader.SIZE + (config.isSrtp() ? SrtpContext.TAG_BYTES : 0);
+        List<String> codecs = new ArrayList<>();
+        codecs.add(config.getCodec());
+        if (!config.getCodec().equals(AudioCodec.DVI4)) codecs.add(AudioCodec.DVI4);
+        List<Step> all = new ArrayList<>();
+        for (String name : codecs) {
+            AudioCodec codec = AudioCodec.create(name, rate);
+            for (int k = 1; k * base <= StreamConfig.SUPPORTED_PTIMES[StreamConfig.SUPPORTED_PTIMES.length - 1]; k++) {
+                if (!supportedPtime(k * base)) continue;
+                int payload = codec.getPayloadBytes(StreamConfig.frameSamples(rate, k * base));
+                if (RtpHeader.SIZE + payload + SrtpContext.TAG_BYTES > UdpTransport.MAX_DATAGRAM) continue;
+                all.add(new Step(name, k, k * base, (int) ((overhead + payload) * 8 * 1000L / (k * base))));
+            }
+        }
+        // Stable: at equal rates the configured codec stays ahead
+        all.sort((a, b) -> Integer.compare(b.bitsPerSecond, a.bitsPerSecond));
+        List<Step> kept = new ArrayList<>();
+        for (Step s : all) {
+            if (kept.isEmpty() || s.bitsPerSecond < kept.get(kept.size() - 1).bitsPerSecond * 0.95) kept.add(s);
+        }
+        return kept;
+    }
+
+    private static boolean supportedPtime(int millis) {
+        for (int p : StreamConfig.SUPPORTED_PTIMES) if (p == millis) return true;
+        return false;
+    }
+
+    public List<Step> getLadder() { return ladder; }
+    public Step getStep() { return ladder.get(index); }
+    public int getStepIndex() { return index; }
+    public boolean isRedundant() { return redundant; }
+    public FecEncoder.Mode getFecMode(FecEncoder.Mode configured) {
+        return !redundancyAllowed ? configured : redundant ? FecEncoder.Mode.REDUNDANT : FecEncoder.Mode.NONE;
+    }
+    // Why the last change was made, e.g. "loss 12%, queueing 140 ms"
+    public String getReason() { return reason; }
+    public long getUpHoldNanos() { return upHoldNanos; }
+    // Loss and queueing delay (round trip above its minimum) of the latest report
+    public double getLastLoss() { return lastLoss; }
+    public long getLastQueueNanos() { return lastQueueNanos; }
+
+    // Feeds one receiver report: loss over its interval (0..1) and the round trip it gave, or -1 if
+    // the receiver has not echoed a sender report yet. Returns what changed, or null for nothing.
+    public Change onReport(long now, double loss, long rttNanos) {
+        if (rttNanos >= 0) trackRtt(now, rttNanos);
+        long queue = rttNanos >= 0 ? rttNanos - Math.min(currentMinRttNanos, previousMinRttNanos) : 0;
+        lastLoss = loss;
+        lastQueueNanos = queue;
+        if (skipReports > 0) {
+            skipReports--;
+            return null;
+        }
+        if (loss > CONGESTED_LOSS || queue > CONGESTED_QUEUE_NANOS) {
+            return congested(now, describe(loss, queue));
+        }
+        boolean calm = queue < CALM_QUEUE_NANOS;
+        if (calm && loss > RANDOM_LOSS) {
+            cleanSince = lossyCleanSince = -1;
+            if (redundancyAllowed && !redundant) return change(Change.REDUNDANCY_ON, describe(loss, queue));
+            return null;
+        }
+        if (!calm || loss > RANDOM_LOSS) {
+            cleanSince = lossyCleanSince = -1;
+            return null;
+        }
+        if (cleanSince < 0) cleanSince = now;
+        if (loss >= CLEAN_LOSS) lossyCleanSince = -1;
+        else if (lossyCleanSince < 0) lossyCleanSince = now;
+        // Redundancy the controller added goes once the loss it was repairing has stopped
+        if (redundant && !redundancyConfigured && lossyCleanSince >= 0 && now - lossyCleanSince >= upHoldNanos) {
+            return change(Change.REDUNDANCY_OFF, "loss gone");
+        }
+        if (now - cleanSince < upHoldNanos) return null;
+        if (now - lastCongestedAt > MAX_UP_HOLD_NANOS) upHoldNanos = BASE_UP_HOLD_NANOS;
+        if (index > 0) {
+            index--;
+            lastUpAt = now;
+            return change(Change.UP, "clean for " + (now - cleanSince) / 1_000_000_000L + " s");
+        }
+        if (redundancyConfigured && !redundant) return change(Change.REDUNDANCY_ON, "clean, restoring configured redundancy");
+        return null;
+    }
+
+    private void trackRtt(long now, long rttNanos) {
+        if (now - rttWindowStart >= RTT_WINDOW_NANOS) {
+            previousMinRttNanos = currentMinRttNanos;
+            currentMinRttNanos = Long.MAX_VALUE;
+            rttWindowStart = now;
+        }
+        if (rttNanos < currentMinRttNanos) currentMinRttNanos = rttNanos;
+    }
+
+    // Reports stopped while media is flowing: nothing gets through, the harshest congestion
+    public Change onReportsLost(long now) {
+        return congested(now, "no receiver reports");
+    }
+
+    private Change congested(long now, String why) {
+        cleanSince = lossyCleanSince = -1;
+        // An up-step that ran straight into congestion: wait longer before the next probe
+        if (now - lastUpAt < upHoldNanos + BASE_UP_HOLD_NANOS) upHoldNanos = Math.min(2 * upHoldNanos, MAX_UP_HOLD_NANOS);
+        lastUpAt = Long.MIN_VALUE / 2;
+        lastCongestedAt = now;
+        if (redundant) return change(Change.REDUNDANCY_OFF, why);
+        if (index < ladder.size() - 1) {
+            index++;
+            return change(Change.DOWN, why);
+        }
+        return null;
+    }
+
+    private Change change(Change what, String why) {
+        if (what == Change.REDUNDANCY_ON) redundant = true;
+        if (what == Change.REDUNDANCY_OFF) redundant = false;
+        reason = why;
+        skipReports = SKIP_AFTER_CHANGE;
+        cleanSince = lossyCleanSince = -1;
+        return what;
+    }
+
+    private static String describe(double loss, long queueNanos) {
+        return String.format("loss %.0f%%, queueing %d ms", loss * 100, queueNanos / 1_000_000L);
+    }
+}
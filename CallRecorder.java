@@ -0,0 +1,169 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// 💾 Records one stream's raw codec payloads, as they go on or come off the wire, into a directory
+// of preallocated memory-mapped segment files plus a time index (format in CallRecording).
+// append() is a handful of stores into the mapping: no syscall, no allocation, no copy through
+// the heap. Syscalls only happen once per segment (create + map) and when the index grows.
+// Thread-safe; normally a single media thread appends while another may close.
+public class CallRecorder implements AutoCloseable {
+    // ~2 min of 8 kHz audio at 20 ms. Kept small on purpose: every live call maps one segment, and
+    // once the mapped total nears physical memory, page faults on it get orders of magnitude slower
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long ssrc;
+    private final int sampleRate;
+    private final long startNanos;
+    private final long startEpochMillis;
+
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private int position;
+
+    // Index: entry k is the (segment, offset) of the first record at or after k seconds
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int indexCapacity;
+    private long lastSlot = -1;
+
+    private long records, payloadBytes;
+    private boolean closed;
+
+    // Creates 'directory' and starts recording; 'sampleRate' is the stream's RTP clock rate
+    public CallRecorder(Path directory, long ssrc, int sampleRate) throws IOException {
+        this(directory, ssrc, sampleRate, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public CallRecorder(Path directory, long ssrc, int sampleRate, int segmentBytes) throws IOException {
+        if (segmentBytes < CallRecording.SEGMENT_HEADER + CallRecording.RECORD_HEADER + UdpTransport.MAX_DATAGRAM) {
+            throw new IllegalArgumentException("Segment too small: " + segmentBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.ssrc = ssrc;
+        this.sampleRate = sampleRate;
+        this.startNanos = System.nanoTime();
+        this.startEpochMillis = System.currentTimeMillis();
+        openIndex(3600);
+        openSegment();
+    }
+
+    // A fresh directory for one call under 'root', e.g. rx-1a2b3c4d-1700000000000
+    public static Path callDirectory(Path root, String direction, long ssrc) {
+        return root.resolve(String.format("%s-%08x-%d", direction, ssrc, System.currentTimeMillis()));
+    }
+
+    // Appends one frame; 'nanos' is the System.nanoTime() it was captured or received at and
+    // 'payload' is read absolutely, its position and limit untouched
+    public synchronized void append(int payloadType, boolean marker, int sequence, long timestamp, long nanos,
+                                    ByteBuffer payload, int off, int len) throws IOException {
+        if (closed) return;
+        if (position + CallRecording.RECORD_HEADER + len > segmentBytes) openSegment();
+        long time = nanos - startNanos;
+        indexTo(time);
+
+        MappedByteBuffer s = segment;
+        int p = position;
+        s.putShort(p, (short) len);
+        s.put(p + 2, (byte) payloadType);
+        s.put(p + 3, (byte) (marker ? CallRecording.FLAG_MARKER : 0));
+        s.putShort(p + 4, (short) sequence);
+        s.putShort(p + 6, (short) 0);
+        s.putInt(p + 8, (int) timestamp);
+        s.putLong(p + 12, time);
+        p += CallRecording.RECORD_HEADER;
+        // Eight bytes per store where possible; both buffers are big-endian so bytes land in order
+        int i = 0;
+        for (; i + 8 <= len; i += 8) s.putLong(p + i, payload.getLong(off + i));
+        for (; i < len; i++) s.put(p + i, payload.get(off + i));
+        position = p + len;
+        s.putInt(CallRecording.SEGMENT_USED, position);
+        records++;
+        payloadBytes += len;
+    }
+
+    public Path getDirectory() { return directory; }
+    public synchronized long getRecords() { return records; }
+    public synchronized long getPayloadBytes() { return payloadBytes; }
+
+    // Trims the last segment to what was written and releases the files
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        finishSegment();
+        index.putInt(CallRecording.INDEX_ENTRIES, (int) (lastSlot + 1));
+        index.force();
+        try {
+            indexChannel.truncate(CallRecording.INDEX_HEADER + 8L * (lastSlot + 1));
+        } catch (IOException e) {
+            // As for segments: a mapped file may not shrink on Windows; readers use the entry count
+        }
+        indexChannel.close();
+    }
+
+    // --- Segments ---
+
+    private void openSegment() throws IOException {
+        finishSegment();
+        segmentNumber++;
+        Path file = directory.resolve(CallRecording.segmentName(segmentNumber));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(segmentBytes);
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes); // outlives the channel
+        }
+        segment.putInt(0, CallRecording.SEGMENT_MAGIC);
+        segment.putShort(4, (short) CallRecording.VERSION);
+        segment.putShort(6, (short) CallRecording.SEGMENT_HEADER);
+        segment.putInt(8, sampleRate);
+        segment.putInt(12, segmentNumber);
+        segment.putLong(16, startEpochMillis);
+        segment.putLong(24, ssrc);
+        position = CallRecording.SEGMENT_HEADER;
+        segment.putInt(CallRecording.SEGMENT_USED, position);
+    }
+
+    // Flushes the finished segment and trims its unused tail, so disk use tracks audio recorded
+    private void finishSegment() throws IOException {
+        if (segment == null) return;
+        segment.force();
+        segment = null;
+        try (RandomAccessFile raf = new RandomAccessFile(directory.resolve(CallRecording.segmentName(segmentNumber)).toFile(), "rw")) {
+            raf.setLength(position);
+        } catch (IOException e) {
+            // Windows refuses to shrink a file that is still mapped; readers stop at 'used' anyway
+        }
+    }
+
+    // --- Index ---
+
+    private void openIndex(int capacity) throws IOException {
+        if (indexChannel == null) {
+            indexChannel = FileChannel.open(directory.resolve(CallRecording.INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, CallRecording.INDEX_HEADER + 8L * capacity);
+        indexCapacity = capacity;
+        index.putInt(0, CallRecording.INDEX_MAGIC);
+        index.putInt(4, (int) (CallRecording.SLOT_NANOS / 1_000_000L));
+    }
+
+    // Points every slot from the last indexed one up to 'time' at the record about to be written
+    private void indexTo(long time) throws IOException {
+        long slot = Math.max(0, time) / CallRecording.SLOT_NANOS;
+        if (slot <= lastSlot) return;
+        if (slot >= indexCapacity) openIndex((int) Math.max(slot + 1, 2L * indexCapacity));
+        long entry = (long) segmentNumber << 32 | position;
+        for (long k = lastSlot + 1; k <= slot; k++) index.putLong(CallRecording.INDEX_HEADER + 8 * (int) k, entry);
+        lastSlot = slot;
+        index.putInt(CallRecording.INDEX_ENTRIES, (int) (lastSlot + 1));
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// 📼 Reader and offline WAV exporter for recordings written by CallRecorder.
+// A recording is a directory:
+//   seg-000000.rec ...  64-byte header (magic, version, header size, sample rate, segment number,
+//                       start epoch ms, SSRC, bytes used) followed by records:
+//                       u16 length, u8 payload type, u8 flags, u16 sequence, u16 reserved,
+//                       u32 RTP timestamp, i64 time since recording start (ns), payload
+//   index.idx           16-byte header (magic, slot ms, entries) then one i64 per slot:
+//                       segment << 32 | offset of the first record at or after that slot
+// seek() is one index read plus a scan of at most one slot (one second) of records.
+//   java CallRecording <recording-dir> <out.wav> [from-seconds] [to-seconds]
+public class CallRecording implements AutoCloseable {
+    static final int VERSION = 1;
+    static final int SEGMENT_MAGIC = 0x56524543;   // "VREC"
+    static final int SEGMENT_HEADER = 64;
+    static final int SEGMENT_USED = 32;
+    static final int RECORD_HEADER = 20;
+    static final int FLAG_MARKER = 1;
+    static final int INDEX_MAGIC = 0x56494458;     // "VIDX"
+    static final int INDEX_HEADER = 16;
+    static final int INDEX_ENTRIES = 8;
+    static final String INDEX_FILE = "index.idx";
+    static final long SLOT_NANOS = 1_000_000_000L;
+
+    private static final int REORDER_WINDOW = 32;  // frames; covers FEC recoveries arriving late
+
+    private final Path directory;
+    private final ByteBuffer index;
+    private final int entries;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private final int sampleRate;
+    private final long ssrc;
+    private final long startEpochMillis;
+
+    static String segmentName(int number) {
+        return String.format("seg-%06d.rec", number);
+    }
+
+    private CallRecording(Path directory) throws IOException {
+        this.directory = directory;
+        this.index = map(directory.resolve(INDEX_FILE));
+        if (index.getInt(0) != INDEX_MAGIC) throw new IOException("Not a recording index: " + directory);
+        this.entries = index.getInt(INDEX_ENTRIES);
+        for (int n = 0; Files.exists(directory.resolve(segmentName(n))); n++) {
+            ByteBuffer s = map(directory.resolve(segmentName(n)));
+            if (s.getInt(0) != SEGMENT_MAGIC || s.getShort(4) != VERSION) throw new IOException("Bad segment " + segmentName(n));
+            segments.add(s);
+        }
+        if (segments.isEmpty()) throw new IOException("No segments in " + directory);
+        ByteBuffer first = segments.get(0);
+        this.sampleRate = first.getInt(8);
+        this.startEpochMillis = first.getLong(16);
+        this.ssrc = first.getLong(24);
+    }
+
+    public static CallRecording open(Path directory) throws IOException {
+        return new CallRecording(directory);
+    }
+
+    public Path getDirectory() { return directory; }
+    public int getSampleRate() { return sampleRate; }
+    public long getSsrc() { return ssrc; }
+    public long getStartEpochMillis() { return startEpochMillis; }
+
+    // Time of the last record
+    public long getDurationNanos() {
+        Cursor c = seek(Math.max(0, entries - 1) * SLOT_NANOS);
+        long last = 0;
+        while (c.next()) last = c.getTimeNanos();
+        return last;
+    }
+
+    // Cursor positioned before the first record at or after 'timeNanos' into the recording
+    public Cursor seek(long timeNanos) {
+        long slot = Math.max(0, timeNanos) / SLOT_NANOS;
+        Cursor c = new Cursor();
+        if (slot >= entries) {
+            c.segment = segments.size();    // past the end
+            return c;
+        }
+        long entry = index.getLong(INDEX_HEADER + 8 * (int) slot);
+        c.segment = (int) (entry >>> 32);
+        c.offset = (int) entry;
+        // Skip the part of the slot before the requested time
+        while (c.peekTime() >= 0 && c.peekTime() < timeNanos) c.next();
+        return c;
+    }
+
+    // Iterates records in the order they were written; next() moves onto the next record
+    public final class Cursor {
+        private int segment, offset;
+        private int recordSegment, recordOffset = -1;
+
+        public boolean next() {
+            while (segment < segments.size()) {
+                ByteBuffer s = segments.get(segment);
+                if (offset + RECORD_HEADER <= s.getInt(SEGMENT_USED)) {
+                    recordSegment = segment;
+                    recordOffset = offset;
+                    offset += RECORD_HEADER + (s.getShort(offset) & 0xFFFF);
+                    return true;
+                }
+                segment++;
+                offset = SEGMENT_HEADER;
+            }
+            return false;
+        }
+
+        // Time of the record next() would move onto, or -1 at the end
+        long peekTime() {
+            int seg = segment, off = offset;
+            while (seg < segments.size()) {
+                ByteBuffer s = segments.get(seg);
+                if (off + RECORD_HEADER <= s.getInt(SEGMENT_USED)) return s.getLong(off + 12);
+                seg++;
+                off = SEGMENT_HEADER;
+            }
+            return -1;
+        }
+
+        private ByteBuffer buf() { return segments.get(recordSegment); }
+
+        public int getLength() { return buf().getShort(recordOffset) & 0xFFFF; }
+        public int getPayloadType() { return buf().get(recordOffset + 2) & 0x7F; }
+        public boolean isMarker() { return (buf().get(recordOffset + 3) & FLAG_MARKER) != 0; }
+        public int getSequence() { return buf().getShort(recordOffset + 4) & 0xFFFF; }
+        public long getTimestamp() { return buf().getInt(recordOffset + 8) & 0xFFFFFFFFL; }
+        public long getTimeNanos() { return buf().getLong(recordOffset + 12); }
+
+        // Copies the payload into 'dst' and returns its length
+        public int getPayload(byte[] dst, int off) {
+            ByteBuffer b = buf();
+            int len = getLength();
+            int from = recordOffset + RECORD_HEADER;
+            for (int i = 0; i < len; i++) dst[off + i] = b.get(from + i);
+            return len;
+        }
+    }
+
+    // Decodes [fromNanos, toNanos) to a 16-bit PCM WAV file, laid out by RTP timestamp: gaps
+    // (loss, silence suppression) become silence and late or recovered frames are put back in
+    // order. Returns the samples written.
+    public long exportWav(Path out, long fromNanos, long toNanos) throws IOException {
+        try (FileChannel wav = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer io = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            io.position(44);    // header written last, once the length is known
+
+            // Records by extended RTP timestamp: { timestamp, segment, offset }
+            PriorityQueue<long[]> window = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+            Cursor c = seek(fromNanos);
+            long lastTs = Long.MIN_VALUE, nextTs = Long.MIN_VALUE, samples = 0;
+            byte[] payload = new byte[UdpTransport.MAX_DATAGRAM];
+            short[] pcm = new short[2 * UdpTransport.MAX_DATAGRAM];    // room for 4-bit codecs
+            AudioCodec codec = null;
+            boolean more = true;
+            while (more || !window.isEmpty()) {
+                if (more && (more = c.next()) && c.getTimeNanos() < toNanos) {
+                    if (RtpHeader.clockRate(c.getPayloadType()) != sampleRate) continue; // comfort noise etc.
+                    long ts = c.getTimestamp();
+                    lastTs = lastTs == Long.MIN_VALUE ? ts : lastTs + (int) (ts - lastTs);
+                    window.add(new long[] { lastTs, c.recordSegment, c.recordOffset });
+                    if (window.size() < REORDER_WINDOW) continue;
+                } else {
+                    more = false;
+                    if (window.isEmpty()) break;
+                }
+                long[] r = window.poll();
+                Cursor at = new Cursor();
+                at.recordSegment = (int) r[1];
+                at.recordOffset = (int) r[2];
+                if (nextTs == Long.MIN_VALUE) nextTs = r[0];
+                if (r[0] < nextTs) continue;    // duplicate or already covered
+                int pt = at.getPayloadType();
+                if (codec == null || codec.getPayloadType() != pt) codec = AudioCodec.forPayloadType(pt);
+                int bytes = at.getPayload(payload, 0);
+                if (codec.getSamples(bytes) <= 0) continue;
+                int len = codec.decode(payload, 0, bytes, pcm, 0);
+                // Silence for the gap, capped so a sender restart doesn't write hours of nothing
+                long gap = Math.min(r[0] - nextTs, 60L * sampleRate);
+                for (long i = 0; i < gap; i++) io = putSample(wav, io, (short) 0);
+                for (int i = 0; i < len; i++) io = putSample(wav, io, pcm[i]);
+                samples += gap + len;
+                nextTs = r[0] + len;
+            }
+            io.flip();
+            while (io.hasRemaining()) wav.write(io);
+
+            ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0x46464952).putInt((int) (36 + 2 * samples)).putInt(0x45564157);    // "RIFF" size "WAVE"
+            header.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1);     // "fmt " PCM mono
+            header.putInt(sampleRate).putInt(2 * sampleRate).putShort((short) 2).putShort((short) 16);
+            header.putInt(0x61746164).putInt((int) (2 * samples));                             // "data"
+            header.flip();
+            wav.write(header, 0);
+            return samples;
+        }
+    }
+
+    private static ByteBuffer putSample(FileChannel out, ByteBuffer io, short sample) throws IOException {
+        if (!io.hasRemaining()) {
+            io.flip();
+            // The first buffer starts with the header's 44 bytes, rewritten at the end
+            while (io.hasRemaining()) out.write(io);
+            io.clear();
+        }
+        return io.putShort(sample);
+    }
+
+    @Override
+    public void close() {
+        // Mappings are released with the object; nothing else is held open
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    // Offline exporter: java CallRecording <recording-dir> <out.wav> [from-seconds] [to-seconds]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java CallRecording <recording-dir> <out.wav> [from-seconds] [to-seconds]");
+            return;
+        }
+        long from = args.length > 2 ? (long) (Double.parseDouble(args[2]) * 1e9) : 0;
+        long to = args.length > 3 ? (long) (Double.parseDouble(args[3]) * 1e9) : Long.MAX_VALUE;
+        try (CallRecording recording = open(Path.of(args[0]))) {
+            long start = System.nanoTime();
+            long samples = recording.exportWav(Path.of(args[1]), from, to);
+            System.out.printf("💾 %s: %08x at %d Hz, %.1f s recorded; exported %.1f s to %s in %.0f ms%n",
+                    args[0], recording.getSsrc(), recording.getSampleRate(), recording.getDurationNanos() / 1e9,
+                    (double) samples / recording.getSampleRate(), args[1], (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.Random;
+
+// 🏁 Capture DSP benchmark at every supported rate, 20 ms frames, on synthetic speech:
+//   quality - echo return loss enhancement on a simulated room echo, once converged and while
+//             both ends talk; noise removed from a noisy talker and speech level lost doing it;
+//             the level AGC brings a quiet talker to
+//   cost    - ns per frame for each stage and for the whole chain, how many streams one core
+//             could process, and bytes allocated per frame (should be 0)
+//   java CaptureBenchmark [seconds-per-case] [echo-tail-ms]
+public class CaptureBenchmark {
+    private static final int PTIME = 20;
+    private static final int SECONDS = 10;              // of signal per quality case
+    private static final int FRAMES = 500;              // cycled by the timing loops
+
+    private static volatile float sink;                 // defeats dead-code elimination
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        int tail = args.length > 1 ? Integer.parseInt(args[1]) : new StreamConfig().getEchoTailMillis();
+
+        System.out.printf("%-6s %6s %7s %7s %7s %7s %7s %9s %9s %9s %9s %8s %8s%n",
+                "rate", "taps", "ERLE", "DT ERLE", "NS dB", "speech", "AGC out",
+                "AEC ns", "NS ns", "AGC ns", "chain ns", "streams", "B/frame");
+        for (int rate : StreamConfig.SUPPORTED_RATES) run(rate, tail, seconds);
+        System.out.println("ERLE after 6 s of far-end speech and during 4 s of double talk; NS dB removed from noise-only");
+        System.out.println("input at 10 dB SNR, speech dB lost meanwhile; AGC output level (dBFS) of a talker at -40 dBFS.");
+    }
+
+    private static void run(int rate, int tail, double seconds) {
+        int frame = StreamConfig.frameSamples(rate, PTIME);
+        int samples = SECONDS * rate;
+        float[] far = toFloat(CodecBenchmark.speech(rate, samples, 140, 11));
+        float[] near = toFloat(CodecBenchmark.speech(rate, samples, 220, 23));
+        Random random = new Random(5);
+
+        // Echo canceller: far end alone for 6 s, then both talking. The mic hears the far end
+        // through a room (10 ms direct path, decaying reflections over 60 ms, -10 dB overall).
+        float[] echo = convolve(far, roomResponse(rate, random));
+        float[] mic = new float[samples];
+        int doubleTalkFrom = samples * 6 / 10;
+        for (int i = 0; i < samples; i++) {
+            mic[i] = echo[i] + (i >= doubleTalkFrom ? near[i] : 0) + (float) (20 * random.nextGaussian());
+        }
+        EchoCanceller aec = new EchoCanceller(rate, tail, frame);
+        float[] cancelled = mic.clone();
+        float[] farFrame = new float[frame], micFrame = new float[frame];
+        for (int at = 0; at + frame <= samples; at += frame) {
+            System.arraycopy(far, at, farFrame, 0, frame);
+            System.arraycopy(cancelled, at, micFrame, 0, frame);
+            aec.process(micFrame, farFrame, frame);
+            System.arraycopy(micFrame, 0, cancelled, at, frame);
+        }
+        // Converged: the last 2 s before double talk. Double talk: echo left in the output, the
+        // near end subtracted back out.
+        int lag = aec.getLatencySamples();
+        double erle = ratioDb(mic, cancelled, null, doubleTalkFrom - 2 * rate, doubleTalkFrom - lag, lag);
+        double dtErle = ratioDb(echo, cancelled, near, doubleTalkFrom + rate / 2, samples - lag, lag);
+
+        // Noise suppressor: a talker for 6 s in white noise 10 dB below them, then noise alone
+        NoiseSuppressor ns = new NoiseSuppressor(rate, frame);
+        double speechRms = rms(near, 0, samples);
+        float noiseRms = (float) (speechRms / Math.sqrt(10));
+        float[] noisy = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            noisy[i] = (i < doubleTalkFrom ? near[i] : 0) + noiseRms * (float) random.nextGaussian();
+        }
+        float[] denoised = processFrames(noisy, frame, (f, n) -> ns.process(f, n));
+        int latency = ns.getLatencySamples();
+        double noiseRemoved = 10 * Math.log10(power(noisy, samples - 2 * rate, samples - latency)
+                / power(denoised, samples - 2 * rate + latency, samples));
+        // Speech level through the filter: clean speech energy in, output energy minus what is
+        // left of the noise (measured on the noise-only stretch) out
+        double speechIn = power(near, rate, doubleTalkFrom - latency);
+        double speechOut = power(denoised, rate + latency, doubleTalkFrom) - power(denoised, samples - rate, samples);
+        double speechLoss = 10 * Math.log10(speechIn / Math.max(speechOut, 1e-9));
+
+        // AGC: a quiet talker at about -40 dBFS
+        AutomaticGainControl agc = new AutomaticGainControl(rate);
+        float scale = (float) (32768 * Math.pow(10, -40 / 20.0) / speechRms);
+        float[] quiet = new float[samples];
+        for (int i = 0; i < samples; i++) quiet[i] = near[i] * scale;
+        float[] levelled = processFrames(quiet, frame, (f, n) -> agc.process(f, n));
+        double agcOut = 20 * Math.log10(rms(levelled, samples - 2 * rate, samples) / 32768);
+
+        // Cost, each stage on its own and the chain as a sender runs it
+        float[] scratch = new float[frame];
+        EchoCanceller timedAec = new EchoCanceller(rate, tail, frame);
+        double aecNanos = time(seconds, f -> {
+            System.arraycopy(mic, f * frame, scratch, 0, frame);
+            System.arraycopy(far, f * frame, farFrame, 0, frame);
+            timedAec.process(scratch, farFrame, frame);
+            sink += scratch[0];
+        });
+        NoiseSuppressor timedNs = new NoiseSuppressor(rate, frame);
+        double nsNanos = time(seconds, f -> {
+            System.arraycopy(noisy, f * frame, scratch, 0, frame);
+            timedNs.process(scratch, frame);
+            sink += scratch[0];
+        });
+        AutomaticGainControl timedAgc = new AutomaticGainControl(rate);
+        double agcNanos = time(seconds, f -> {
+            System.arraycopy(quiet, f * frame, scratch, 0, frame);
+            timedAgc.process(scratch, frame);
+            sink += scratch[0];
+        });
+
+        EchoReference reference = new EchoReference(rate);
+        StreamConfig config = new StreamConfig().setSampleRate(rate).setPtimeMillis(PTIME).setEchoTailMillis(tail)
+                .setEchoCancellation(true).setNoiseSuppression(true).setAutoGain(true).setEchoReference(reference);
+        CaptureProcessor chain = new CaptureProcessor(config, frame);
+        short[] micPcm = toShort(mic);
+        byte[] farPcm = toBytes(far);
+        short[] pcm = new short[frame];
+        FrameOp chainOp = f -> {
+            reference.write(farPcm, f * frame * 2, frame, rate, 0);
+            System.arraycopy(micPcm, f * frame, pcm, 0, frame);
+            chain.process(pcm, frame, 0);
+            sink += pcm[0];
+        };
+        double chainNanos = time(seconds, chainOp);
+        long allocBefore = CodecBenchmark.allocatedBytes();
+        for (int round = 0; round < 20; round++) {
+            for (int f = 0; f < FRAMES; f++) chainOp.run(f);
+        }
+        long allocated = CodecBenchmark.allocatedBytes() - allocBefore;
+
+        System.out.printf("%-6s %6d %7.1f %7.1f %7.1f %7.1f %7.1f %9.0f %9.0f %9.0f %9.0f %8.0f %8.3f%n",
+                rate / 1000 + "k", aec.getTaps(), erle, dtErle, noiseRemoved, speechLoss, agcOut,
+                aecNanos, nsNanos, agcNanos, chainNanos, PTIME * 1e6 / chainNanos,
+                allocBefore < 0 ? Double.NaN : (double) allocated / (20 * FRAMES));
+    }
+
+    private interface FrameOp {
+        void run(int frame);
+    }
+
+    private interface Stage {
+        void process(float[] frame, int count);
+    }
+
+    // Mean nanoseconds per frame over the first FRAMES frames, after a warm-up half as long
+    private static double time(double seconds, FrameOp op) {
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+        for (int f = 0; System.nanoTime() < warmupEnd; f = (f + 1) % FRAMES) op.run(f);
+        long frames = 0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            for (int f = 0; f < FRAMES; f++) op.run(f);
+            frames += FRAMES;
+            now = System.nanoTime();
+        } while (now < end);
+        return (double) (now - start) / frames;
+    }
+
+    private static float[] processFrames(float[] in, int frame, Stage stage) {
+        float[] out = in.clone();
+        float[] block = new float[frame];
+        for (int at = 0; at + frame <= out.length; at += frame) {
+            System.arraycopy(out, at, block, 0, frame);
+            stage.process(block, frame);
+            System.arraycopy(block, 0, out, at, frame);
+        }
+        return out;
+    }
+
+    // Room impulse response: direct path after 10 ms, then reflections decaying over 60 ms,
+    // scaled so the echo comes back about 10 dB below the far end at any rate
+    private static float[] roomResponse(int rate, Random random) {
+        int delay = rate / 100;
+        float[] h = new float[delay + rate * 60 / 1000];
+        double reflections = 0;
+        for (int i = delay + 1; i < h.length; i++) {
+            double decay = Math.exp(-6.9 * (i - delay) / (h.length - delay));  // -60 dB at the end
+            h[i] = (float) (decay * random.nextGaussian());
+            reflections += h[i] * h[i];
+        }
+        float scale = (float) Math.sqrt(0.06 / reflections);
+        for (int i = delay + 1; i < h.length; i++) h[i] *= scale;
+        h[delay] = 0.2f;
+        return h;
+    }
+
+    private static float[] convolve(float[] x, float[] h) {
+        float[] y = new float[x.length];
+        for (int n = 0; n < x.length; n++) {
+            float acc = 0;
+            for (int k = 0; k < h.length && k <= n; k++) acc += h[k] * x[n - k];
+            y[n] = acc;
+        }
+        return y;
+    }
+
+    // Power of 'reference' over power of 'residual' in [from, to), in dB, with 'subtract' (if
+    // any) taken out of the residual first; the residual lags the others by 'lag' samples
+    private static double ratioDb(float[] reference, float[] residual, float[] subtract, int from, int to, int lag) {
+        double in = 0, out = 0;
+        for (int i = from; i < to; i++) {
+            double r = residual[i + lag] - (subtract == null ? 0 : subtract[i]);
+            in += reference[i] * reference[i];
+            out += r * r;
+        }
+        return 10 * Math.log10(in / Math.max(out, 1e-9));
+    }
+
+    private static double power(float[] x, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) sum += x[i] * x[i];
+        return sum / (to - from);
+    }
+
+    private static double rms(float[] x, int from, int to) {
+        return Math.sqrt(power(x, from, to));
+    }
+
+    private static float[] toFloat(short[] s) {
+        float[] f = new float[s.length];
+        for (int i = 0; i < s.length; i++) f[i] = s[i];
+        return f;
+    }
+
+    private static short[] toShort(float[] f) {
+        short[] s = new short[f.length];
+        for (int i = 0; i < f.length; i++) s[i] = (short) Math.max(-32768, Math.min(32767, Math.round(f[i])));
+        return s;
+    }
+
+    private static byte[] toBytes(float[] f) {
+        short[] s = toShort(f);
+        byte[] b = new byte[s.length * 2];
+        for (int i = 0, j = 0; i < s.length; i++, j += 2) {
+            b[j] = (byte) s[i];
+            b[j + 1] = (byte) (s[i] >> 8);
+        }
+        return b;
+    }
+}
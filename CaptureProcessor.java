@@ -0,0 +1,57 @@
+// 🎚 Capture DSP chain between the mic and the encoder, on 16-bit frames at the wire rate:
+// echo cancellation (needs an EchoReference fed by a receiver on this host), then noise
+// suppression, then automatic gain control, each optional (StreamConfig). Runs in float; every
+// buffer is sized when the stream starts, so processing a frame allocates nothing. The canceller
+// delays the stream by one block of about 8 ms and the suppressor by two.
+// Not thread-safe: one per sender, driven by its capture thread.
+public class CaptureProcessor {
+    private final EchoReference reference;
+    private final EchoCanceller echoCanceller;
+    private final NoiseSuppressor noiseSuppressor;
+    private final AutomaticGainControl gainControl;
+    private final float[] frame, far;
+
+    public CaptureProcessor(StreamConfig config, int frameSamples) {
+        int rate = config.getSampleRate();
+        EchoReference r = config.getEchoReference();
+        // A reference at another rate would need resampling on every read; receivers write it at ours
+        boolean cancelEcho = config.isEchoCancellation() && r != null && r.getSampleRate() == rate;
+        this.reference = cancelEcho ? r : null;
+        this.echoCanceller = cancelEcho ? new EchoCanceller(rate, config.getEchoTailMillis(), frameSamples) : null;
+        this.noiseSuppressor = config.isNoiseSuppression() ? new NoiseSuppressor(rate, frameSamples) : null;
+        this.gainControl = config.isAutoGain() ? new AutomaticGainControl(rate) : null;
+        this.frame = new float[frameSamples];
+        this.far = new float[frameSamples];
+    }
+
+    public boolean isEnabled() { return echoCanceller != null || noiseSuppressor != null || gainControl != null; }
+    public EchoCanceller getEchoCanceller() { return echoCanceller; }
+    public NoiseSuppressor getNoiseSuppressor() { return noiseSuppressor; }
+    public AutomaticGainControl getGainControl() { return gainControl; }
+
+    // Runs the chain over 'count' samples in place. 'captureQueued' is how many samples were still
+    // waiting in the capture device when the frame was read: the far-end stretch that lines up
+    // with the frame ended that long before the newest speaker sample.
+    public void process(short[] pcm, int count, int captureQueued) {
+        for (int i = 0; i < count; i++) frame[i] = pcm[i];
+        if (echoCanceller != null) {
+            reference.read(far, count, captureQueued);
+            echoCanceller.process(frame, far, count);
+        }
+        if (noiseSuppressor != null) noiseSuppressor.process(frame, count);
+        if (gainControl != null) gainControl.process(frame, count);
+        for (int i = 0; i < count; i++) {
+            float s = frame[i];
+            pcm[i] = (short) (s >= 32767f ? 32767 : s <= -32768f ? -32768 : Math.round(s));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        if (echoCanceller != null) s.append("echo cancellation (").append(echoCanceller.getTaps()).append(" taps)");
+        if (noiseSuppressor != null) s.append(s.length() > 0 ? ", " : "").append("noise suppression");
+        if (gainControl != null) s.append(s.length() > 0 ? ", " : "").append("AGC");
+        return s.length() > 0 ? s.toString() : "off";
+    }
+}
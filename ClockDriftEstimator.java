@@ -0,0 +1,95 @@
+// 🕰 Estimates how fast a remote media clock runs against the local clock, in parts per million.
+// Fed (local time, media time) pairs, e.g. packet arrival vs. RTP timestamp, or nanoTime vs. the
+// samples a sound device has consumed. Network jitter only ever delays a packet, so each second's
+// minimum transit (local - media) traces the true clock offset; a least-squares line through the
+// last minute of those minima gives the drift, accurate to a few ppm once enough of it is seen.
+// Positive ppm: the remote clock is fast, so its media piles up locally unless consumed faster.
+// Single writer (update); getPpm() may be read from any thread.
+public class ClockDriftEstimator {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int WINDOWS = 64;              // regression span, in windows
+    private static final int MIN_WINDOWS = 10;          // before this, no estimate is reported
+    private static final long JUMP_NANOS = 100_000_000L; // a step this large is a restart, not drift
+    private static final double MAX_PPM = 1000;        // real crystals stay well inside this
+
+    private final long[] windowTime = new long[WINDOWS];
+    private final long[] windowTransit = new long[WINDOWS];
+    private int windows;            // completed windows held, up to WINDOWS
+    private int head;               // next ring slot to write
+    private long origin = Long.MIN_VALUE;
+    private long windowStart;
+    private long windowMin = Long.MAX_VALUE;
+    private volatile double ppm;
+    private volatile boolean valid;
+
+    public void update(long localNanos, long mediaNanos) {
+        if (origin == Long.MIN_VALUE) {
+            origin = localNanos;
+            windowStart = localNanos;
+        }
+        if (localNanos - windowStart >= WINDOW_NANOS) {
+            closeWindow();
+            windowStart = localNanos;
+        }
+        long transit = localNanos - mediaNanos;
+        if (transit < windowMin) windowMin = transit;
+    }
+
+    public void reset() {
+        windows = 0;
+        head = 0;
+        origin = Long.MIN_VALUE;
+        windowMin = Long.MAX_VALUE;
+        ppm = 0;
+        valid = false;
+    }
+
+    // 0 until MIN_WINDOWS seconds of data are in
+    public double getPpm() { return ppm; }
+    public boolean isValid() { return valid; }
+
+    private void closeWindow() {
+        if (windowMin == Long.MAX_VALUE) return; // nothing arrived (e.g. silence suppression)
+        long t = windowStart - origin;
+        long transit = windowMin;
+        windowMin = Long.MAX_VALUE;
+        if (windows > 0) {
+            int last = (head - 1 + WINDOWS) % WINDOWS;
+            long predicted = windowTransit[last] - (long) (ppm * 1e-6 * (t - windowTime[last]));
+            if (Math.abs(transit - predicted) > JUMP_NANOS) {
+                // Timeline restarted or paused (path change, device starved): refit from here,
+                // keeping the last estimate since the clocks themselves have not changed
+                windows = 0;
+                head = 0;
+                origin = windowStart;
+                t = 0;
+            }
+        }
+        windowTime[head] = t;
+        windowTransit[head] = transit;
+        head = (head + 1) % WINDOWS;
+        if (windows < WINDOWS) windows++;
+        if (windows >= MIN_WINDOWS) fit();
+    }
+
+    // Least squares over (time, transit); transit falling over time means a fast remote clock
+    private void fit() {
+        double meanT = 0, meanX = 0;
+        for (int i = 0; i < windows; i++) {
+            meanT += windowTime[i];
+            meanX += windowTransit[i];
+        }
+        meanT /= windows;
+        meanX /= windows;
+        double num = 0, den = 0;
+        for (int i = 0; i < windows; i++) {
+            double dt = windowTime[i] - meanT;
+            num += dt * (windowTransit[i] - meanX);
+            den += dt * dt;
+        }
+        if (den == 0) return;
+        double estimate = -num / den * 1e6;
+        ppm = Math.max(-MAX_PPM, Math.min(MAX_PPM, estimate));
+        valid = true;
+    }
+}
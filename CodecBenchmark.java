@@ -0,0 +1,130 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// 🏁 Codec comparison over the AudioCodec SPI: every codec at every supported rate, 20 ms frames.
+// Reports encode and decode cost per frame, payload size, bitrate (payload, and on the wire with
+// RTP/UDP/IPv4 headers), quality as signal-to-noise ratio on a synthetic voiced-speech signal,
+// and bytes allocated per frame.
+//   java CodecBenchmark [seconds-per-case] [ptime-ms]
+public class CodecBenchmark {
+    private static final int FRAMES = 500;             // 10 s of signal at 20 ms, cycled
+    private static final int WIRE_OVERHEAD = RtpHeader.SIZE + 8 + 20;
+
+    private static volatile int sink;                  // defeats dead-code elimination
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        int ptime = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        System.out.printf("%-12s %9s %9s %7s %10s %10s %8s %9s%n",
+                "codec", "enc ns", "dec ns", "bytes", "kbit/s", "wire kb/s", "SNR dB", "B/frame");
+        for (int rate : StreamConfig.SUPPORTED_RATES) {
+            int frameSamples = StreamConfig.frameSamples(rate, ptime);
+            short[] signal = speech(rate, FRAMES * frameSamples);
+            for (String name : new String[] { AudioCodec.PCMU, AudioCodec.DVI4 }) {
+                run(AudioCodec.create(name, rate), signal, frameSamples, ptime, seconds);
+            }
+        }
+    }
+
+    private static void run(AudioCodec codec, short[] signal, int frameSamples, int ptime, double seconds) {
+        int bytes = codec.getPayloadBytes(frameSamples);
+        byte[][] payloads = new byte[FRAMES][bytes];
+        ByteBuffer packet = ByteBuffer.allocateDirect(bytes);
+        short[] out = new short[frameSamples];
+
+        // Quality pass: encode the whole signal in order, decode, compare
+        double signalPower = 0, noisePower = 0;
+        for (int f = 0; f < FRAMES; f++) {
+            packet.clear();
+            codec.encode(signal, f * frameSamples, frameSamples, packet);
+            packet.flip();
+            packet.get(payloads[f]);
+            codec.decode(payloads[f], 0, bytes, out, 0);
+            for (int i = 0; i < frameSamples; i++) {
+                double s = signal[f * frameSamples + i];
+                double e = out[i] - s;
+                signalPower += s * s;
+                noisePower += e * e;
+            }
+        }
+
+        double encodeNanos = time(seconds, f -> {
+            packet.clear();
+            codec.encode(signal, f * frameSamples, frameSamples, packet);
+            sink += packet.get(0);
+        });
+        double decodeNanos = time(seconds, f -> sink += codec.decode(payloads[f], 0, bytes, out, 0));
+        long allocBefore = allocatedBytes();
+        for (int round = 0; round < 20; round++) {
+            for (int f = 0; f < FRAMES; f++) {
+                packet.clear();
+                codec.encode(signal, f * frameSamples, frameSamples, packet);
+                codec.decode(payloads[f], 0, bytes, out, 0);
+            }
+        }
+        long allocated = allocatedBytes() - allocBefore;
+
+        double packetsPerSecond = 1000.0 / ptime;
+        System.out.printf("%-12s %9.0f %9.0f %7d %10.1f %10.1f %8.1f %9.3f%n",
+                codec, encodeNanos, decodeNanos, bytes, bytes * 8 * packetsPerSecond / 1000,
+                (bytes + WIRE_OVERHEAD) * 8 * packetsPerSecond / 1000, 10 * Math.log10(signalPower / noisePower),
+                allocBefore < 0 ? Double.NaN : (double) allocated / (20 * FRAMES));
+    }
+
+    private interface FrameOp {
+        void run(int frame);
+    }
+
+    // Mean nanoseconds per frame, after a warm-up half as long
+    private static double time(double seconds, FrameOp op) {
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+        for (int f = 0; System.nanoTime() < warmupEnd; f = (f + 1) % FRAMES) op.run(f);
+        long frames = 0;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            for (int f = 0; f < FRAMES; f++) op.run(f);
+            frames += FRAMES;
+            now = System.nanoTime();
+        } while (now < end);
+        return (double) (now - start) / frames;
+    }
+
+    // Voiced speech stand-in: a gliding 100-180 Hz pitch with harmonics shaped by two formants,
+    // syllable-rate amplitude envelope and a little breath noise (CaptureBenchmark reuses it,
+    // with a second talker at another pitch)
+    static short[] speech(int rate, int samples) {
+        return speech(rate, samples, 140, 11);
+    }
+
+    static short[] speech(int rate, int samples, double pitchHz, long seed) {
+        short[] s = new short[samples];
+        Random random = new Random(seed);
+        double phase = 0;
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / rate;
+            double f0 = pitchHz + pitchHz / 3.5 * Math.sin(2 * Math.PI * 0.7 * t);
+            phase += 2 * Math.PI * f0 / rate;
+            double v = 0;
+            for (int h = 1; h * f0 < Math.min(rate / 2.0, 4000); h++) {
+                double f = h * f0;
+                double formants = 1 / (1 + Math.pow((f - 700) / 150, 2)) + 0.5 / (1 + Math.pow((f - 1800) / 250, 2));
+                v += formants / h * Math.sin(h * phase);
+            }
+            double envelope = 0.55 + 0.45 * Math.sin(2 * Math.PI * 4 * t);
+            s[i] = (short) Math.max(-32768, Math.min(32767, 9000 * envelope * v + 150 * random.nextGaussian()));
+        }
+        return s;
+    }
+
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
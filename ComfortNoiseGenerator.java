@@ -0,0 +1,27 @@
+import java.util.Arrays;
+
+// 🌫 Fills silent periods with low-level noise at the level announced in RFC 3389 comfort-noise
+// packets, so the line does not sound dead between talkspurts. Allocation-free (xorshift PRNG).
+public class ComfortNoiseGenerator {
+    private int seed = 0x2545F491;
+    private int smoothed = 0;
+
+    // Writes 'samples' of noise at 'levelDbov' (RFC 3389 byte: -dBov, 127 = silence)
+    public void fill(short[] out, int samples, int levelDbov) {
+        if (levelDbov >= 127) {
+            Arrays.fill(out, 0, samples, (short) 0);
+            return;
+        }
+        // Uniform noise in [-a, a] has RMS a/sqrt(3), and the smoothing below divides it by sqrt(3) again
+        double rms = 32768.0 * Math.pow(10, -levelDbov / 20.0);
+        int amplitude = (int) Math.min(32767, rms * 3.0);
+        for (int i = 0; i < samples; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int white = (int) (((long) seed * amplitude) >> 31);
+            smoothed = (smoothed + white) >> 1; // gentle low-pass, less hissy than pure white noise
+            out[i] = (short) smoothed;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+// 🎛 Conference bridge: mixes every caller on a MultiStreamReceiver into N-1 mixes and sends each
+// caller everything but its own voice, re-encoded in the codec that caller sends, once per receiver tick.
+// All mixing buffers are preallocated primitive arrays; a tick allocates nothing.
+public class ConferenceMixer implements MultiStreamReceiver.Listener {
+    private static final int MAX_PARTICIPANTS = 256;
+
+    // Per-caller mixing state, attached to its ReceiveStream
+    private static final class Participant {
+        final ReceiveStream stream;
+        final short[] frame;
+        boolean hasFrame;
+        int index = -1;             // position in 'members', -1 until first frame
+
+        // Outgoing mix stream back to this caller, in the caller's own codec
+        final AudioCodec codec;
+        final long ssrc;
+        int sequence;
+        long timestamp;
+        final ByteBuffer packet;    // direct, so the send path never copies or allocates
+
+        Participant(ReceiveStream stream, int frameSamples, Random random) {
+            this.stream = stream;
+            this.frame = new short[frameSamples];
+            this.codec = AudioCodec.forPayloadType(stream.getCodec().getPayloadType());
+            this.ssrc = random.nextInt() & 0xFFFFFFFFL;
+            this.sequence = random.nextInt(0x10000);
+            this.timestamp = random.nextInt() & 0xFFFFFFFFL;
+            this.packet = ByteBuffer.allocateDirect(RtpHeader.SIZE + codec.getPayloadBytes(frameSamples) + SrtpContext.TAG_BYTES);
+        }
+    }
+
+    private final MultiStreamReceiver receiver;
+    private final int frameSamples;
+    private final int[] total;
+    private final short[] mix;
+    private final Participant[] members = new Participant[MAX_PARTICIPANTS];
+    private int memberCount = 0;
+    private final Random random = new Random();
+    private final SrtpContext srtp;     // tick thread only, separate from the receiver's inbound context
+
+    // Mix timing, written by the tick thread
+    private volatile long ticks, lastMixNanos, maxMixNanos, totalMixNanos, sendDrops;
+    private final LatencyHistogram mixTime;
+
+    public ConferenceMixer(int port) {
+        this(new StreamConfig().setPort(port));
+    }
+
+    // The bridge ticks at the config's ptime (e.g. 20 or 40 ms) and mixes at its sample rate
+    public ConferenceMixer(StreamConfig config) {
+        this.receiver = new MultiStreamReceiver(config, this, MAX_PARTICIPANTS, 5_000_000_000L);
+        this.frameSamples = receiver.getFrameSamples();
+        this.total = new int[frameSamples];
+        this.mix = new short[frameSamples];
+        this.srtp = config.isSrtp() ? new SrtpContext(config.getSrtpKey()) : null;
+        this.mixTime = receiver.getMetrics().histogram("mix_seconds", "Time to build and send every N-1 mix for one tick");
+        receiver.getMetrics().gauge("participants", "Callers currently in the mix", () -> memberCount);
+    }
+
+    public void start() throws IOException { receiver.start(); }
+    public void stop() { receiver.stop(); }
+    public MultiStreamReceiver getReceiver() { return receiver; }
+
+    // --- Receiver callbacks ---
+
+    @Override
+    public void onStreamStarted(ReceiveStream stream) {
+        stream.attach(new Participant(stream, frameSamples, random));
+    }
+
+    @Override
+    public void onFrame(ReceiveStream stream, short[] pcm, int samples) {
+        Participant p = (Participant) stream.attachment();
+        if (p.index < 0) {
+            // Joins the mix on its first decoded frame (tick thread, so no locking needed)
+            if (memberCount == MAX_PARTICIPANTS) return;
+            p.index = memberCount;
+            members[memberCount++] = p;
+        }
+        System.arraycopy(pcm, 0, p.frame, 0, samples);
+        p.hasFrame = true;
+    }
+
+    @Override
+    public void onStreamEnded(ReceiveStream stream) {
+        Participant p = (Participant) stream.attachment();
+        if (p == null || p.index < 0) return;
+        // Swap-remove keeps the member array dense
+        Participant last = members[--memberCount];
+        members[p.index] = last;
+        last.index = p.index;
+        members[memberCount] = null;
+        p.index = -1;
+    }
+
+    @Override
+    public void onTickEnd() {
+        long start = System.nanoTime();
+        int n = memberCount;
+        if (n == 0) return;
+
+        // 1. Sum all talkers in 32-bit so intermediate values cannot wrap
+        Arrays.fill(total, 0);
+        for (int m = 0; m < n; m++) {
+            Participant p = members[m];
+            if (!p.hasFrame) continue;
+            short[] f = p.frame;
+            for (int i = 0; i < frameSamples; i++) total[i] += f[i];
+        }
+
+        // 2. Each caller hears the total minus itself, clamped back to 16 bits
+        for (int m = 0; m < n; m++) {
+            Participant p = members[m];
+            short[] own = p.frame;
+            boolean subtract = p.hasFrame;
+            ByteBuffer packet = p.packet;
+            for (int i = 0; i < frameSamples; i++) {
+                int v = subtract ? total[i] - own[i] : total[i];
+                if (v > Short.MAX_VALUE) v = Short.MAX_VALUE;
+                else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+                mix[i] = (short) v;
+            }
+            packet.clear();
+            packet.position(RtpHeader.write(packet, 0, p.codec.getPayloadType(), false, p.sequence, p.timestamp, p.ssrc));
+            p.codec.encode(mix, 0, frameSamples, packet);
+            packet.flip();
+            if (srtp != null) srtp.protect(packet, packet.limit());
+            p.sequence = (p.sequence + 1) & 0xFFFF;
+            p.timestamp = (p.timestamp + frameSamples) & 0xFFFFFFFFL;
+            p.hasFrame = false;
+
+            try {
+                if (!receiver.send(packet, p.stream.getSource())) sendDrops++;
+            } catch (IOException e) {
+                sendDrops++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        mixTime.record(elapsed);
+        ticks++;
+        lastMixNanos = elapsed;
+        totalMixNanos += elapsed;
+        if (elapsed > maxMixNanos) maxMixNanos = elapsed;
+    }
+
+    @Override
+    public void onError(Exception e) {
+        System.err.println("❌ MIXER ERROR: " + e);
+    }
+
+    // --- Metrics ---
+
+    public int getParticipantCount() { return memberCount; }
+    public long getTicks() { return ticks; }
+    public long getLastMixNanos() { return lastMixNanos; }
+    public long getMaxMixNanos() { return maxMixNanos; }
+    public long getAverageMixNanos() { return ticks == 0 ? 0 : totalMixNanos / ticks; }
+    public long getSendDrops() { return sendDrops; }
+
+    public String stats() {
+        long frameNanos = receiver.getFrameNanos();
+        return String.format("participants=%d ticks=%d mix avg=%.1fus max=%.1fus (%.2f%% of a %dms tick) sendDrops=%d",
+                memberCount, ticks, getAverageMixNanos() / 1000.0, maxMixNanos / 1000.0,
+                100.0 * getAverageMixNanos() / frameNanos, frameNanos / 1_000_000, sendDrops);
+    }
+
+    // Standalone bridge: java ConferenceMixer [port] [ptime-ms] [rate-hz] [metrics-port]
+    public static void main(String[] args) throws Exception {
+        StreamConfig config = new StreamConfig().setPort(args.length > 0 ? Integer.parseInt(args[0]) : 50005);
+        if (args.length > 1) config.setPtimeMillis(Integer.parseInt(args[1]));
+        if (args.length > 2) config.setSampleRate(Integer.parseInt(args[2]));
+        if (args.length > 3) config.setMetricsPort(Integer.parseInt(args[3]));
+        serve(config);
+    }
+
+    // Runs a bridge until the process is killed, printing its stats every five seconds
+    public static void serve(StreamConfig config) throws Exception {
+        ConferenceMixer mixer = new ConferenceMixer(config);
+        mixer.start();
+        System.out.println("🎛 Conference bridge listening on UDP " + config);
+        if (config.getMetricsPort() > 0) {
+            MetricsServer server = MetricsServer.start(config.getMetricsPort(), mixer.getReceiver().getMetrics());
+            System.out.println("📊 Metrics on http://127.0.0.1:" + server.getPort() + "/metrics");
+        }
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println("📊 " + mixer.stats());
+        }
+    }
+}
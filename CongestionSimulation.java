@@ -0,0 +1,184 @@
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+// 📉 Congestion recovery with and without the return channel: one sender/receiver pair over
+// loopback with SyntheticAudio, through an ImpairmentProxy whose bottleneck is scripted
+//   clean       no bottleneck
+//   congested   a link below the top step's bitrate with a drop-tail queue: the queue fills, delay
+//               climbs to the queue limit, then the excess is dropped
+//   restored    no bottleneck again
+// Run once at a fixed bitrate and once with adaptive bitrate (BitrateController following receiver
+// reports). Prints a per-second series: link capacity, offered and delivered kbit/s (IP level),
+// loss at the proxy, mouth-to-ear p50/p95 from the receiver and what the sender is sending, then
+// per-phase averages and how long each run took to get loss and delay back under control.
+//   java CongestionSimulation [clean-s congested-s restored-s] [bottleneck-kbps] [queue-ms]
+public class CongestionSimulation {
+    private static final int IP_UDP_HEADERS = 28;
+    private static final double PATH_DELAY_MILLIS = 20;
+    // Recovered: three seconds in a row under this loss, with mouth-to-ear this close to the clean phase's
+    private static final double RECOVERED_LOSS = 0.02;
+    private static final int RECOVERED_SECONDS = 3;
+    private static final long RECOVERED_DELAY_NANOS = 40_000_000L;
+
+    // One second of the series
+    private static final class Tick {
+        int second, phase;
+        double capacityKbps, sentKbps, deliveredKbps, loss;
+        long p50, p95;
+        String format;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clean = args.length > 2 ? Integer.parseInt(args[0]) : 10;
+        int congested = args.length > 2 ? Integer.parseInt(args[1]) : 30;
+        int restored = args.length > 2 ? Integer.parseInt(args[2]) : 40;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 56;
+        double queue = args.length > 4 ? Double.parseDouble(args[4]) : 200;
+        int[] phases = { clean, congested, restored };
+
+        StreamConfig config = new StreamConfig().setPtimeMillis(20);
+        List<BitrateController.Step> ladder = BitrateController.ladder(config);
+        System.out.println("📉 " + config.getCodec() + " " + config.getPtimeMillis() + " ms; ladder " + ladder);
+        System.out.printf("   %d s clean, %d s behind %.0f kbit/s with a %.0f ms queue, %d s restored; path delay %.0f ms each way%n",
+                clean, congested, rate, queue, restored, PATH_DELAY_MILLIS);
+
+        List<Tick> fixed = run(false, phases, rate, queue);
+        List<Tick> adaptive = run(true, phases, rate, queue);
+
+        System.out.printf("%n%-10s %-10s %10s %10s %8s %9s %9s%n", "run", "phase", "sent kb/s", "deliv kb/s", "loss %", "m2e p50", "m2e p95");
+        String[] names = { "clean", "congested", "restored" };
+        for (int r = 0; r < 2; r++) {
+            List<Tick> ticks = r == 0 ? fixed : adaptive;
+            for (int p = 0; p < phases.length; p++) {
+                double sent = 0, delivered = 0, loss = 0;
+                List<Long> p50 = new ArrayList<>(), p95 = new ArrayList<>();
+                int n = 0;
+                for (Tick t : ticks) {
+                    if (t.phase != p) continue;
+                    sent += t.sentKbps;
+                    delivered += t.deliveredKbps;
+                    loss += t.loss;
+                    p50.add(t.p50);
+                    p95.add(t.p95);
+                    n++;
+                }
+                if (n == 0) continue;
+                System.out.printf("%-10s %-10s %10.1f %10.1f %8.1f %7d ms %7d ms%n", r == 0 ? "fixed" : "adaptive", names[p],
+                        sent / n, delivered / n, 100 * loss / n, median(p50) / 1_000_000, median(p95) / 1_000_000);
+            }
+        }
+        System.out.println();
+        System.out.println("Recovery after the bottleneck appears (loss < " + (int) (RECOVERED_LOSS * 100)
+                + "% and mouth-to-ear p50 within " + RECOVERED_DELAY_NANOS / 1_000_000 + " ms of clean, " + RECOVERED_SECONDS + " s in a row):");
+        System.out.println("  fixed:    " + recovery(fixed));
+        System.out.println("  adaptive: " + recovery(adaptive));
+        System.out.println("Goodput is what left the bottleneck; the fixed sender keeps offering its full rate, so the queue");
+        System.out.println("stays full and the excess is dropped for as long as the bottleneck lasts.");
+    }
+
+    private static List<Tick> run(boolean adaptive, int[] phases, double rate, double queue) throws Exception {
+        System.out.printf("%n%s%n%5s %6s %9s %10s %7s %8s %8s  %s%n", adaptive ? "▶ Adaptive bitrate" : "▶ Fixed bitrate",
+                "s", "cap kb/s", "sent kb/s", "deliv kb/s", "loss %", "m2e p50", "m2e p95", "sending");
+        ImpairmentProxy.Profile open = new ImpairmentProxy.Profile(0, 1, PATH_DELAY_MILLIS, 0, 0, 0, 0);
+        ImpairmentProxy.Profile bottleneck = open.withBottleneck(rate, queue);
+        SyntheticAudio audio = SyntheticAudio.tones(1000);
+        long start = System.nanoTime();
+        AudioStreamListener listener = new AudioStreamListener() {
+            public void onStarted() {}
+            public void onStopped() {}
+            public void onError(Exception e) { System.err.println("❌ " + e); }
+            public void onEvent(String message) {
+                // The sender's decisions, interleaved with the series
+                if (message.startsWith("📉") || message.startsWith("📈") || message.startsWith("🛟")) {
+                    System.out.printf("%5.1f %s%n", (System.nanoTime() - start) / 1e9, message);
+                }
+            }
+        };
+
+        List<Tick> ticks = new ArrayList<>();
+        AudioStreamReceiver receiver = new AudioStreamReceiver(new StreamConfig().setPort(0).setAudioBackend(audio), listener);
+        AudioStreamSender sender = null;
+        try (ImpairmentProxy proxy = new ImpairmentProxy(open, 1)) {
+            receiver.start();
+            int port;
+            while ((port = receiver.getLocalPort()) < 0) Thread.sleep(5);
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            int relay = proxy.addRoute(new InetSocketAddress(loopback, port));
+            sender = new AudioStreamSender(new StreamConfig(loopback.getHostAddress(), relay).setPtimeMillis(20)
+                    .setAdaptiveBitrate(adaptive).setAudioBackend(audio), listener);
+            proxy.start();
+            sender.start();
+
+            LatencyHistogram mouthToEar = receiver.getMetrics().getHistogram("mouth_to_ear_seconds");
+            long bytes = 0, datagrams = 0, forwardedBytes = 0, forwarded = 0, received = 0, dropped = 0;
+            LatencyHistogram.Snapshot before = mouthToEar.snapshot();
+            long next = System.nanoTime() + 1_000_000_000L;
+            int second = 0;
+            for (int phase = 0; phase < phases.length; phase++) {
+                proxy.setProfile(phase == 1 ? bottleneck : open);
+                for (int s = 0; s < phases[phase]; s++) {
+                    Thread.sleep(Math.max(0, (next - System.nanoTime()) / 1_000_000));
+                    next += 1_000_000_000L;
+                    Tick t = new Tick();
+                    t.second = ++second;
+                    t.phase = phase;
+                    t.capacityKbps = phase == 1 ? rate : 0;
+                    t.sentKbps = ((sender.getBytesSent() - bytes) + IP_UDP_HEADERS * (sender.getDatagramsSent() - datagrams)) * 8 / 1000.0;
+                    t.deliveredKbps = ((proxy.getForwardedBytes() - forwardedBytes) + IP_UDP_HEADERS * (proxy.getForwarded() - forwarded)) * 8 / 1000.0;
+                    long in = proxy.getReceived() - received;
+                    t.loss = in == 0 ? 0 : (double) (proxy.getDropped() - dropped) / in;
+                    LatencyHistogram.Snapshot now = mouthToEar.snapshot();
+                    LatencyHistogram.Snapshot window = now.minus(before);
+                    t.p50 = window.getValueAt(0.5);
+                    t.p95 = window.getValueAt(0.95);
+                    t.format = sender.getSendFormat();
+                    before = now;
+                    bytes = sender.getBytesSent();
+                    datagrams = sender.getDatagramsSent();
+                    forwardedBytes = proxy.getForwardedBytes();
+                    forwarded = proxy.getForwarded();
+                    received = proxy.getReceived();
+                    dropped = proxy.getDropped();
+                    ticks.add(t);
+                    System.out.printf("%5d %9s %10.1f %10.1f %7.1f %6d ms %6d ms  %s%n", t.second,
+                            t.capacityKbps > 0 ? String.format("%.0f", t.capacityKbps) : "-", t.sentKbps, t.deliveredKbps,
+                            100 * t.loss, t.p50 / 1_000_000, t.p95 / 1_000_000, t.format);
+                }
+            }
+            System.out.printf("  reports: %d sent, %d received; last rtt %.0f ms%n", receiver.getReportsSent(),
+                    sender.getReportsReceived(), sender.getRttNanos() / 1e6);
+        } finally {
+            if (sender != null) sender.stop();
+            receiver.stop();
+        }
+        return ticks;
+    }
+
+    // Seconds from the bottleneck appearing to the start of the first good run within it, or how it ended
+    private static String recovery(List<Tick> ticks) {
+        List<Long> clean = new ArrayList<>();
+        for (Tick t : ticks) if (t.phase == 0 && t.second > 2) clean.add(t.p50);
+        long baseline = median(clean);
+        int first = -1, good = 0;
+        boolean hurt = false;
+        for (Tick t : ticks) {
+            if (t.phase != 1) continue;
+            if (first < 0) first = t.second;
+            if (t.loss < RECOVERED_LOSS && t.p50 < baseline + RECOVERED_DELAY_NANOS) {
+                if (hurt && ++good == RECOVERED_SECONDS) return (t.second - RECOVERED_SECONDS + 1 - first) + " s after it appeared";
+            } else {
+                hurt = true;
+                good = 0;
+            }
+        }
+        return hurt ? "not within the congested phase" : "never affected";
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        return sorted.isEmpty() ? 0 : sorted.get(sorted.size() / 2);
+    }
+}
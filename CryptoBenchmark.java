@@ -0,0 +1,176 @@
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Random;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// 🏁 SRTP cost benchmark, 20 ms frames:
+//   per packet  ns to protect and to unprotect one packet of each codec and rate (SrtpContext, in
+//               place in a direct buffer), against AES-GCM through JCA with the Cipher re-initialised
+//               per packet as it must be for a new IV; streams one core could protect and check
+//               (both ends), and bytes allocated per packet (should be 0)
+//   at scale    one thread protecting, another context unprotecting, N streams interleaved as a
+//               selector or mixer tick sees them: per-packet p50/p99/max, share of a core at 50
+//               packets/s per stream, and the delay the last stream of a tick waits for the rest
+//   java CryptoBenchmark [seconds-per-case] [stream counts, e.g. 1,100,500,1000]
+public class CryptoBenchmark {
+    private static final int PTIME = 20;
+    private static final int PACKETS = 500;             // prepared per timing round
+
+    private static volatile int sink;                   // defeats dead-code elimination
+
+    public static void main(String[] args) throws GeneralSecurityException {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        String[] counts = (args.length > 1 ? args[1] : "1,100,500,1000").split(",");
+        byte[] master = Base64.getDecoder().decode(SrtpContext.generateKey());
+
+        System.out.println("AES_CM_128_HMAC_SHA1_80, " + PTIME + " ms frames, one core");
+        System.out.printf("%-12s %8s %11s %11s %10s %9s %11s %9s%n",
+                "codec", "payload", "protect ns", "unprot ns", "streams", "B/packet", "GCM ns", "GCM B/pkt");
+        for (String codec : new String[] { AudioCodec.PCMU, AudioCodec.DVI4 }) {
+            for (int rate : StreamConfig.SUPPORTED_RATES) perPacket(master, AudioCodec.create(codec, rate), seconds);
+        }
+        System.out.println("streams: both ends of a call on one core. GCM: AES-128-GCM seal + open, Cipher.init per packet.");
+
+        AudioCodec codec = AudioCodec.create(AudioCodec.PCMU, 8000);
+        System.out.printf("%n%-8s %10s %10s %10s %10s %9s %11s%n",
+                "streams", "p50 ns", "p99 ns", "max ns", "mean ns", "core %", "tick ms");
+        for (String n : counts) atScale(master, codec, Integer.parseInt(n.trim()), seconds);
+        System.out.println("Per packet protect + unprotect, " + codec.getName() + " 8 kHz; core % at 50 packets/s per stream;");
+        System.out.println("tick ms: crypto ahead of the last stream when one thread serves them all each frame.");
+    }
+
+    private static void perPacket(byte[] master, AudioCodec codec, double seconds) throws GeneralSecurityException {
+        int frame = StreamConfig.frameSamples(codec.getClockRate(), PTIME);
+        int payload = codec.getPayloadBytes(frame);
+        int length = RtpHeader.SIZE + payload;
+        byte[] template = new byte[payload];
+        new Random(7).nextBytes(template);
+        ByteBuffer[] packets = new ByteBuffer[PACKETS];
+        for (int i = 0; i < PACKETS; i++) packets[i] = ByteBuffer.allocateDirect(length + SrtpContext.TAG_BYTES);
+
+        SrtpContext sender = new SrtpContext(master), receiver = new SrtpContext(master);
+        int[] sequence = { 0 };
+        long[] protectNanos = new long[1], unprotectNanos = new long[1];
+        Runnable round = () -> {
+            for (ByteBuffer p : packets) fill(p, codec.getPayloadType(), sequence[0]++, 0x5EED, template);
+            long start = System.nanoTime();
+            for (ByteBuffer p : packets) sender.protect(p, length);
+            long middle = System.nanoTime();
+            for (ByteBuffer p : packets) check(receiver.unprotect(p), length);
+            protectNanos[0] += middle - start;
+            unprotectNanos[0] += System.nanoTime() - middle;
+        };
+        long rounds = run(seconds, round, () -> protectNanos[0] = unprotectNanos[0] = 0);
+        double protect = (double) protectNanos[0] / (rounds * PACKETS);
+        double unprotect = (double) unprotectNanos[0] / (rounds * PACKETS);
+
+        long allocBefore = CodecBenchmark.allocatedBytes();
+        for (int r = 0; r < 20; r++) round.run();
+        long allocated = CodecBenchmark.allocatedBytes() - allocBefore;
+
+        double[] gcm = gcm(master, length, seconds);
+        System.out.printf("%-12s %8d %11.0f %11.0f %10.0f %9.3f %11.0f %9.0f%n",
+                codec.getName() + "/" + codec.getClockRate() / 1000 + "k", payload, protect, unprotect,
+                PTIME * 1e6 / (protect + unprotect), allocBefore < 0 ? Double.NaN : (double) allocated / (20 * PACKETS), gcm[0], gcm[1]);
+    }
+
+    // The usual JCA AEAD route for comparison: a fresh IV per packet means an init per packet, and
+    // the header goes in as associated data. Returns ns and bytes allocated per packet.
+    private static double[] gcm(byte[] master, int length, double seconds) throws GeneralSecurityException {
+        SecretKeySpec key = new SecretKeySpec(master, 0, SrtpContext.MASTER_KEY_BYTES, "AES");
+        Cipher seal = Cipher.getInstance("AES/GCM/NoPadding"), open = Cipher.getInstance("AES/GCM/NoPadding");
+        byte[] packet = new byte[length + 16];
+        byte[] iv = new byte[12];
+        new Random(7).nextBytes(packet);
+        long[] nanos = new long[1];
+        int[] sequence = { 0 };
+        Runnable round = () -> {
+            try {
+                long start = System.nanoTime();
+                for (int i = 0; i < PACKETS; i++) {
+                    int s = sequence[0]++;
+                    iv[8] = (byte) (s >> 24);
+                    iv[9] = (byte) (s >> 16);
+                    iv[10] = (byte) (s >> 8);
+                    iv[11] = (byte) s;
+                    seal.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                    seal.updateAAD(packet, 0, RtpHeader.SIZE);
+                    int sealed = seal.doFinal(packet, RtpHeader.SIZE, length - RtpHeader.SIZE, packet, RtpHeader.SIZE);
+                    open.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                    open.updateAAD(packet, 0, RtpHeader.SIZE);
+                    sink += open.doFinal(packet, RtpHeader.SIZE, sealed, packet, RtpHeader.SIZE);
+                }
+                nanos[0] += System.nanoTime() - start;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        long rounds = run(seconds, round, () -> nanos[0] = 0);
+        long allocBefore = CodecBenchmark.allocatedBytes();
+        for (int r = 0; r < 20; r++) round.run();
+        long allocated = CodecBenchmark.allocatedBytes() - allocBefore;
+        return new double[] { (double) nanos[0] / (rounds * PACKETS), allocBefore < 0 ? Double.NaN : (double) allocated / (20 * PACKETS) };
+    }
+
+    private static void atScale(byte[] master, AudioCodec codec, int streams, double seconds) {
+        int frame = StreamConfig.frameSamples(codec.getClockRate(), PTIME);
+        int length = RtpHeader.SIZE + codec.getPayloadBytes(frame);
+        byte[] template = new byte[length - RtpHeader.SIZE];
+        Random random = new Random(streams);
+        random.nextBytes(template);
+        long[] ssrcs = new long[streams];
+        int[] sequences = new int[streams];
+        for (int s = 0; s < streams; s++) {
+            ssrcs[s] = random.nextInt() & 0xFFFFFFFFL;
+            sequences[s] = random.nextInt(0x10000);
+        }
+        ByteBuffer packet = ByteBuffer.allocateDirect(length + SrtpContext.TAG_BYTES);
+        SrtpContext sender = new SrtpContext(master), receiver = new SrtpContext(master);
+        LatencyHistogram[] histogram = { new LatencyHistogram() };
+        int[] next = { 0 };
+        Runnable round = () -> {
+            for (int i = 0; i < PACKETS; i++) {
+                int s = next[0];
+                next[0] = s + 1 == streams ? 0 : s + 1;
+                fill(packet, codec.getPayloadType(), sequences[s], ssrcs[s], template);
+                sequences[s] = (sequences[s] + 1) & 0xFFFF;
+                long start = System.nanoTime();
+                sender.protect(packet, length);
+                check(receiver.unprotect(packet), length);
+                histogram[0].record(System.nanoTime() - start);
+            }
+        };
+        run(seconds, round, () -> histogram[0] = new LatencyHistogram());
+        LatencyHistogram.Snapshot s = histogram[0].snapshot();
+        double mean = s.getMean();
+        System.out.printf("%-8d %10d %10d %10d %10.0f %9.2f %11.3f%n", streams, s.getValueAt(0.5), s.getValueAt(0.99),
+                s.getMax(), mean, 100 * mean * streams * (1000.0 / PTIME) / 1e9, streams * mean / 1e6);
+    }
+
+    // Runs rounds for half the time to warm up, resets, then for the full time; returns the rounds measured
+    private static long run(double seconds, Runnable round, Runnable reset) {
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+        while (System.nanoTime() < warmupEnd) round.run();
+        reset.run();
+        long rounds = 0;
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        do {
+            round.run();
+            rounds++;
+        } while (System.nanoTime() < end);
+        return rounds;
+    }
+
+    private static void check(int unprotected, int length) {
+        if (unprotected != length) throw new IllegalStateException("SRTP round trip failed: " + unprotected);
+    }
+
+    private static void fill(ByteBuffer packet, int payloadType, int sequence, long ssrc, byte[] payload) {
+        packet.clear();
+        packet.position(RtpHeader.write(packet, 0, payloadType, false, sequence & 0xFFFF, sequence * 160L, ssrc));
+        packet.put(payload);
+    }
+}
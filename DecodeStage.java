@@ -0,0 +1,123 @@
+// 🔓 Reusable decode stage: pulls the next frame from a jitter buffer, decodes it to PCM with the
+// stream's AudioCodec and conceals gaps with PacketLossConcealer. Shared by the Swing receiver, the multi-stream engine
+// and the conference mixer.
+// Clock drift: with setDriftPpm() the stage resamples by (1 + ppm) through a small sample FIFO,
+// so the jitter buffer is drained at the sender's clock rate while exactly one frame still comes
+// out per tick. Every so many seconds that means pulling two frames in a tick (fast sender) or
+// none (slow sender), instead of the buffer creeping until it overflows or starves.
+// Not thread-safe: call it from the single playout/tick thread that owns it.
+public class DecodeStage {
+    private final JitterBuffer jitterBuffer;
+    private final int frameSamples;
+    private final AudioCodec codec;
+    private final byte[] payload;
+    private final short[] pcmFrame;
+    private final PacketLossConcealer concealer;
+    // Comfort noise for silence periods; off for consumers such as the mixer that want true silence
+    private final ComfortNoiseGenerator comfortNoise;
+
+    // Drift compensation: decoded samples not yet played, read at a fractional position
+    private final short[] fifo;
+    private int fifoCount;
+    private double position;
+    private double step = 1.0;  // input samples per output sample
+
+    // µ-law at 'sampleRate'
+    public DecodeStage(JitterBuffer jitterBuffer, int frameSamples, int sampleRate) {
+        this(jitterBuffer, frameSamples, AudioCodec.create(AudioCodec.PCMU, sampleRate), false);
+    }
+
+    public DecodeStage(JitterBuffer jitterBuffer, int frameSamples, int sampleRate, boolean comfortNoise) {
+        this(jitterBuffer, frameSamples, AudioCodec.create(AudioCodec.PCMU, sampleRate), comfortNoise);
+    }
+
+    // The jitter buffer's frame size must be codec.getPayloadBytes(frameSamples)
+    public DecodeStage(JitterBuffer jitterBuffer, int frameSamples, AudioCodec codec, boolean comfortNoise) {
+        this.jitterBuffer = jitterBuffer;
+        this.frameSamples = frameSamples;
+        this.codec = codec;
+        this.payload = new byte[codec.getPayloadBytes(frameSamples)];
+        this.pcmFrame = new short[frameSamples];
+        this.concealer = new PacketLossConcealer(codec.getClockRate());
+        this.comfortNoise = comfortNoise ? new ComfortNoiseGenerator() : null;
+        this.fifo = new short[3 * frameSamples];
+    }
+
+    // How fast the sender's clock runs against the playout clock (ClockDriftEstimator); 0 turns
+    // compensation off once the samples already in flight have been played
+    public void setDriftPpm(double ppm) {
+        step = 1.0 + ppm * 1e-6;
+    }
+
+    public double getDriftPpm() { return (step - 1.0) * 1e6; }
+
+    // Produces one frame of PCM into 'pcm'. Returns false while the buffer is (re)filling or the
+    // sender is silent without comfort noise enabled; then nothing was written.
+    public boolean next(short[] pcm) {
+        if (step == 1.0 && fifoCount == 0) return decode(pcm);
+
+        // Enough input for the last output sample and the one it interpolates towards
+        int needed = (int) (position + (frameSamples - 1) * step) + 2;
+        for (int pulls = 0; fifoCount < needed; pulls++) {
+            // A second pull in one tick never forces an underrun; the frame is stretched a few
+            // samples instead and the correction waits for the next tick
+            if (pulls > 0 && jitterBuffer.depth() == 0 && !jitterBuffer.isSilent()) break;
+            if (!decode(pcmFrame)) {
+                // (Re)buffering: start the new timeline from a clean FIFO
+                fifoCount = 0;
+                position = 0;
+                return false;
+            }
+            System.arraycopy(pcmFrame, 0, fifo, fifoCount, frameSamples);
+            fifoCount += frameSamples;
+        }
+        double advance = fifoCount >= needed ? step : (fifoCount - 2 - position) / (frameSamples - 1);
+        double pos = position;
+        for (int i = 0; i < frameSamples; i++, pos += advance) {
+            int k = (int) pos;
+            double frac = pos - k;
+            pcm[i] = (short) (fifo[k] + (fifo[k + 1] - fifo[k]) * frac);
+        }
+        int consumed = (int) pos;
+        fifoCount -= consumed;
+        System.arraycopy(fifo, consumed, fifo, 0, fifoCount);
+        position = pos - consumed;
+        return true;
+    }
+
+    // One frame straight from the jitter buffer: decoded, concealed or comfort noise
+    private boolean decode(short[] pcm) {
+        int status = jitterBuffer.poll(payload, 0);
+        if (status == JitterBuffer.FRAME) {
+            codec.decode(payload, 0, payload.length, pcm, 0);
+            concealer.good(pcm, frameSamples);
+            return true;
+        }
+        if (status == JitterBuffer.CONCEALED) {
+            // Pitch-synchronous repetition of the last good speech, fading out over 60 ms
+            concealer.conceal(pcm, frameSamples);
+            return true;
+        }
+        if (status == JitterBuffer.SILENCE && comfortNoise != null) {
+            // The sender suppressed this frame: play noise at the level it measured
+            comfortNoise.fill(pcm, frameSamples, payload[0] & 0x7F);
+            concealer.good(pcm, frameSamples);
+            return true;
+        }
+        return false;
+    }
+
+    // Same as next(short[]) but writes little-endian bytes ready for SourceDataLine.write
+    public boolean next(byte[] pcm) {
+        if (!next(pcmFrame)) return false;
+        for (int i = 0, j = 0; i < frameSamples; i++, j += 2) {
+            pcm[j] = (byte) pcmFrame[i];
+            pcm[j + 1] = (byte) (pcmFrame[i] >> 8);
+        }
+        return true;
+    }
+
+    public int getFrameSamples() { return frameSamples; }
+    public AudioCodec getCodec() { return codec; }
+    public JitterBuffer getJitterBuffer() { return jitterBuffer; }
+}
@@ -0,0 +1,36 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// ♻ Fixed-size pool of direct ByteBuffers for datagram I/O. Buffers are allocated up front, so
+// steady-state acquire/release never allocates; an exhausted pool falls back to a fresh buffer.
+public class DirectBufferPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private volatile long misses;
+
+    public DirectBufferPool(int buffers, int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) free.offer(ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    // Returns a cleared buffer (position 0, limit = capacity)
+    public ByteBuffer acquire() {
+        ByteBuffer buf = free.poll();
+        if (buf == null) {
+            misses++;
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    // Surplus buffers beyond the pool size are simply dropped for the GC
+    public void release(ByteBuffer buf) {
+        if (buf != null && buf.isDirect() && buf.capacity() == bufferSize) free.offer(buf);
+    }
+
+    public int getBufferSize() { return bufferSize; }
+    public int getAvailable() { return free.size(); }
+    public long getMisses() { return misses; }
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+// 🔊 Acoustic echo canceller: an adaptive filter models the path from the speaker to the mic and
+// subtracts its estimate of the echo from the mic signal. It is a partitioned-block frequency-
+// domain NLMS (the multi-delay filter of Soo and Pang): the echo tail is cut into blocks of about
+// 8 ms, each a set of FFT-bin weights, so filtering and adaptation cost a few FFTs plus one
+// complex multiply-add per bin and partition instead of 2 x taps multiply-adds per sample, and
+// the step is normalised per bin, which converges on coloured signals like speech where plain
+// NLMS crawls. One partition per block is constrained back to a causal filter (round robin).
+// A Geigel double-talk detector freezes adaptation while the near end talks over the far end,
+// and what it misses is caught by a two-path scheme: a background filter adapts, a foreground
+// copy produces the output and only takes the background's weights once they cancel better.
+// Adds one block of delay; all state is allocated up front.
+// Not thread-safe: owned by the CaptureProcessor of one stream.
+public class EchoCanceller {
+    private static final float STEP = 1.0f;                 // per block, 0 < mu < 2
+    private static final float GEIGEL_THRESHOLD = 0.5f;     // near end above half the far-end peak
+    private static final int DOUBLE_TALK_HOLD_MILLIS = 60;
+    private static final float SILENT_REFERENCE = 16;       // far-end peak below this: nothing to learn
+    private static final float ERLE_SMOOTHING = 0.9f;
+    private static final double COMPARE_SMOOTHING = 0.8;
+    private static final double PROMOTE_MARGIN = 1.25;      // background 1 dB better: copy it forward
+    private static final double RESET_MARGIN = 4;           // background 6 dB worse: it diverged
+
+    private final int block, size, bins, partitions;
+    private final Fft fft;
+    private final float[] re, im;                           // transform scratch, 'size' long
+    private final float[] farRe, farIm;                     // far spectra, newest at 'newest', partition-major
+    private final float[] weightRe, weightIm;               // background filter, adapting; partition p
+                                                            // filters the far spectrum p blocks old
+    private final float[] frontRe, frontIm;                 // foreground filter, producing the output
+    private final float[] backgroundError;
+    private double backgroundPower, foregroundPower;
+    private final double[] tailPower;                       // |X|^2 per bin, summed over the partitions
+    private final float[] farPeaks;                         // peak far sample of each partition's block
+    private final float regularisation;
+    private final float[] previousFar;
+    private final int holdBlocks;
+    private int newest, constrainNext, doubleTalk;
+    private double micPower, residualPower;
+
+    // Input gathered into blocks, and output waiting to be taken, as in NoiseSuppressor
+    private final float[] micBlock, farBlock;
+    private int blockFill;
+    private final float[] output;
+    private int outputRead, outputCount;
+
+    public EchoCanceller(int sampleRate, int tailMillis, int maxFrameSamples) {
+        this.block = Integer.highestOneBit(sampleRate / 100);   // 64 at 8 kHz, 128 at 16 kHz, 256 at 48 kHz
+        this.size = 2 * block;
+        this.bins = block + 1;
+        this.partitions = Math.max(1, (sampleRate * tailMillis / 1000 + block - 1) / block);
+        this.fft = new Fft(size);
+        this.re = new float[size];
+        this.im = new float[size];
+        this.farRe = new float[partitions * bins];
+        this.farIm = new float[partitions * bins];
+        this.weightRe = new float[partitions * bins];
+        this.weightIm = new float[partitions * bins];
+        this.frontRe = new float[partitions * bins];
+        this.frontIm = new float[partitions * bins];
+        this.backgroundError = new float[block];
+        this.tailPower = new double[bins];
+        this.farPeaks = new float[partitions];
+        // About -60 dBFS of far-end noise in every bin keeps the step bounded on quiet references
+        this.regularisation = partitions * size * 1024f;
+        this.previousFar = new float[block];
+        this.holdBlocks = Math.max(1, sampleRate * DOUBLE_TALK_HOLD_MILLIS / 1000 / block);
+        this.micBlock = new float[block];
+        this.farBlock = new float[block];
+        this.output = new float[Integer.highestOneBit(maxFrameSamples + block) * 2];
+        this.outputCount = block;
+    }
+
+    // Length of echo path modelled, in samples
+    public int getTaps() { return partitions * block; }
+
+    // Samples of delay added to the stream
+    public int getLatencySamples() { return block; }
+
+    // Echo return loss enhancement: mic power over residual power while the far end talks alone, in dB
+    public double getErleDb() {
+        return residualPower <= 0 ? 0 : 10 * Math.log10(micPower / residualPower);
+    }
+
+    public boolean isDoubleTalk() { return doubleTalk > 0; }
+
+    // Replaces the 'count' mic samples with the mic minus the estimated echo of 'far', the
+    // speaker signal over the same period
+    public void process(float[] mic, float[] far, int count) {
+        int mask = output.length - 1;
+        for (int i = 0; i < count; i++) {
+            micBlock[blockFill] = mic[i];
+            farBlock[blockFill] = far[i];
+            if (++blockFill == block) {
+                block();
+                blockFill = 0;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            mic[i] = output[outputRead];
+            outputRead = (outputRead + 1) & mask;
+        }
+        outputCount -= count;
+    }
+
+    private void block() {
+        // Far spectrum of the last two blocks, stored as partition 0
+        newest = newest == 0 ? partitions - 1 : newest - 1;
+        float farPeak = 0, micPeak = 0;
+        for (int i = 0; i < block; i++) {
+            re[i] = previousFar[i];
+            re[block + i] = farBlock[i];
+            farPeak = Math.max(farPeak, Math.abs(farBlock[i]));
+            micPeak = Math.max(micPeak, Math.abs(micBlock[i]));
+        }
+        System.arraycopy(farBlock, 0, previousFar, 0, block);
+        Arrays.fill(im, 0);
+        fft.forward(re, im);
+        int at = newest * bins;
+        for (int k = 0; k < bins; k++) {
+            // The slot being reused holds the block that just left the tail
+            float leaving = farRe[at + k] * farRe[at + k] + farIm[at + k] * farIm[at + k];
+            tailPower[k] = Math.max(0, tailPower[k] + re[k] * re[k] + im[k] * im[k] - leaving);
+            farRe[at + k] = re[k];
+            farIm[at + k] = im[k];
+        }
+        farPeaks[newest] = farPeak;
+        float tailPeak = 0;
+        for (float p : farPeaks) tailPeak = Math.max(tailPeak, p);
+
+        // Background filter's error, kept for adaptation
+        estimate(weightRe, weightIm);
+        double background = 0;
+        for (int i = 0; i < block; i++) {
+            backgroundError[i] = micBlock[i] - re[block + i];
+            background += backgroundError[i] * backgroundError[i];
+        }
+        // Foreground filter's error is the output
+        estimate(frontRe, frontIm);
+        int mask = output.length - 1;
+        int write = (outputRead + outputCount) & mask;
+        double in = 0, out = 0;
+        for (int i = 0; i < block; i++) {
+            float error = micBlock[i] - re[block + i];
+            in += micBlock[i] * micBlock[i];
+            out += error * error;
+            output[write] = error;
+            write = (write + 1) & mask;
+        }
+        outputCount += block;
+
+        if (tailPeak < SILENT_REFERENCE) return;
+        // Whichever filter is doing better over the last few blocks wins: a background that has
+        // converged further is promoted, one that learnt the near end is thrown away
+        backgroundPower = COMPARE_SMOOTHING * backgroundPower + (1 - COMPARE_SMOOTHING) * background;
+        foregroundPower = COMPARE_SMOOTHING * foregroundPower + (1 - COMPARE_SMOOTHING) * out;
+        if (backgroundPower * PROMOTE_MARGIN < foregroundPower) {
+            System.arraycopy(weightRe, 0, frontRe, 0, weightRe.length);
+            System.arraycopy(weightIm, 0, frontIm, 0, weightIm.length);
+            foregroundPower = backgroundPower;
+        } else if (backgroundPower > RESET_MARGIN * foregroundPower) {
+            System.arraycopy(frontRe, 0, weightRe, 0, weightRe.length);
+            System.arraycopy(frontIm, 0, weightIm, 0, weightIm.length);
+            backgroundPower = foregroundPower;
+        }
+
+        if (micPeak > GEIGEL_THRESHOLD * tailPeak) doubleTalk = holdBlocks;
+        if (doubleTalk > 0) {
+            doubleTalk--;
+            return;
+        }
+        micPower = ERLE_SMOOTHING * micPower + (1 - ERLE_SMOOTHING) * in;
+        residualPower = ERLE_SMOOTHING * residualPower + (1 - ERLE_SMOOTHING) * out;
+
+        // Error spectrum (error in the second half, zeros in the first), then per-bin NLMS
+        for (int i = 0; i < block; i++) {
+            re[i] = 0;
+            re[block + i] = backgroundError[i];
+        }
+        Arrays.fill(im, 0);
+        fft.forward(re, im);
+        for (int k = 0; k < bins; k++) {
+            // Normalised by the far power over the whole tail: a loud block still in an old
+            // partition must not get a step sized for a quiet current one
+            float g = (float) (STEP / (tailPower[k] + regularisation));
+            re[k] *= g;
+            im[k] *= g;
+        }
+        for (int p = 0; p < partitions; p++) {
+            int x = ((newest + p) % partitions) * bins, w = p * bins;
+            for (int k = 0; k < bins; k++) {
+                // conj(X) x E
+                float xr = farRe[x + k], xi = farIm[x + k];
+                weightRe[w + k] += xr * re[k] + xi * im[k];
+                weightIm[w + k] += xr * im[k] - xi * re[k];
+            }
+        }
+        constrain(constrainNext);
+        constrainNext = (constrainNext + 1) % partitions;
+    }
+
+    // Echo estimate of one filter: sum over partitions of weights x delayed far spectra, back to
+    // time; the current block's estimate is left in re[block..size)
+    private void estimate(float[] wRe, float[] wIm) {
+        Arrays.fill(re, 0, bins, 0);
+        Arrays.fill(im, 0, bins, 0);
+        for (int p = 0; p < partitions; p++) {
+            int x = ((newest + p) % partitions) * bins, w = p * bins;
+            for (int k = 0; k < bins; k++) {
+                float xr = farRe[x + k], xi = farIm[x + k], wr = wRe[w + k], wi = wIm[w + k];
+                re[k] += wr * xr - wi * xi;
+                im[k] += wr * xi + wi * xr;
+            }
+        }
+        mirror();
+        fft.inverse(re, im);
+    }
+
+    // Zeroes the second half of one partition's impulse response: without it the frequency-domain
+    // update learns circular wrap-around that the linear convolution cannot use
+    private void constrain(int partition) {
+        int w = partition * bins;
+        System.arraycopy(weightRe, w, re, 0, bins);
+        System.arraycopy(weightIm, w, im, 0, bins);
+        mirror();
+        fft.inverse(re, im);
+        for (int i = block; i < size; i++) re[i] = 0;
+        Arrays.fill(im, 0);
+        fft.forward(re, im);
+        System.arraycopy(re, 0, weightRe, w, bins);
+        System.arraycopy(im, 0, weightIm, w, bins);
+    }
+
+    // Fills bins above Nyquist with the conjugates of those below, so the inverse is real
+    private void mirror() {
+        for (int k = 1; k < block; k++) {
+            re[size - k] = re[k];
+            im[size - k] = -im[k];
+        }
+    }
+}
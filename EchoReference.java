@@ -0,0 +1,60 @@
+// 🔁 Far-end signal for echo cancellation: what this host's receiver has queued to the speaker,
+// kept for a couple of seconds so the capture side can fetch the stretch that lines up with each
+// mic frame. One receiver writes (its playout task), one sender reads; share an instance between
+// the two configs (StreamConfig.setEchoReference). Writes at another rate are resampled.
+public class EchoReference {
+    private final int sampleRate;
+    private final float[] ring;
+    private final int mask;
+    private volatile long written;          // samples written since creation
+    private volatile int playoutQueued;     // of those, still waiting in the speaker device
+
+    // Writer-side conversion, rebuilt only when the playout rate changes
+    private Resampler resampler;
+    private short[] converted, deviceSamples;
+
+    public EchoReference(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.ring = new float[Integer.highestOneBit(sampleRate) * 4];   // 2-4 s
+        this.mask = ring.length - 1;
+    }
+
+    public int getSampleRate() { return sampleRate; }
+
+    // Playout thread: 'samples' of 16-bit little-endian PCM at 'rate', just queued to the speaker,
+    // which now holds 'queued' samples (these included) that have not been played yet
+    public void write(byte[] pcm, int off, int samples, int rate, int queued) {
+        playoutQueued = (int) ((long) queued * sampleRate / rate);
+        long at = written;
+        if (rate == sampleRate) {
+            for (int i = 0, j = off; i < samples; i++, j += 2) {
+                ring[(int) (at + i) & mask] = (short) ((pcm[j + 1] << 8) | (pcm[j] & 0xFF));
+            }
+            written = at + samples;
+            return;
+        }
+        if (resampler == null || resampler.getInRate() != rate || deviceSamples.length < samples) {
+            resampler = new Resampler(rate, sampleRate);
+            deviceSamples = new short[samples];
+            converted = new short[resampler.outputFor(samples) + 2];
+        }
+        for (int i = 0, j = off; i < samples; i++, j += 2) deviceSamples[i] = (short) ((pcm[j + 1] << 8) | (pcm[j] & 0xFF));
+        int n = resampler.process(deviceSamples, samples, converted);
+        for (int i = 0; i < n; i++) ring[(int) (at + i) & mask] = converted[i];
+        written = at + n;
+    }
+
+    // Capture thread: the 'count' samples that were playing when the mic took a frame that has
+    // waited 'captureQueued' samples in the capture device, oldest first; zeros for anything not
+    // written yet (or overwritten since). Errs a few ms early: the canceller can model a later echo
+    // but not one that arrives before its reference.
+    public void read(float[] out, int count, int captureQueued) {
+        long end = written - playoutQueued - captureQueued + sampleRate / 200;
+        end = Math.min(end, written);
+        long oldest = written - ring.length;
+        for (int i = 0; i < count; i++) {
+            long at = end - count + i;
+            out[i] = at < 0 || at < oldest ? 0 : ring[(int) at & mask];
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// 🏁 One-to-many send benchmark: CPU per 20 ms frame to reach N receivers by
+//   fan-out      encode once, send the same buffer to N unicast destinations (AudioStreamSender)
+//   N senders    what paging cost before: N senders each converting the mic bytes, running VAD,
+//                encoding and sending their own copy (device reads and thread wakeups not counted)
+//   multicast    encode once, one send to a group that N local receivers have joined
+// CPU is the sending thread's (user + kernel), so the socket syscalls are included. 'delivered' is
+// the share of copies the receivers got; frames go out flat out, far faster than 50/s, so the
+// kernel may drop some (multicast loopback especially) without that costing the sender anything.
+//   java FanOutBenchmark [frames-per-case] [destination counts, e.g. 1,2,4,8,16,32,64] [group]
+public class FanOutBenchmark {
+    private static final int FRAME = 160;      // 20 ms at 8 kHz
+
+    public static void main(String[] args) throws Exception {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String[] counts = (args.length > 1 ? args[1] : "1,2,4,8,16,32,64").split(",");
+        InetAddress group = InetAddress.getByName(args.length > 2 ? args[2] : "239.255.50.5");
+
+        // Little-endian mic bytes, as a capture line delivers them
+        byte[] pcm = new byte[FRAME * 2];
+        Random random = new Random(3);
+        for (int i = 0; i < FRAME; i++) {
+            short sample = (short) (random.nextGaussian() * 4000);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+
+        System.out.println(frames + " frames per case, 8 kHz / 20 ms µ-law, loopback destinations");
+        System.out.printf("%-11s %6s %12s %10s %16s %10s%n", "mode", "dests", "us/frame", "us/dest", "+us/extra dest", "delivered");
+        for (String mode : new String[] { "fan-out", "N senders", "multicast" }) {
+            double base = Double.NaN;
+            for (String count : counts) {
+                int n = Integer.parseInt(count.trim());
+                double[] result;
+                try {
+                    result = run(mode, n, frames, pcm, group);
+                } catch (IOException e) {
+                    System.out.printf("%-11s %6d   skipped: %s%n", mode, n, e.getMessage());
+                    break;
+                }
+                double micros = result[0];
+                if (n == 1) base = micros;
+                System.out.printf("%-11s %6d %12.2f %10.2f %16s %9.1f%%%n", mode, n, micros, micros / n,
+                        n == 1 || Double.isNaN(base) ? "-" : String.format("%.2f", (micros - base) / (n - 1)), 100 * result[1]);
+            }
+        }
+    }
+
+    // { CPU microseconds per frame, share of datagram copies delivered }
+    private static double[] run(String mode, int n, int frames, byte[] pcm, InetAddress group) throws Exception {
+        boolean multicast = mode.equals("multicast");
+        UdpTransport[] sinks = new UdpTransport[n];
+        SocketAddress[] targets;
+        UdpTransport[] senders = new UdpTransport[mode.equals("N senders") ? n : 1];
+        try {
+            if (multicast) {
+                NetworkInterface nif = UdpTransport.multicastInterface(null, group);
+                int port = 0;
+                for (int i = 0; i < n; i++) {
+                    sinks[i] = UdpTransport.bindMulticast(port, group, nif);
+                    port = sinks[i].getLocalPort();     // everyone shares the first one's port
+                }
+                targets = new SocketAddress[] { new InetSocketAddress(group, port) };
+                senders[0] = UdpTransport.open();
+                senders[0].setMulticastOptions(1, nif);
+            } else {
+                targets = new SocketAddress[n];
+                for (int i = 0; i < n; i++) {
+                    sinks[i] = UdpTransport.bind(0);
+                    targets[i] = new InetSocketAddress(InetAddress.getLoopbackAddress(), sinks[i].getLocalPort());
+                }
+                for (int i = 0; i < senders.length; i++) senders[i] = UdpTransport.open();
+            }
+            ByteBuffer packet = ByteBuffer.allocateDirect(RtpHeader.SIZE + FRAME);
+            short[] frame = new short[FRAME];
+            VoiceActivityDetector[] vads = new VoiceActivityDetector[senders.length];
+            for (int i = 0; i < vads.length; i++) vads[i] = new VoiceActivityDetector(20);
+            SocketAddress[][] single = new SocketAddress[n][];
+            for (int i = 0; i < n && !multicast; i++) single[i] = new SocketAddress[] { targets[i] };
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            int warmup = Math.min(2000, frames / 4);
+            long cpuStart = 0;
+            int delivered = 0;
+            for (int f = -warmup; f < frames; f++) {
+                if (f == 0) cpuStart = threads.getCurrentThreadCpuTime();
+                if (mode.equals("N senders")) {
+                    for (int i = 0; i < n; i++) {
+                        encode(packet, pcm, frame, vads[i], f);
+                        senders[i].sendAll(packet, single[i]);
+                    }
+                } else {
+                    encode(packet, pcm, frame, vads[0], f);
+                    senders[0].sendAll(packet, targets);
+                }
+                // Keep the receive queues short so the kernel is not dropping for us; untimed
+                if ((f & 15) == 15) {
+                    long cpu = threads.getCurrentThreadCpuTime();
+                    for (UdpTransport sink : sinks) delivered += sink.drain((d, from, at) -> { }, Integer.MAX_VALUE);
+                    cpuStart += threads.getCurrentThreadCpuTime() - cpu;
+                }
+            }
+            long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+            Thread.sleep(20);
+            for (UdpTransport sink : sinks) delivered += sink.drain((d, from, at) -> { }, Integer.MAX_VALUE);
+            return new double[] { cpu / 1000.0 / frames, (double) delivered / ((long) n * (frames + warmup)) };
+        } finally {
+            for (UdpTransport s : senders) if (s != null) s.close();
+            for (UdpTransport s : sinks) if (s != null) s.close();
+        }
+    }
+
+    // The per-frame work of one sender from mic bytes to a sealed datagram
+    private static void encode(ByteBuffer packet, byte[] pcm, short[] frame, VoiceActivityDetector vad, int number) {
+        for (int i = 0, j = 0; i < FRAME; i++, j += 2) frame[i] = (short) ((pcm[j + 1] << 8) | (pcm[j] & 0xFF));
+        vad.process(frame, FRAME);
+        packet.clear();
+        RtpHeader.write(packet, 0, RtpHeader.PT_PCMU, false, number & 0xFFFF, number * (long) FRAME, 0x12345678L);
+        packet.position(RtpHeader.SIZE);
+        G711.encodeULaw(frame, 0, packet, FRAME);
+        packet.flip();
+    }
+}
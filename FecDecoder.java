@@ -0,0 +1,249 @@
+import java.nio.ByteBuffer;
+
+// 🛡 Receiver side of FecEncoder: unwraps RFC 2198 redundant packets and rebuilds single losses
+// from XOR parity groups, handing every original and rebuilt packet to a Sink in the form a plain
+// RTP packet would have had. Plain packets pass straight through, so a receiver can always run
+// one; nothing has to be negotiated. Not thread-safe: owned by the receive thread.
+public class FecDecoder {
+    public interface Sink {
+        // 'recovered' packets were rebuilt here, originals arrived as sent
+        void onPacket(int payloadType, int sequence, long timestamp, ByteBuffer data, int off, int len, boolean recovered);
+    }
+
+    private static final int HISTORY = 64;           // power of two, ring indexed by sequence
+    private static final int PENDING_GROUPS = 8;
+
+    private final int maxPayload;
+
+    // Recently seen packets by sequence, only kept once parity packets show up
+    private byte[][] history;
+    private final int[] historySeq = new int[HISTORY];
+    private final boolean[] historyValid = new boolean[HISTORY];
+    // False for packets that went by before the first parity packet: seen, but nothing kept to XOR
+    private final boolean[] historyKept = new boolean[HISTORY];
+    private final int[] historyType = new int[HISTORY];
+    private final long[] historyTimestamp = new long[HISTORY];
+    private final int[] historyLength = new int[HISTORY];
+
+    // Parity groups still missing more than one packet (a late arrival may complete them)
+    private final byte[][] pending = new byte[PENDING_GROUPS][];
+    private final int[] pendingLength = new int[PENDING_GROUPS];
+    private final boolean[] pendingValid = new boolean[PENDING_GROUPS];
+    private int nextPending = 0;
+
+    private final byte[] rebuilt;
+    private final ByteBuffer rebuiltView;
+
+    private int protectionDelayFrames = 0;
+    private long redundantRecovered, parityRecovered, invalidPackets;
+
+    public FecDecoder(int maxPayload) {
+        this.maxPayload = maxPayload;
+        this.rebuilt = new byte[maxPayload];
+        this.rebuiltView = ByteBuffer.wrap(rebuilt);
+    }
+
+    // Handles one parsed datagram. Returns false if it was a malformed RED or parity packet.
+    public boolean process(RtpHeader header, ByteBuffer datagram, int payload, Sink sink) {
+        switch (header.payloadType) {
+            case RtpHeader.PT_RED: return unwrapRedundant(header, datagram, payload, sink);
+            case RtpHeader.PT_PARITY: return addParity(datagram, payload, header.payloadLength, sink);
+            default:
+                deliver(sink, header.payloadType, header.marker, header.sequence, header.timestamp,
+                        datagram, payload, header.payloadLength, false);
+                return true;
+        }
+    }
+
+    // Frames of extra playout delay the sender's protection needs before a loss can be rebuilt
+    public int getProtectionDelayFrames() { return protectionDelayFrames; }
+    public long getRedundantRecovered() { return redundantRecovered; }
+    public long getParityRecovered() { return parityRecovered; }
+    public long getInvalidPackets() { return invalidPackets; }
+
+    // True if 'payload' is an RFC 2198 packet whose primary block has this type and length, so a
+    // receiver can validate a new stream before any state is created for it
+    public static boolean isRedundantFor(ByteBuffer datagram, int payload, int length, int payloadType, int frameLength) {
+        int end = payload + length;
+        int pos = payload, blocks = 0;
+        while (pos < end && (datagram.get(pos) & 0x80) != 0) {
+            if (pos + FecEncoder.RED_BLOCK_HEADER >= end) return false;
+            blocks += ((datagram.get(pos + 2) & 0x03) << 8) | (datagram.get(pos + 3) & 0xFF);
+            pos += FecEncoder.RED_BLOCK_HEADER;
+        }
+        if (pos >= end || (datagram.get(pos) & 0x7F) != payloadType) return false;
+        return end - (pos + 1) - blocks == frameLength;
+    }
+
+    // --- RFC 2198 ---
+
+    private boolean unwrapRedundant(RtpHeader header, ByteBuffer datagram, int payload, Sink sink) {
+        int end = payload + header.payloadLength;
+        int pos = payload;
+        // Block headers first, then the data in the same order; only one redundant level is used
+        // by FecEncoder but any depth is accepted, each block one sequence number further back
+        int blocks = 0;
+        while (pos < end && (datagram.get(pos) & 0x80) != 0 && pos + FecEncoder.RED_BLOCK_HEADER < end) {
+            pos += FecEncoder.RED_BLOCK_HEADER;
+            blocks++;
+        }
+        if (pos >= end || (datagram.get(pos) & 0x80) != 0) {
+            invalidPackets++;
+            return false;
+        }
+        int primaryType = datagram.get(pos) & 0x7F;
+        int data = pos + 1;
+        int blockData = data;
+        for (int b = 0, h = payload; b < blocks; b++, h += FecEncoder.RED_BLOCK_HEADER) {
+            blockData += ((datagram.get(h + 2) & 0x03) << 8) | (datagram.get(h + 3) & 0xFF);
+        }
+        if (blockData > end) {
+            invalidPackets++;
+            return false;
+        }
+
+        deliver(sink, primaryType, header.marker, header.sequence, header.timestamp, datagram, blockData, end - blockData, false);
+        if (blocks > 0 && protectionDelayFrames < 1) protectionDelayFrames = 1;
+
+        for (int b = 0, h = payload; b < blocks; b++, h += FecEncoder.RED_BLOCK_HEADER) {
+            int type = datagram.get(h) & 0x7F;
+            int offset = ((datagram.get(h + 1) & 0xFF) << 6) | ((datagram.get(h + 2) & 0xFF) >> 2);
+            int length = ((datagram.get(h + 2) & 0x03) << 8) | (datagram.get(h + 3) & 0xFF);
+            int sequence = (header.sequence - (blocks - b)) & 0xFFFF;
+            long timestamp = (header.timestamp - offset) & 0xFFFFFFFFL;
+            if (!seen(sequence)) {
+                redundantRecovered++;
+                deliver(sink, type, false, sequence, timestamp, datagram, data, length, true);
+            }
+            data += length;
+        }
+        return true;
+    }
+
+    // --- XOR parity ---
+
+    private boolean addParity(ByteBuffer datagram, int payload, int length, Sink sink) {
+        if (length < FecEncoder.PARITY_HEADER || length - FecEncoder.PARITY_HEADER > maxPayload) {
+            invalidPackets++;
+            return false;
+        }
+        int count = datagram.get(payload + 2) & 0xFF;
+        if (count == 0 || count > HISTORY / 2) {
+            invalidPackets++;
+            return false;
+        }
+        if (history == null) history = new byte[HISTORY][];
+        if (count > protectionDelayFrames) protectionDelayFrames = count;
+
+        int slot = nextPending;
+        nextPending = (nextPending + 1) % PENDING_GROUPS;
+        if (pending[slot] == null || pending[slot].length < length) pending[slot] = new byte[Math.max(length, FecEncoder.PARITY_HEADER + 160)];
+        for (int i = 0; i < length; i++) pending[slot][i] = datagram.get(payload + i);
+        pendingLength[slot] = length;
+        pendingValid[slot] = true;
+        tryRecover(slot, sink);
+        return true;
+    }
+
+    // Rebuilds the group's single missing packet once every other member has been seen
+    private void tryRecover(int slot, Sink sink) {
+        byte[] p = pending[slot];
+        int base = ((p[0] & 0xFF) << 8) | (p[1] & 0xFF);
+        int count = p[2] & 0xFF;
+        int missing = -1;
+        for (int i = 0; i < count; i++) {
+            int sequence = (base + i) & 0xFFFF;
+            if (seen(sequence)) {
+                // A member delivered before parity started: XORing without it would rebuild garbage
+                if (!historyKept[sequence & (HISTORY - 1)]) {
+                    pendingValid[slot] = false;
+                    return;
+                }
+                continue;
+            }
+            if (missing >= 0) return;      // two or more gone: wait for a late packet
+            missing = sequence;
+        }
+        if (missing < 0) {
+            pendingValid[slot] = false;    // nothing lost
+            return;
+        }
+
+        int type = p[3] & 0xFF;
+        long timestamp = ((p[4] & 0xFFL) << 24) | ((p[5] & 0xFFL) << 16) | ((p[6] & 0xFFL) << 8) | (p[7] & 0xFFL);
+        int length = ((p[8] & 0xFF) << 8) | (p[9] & 0xFF);
+        int parityLength = pendingLength[slot] - FecEncoder.PARITY_HEADER;
+        System.arraycopy(p, FecEncoder.PARITY_HEADER, rebuilt, 0, parityLength);
+        for (int i = 0; i < count; i++) {
+            int sequence = (base + i) & 0xFFFF;
+            if (sequence == missing) continue;
+            int h = sequence & (HISTORY - 1);
+            type ^= historyType[h];
+            timestamp ^= historyTimestamp[h];
+            length ^= historyLength[h];
+            byte[] data = history[h];
+            int n = Math.min(historyLength[h], parityLength);
+            for (int j = 0; j < n; j++) rebuilt[j] ^= data[j];
+        }
+        pendingValid[slot] = false;
+        if (length > parityLength) {
+            invalidPackets++;              // inconsistent group, e.g. the sender restarted
+            return;
+        }
+        parityRecovered++;
+        deliver(sink, type & 0x7F, (type & 0x80) != 0, missing, timestamp & 0xFFFFFFFFL, rebuiltView, 0, length, true);
+    }
+
+    // --- Common ---
+
+    private void deliver(Sink sink, int type, boolean marker, int sequence, long timestamp,
+                         ByteBuffer data, int off, int len, boolean recovered) {
+        if (history != null) {
+            record(type, marker, sequence, timestamp, data, off, len);
+            if (!recovered) {
+                // A late member may complete a group that was waiting on it
+                for (int i = 0; i < PENDING_GROUPS; i++) {
+                    if (pendingValid[i] && covers(i, sequence)) {
+                        sink.onPacket(type, sequence, timestamp, data, off, len, false);
+                        tryRecover(i, sink);
+                        return;
+                    }
+                }
+            }
+        } else if (!recovered) {
+            markSeen(sequence);
+        }
+        sink.onPacket(type, sequence, timestamp, data, off, len, recovered);
+    }
+
+    private void record(int type, boolean marker, int sequence, long timestamp, ByteBuffer data, int off, int len) {
+        int h = sequence & (HISTORY - 1);
+        if (history[h] == null || history[h].length < len) history[h] = new byte[Math.max(len, 160)];
+        for (int i = 0; i < len; i++) history[h][i] = data.get(off + i);
+        historySeq[h] = sequence;
+        historyValid[h] = true;
+        historyKept[h] = true;
+        historyType[h] = (marker ? 0x80 : 0) | type;
+        historyTimestamp[h] = timestamp;
+        historyLength[h] = len;
+    }
+
+    private void markSeen(int sequence) {
+        int h = sequence & (HISTORY - 1);
+        historySeq[h] = sequence;
+        historyValid[h] = true;
+        historyKept[h] = false;
+    }
+
+    private boolean seen(int sequence) {
+        int h = sequence & (HISTORY - 1);
+        return historyValid[h] && historySeq[h] == sequence;
+    }
+
+    private boolean covers(int slot, int sequence) {
+        byte[] p = pending[slot];
+        int base = ((p[0] & 0xFF) << 8) | (p[1] & 0xFF);
+        int delta = (sequence - base) & 0xFFFF;
+        return delta < (p[2] & 0xFF);
+    }
+}
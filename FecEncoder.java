@@ -0,0 +1,127 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// 🛡 Sender side of loss protection, so bursts can be repaired without retransmission:
+//  REDUNDANT  RFC 2198: every packet also carries the previous frame, so any single loss is
+//             rebuilt from the next packet. Doubles the payload, costs one frame of playout delay.
+//  PARITY     One XOR parity packet after every N packets (RFC 5109 style, own PT and sequence
+//             space). Rebuilds one loss per group for 1/N extra packets, costs N frames of delay.
+// Frames are encoded straight into the outgoing buffer at payloadOffset(), then seal() writes the
+// headers around them. Not thread-safe: owned by the sender's worker thread.
+public class FecEncoder {
+    public enum Mode { NONE, REDUNDANT, PARITY }
+
+    // Parity payload header: SN base(16) | count(8) | M+PT recovery(8) | TS recovery(32) | length recovery(16) | 0(16)
+    static final int PARITY_HEADER = 12;
+    // RFC 2198 block header: F(1) block PT(7) | timestamp offset(14) | block length(10)
+    static final int RED_BLOCK_HEADER = 4;
+    static final int MAX_RED_BLOCK = 1023;
+
+    private final Mode mode;
+    private final int groupSize;
+
+    // REDUNDANT: the previous media payload, replayed in the next packet
+    private final byte[] previous;
+    private int previousLength = -1;
+    private int previousType;
+    private long previousTimestamp;
+
+    // PARITY: running XOR over the current group
+    private final byte[] parity;
+    private int parityLength, groupCount, groupBase, typeRecovery, lengthRecovery;
+    private long timestampRecovery, groupTimestamp;
+    private int paritySequence = new Random().nextInt(0x10000);
+
+    public FecEncoder(Mode mode, int groupSize, int maxPayload) {
+        this.mode = mode;
+        this.groupSize = groupSize;
+        this.previous = mode == Mode.REDUNDANT ? new byte[Math.min(maxPayload, MAX_RED_BLOCK)] : null;
+        this.parity = mode == Mode.PARITY ? new byte[maxPayload] : null;
+    }
+
+    public Mode getMode() { return mode; }
+
+    // Where the payload of the next packet with this payload type must be written
+    public int payloadOffset(int payloadType) {
+        if (mode != Mode.REDUNDANT || payloadType == RtpHeader.PT_CN) return RtpHeader.SIZE;
+        return previousLength < 0 ? RtpHeader.SIZE + 1 : RtpHeader.SIZE + RED_BLOCK_HEADER + 1 + previousLength;
+    }
+
+    // Writes the RTP (and RED) headers around a payload already at payloadOffset(payloadType) and
+    // folds the packet into the protection state. Returns the datagram length; position is untouched.
+    public int seal(ByteBuffer packet, int payloadType, boolean marker, int sequence, long timestamp, long ssrc, int length) {
+        int offset = payloadOffset(payloadType);
+        if (mode == Mode.PARITY) addToGroup(packet, offset, payloadType, marker, sequence, timestamp, length);
+
+        if (offset == RtpHeader.SIZE) {
+            RtpHeader.write(packet, 0, payloadType, marker, sequence, timestamp, ssrc);
+            // Comfort noise breaks the chain: the next frame has no contiguous predecessor to repeat
+            if (mode == Mode.REDUNDANT) previousLength = -1;
+            return RtpHeader.SIZE + length;
+        }
+
+        int pos = RtpHeader.write(packet, 0, RtpHeader.PT_RED, marker, sequence, timestamp, ssrc);
+        if (previousLength >= 0) {
+            int offsetTicks = (int) ((timestamp - previousTimestamp) & 0x3FFF);
+            packet.put(pos, (byte) (0x80 | previousType));
+            packet.put(pos + 1, (byte) (offsetTicks >> 6));
+            packet.put(pos + 2, (byte) ((offsetTicks << 2) | (previousLength >> 8)));
+            packet.put(pos + 3, (byte) previousLength);
+            pos += RED_BLOCK_HEADER;
+        }
+        packet.put(pos++, (byte) payloadType);
+        for (int i = 0; i < previousLength; i++) packet.put(pos + i, previous[i]);
+
+        // Keep this frame for the next packet, unless it is too long for a RED block
+        if (length <= previous.length) {
+            for (int i = 0; i < length; i++) previous[i] = packet.get(offset + i);
+            previousLength = length;
+            previousType = payloadType;
+            previousTimestamp = timestamp;
+        } else {
+            previousLength = -1;
+        }
+        return offset + length;
+    }
+
+    // True once a full group has been sealed and its parity packet should go out
+    public boolean isParityDue() {
+        return mode == Mode.PARITY && groupCount == groupSize;
+    }
+
+    // Writes the parity packet for the completed group into 'packet' and starts a new group.
+    // Returns the datagram length.
+    public int writeParity(ByteBuffer packet, long ssrc) {
+        int pos = RtpHeader.write(packet, 0, RtpHeader.PT_PARITY, false, paritySequence, groupTimestamp, ssrc);
+        paritySequence = (paritySequence + 1) & 0xFFFF;
+        packet.putShort(pos, (short) groupBase);
+        packet.put(pos + 2, (byte) groupCount);
+        packet.put(pos + 3, (byte) typeRecovery);
+        packet.putInt(pos + 4, (int) timestampRecovery);
+        packet.putShort(pos + 8, (short) lengthRecovery);
+        packet.putShort(pos + 10, (short) 0);
+        pos += PARITY_HEADER;
+        for (int i = 0; i < parityLength; i++) packet.put(pos + i, parity[i]);
+        groupCount = 0;
+        return pos + parityLength;
+    }
+
+    private void addToGroup(ByteBuffer packet, int offset, int payloadType, boolean marker, int sequence, long timestamp, int length) {
+        if (groupCount == 0) {
+            groupBase = sequence;
+            groupTimestamp = timestamp;
+            typeRecovery = 0;
+            timestampRecovery = 0;
+            lengthRecovery = 0;
+            parityLength = 0;
+        }
+        typeRecovery ^= (marker ? 0x80 : 0) | payloadType;
+        timestampRecovery ^= timestamp;
+        lengthRecovery ^= length;
+        // Shorter payloads are implicitly zero-padded to the longest in the group
+        for (int i = parityLength; i < length; i++) parity[i] = 0;
+        if (length > parityLength) parityLength = length;
+        for (int i = 0; i < length; i++) parity[i] ^= packet.get(offset + i);
+        groupCount++;
+    }
+}
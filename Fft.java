@@ -0,0 +1,65 @@
+// 🌀 In-place radix-2 complex FFT on float arrays, for the capture DSP. Twiddle factors and the
+// bit-reversal permutation are computed once per size, so transforms allocate nothing. Holds no
+// state between calls, so one instance may serve several streams.
+public final class Fft {
+    private final int size;
+    private final int[] reverse;
+    private final float[] cos, sin;
+
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        this.size = size;
+        this.reverse = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) reverse[i] = Integer.reverse(i) >>> (32 - bits);
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            cos[i] = (float) Math.cos(2 * Math.PI * i / size);
+            sin[i] = (float) -Math.sin(2 * Math.PI * i / size);
+        }
+    }
+
+    public int size() { return size; }
+
+    // X[k] = sum x[n] e^(-2 pi i k n / size)
+    public void forward(float[] re, float[] im) {
+        transform(re, im);
+    }
+
+    // Inverse of forward(), including the 1/size scaling
+    public void inverse(float[] re, float[] im) {
+        for (int i = 0; i < size; i++) im[i] = -im[i];
+        transform(re, im);
+        float scale = 1f / size;
+        for (int i = 0; i < size; i++) {
+            re[i] *= scale;
+            im[i] *= -scale;
+        }
+    }
+
+    private void transform(float[] re, float[] im) {
+        for (int i = 0; i < size; i++) {
+            int j = reverse[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int half = 1; half < size; half <<= 1) {
+            int stride = size / (2 * half);
+            for (int start = 0; start < size; start += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * stride], wi = sin[k * stride];
+                    int a = start + k, b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
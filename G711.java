@@ -0,0 +1,193 @@
+import java.nio.ByteBuffer;
+
+// 🧮 Table-driven G.711 codec (µ-law and A-law) with bulk, allocation-free frame APIs.
+// PCM byte arrays are 16-bit signed little-endian, the format both audio lines use.
+public final class G711 {
+    private G711() {}
+
+    // Encode tables are indexed by the raw 16-bit sample (µ-law) or sample >> 3 (A-law, 13-bit)
+    private static final byte[] ULAW_ENCODE = new byte[65536];
+    private static final short[] ULAW_DECODE = new short[256];
+    private static final byte[] ALAW_ENCODE = new byte[8192];
+    private static final short[] ALAW_DECODE = new short[256];
+
+    static {
+        for (int i = 0; i < 65536; i++) ULAW_ENCODE[i] = linearToULawReference((short) i);
+        for (int i = 0; i < 256; i++) ULAW_DECODE[i] = uLawToLinearReference((byte) i);
+        for (int i = 0; i < 8192; i++) ALAW_ENCODE[i] = linearToALawReference((short) (i << 3));
+        for (int i = 0; i < 256; i++) ALAW_DECODE[i] = aLawToLinearReference((byte) i);
+    }
+
+    // --- Single sample ---
+
+    public static byte linearToULaw(short sample) { return ULAW_ENCODE[sample & 0xFFFF]; }
+    public static short uLawToLinear(byte ulaw) { return ULAW_DECODE[ulaw & 0xFF]; }
+    public static byte linearToALaw(short sample) { return ALAW_ENCODE[(sample & 0xFFFF) >> 3]; }
+    public static short aLawToLinear(byte alaw) { return ALAW_DECODE[alaw & 0xFF]; }
+
+    // --- µ-law frames ---
+
+    public static void encodeULaw(short[] pcm, int pcmOff, byte[] dst, int dstOff, int samples) {
+        final byte[] table = ULAW_ENCODE;
+        for (int i = 0; i < samples; i++) dst[dstOff + i] = table[pcm[pcmOff + i] & 0xFFFF];
+    }
+
+    // Encodes little-endian PCM bytes straight from the capture buffer
+    public static void encodeULaw(byte[] pcm, int pcmOff, byte[] dst, int dstOff, int samples) {
+        final byte[] table = ULAW_ENCODE;
+        for (int i = 0, j = pcmOff; i < samples; i++, j += 2) {
+            dst[dstOff + i] = table[((pcm[j + 1] & 0xFF) << 8) | (pcm[j] & 0xFF)];
+        }
+    }
+
+    // Encodes 'samples' little-endian samples from pcm's position into dst's position, advancing both
+    public static void encodeULaw(ByteBuffer pcm, ByteBuffer dst, int samples) {
+        encode(ULAW_ENCODE, 0, pcm, dst, samples);
+    }
+
+    // Encodes samples into dst at its position, advancing it
+    public static void encodeULaw(short[] pcm, int pcmOff, ByteBuffer dst, int samples) {
+        final byte[] table = ULAW_ENCODE;
+        int d = dst.position();
+        for (int i = 0; i < samples; i++) dst.put(d + i, table[pcm[pcmOff + i] & 0xFFFF]);
+        dst.position(d + samples);
+    }
+
+    public static void decodeULaw(byte[] src, int srcOff, short[] pcm, int pcmOff, int samples) {
+        final short[] table = ULAW_DECODE;
+        for (int i = 0; i < samples; i++) pcm[pcmOff + i] = table[src[srcOff + i] & 0xFF];
+    }
+
+    // Decodes into little-endian PCM bytes ready for SourceDataLine.write
+    public static void decodeULaw(byte[] src, int srcOff, byte[] pcm, int pcmOff, int samples) {
+        final short[] table = ULAW_DECODE;
+        for (int i = 0, j = pcmOff; i < samples; i++, j += 2) {
+            short s = table[src[srcOff + i] & 0xFF];
+            pcm[j] = (byte) s;
+            pcm[j + 1] = (byte) (s >> 8);
+        }
+    }
+
+    public static void decodeULaw(ByteBuffer src, ByteBuffer pcm, int samples) {
+        decode(ULAW_DECODE, src, pcm, samples);
+    }
+
+    // --- A-law frames ---
+
+    public static void encodeALaw(short[] pcm, int pcmOff, byte[] dst, int dstOff, int samples) {
+        final byte[] table = ALAW_ENCODE;
+        for (int i = 0; i < samples; i++) dst[dstOff + i] = table[(pcm[pcmOff + i] & 0xFFFF) >> 3];
+    }
+
+    public static void encodeALaw(byte[] pcm, int pcmOff, byte[] dst, int dstOff, int samples) {
+        final byte[] table = ALAW_ENCODE;
+        for (int i = 0, j = pcmOff; i < samples; i++, j += 2) {
+            dst[dstOff + i] = table[(((pcm[j + 1] & 0xFF) << 8) | (pcm[j] & 0xFF)) >> 3];
+        }
+    }
+
+    public static void encodeALaw(ByteBuffer pcm, ByteBuffer dst, int samples) {
+        encode(ALAW_ENCODE, 3, pcm, dst, samples);
+    }
+
+    public static void decodeALaw(byte[] src, int srcOff, short[] pcm, int pcmOff, int samples) {
+        final short[] table = ALAW_DECODE;
+        for (int i = 0; i < samples; i++) pcm[pcmOff + i] = table[src[srcOff + i] & 0xFF];
+    }
+
+    public static void decodeALaw(byte[] src, int srcOff, byte[] pcm, int pcmOff, int samples) {
+        final short[] table = ALAW_DECODE;
+        for (int i = 0, j = pcmOff; i < samples; i++, j += 2) {
+            short s = table[src[srcOff + i] & 0xFF];
+            pcm[j] = (byte) s;
+            pcm[j + 1] = (byte) (s >> 8);
+        }
+    }
+
+    public static void decodeALaw(ByteBuffer src, ByteBuffer pcm, int samples) {
+        decode(ALAW_DECODE, src, pcm, samples);
+    }
+
+    // --- ByteBuffer helpers (absolute indexing, byte order independent) ---
+
+    private static void encode(byte[] table, int shift, ByteBuffer pcm, ByteBuffer dst, int samples) {
+        int p = pcm.position(), d = dst.position();
+        for (int i = 0; i < samples; i++, p += 2) {
+            int sample = ((pcm.get(p + 1) & 0xFF) << 8) | (pcm.get(p) & 0xFF);
+            dst.put(d + i, table[sample >> shift]);
+        }
+        pcm.position(p);
+        dst.position(d + samples);
+    }
+
+    private static void decode(short[] table, ByteBuffer src, ByteBuffer pcm, int samples) {
+        int s = src.position(), p = pcm.position();
+        for (int i = 0; i < samples; i++, p += 2) {
+            short v = table[src.get(s + i) & 0xFF];
+            pcm.put(p, (byte) v);
+            pcm.put(p + 1, (byte) (v >> 8));
+        }
+        src.position(s + samples);
+        pcm.position(p);
+    }
+
+    // --- Reference per-sample implementations, used to build the tables ---
+
+    // µ-Law encoder (ITU-T G.711, 16-bit linear input). The pair first shipped in AudioSenderUI and
+    // AudioReceiver was not G.711 and could not interwork with other endpoints; G711Benchmark keeps
+    // it to show the difference, and checks these against the ITU tables.
+    private static final int BIAS = 0x84, CLIP = 32635;
+    static byte linearToULawReference(short pcm) {
+        int sample = pcm;
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) sample = -sample;
+        if (sample > CLIP) sample = CLIP;
+        sample += BIAS;
+
+        int exponent = 7;
+        for (int expMask = 0x4000; (sample & expMask) == 0 && exponent > 0; exponent--, expMask >>= 1);
+        int mantissa = (sample >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    // µ-Law decoder (ITU-T G.711)
+    static short uLawToLinearReference(byte ulaw) {
+        ulaw = (byte) ~ulaw;
+        int sign = ulaw & 0x80;
+        int exponent = (ulaw & 0x70) >> 4;
+        int mantissa = ulaw & 0x0F;
+        int sample = (((mantissa << 3) + BIAS) << exponent) - BIAS;
+        return (short) ((sign != 0) ? -sample : sample);
+    }
+
+    // A-Law encoder (ITU-T G.711), operates on the top 13 bits of the sample
+    static byte linearToALawReference(short sample) {
+        int pcm = sample >> 3;
+        int mask;
+        if (pcm >= 0) {
+            mask = 0xD5; // sign bit set, even bits inverted
+        } else {
+            mask = 0x55;
+            pcm = -pcm - 1;
+        }
+        int seg = 0;
+        for (int limit = 0x1F; seg < 8 && pcm > limit; seg++, limit = (limit << 1) | 1);
+        if (seg >= 8) return (byte) (0x7F ^ mask);
+        int aval = seg << 4;
+        aval |= (seg < 2) ? (pcm >> 1) & 0x0F : (pcm >> seg) & 0x0F;
+        return (byte) (aval ^ mask);
+    }
+
+    // A-Law decoder (ITU-T G.711)
+    static short aLawToLinearReference(byte alaw) {
+        int a = (alaw ^ 0x55) & 0xFF;
+        int t = (a & 0x0F) << 4;
+        int seg = (a & 0x70) >> 4;
+        switch (seg) {
+            case 0: t += 8; break;
+            case 1: t += 0x108; break;
+            default: t += 0x108; t <<= seg - 1;
+        }
+        return (short) ((a & 0x80) != 0 ? t : -t);
+    }
+}
@@ -0,0 +1,298 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+// 🏁 Codec micro-benchmark: per-sample reference methods vs. the table-driven bulk G711 API.
+// Checks known answers from the ITU-T G.711 tables and bit-exactness first, reports what the
+// µ-law correction changed against the routines first shipped, then samples/sec and bytes
+// allocated per frame.
+//   java G711Benchmark [seconds-per-case]
+public class G711Benchmark {
+    private static final int FRAME = 320;      // samples per 40 ms frame at 8 kHz
+    private static final int FRAMES = 1024;    // working set, so the data is not a single cached frame
+    private static final int OFF = 3;          // where bulk calls start in the bit-exact checks
+
+    private static volatile int sink;          // defeats dead-code elimination
+
+    // ITU-T G.711 decoder outputs at the start of each segment and at full scale (Table 2a µ-law,
+    // Table 1a A-law), scaled to 16 bits: µ-law x4 from 14 bits, A-law x8 from 13. Codes are as
+    // sent on the line, after the bit inversions. { code, linear }
+    private static final int[][] ULAW_KNOWN = {
+        { 0xFF, 0 }, { 0xFE, 8 }, { 0xEF, 132 }, { 0xDF, 396 }, { 0xCF, 924 }, { 0xBF, 1980 },
+        { 0xAF, 4092 }, { 0x9F, 8316 }, { 0x8F, 16764 }, { 0x80, 32124 },
+        { 0x7E, -8 }, { 0x6F, -132 }, { 0x0F, -16764 }, { 0x00, -32124 },
+    };
+    private static final int[][] ALAW_KNOWN = {
+        { 0xD5, 8 }, { 0xC5, 264 }, { 0xF5, 528 }, { 0xE5, 1056 }, { 0x95, 2112 }, { 0x85, 4224 },
+        { 0xB5, 8448 }, { 0xA5, 16896 }, { 0xAA, 32256 },
+        { 0x55, -8 }, { 0x45, -264 }, { 0x25, -16896 }, { 0x2A, -32256 },
+    };
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2.0;
+
+        if (!verifyKnownAnswers()) {
+            System.err.println("❌ G.711 does NOT match the ITU-T known answers");
+            System.exit(1);
+        }
+        System.out.printf("✅ ITU-T known answers: %d µ-law and %d A-law codes, both directions%n", ULAW_KNOWN.length, ALAW_KNOWN.length);
+        if (!verifyBitExact()) {
+            System.err.println("❌ Table codec is NOT bit-exact with the reference implementation");
+            System.exit(1);
+        }
+        System.out.println("✅ Bit-exact: all 65536 inputs and 256 codes, µ-law and A-law, scalar and every bulk overload; round trip");
+        reportBaseline();
+
+        Random random = new Random(42);
+        byte[] pcm = new byte[FRAMES * FRAME * 2];
+        short[] pcmShorts = new short[FRAMES * FRAME];
+        for (int i = 0; i < pcmShorts.length; i++) {
+            short s = (short) (random.nextGaussian() * 6000);
+            pcmShorts[i] = s;
+            pcm[2 * i] = (byte) s;
+            pcm[2 * i + 1] = (byte) (s >> 8);
+        }
+        byte[] ulaw = new byte[FRAMES * FRAME];
+        G711.encodeULaw(pcm, 0, ulaw, 0, ulaw.length);
+        byte[] pcmOut = new byte[pcm.length];
+        ByteBuffer directPcm = ByteBuffer.allocateDirect(FRAME * 2);
+        ByteBuffer directUlaw = ByteBuffer.allocateDirect(FRAME);
+
+        System.out.printf("%-32s %14s %12s%n", "case", "Msamples/s", "B/frame");
+        run("encode µ-law, reference", seconds, f -> {
+            int base = f * FRAME;
+            for (int i = 0, j = base * 2; i < FRAME; i++, j += 2) {
+                short sample = (short) ((pcm[j + 1] << 8) | (pcm[j] & 0xFF));
+                ulaw[base + i] = G711.linearToULawReference(sample);
+            }
+        });
+        run("encode µ-law, table byte[]", seconds, f -> G711.encodeULaw(pcm, f * FRAME * 2, ulaw, f * FRAME, FRAME));
+        run("encode µ-law, table short[]", seconds, f -> G711.encodeULaw(pcmShorts, f * FRAME, ulaw, f * FRAME, FRAME));
+        run("encode µ-law, table direct", seconds, f -> {
+            directPcm.clear();
+            directPcm.put(pcm, f * FRAME * 2, FRAME * 2).flip();
+            directUlaw.clear();
+            G711.encodeULaw(directPcm, directUlaw, FRAME);
+        });
+        run("encode A-law, table byte[]", seconds, f -> G711.encodeALaw(pcm, f * FRAME * 2, ulaw, f * FRAME, FRAME));
+        run("decode µ-law, reference", seconds, f -> {
+            int base = f * FRAME;
+            for (int i = 0, j = base * 2; i < FRAME; i++, j += 2) {
+                short s = G711.uLawToLinearReference(ulaw[base + i]);
+                pcmOut[j] = (byte) s;
+                pcmOut[j + 1] = (byte) (s >> 8);
+            }
+        });
+        run("decode µ-law, table byte[]", seconds, f -> G711.decodeULaw(ulaw, f * FRAME, pcmOut, f * FRAME * 2, FRAME));
+        run("decode µ-law, table short[]", seconds, f -> G711.decodeULaw(ulaw, f * FRAME, pcmShorts, f * FRAME, FRAME));
+        run("decode A-law, table byte[]", seconds, f -> G711.decodeALaw(ulaw, f * FRAME, pcmOut, f * FRAME * 2, FRAME));
+    }
+
+    private interface FrameOp {
+        void run(int frame);
+    }
+
+    private static void run(String name, double seconds, FrameOp op) {
+        // Warm-up so the JIT has compiled the loop before measuring
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.5e9);
+        int f = 0;
+        while (System.nanoTime() < warmupEnd) {
+            op.run(f);
+            f = (f + 1) % FRAMES;
+        }
+
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long frames = 0;
+        while (true) {
+            for (int i = 0; i < 256; i++) {
+                op.run(f);
+                f = (f + 1) % FRAMES;
+            }
+            frames += 256;
+            if (System.nanoTime() >= end) break;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocBefore;
+        sink += f;
+
+        double samplesPerSec = frames * FRAME / (elapsed / 1e9);
+        System.out.printf("%-32s %14.1f %12.3f%n", name, samplesPerSec / 1e6, allocated < 0 ? Double.NaN : (double) allocated / frames);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // Both the table codec and the per-sample reference must give the ITU values, decoding each
+    // code and encoding each value back to it
+    private static boolean verifyKnownAnswers() {
+        for (int[] known : ULAW_KNOWN) {
+            byte code = (byte) known[0];
+            short linear = (short) known[1];
+            if (G711.uLawToLinear(code) != linear || G711.uLawToLinearReference(code) != linear) return false;
+            if (G711.linearToULaw(linear) != code || G711.linearToULawReference(linear) != code) return false;
+        }
+        for (int[] known : ALAW_KNOWN) {
+            byte code = (byte) known[0];
+            short linear = (short) known[1];
+            if (G711.aLawToLinear(code) != linear || G711.aLawToLinearReference(code) != linear) return false;
+            if (G711.linearToALaw(linear) != code || G711.linearToALawReference(linear) != code) return false;
+        }
+        return true;
+    }
+
+    // How far the ITU µ-law is from what the first release put on the wire: peers still running it
+    // decode this codec's packets (and it theirs) into the wrong levels
+    private static void reportBaseline() {
+        int encodes = 0, decodes = 0;
+        for (int i = 0; i < 65536; i++) {
+            if (G711.linearToULaw((short) i) != linearToULawBaseline((short) i)) encodes++;
+        }
+        for (int i = 0; i < 256; i++) {
+            if (G711.uLawToLinear((byte) i) != uLawToLinearBaseline((byte) i)) decodes++;
+        }
+        byte code = G711.linearToULaw((short) 8000);
+        System.out.printf("⚠ Against the µ-law first shipped: %d of 65536 inputs encode and %d of 256 codes decode differently;%n"
+                + "  8000 is sent as 0x%02X, which this codec plays as %d and the first release as %d%n",
+                encodes, decodes, code & 0xFF, G711.uLawToLinear(code), uLawToLinearBaseline(code));
+    }
+
+    // µ-law encoder as originally shipped in AudioSenderUI: exponent 0 shifted by 4 instead of 3
+    private static byte linearToULawBaseline(short sample) {
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) sample = (short) -sample;
+        if (sample > 32635) sample = 32635;
+        sample += 0x84;
+
+        int exponent = 7;
+        for (int expMask = 0x4000; (sample & expMask) == 0 && exponent > 0; exponent--, expMask >>= 1);
+        int mantissa = (sample >> ((exponent == 0) ? 4 : (exponent + 3))) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    // µ-law decoder as originally shipped in AudioReceiver: the mantissa lands 16x too high and
+    // loud codes wrap around 16 bits
+    private static short uLawToLinearBaseline(byte ulaw) {
+        ulaw = (byte) ~ulaw;
+        int sign = ulaw & 0x80;
+        int exponent = (ulaw & 0x70) >> 4;
+        int mantissa = ulaw & 0x0F;
+        int sample = (((mantissa << 4) + 0x08) << (exponent + 3)) - 0x84;
+        return (short) ((sign != 0) ? -sample : sample);
+    }
+
+    // Every input and every code, through the scalar methods and each bulk overload, against the
+    // per-sample reference. Bulk calls start at an offset (arrays) or position (buffers) so a path
+    // that ignores it is caught, and must leave buffer positions just past what they consumed.
+    private static boolean verifyBitExact() {
+        short[] samples = new short[65536];
+        byte[] pcm = new byte[OFF + 2 * samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) i;
+            pcm[OFF + 2 * i] = (byte) i;
+            pcm[OFF + 2 * i + 1] = (byte) (i >> 8);
+        }
+        byte[] codes = new byte[OFF + 256];
+        for (int i = 0; i < 256; i++) codes[OFF + i] = (byte) i;
+        if (!verifyLaw(true, samples, pcm, codes) || !verifyLaw(false, samples, pcm, codes)) return false;
+
+        for (int i = 0; i < 256; i++) {
+            // Every code must survive decode -> encode unchanged (µ-law 0x7F is "negative zero")
+            if (i != 0x7F && G711.linearToULaw(G711.uLawToLinear((byte) i)) != (byte) i) return false;
+            if (G711.linearToALaw(G711.aLawToLinear((byte) i)) != (byte) i) return false;
+        }
+        return true;
+    }
+
+    private static boolean verifyLaw(boolean ulaw, short[] samples, byte[] pcm, byte[] codes) {
+        int n = samples.length;
+        byte[] encoded = new byte[n];
+        for (int i = 0; i < n; i++) {
+            short s = samples[i];
+            encoded[i] = ulaw ? G711.linearToULawReference(s) : G711.linearToALawReference(s);
+            if ((ulaw ? G711.linearToULaw(s) : G711.linearToALaw(s)) != encoded[i]) return false;
+        }
+        short[] decoded = new short[256];
+        for (int i = 0; i < 256; i++) {
+            byte c = (byte) i;
+            decoded[i] = ulaw ? G711.uLawToLinearReference(c) : G711.aLawToLinearReference(c);
+            if ((ulaw ? G711.uLawToLinear(c) : G711.aLawToLinear(c)) != decoded[i]) return false;
+        }
+
+        // Encode: short[] and little-endian byte[] into byte[]
+        byte[] out = new byte[OFF + n];
+        short[] shifted = new short[OFF + n];
+        System.arraycopy(samples, 0, shifted, OFF, n);
+        if (ulaw) G711.encodeULaw(shifted, OFF, out, OFF, n);
+        else G711.encodeALaw(shifted, OFF, out, OFF, n);
+        if (!same(encoded, out, OFF)) return false;
+        out = new byte[OFF + n];
+        if (ulaw) G711.encodeULaw(pcm, OFF, out, OFF, n);
+        else G711.encodeALaw(pcm, OFF, out, OFF, n);
+        if (!same(encoded, out, OFF)) return false;
+
+        // Encode: ByteBuffer into ByteBuffer (heap and direct), and µ-law's short[] into ByteBuffer
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer src = buffer(direct, pcm.length), dst = buffer(direct, OFF + n);
+            src.put(pcm).position(OFF);
+            dst.position(OFF);
+            if (ulaw) G711.encodeULaw(src, dst, n);
+            else G711.encodeALaw(src, dst, n);
+            if (src.position() != pcm.length || !same(encoded, dst, OFF)) return false;
+            if (ulaw) {
+                dst = buffer(direct, OFF + n);
+                dst.position(OFF);
+                G711.encodeULaw(shifted, OFF, dst, n);
+                if (!same(encoded, dst, OFF)) return false;
+            }
+        }
+
+        // Decode: byte[] into short[] and into little-endian byte[]
+        short[] pcmOut = new short[OFF + 256];
+        if (ulaw) G711.decodeULaw(codes, OFF, pcmOut, OFF, 256);
+        else G711.decodeALaw(codes, OFF, pcmOut, OFF, 256);
+        for (int i = 0; i < 256; i++) if (pcmOut[OFF + i] != decoded[i]) return false;
+        byte[] bytesOut = new byte[OFF + 512];
+        if (ulaw) G711.decodeULaw(codes, OFF, bytesOut, OFF, 256);
+        else G711.decodeALaw(codes, OFF, bytesOut, OFF, 256);
+        for (int i = 0; i < 256; i++) {
+            if ((short) ((bytesOut[OFF + 2 * i + 1] << 8) | (bytesOut[OFF + 2 * i] & 0xFF)) != decoded[i]) return false;
+        }
+
+        // Decode: ByteBuffer into ByteBuffer (heap and direct)
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer src = buffer(direct, codes.length), dst = buffer(direct, OFF + 512);
+            src.put(codes).position(OFF);
+            dst.position(OFF);
+            if (ulaw) G711.decodeULaw(src, dst, 256);
+            else G711.decodeALaw(src, dst, 256);
+            if (src.position() != codes.length || dst.position() != OFF + 512) return false;
+            for (int i = 0; i < 256; i++) {
+                if ((short) ((dst.get(OFF + 2 * i + 1) << 8) | (dst.get(OFF + 2 * i) & 0xFF)) != decoded[i]) return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer buffer(boolean direct, int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static boolean same(byte[] expected, byte[] actual, int off) {
+        for (int i = 0; i < expected.length; i++) if (actual[off + i] != expected[i]) return false;
+        return true;
+    }
+
+    // Also checks dst's position was advanced past exactly what was written
+    private static boolean same(byte[] expected, ByteBuffer actual, int off) {
+        if (actual.position() != off + expected.length) return false;
+        for (int i = 0; i < expected.length; i++) if (actual.get(off + i) != expected[i]) return false;
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+import java.nio.ByteBuffer;
+
+// 🎛 µ-law behind the codec SPI: the table-driven G711 frame methods, one byte per sample (64
+// kbit/s at 8 kHz). Stateless, so a lost packet never affects the next one.
+public class G711Codec implements AudioCodec {
+    private final int payloadType;
+    private final int clockRate;
+
+    public G711Codec(int payloadType, int clockRate) {
+        this.payloadType = payloadType;
+        this.clockRate = clockRate;
+    }
+
+    @Override public String getName() { return PCMU; }
+    @Override public int getPayloadType() { return payloadType; }
+    @Override public int getClockRate() { return clockRate; }
+    @Override public int getPayloadBytes(int samples) { return samples; }
+    @Override public int getSamples(int bytes) { return bytes; }
+
+    @Override
+    public void encode(short[] pcm, int pcmOff, int samples, ByteBuffer dst) {
+        G711.encodeULaw(pcm, pcmOff, dst, samples);
+    }
+
+    @Override
+    public int decode(byte[] src, int srcOff, int bytes, short[] pcm, int pcmOff) {
+        G711.decodeULaw(src, srcOff, pcm, pcmOff, bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() { return PCMU + "/" + clockRate; }
+}
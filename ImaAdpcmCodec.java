@@ -0,0 +1,114 @@
+import java.nio.ByteBuffer;
+
+// 🎛 IMA ADPCM as RTP DVI4 (RFC 3551 §4.5.1): 4 bits per sample, so half the bandwidth of µ-law
+// at any rate. At 16 kHz that is wideband audio at the 64 kbit/s narrowband µ-law costs.
+// Each payload starts with a 4-byte header: the predictor (16-bit big-endian) and step index the
+// encoder had before the first sample, then a reserved zero byte. Samples follow two per byte,
+// first sample in the high nibble. The header makes every packet decodable on its own, so loss
+// never desynchronises the decoder; the encoder's state carries across packets.
+public class ImaAdpcmCodec implements AudioCodec {
+    public static final int HEADER = 4;
+
+    private static final int[] STEP = {
+        7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+        50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+        337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+        2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+        15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+    private static final int[] INDEX_ADJUST = { -1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8 };
+
+    // Decoder tables indexed by step index << 4 | code: the signed predictor change, and the next
+    // step index. Bit-exact with the shift-and-add of the reference algorithm.
+    private static final int[] DELTA = new int[89 * 16];
+    private static final byte[] NEXT_INDEX = new byte[89 * 16];
+
+    static {
+        for (int idx = 0; idx <= 88; idx++) {
+            for (int code = 0; code < 16; code++) {
+                int step = STEP[idx];
+                int delta = step >> 3;
+                if ((code & 4) != 0) delta += step;
+                if ((code & 2) != 0) delta += step >> 1;
+                if ((code & 1) != 0) delta += step >> 2;
+                DELTA[idx << 4 | code] = (code & 8) != 0 ? -delta : delta;
+                NEXT_INDEX[idx << 4 | code] = (byte) Math.max(0, Math.min(88, idx + INDEX_ADJUST[code]));
+            }
+        }
+    }
+
+    private final int payloadType;
+    private final int clockRate;
+    // Encoder state, carried from frame to frame
+    private int predictor;
+    private int index;
+
+    public ImaAdpcmCodec(int payloadType, int clockRate) {
+        this.payloadType = payloadType;
+        this.clockRate = clockRate;
+    }
+
+    @Override public String getName() { return DVI4; }
+    @Override public int getPayloadType() { return payloadType; }
+    @Override public int getClockRate() { return clockRate; }
+    @Override public int getPayloadBytes(int samples) { return HEADER + (samples + 1) / 2; }
+    @Override public int getSamples(int bytes) { return bytes > HEADER ? 2 * (bytes - HEADER) : -1; }
+
+    @Override
+    public void encode(short[] pcm, int pcmOff, int samples, ByteBuffer dst) {
+        int d = dst.position();
+        dst.putShort(d, (short) predictor);
+        dst.put(d + 2, (byte) index);
+        dst.put(d + 3, (byte) 0);
+        d += HEADER;
+        int pred = predictor, idx = index, packed = 0;
+        for (int i = 0; i < samples; i++) {
+            // Quantise the prediction error to sign + 3 bits of the current step size. The
+            // reference's compare-and-subtract steps, branch-free: speech makes them unpredictable
+            int diff = pcm[pcmOff + i] - pred;
+            int sign = diff >> 31;                  // -1 if negative
+            diff = (diff ^ sign) - sign;
+            int step = STEP[idx];
+            int m = (step - 1 - diff) >> 31;        // -1 if diff >= step
+            int code = (sign & 8) | (m & 4);
+            diff -= step & m;
+            step >>= 1;
+            m = (step - 1 - diff) >> 31;
+            code |= m & 2;
+            diff -= step & m;
+            step >>= 1;
+            code |= ((step - 1 - diff) >> 31) & 1;
+            // Track exactly what the decoder will reconstruct
+            int key = idx << 4 | code;
+            pred += DELTA[key];
+            if (pred > 32767) pred = 32767; else if (pred < -32768) pred = -32768;
+            idx = NEXT_INDEX[key];
+            if ((i & 1) == 0) packed = code << 4;
+            else dst.put(d + (i >> 1), (byte) (packed | code));
+        }
+        if ((samples & 1) != 0) dst.put(d + (samples >> 1), (byte) packed);
+        predictor = pred;
+        index = idx;
+        dst.position(d + (samples + 1) / 2);
+    }
+
+    @Override
+    public int decode(byte[] src, int srcOff, int bytes, short[] pcm, int pcmOff) {
+        int pred = (short) ((src[srcOff] << 8) | (src[srcOff + 1] & 0xFF));
+        int idx = src[srcOff + 2] & 0xFF;
+        if (idx > 88) idx = 88;
+        int samples = getSamples(bytes);
+        for (int i = 0; i < samples; i++) {
+            int b = src[srcOff + HEADER + (i >> 1)];
+            int key = idx << 4 | ((i & 1) == 0 ? (b >> 4) & 0x0F : b & 0x0F);
+            pred += DELTA[key];
+            if (pred > 32767) pred = 32767; else if (pred < -32768) pred = -32768;
+            idx = NEXT_INDEX[key];
+            pcm[pcmOff + i] = (short) pred;
+        }
+        return samples;
+    }
+
+    @Override
+    public String toString() { return DVI4 + "/" + clockRate; }
+}
@@ -0,0 +1,384 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 🌩 Loopback UDP relay that impairs what it forwards, for testing the engines against a bad
+// network on one machine. Each route is a local port relaying to one target; senders aim at the
+// route's port instead of the receiver's. Per packet, in this order:
+//   loss         Gilbert-Elliott: bursts of 'burst' packets on average, 'loss' percent overall
+//   bottleneck   a 'rate' kbit/s link (IP/UDP headers counted) behind a drop-tail queue holding
+//                up to 'queue' ms: offered more than the rate, delay builds, then packets drop
+//   delay        fixed 'delay' plus uniform 0..'jitter' ms; packets still leave in arrival order
+//   reorder      'reorder' percent are held back a further 'hold' ms and overtaken
+//   duplicate    'dup' percent are sent twice, the copy up to 'jitter' ms later
+// Whatever the receiver sends back to the route (reports) is relayed to the sender after the fixed
+// delay, unimpaired. The profile can be swapped while running, to script congestion.
+// One thread serves every route. Datagrams wait in reusable direct-buffer slots on a deadline heap,
+// so the proxy neither allocates per packet nor adds GC work to what a load test measures.
+public class ImpairmentProxy implements AutoCloseable {
+    private static final int SLOTS = 32768;           // allocated as needed, up to 128 MB of direct memory
+    private static final int IP_UDP_HEADERS = 28;
+
+    // Network conditions, e.g. Profile.parse("loss=2,burst=3,delay=40,jitter=30,reorder=1,dup=0.5")
+    public static final class Profile {
+        final double lossPercent, burstLength, delayMillis, jitterMillis, reorderPercent, holdMillis, duplicatePercent;
+        final double rateKbps, queueMillis;             // rate 0: no bottleneck
+        // Gilbert-Elliott transition probabilities per packet
+        final double enterBurst, leaveBurst;
+
+        public Profile(double lossPercent, double burstLength, double delayMillis, double jitterMillis,
+                       double reorderPercent, double holdMillis, double duplicatePercent) {
+            this(lossPercent, burstLength, delayMillis, jitterMillis, reorderPercent, holdMillis, duplicatePercent, 0, 0);
+        }
+
+        public Profile(double lossPercent, double burstLength, double delayMillis, double jitterMillis,
+                       double reorderPercent, double holdMillis, double duplicatePercent, double rateKbps, double queueMillis) {
+            if (lossPercent < 0 || lossPercent >= 100 || burstLength < 1 || delayMillis < 0 || jitterMillis < 0
+                    || reorderPercent < 0 || reorderPercent > 100 || holdMillis < 0 || duplicatePercent < 0 || duplicatePercent > 100
+                    || rateKbps < 0 || queueMillis < 0) {
+                throw new IllegalArgumentException("Impairment out of range: loss 0..<100 %, burst >= 1, times >= 0 ms, reorder/dup 0..100 %, rate >= 0");
+            }
+            this.lossPercent = lossPercent;
+            this.burstLength = burstLength;
+            this.delayMillis = delayMillis;
+            this.jitterMillis = jitterMillis;
+            this.reorderPercent = reorderPercent;
+            this.holdMillis = holdMillis;
+            this.duplicatePercent = duplicatePercent;
+            this.rateKbps = rateKbps;
+            this.queueMillis = queueMillis;
+            double p = lossPercent / 100;
+            this.leaveBurst = 1 / burstLength;
+            this.enterBurst = p == 0 ? 0 : Math.min(1, p * leaveBurst / (1 - p));
+        }
+
+        // The same conditions behind a 'rateKbps' bottleneck (0 removes it) queueing up to 'queueMillis'
+        public Profile withBottleneck(double rateKbps, double queueMillis) {
+            return new Profile(lossPercent, burstLength, delayMillis, jitterMillis, reorderPercent, holdMillis, duplicatePercent,
+                    rateKbps, queueMillis);
+        }
+
+        // A named profile (clean, lan, wifi, mobile, congested) or comma-separated key=value
+        // pairs over the clean profile: loss, burst, delay, jitter, reorder, hold, dup, rate, queue
+        public static Profile parse(String spec) {
+            switch (spec) {
+                case "clean": return new Profile(0, 1, 0, 0, 0, 0, 0);
+                case "lan": return new Profile(0.1, 1, 1, 2, 0, 0, 0);
+                case "wifi": return new Profile(1, 2, 5, 30, 0.5, 20, 0.1);
+                case "mobile": return new Profile(3, 3, 60, 80, 1, 40, 0.5);
+                case "congested": return new Profile(8, 4, 100, 150, 2, 60, 1);
+                default: break;
+            }
+            double loss = 0, burst = 1, delay = 0, jitter = 0, reorder = 0, hold = 30, dup = 0, rate = 0, queue = 200;
+            for (String pair : spec.split(",")) {
+                String[] kv = pair.split("=", 2);
+                if (kv.length != 2) throw new IllegalArgumentException("Bad impairment '" + pair + "', expected key=value");
+                double v = Double.parseDouble(kv[1].trim());
+                switch (kv[0].trim()) {
+                    case "loss": loss = v; break;
+                    case "burst": burst = v; break;
+                    case "delay": delay = v; break;
+                    case "jitter": jitter = v; break;
+                    case "reorder": reorder = v; break;
+                    case "hold": hold = v; break;
+                    case "dup": dup = v; break;
+                    case "rate": rate = v; break;
+                    case "queue": queue = v; break;
+                    default: throw new IllegalArgumentException("Unknown impairment " + kv[0] + " (loss, burst, delay, jitter, reorder, hold, dup, rate, queue)");
+                }
+            }
+            return new Profile(loss, burst, delay, jitter, reorder, hold, dup, rate, queue);
+        }
+
+        public double getLossPercent() { return lossPercent; }
+        public double getBurstLength() { return burstLength; }
+        public double getDelayMillis() { return delayMillis; }
+        public double getJitterMillis() { return jitterMillis; }
+        public double getRateKbps() { return rateKbps; }
+        public double getQueueMillis() { return queueMillis; }
+
+        @Override
+        public String toString() {
+            String s = String.format("loss %.1f%% (bursts of %.1f), delay %.0f+%.0f ms, reorder %.1f%% by %.0f ms, dup %.1f%%",
+                    lossPercent, burstLength, delayMillis, jitterMillis, reorderPercent, holdMillis, duplicatePercent);
+            return rateKbps > 0 ? s + String.format(", %.0f kbit/s bottleneck, %.0f ms queue", rateKbps, queueMillis) : s;
+        }
+    }
+
+    private volatile Profile profile;
+    private final Random random;
+    private final Selector selector;
+    private final List<Route> routes = new ArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private Thread worker;
+
+    // Slot storage, and a binary min-heap of slot numbers ordered by release time
+    private final ByteBuffer[] data = new ByteBuffer[SLOTS];
+    private final ByteBuffer spill = ByteBuffer.allocateDirect(UdpTransport.MAX_DATAGRAM);
+    private final long[] release = new long[SLOTS];
+    private final long[] order = new long[SLOTS];       // tie-break so equal deadlines keep arrival order
+    private final Route[] routeOf = new Route[SLOTS];
+    private final boolean[] toClient = new boolean[SLOTS];  // a report on its way back to the sender
+    private final int[] free = new int[SLOTS];
+    private int freeCount;
+    private final int[] heap = new int[SLOTS];
+    private int heapSize;
+    private long arrivals;
+
+    // Gilbert-Elliott state: in a loss burst or not
+    private boolean bursting;
+
+    private volatile long received, forwarded, forwardedBytes, dropped, queueDrops, duplicated, reordered, overflows, returned;
+
+    private static final class Route {
+        final DatagramChannel channel;
+        final InetSocketAddress target;
+        SocketAddress client;           // last sender seen, where the receiver's replies go
+        long lastRelease;               // FIFO: nothing leaves before the previous packet
+        long linkFree;                  // when the bottleneck finishes sending what is queued
+
+        Route(DatagramChannel channel, InetSocketAddress target) {
+            this.channel = channel;
+            this.target = target;
+        }
+    }
+
+    public ImpairmentProxy(Profile profile, long seed) throws IOException {
+        this.profile = profile;
+        this.random = new Random(seed);
+        this.selector = Selector.open();
+        for (int i = SLOTS - 1; i >= 0; i--) free[freeCount++] = i;
+    }
+
+    // Opens a loopback port relaying to target and returns it; call before start()
+    public synchronized int addRoute(InetSocketAddress target) throws IOException {
+        if (running.get()) throw new IllegalStateException("Routes must be added before start()");
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 1024);
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            channel.configureBlocking(false);
+            Route route = new Route(channel, target);
+            channel.register(selector, SelectionKey.OP_READ, route);
+            routes.add(route);
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public synchronized void start() {
+        if (!running.compareAndSet(false, true)) return;
+        worker = MediaExecutor.shared(MediaExecutor.Mode.PLATFORM).startWorker("impairment-proxy", true, this::run);
+    }
+
+    @Override
+    public void close() {
+        running.set(false);
+        selector.wakeup();
+        try {
+            if (worker != null) worker.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Route r : routes) {
+            try {
+                r.channel.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+
+    public Profile getProfile() { return profile; }
+    // Takes effect from the next datagram; callable from any thread while running
+    public void setProfile(Profile profile) { this.profile = profile; }
+    public long getReceived() { return received; }
+    public long getForwarded() { return forwarded; }
+    // Bytes forwarded to receivers, IP/UDP headers not counted
+    public long getForwardedBytes() { return forwardedBytes; }
+    // Lost to the impairment profile, including queueDrops
+    public long getDropped() { return dropped; }
+    // Dropped at a full bottleneck queue
+    public long getQueueDrops() { return queueDrops; }
+    // Datagrams relayed from receivers back to senders
+    public long getReturned() { return returned; }
+    public long getDuplicated() { return duplicated; }
+    public long getReordered() { return reordered; }
+    // Datagrams dropped because every slot was waiting (more than SLOTS in flight)
+    public long getOverflows() { return overflows; }
+
+    private void run() {
+        try {
+            while (running.get()) {
+                // Millisecond timer resolution: a release may be up to 1 ms late, never early
+                long remaining = heapSize == 0 ? 100_000_000L : release[heap[0]] - System.nanoTime();
+                if (remaining > 0) selector.select((remaining + 999_999) / 1_000_000); else selector.selectNow();
+                for (SelectionKey key : selector.selectedKeys()) receive((Route) key.attachment());
+                selector.selectedKeys().clear();
+                releaseDue(System.nanoTime());
+            }
+        } catch (IOException e) {
+            if (running.get()) System.err.println("❌ Impairment proxy stopped: " + e);
+        }
+    }
+
+    private void receive(Route route) throws IOException {
+        while (true) {
+            if (freeCount == 0) {
+                // Every slot is waiting to leave: read it anyway so the socket drains, and drop it
+                spill.clear();
+                if (route.channel.receive(spill) == null) return;
+                received++;
+                overflows++;
+                continue;
+            }
+            int slot = free[freeCount - 1];
+            ByteBuffer buf = slot(slot);
+            buf.clear();
+            SocketAddress from = route.channel.receive(buf);
+            if (from == null) return;
+            buf.flip();
+            long now = System.nanoTime();
+            Profile p = profile;
+            if (from.equals(route.target)) {
+                // A reply from the receiver: back to the sender after the path delay
+                if (route.client == null) continue;
+                freeCount--;
+                push(slot, route, true, now + millis(p.delayMillis));
+                returned++;
+                continue;
+            }
+            route.client = from;
+            received++;
+            if (lose(p)) {
+                dropped++;
+                continue;
+            }
+            long sent = now;
+            if (p.rateKbps > 0) {
+                // Serialised behind whatever the link is still sending; tail drop past the queue limit
+                long start = Math.max(now, route.linkFree);
+                if (start - now > millis(p.queueMillis)) {
+                    dropped++;
+                    queueDrops++;
+                    continue;
+                }
+                route.linkFree = start + (long) ((buf.remaining() + IP_UDP_HEADERS) * 8 * 1e6 / p.rateKbps);
+                sent = route.linkFree;
+            }
+            freeCount--;
+            long due = sent + millis(p.delayMillis + random.nextDouble() * p.jitterMillis);
+            if (p.reorderPercent > 0 && random.nextDouble() * 100 < p.reorderPercent) {
+                due += millis(p.holdMillis);
+                reordered++;
+            } else {
+                due = Math.max(due, route.lastRelease);
+                route.lastRelease = due;
+            }
+            push(slot, route, false, due);
+            if (p.duplicatePercent > 0 && random.nextDouble() * 100 < p.duplicatePercent && freeCount > 0) {
+                int copy = free[--freeCount];
+                slot(copy).clear();
+                data[copy].put(buf.duplicate()).flip();
+                push(copy, route, false, due + millis(random.nextDouble() * p.jitterMillis));
+                duplicated++;
+            }
+        }
+    }
+
+    private boolean lose(Profile p) {
+        if (bursting) {
+            if (random.nextDouble() < p.leaveBurst) bursting = false;
+        } else if (p.enterBurst > 0 && random.nextDouble() < p.enterBurst) {
+            bursting = true;
+        }
+        return bursting;
+    }
+
+    private void releaseDue(long now) {
+        while (heapSize > 0 && release[heap[0]] - now <= 0) {
+            int slot = pop();
+            Route route = routeOf[slot];
+            try {
+                if (toClient[slot]) {
+                    route.channel.send(data[slot], route.client);
+                } else {
+                    int bytes = route.channel.send(data[slot], route.target);
+                    if (bytes > 0) {
+                        forwarded++;
+                        forwardedBytes += bytes;
+                    } else {
+                        overflows++;
+                    }
+                }
+            } catch (IOException e) {
+                overflows++;    // the receiver may not be listening yet, or has already gone
+            }
+            routeOf[slot] = null;
+            free[freeCount++] = slot;
+        }
+    }
+
+    private ByteBuffer slot(int slot) {
+        if (data[slot] == null) data[slot] = ByteBuffer.allocateDirect(UdpTransport.MAX_DATAGRAM);
+        return data[slot];
+    }
+
+    private static long millis(double ms) {
+        return (long) (ms * 1_000_000);
+    }
+
+    private void push(int slot, Route route, boolean back, long due) {
+        release[slot] = due;
+        order[slot] = arrivals++;
+        routeOf[slot] = route;
+        toClient[slot] = back;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!before(slot, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) child++;
+            if (!before(heap[child], last)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    private boolean before(int a, int b) {
+        long d = release[a] - release[b];
+        return d < 0 || (d == 0 && order[a] < order[b]);
+    }
+}
@@ -0,0 +1,315 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// ⏱ Adaptive playout buffer: reorders frames, tracks jitter and sizes its own depth
+public class JitterBuffer {
+    // Result of a single playout tick
+    public static final int FRAME = 0;      // a real frame was copied out
+    public static final int CONCEALED = 1;  // the expected frame is missing, caller should conceal
+    public static final int BUFFERING = 2;  // (re)filling up to the target depth, caller should play silence
+    public static final int SILENCE = 3;    // sender is in a silence period; out[off] holds the comfort-noise level
+
+    private static final int CAPACITY = 64; // power of two, ring indexed by sequence number
+    private static final int MASK = CAPACITY - 1;
+
+    private final int frameSize;
+    private final long frameNanos;
+    private int minDepth;
+    private final int maxDepth;
+
+    private final byte[][] slots = new byte[CAPACITY][];
+    private final boolean[] slotFull = new boolean[CAPACITY];
+    private final boolean[] slotSilence = new boolean[CAPACITY];   // comfort-noise descriptor, not audio
+
+    // Playout state
+    private boolean started = false;
+    private boolean buffering = true;
+    private boolean silent = false;     // between a comfort-noise descriptor and the next talkspurt
+    private int noiseLevel = 127;
+    private long playSeq;       // next sequence number to be played
+    private int targetDepth;
+    private int surplusTicks = 0;
+    private int shrinkCountdown = 0;
+
+    // Jitter estimate (RFC 3550 style), kept in nanoseconds
+    private long lastTransit = Long.MIN_VALUE;
+    private double jitterNanos = 0;
+
+    // Counters
+    private long framesPlayed, framesConcealed, framesRecovered, silenceDescriptors, lateDrops, duplicates, underruns, overflowDrops, shrinkDrops;
+
+    public JitterBuffer(int frameSize, long frameNanos) {
+        this(frameSize, frameNanos, 1, 16);
+    }
+
+    public JitterBuffer(int frameSize, long frameNanos, int minDepth, int maxDepth) {
+        if (minDepth < 1 || maxDepth < minDepth || maxDepth >= CAPACITY / 2) {
+            throw new IllegalArgumentException("Invalid jitter buffer depth range: " + minDepth + ".." + maxDepth);
+        }
+        this.frameSize = frameSize;
+        this.frameNanos = frameNanos;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.targetDepth = minDepth + 1 > maxDepth ? maxDepth : minDepth + 1;
+        for (int i = 0; i < CAPACITY; i++) slots[i] = new byte[frameSize];
+    }
+
+    // Store an incoming frame. 'sequence' is a 16-bit wrapping counter, 'mediaNanos' the
+    // sender's media timestamp converted to nanoseconds, 'arrivalNanos' the local receive time.
+    public synchronized void put(int sequence, long mediaNanos, long arrivalNanos, byte[] data, int off, int len) {
+        int idx = accept(sequence, mediaNanos, arrivalNanos);
+        if (idx < 0) return;
+        int n = Math.min(len, frameSize);
+        System.arraycopy(data, off, slots[idx], 0, n);
+        store(idx, n);
+    }
+
+    // Same as above for payloads still sitting in a (direct) transport buffer; position is preserved
+    public synchronized void put(int sequence, long mediaNanos, long arrivalNanos, ByteBuffer data, int off, int len) {
+        int idx = accept(sequence, mediaNanos, arrivalNanos);
+        if (idx < 0) return;
+        int n = Math.min(len, frameSize);
+        int savedPosition = data.position();
+        data.position(off);
+        data.get(slots[idx], 0, n);
+        data.position(savedPosition);
+        store(idx, n);
+    }
+
+    // Store a frame rebuilt by forward error correction. It never moves the jitter estimate or the
+    // playout point, and is ignored if the real frame already arrived or its playout has passed.
+    // Returns true if the frame will be played.
+    public synchronized boolean putRecovered(int sequence, byte[] data, int off, int len) {
+        int idx = acceptRecovered(sequence);
+        if (idx < 0) return false;
+        int n = Math.min(len, frameSize);
+        System.arraycopy(data, off, slots[idx], 0, n);
+        store(idx, n);
+        return true;
+    }
+
+    public synchronized boolean putRecovered(int sequence, ByteBuffer data, int off, int len) {
+        int idx = acceptRecovered(sequence);
+        if (idx < 0) return false;
+        int n = Math.min(len, frameSize);
+        int savedPosition = data.position();
+        data.position(off);
+        data.get(slots[idx], 0, n);
+        data.position(savedPosition);
+        store(idx, n);
+        return true;
+    }
+
+    // Queue a comfort-noise descriptor (RFC 3389) in sequence: once playout reaches it the
+    // sender is known to be silent, so an empty buffer is not an underrun until speech resumes
+    public synchronized void putSilence(int sequence, long mediaNanos, long arrivalNanos, int noiseLevel) {
+        int idx = accept(sequence, mediaNanos, arrivalNanos);
+        if (idx < 0) return;
+        slots[idx][0] = (byte) noiseLevel;
+        slotSilence[idx] = true;
+        slotFull[idx] = true;
+    }
+
+    // Called once per frame period by the playout clock. Copies the next frame into 'out'.
+    public synchronized int poll(byte[] out, int off) {
+        if (!started) return BUFFERING;
+
+        int depth = depth();
+        if (buffering) {
+            if (depth < targetDepth) {
+                if (!silent) return BUFFERING;
+                out[off] = (byte) noiseLevel; // keep the comfort noise going while the talkspurt buffers
+                return SILENCE;
+            }
+            buffering = false;
+        }
+
+        // Shrink towards the target when the buffer has been running fat for a while
+        if (depth > targetDepth + 1) {
+            if (++surplusTicks >= 8) {
+                surplusTicks = 0;
+                discardNext();
+                shrinkDrops++;
+            }
+        } else {
+            surplusTicks = 0;
+        }
+
+        int idx = (int) (playSeq & MASK);
+        if (slotFull[idx] && slotSilence[idx]) {
+            noiseLevel = slots[idx][0] & 0x7F;
+            slotFull[idx] = false;
+            slotSilence[idx] = false;
+            playSeq++;
+            silenceDescriptors++;
+            silent = true;
+            out[off] = (byte) noiseLevel;
+            return SILENCE;
+        }
+        if (slotFull[idx]) {
+            System.arraycopy(slots[idx], 0, out, off, frameSize);
+            slotFull[idx] = false;
+            playSeq++;
+            framesPlayed++;
+            silent = false;
+            return FRAME;
+        }
+
+        if (depth == 0 && silent) {
+            // Expected gap between talkspurts: refill to the target once speech resumes
+            buffering = true;
+            out[off] = (byte) noiseLevel;
+            return SILENCE;
+        }
+        if (depth == 0) {
+            // Nothing at all queued: underrun, refill to the target before resuming
+            underruns++;
+            buffering = true;
+            return BUFFERING;
+        }
+
+        // A gap with later frames waiting: the frame is lost or still in flight, conceal it
+        playSeq++;
+        framesConcealed++;
+        return CONCEALED;
+    }
+
+    // Number of frames currently queued ahead of the playout point
+    public synchronized int depth() {
+        int count = 0;
+        for (int i = 0; i < CAPACITY; i++) if (slotFull[i]) count++;
+        return count;
+    }
+
+    public synchronized void reset() {
+        clear();
+        started = false;
+        buffering = true;
+        silent = false;
+        lastTransit = Long.MIN_VALUE;
+        jitterNanos = 0;
+        targetDepth = minDepth + 1 > maxDepth ? maxDepth : minDepth + 1;
+    }
+
+    // Raise (or lower) the depth floor at runtime, e.g. so FEC has time to rebuild a frame before
+    // its playout slot; clamped to the configured maximum. Raising it pauses playout once so the
+    // buffer actually fills to the new depth instead of waiting for the next underrun.
+    public synchronized void setMinDepth(int depth) {
+        minDepth = Math.max(1, Math.min(depth, maxDepth));
+        if (targetDepth < minDepth) {
+            targetDepth = minDepth;
+            if (started && depth() < targetDepth) buffering = true;
+        }
+    }
+
+    public synchronized int getMinDepth() { return minDepth; }
+    public synchronized int getTargetDepth() { return targetDepth; }
+    public synchronized double getJitterMillis() { return jitterNanos / 1_000_000.0; }
+    public synchronized long getFramesPlayed() { return framesPlayed; }
+    public synchronized long getFramesConcealed() { return framesConcealed; }
+    public synchronized long getFramesRecovered() { return framesRecovered; }
+    public synchronized long getLateDrops() { return lateDrops; }
+    public synchronized long getDuplicates() { return duplicates; }
+    public synchronized long getUnderruns() { return underruns; }
+    public synchronized long getOverflowDrops() { return overflowDrops; }
+    public synchronized long getShrinkDrops() { return shrinkDrops; }
+    public synchronized long getSilenceDescriptors() { return silenceDescriptors; }
+    public synchronized boolean isSilent() { return silent; }
+
+    // Current mouth-to-ear contribution of this buffer
+    public synchronized long getBufferedNanos() { return (long) depth() * frameNanos; }
+
+    public synchronized String stats() {
+        return String.format("depth=%d target=%d jitter=%.1fms played=%d concealed=%d recovered=%d late=%d dup=%d underruns=%d cn=%d",
+                depth(), targetDepth, getJitterMillis(), framesPlayed, framesConcealed, framesRecovered, lateDrops, duplicates,
+                underruns, silenceDescriptors);
+    }
+
+    // --- Internals ---
+
+    // Sequencing and bookkeeping for put(): returns the slot to fill, or -1 to drop the frame
+    private int accept(int sequence, long mediaNanos, long arrivalNanos) {
+        updateJitter(mediaNanos, arrivalNanos);
+
+        if (!started) {
+            started = true;
+            playSeq = sequence;
+        }
+
+        long seq = unwrap(sequence);
+        if (seq < playSeq) {
+            lateDrops++; // its playout slot has already passed
+            return -1;
+        }
+        if (seq - playSeq >= CAPACITY) {
+            // Sender jumped far ahead (restart or long outage): drop everything and resync
+            overflowDrops += depth();
+            clear();
+            playSeq = seq;
+            buffering = true;
+        }
+
+        int idx = (int) (seq & MASK);
+        if (slotFull[idx]) {
+            duplicates++;
+            return -1;
+        }
+        return idx;
+    }
+
+    // Same slot rules as accept() for FEC output, without touching jitter or the playout point
+    private int acceptRecovered(int sequence) {
+        if (!started) return -1;
+        long seq = unwrap(sequence);
+        if (seq < playSeq || seq - playSeq >= CAPACITY) return -1;
+        int idx = (int) (seq & MASK);
+        if (slotFull[idx]) return -1;
+        framesRecovered++;
+        return idx;
+    }
+
+    private void store(int idx, int length) {
+        if (length < frameSize) Arrays.fill(slots[idx], length, frameSize, (byte) 0xFF); // µ-law silence
+        slotSilence[idx] = false;
+        slotFull[idx] = true;
+    }
+
+    private void updateJitter(long mediaNanos, long arrivalNanos) {
+        long transit = arrivalNanos - mediaNanos;
+        if (lastTransit != Long.MIN_VALUE) {
+            long d = Math.abs(transit - lastTransit);
+            jitterNanos += (d - jitterNanos) / 16.0;
+        }
+        lastTransit = transit;
+
+        // Target covers ~3x the jitter plus one frame of slack, clamped to the configured range
+        int wanted = (int) Math.ceil((3 * jitterNanos) / frameNanos) + 1;
+        if (wanted < minDepth) wanted = minDepth;
+        if (wanted > maxDepth) wanted = maxDepth;
+        if (wanted > targetDepth) {
+            targetDepth = wanted; // grow immediately to stop glitches
+            shrinkCountdown = 0;
+        } else if (wanted < targetDepth && ++shrinkCountdown >= 50) {
+            targetDepth--;        // shrink slowly to win back latency
+            shrinkCountdown = 0;
+        }
+    }
+
+    // Map a 16-bit wrapping sequence number onto the 64-bit playout counter
+    private long unwrap(int sequence) {
+        short delta = (short) (sequence - (int) (playSeq & 0xFFFF));
+        return playSeq + delta;
+    }
+
+    private void discardNext() {
+        int idx = (int) (playSeq & MASK);
+        slotFull[idx] = false;
+        slotSilence[idx] = false;
+        playSeq++;
+    }
+
+    private void clear() {
+        Arrays.fill(slotFull, false);
+        Arrays.fill(slotSilence, false);
+    }
+}
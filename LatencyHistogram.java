@@ -0,0 +1,95 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// 📈 HDR-style latency histogram: log-linear buckets, 32 per power of two (~3% resolution) from
+// 1 ns up to Long.MAX_VALUE in one fixed array. record() is a bucket index (a few shifts) plus one
+// uncontended atomic increment, so it can sit on the per-frame hot path; percentiles are only
+// computed when somebody takes a snapshot. Safe for concurrent writers and readers.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // Negative values (clock went backwards) are recorded as 0
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.getAndIncrement(index(nanos));
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    // Point-in-time view; percentiles report the midpoint of the bucket they fall in
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count, sum, max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getSum() { return sum; }
+        public long getMax() { return max; }
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        // Both snapshots' values together, e.g. the same histogram of several engines
+        public Snapshot plus(Snapshot other) {
+            long[] merged = counts.clone();
+            for (int i = 0; i < merged.length; i++) merged[i] += other.counts[i];
+            return new Snapshot(merged, count + other.count, sum + other.sum, Math.max(max, other.max));
+        }
+
+        // Values recorded since 'earlier' was taken of the same histogram. The max cannot be
+        // windowed, so it stays this snapshot's (an upper bound)
+        public Snapshot minus(Snapshot earlier) {
+            long[] window = counts.clone();
+            for (int i = 0; i < window.length; i++) window[i] -= earlier.counts[i];
+            return new Snapshot(window, count - earlier.count, sum - earlier.sum, max);
+        }
+
+        // 'quantile' in [0, 1], e.g. 0.99
+        public long getValueAt(double quantile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(midpoint(i), max);
+            }
+            return max;
+        }
+    }
+
+    // Values below 64 get their own bucket; above that, the top six bits select the bucket
+    private static int index(long value) {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        if (shift <= 0) return (int) value;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    private static long midpoint(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (index % SUB_COUNT + SUB_COUNT) << shift;
+        return lower + (1L << (shift - 1));
+    }
+}
@@ -0,0 +1,374 @@
+import com.sun.management.OperatingSystemMXBean;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 🏁 Headless soak and load test: N sender/receiver pairs over loopback, each through an
+// ImpairmentProxy route, with SyntheticAudio in place of the mic and speakers. After a warm-up it
+// measures a window and reports throughput, CPU, GC and allocation, latency percentiles merged
+// across all pairs, and call quality: the tone score from the sinks (segmental SNR, dropouts) and
+// an ITU-T G.107 E-model estimate (R, MOS) from the measured residual loss and one-way delay.
+// --report writes the same numbers as key=value lines; --min-mos/--min-snr make the exit status
+// fail when quality falls below them, so a plain Linux box can catch regressions.
+//   java LoadTest [--pairs 4] [--seconds 30] [--warmup 5] [--net clean|lan|wifi|mobile|congested|loss=2,jitter=30,rate=64,...]
+//                 [--audio tone:1000|tone:400+1000|wav:<file>] [--mic-ppm 0] [--speaker-ppm 0] [--seed 1]
+//                 [--report <file>] [--min-mos <1..4.5>] [--min-snr <dB>] [--srtp auto|<key>] [AudioStreamCli options]
+public class LoadTest {
+    private static final int IP_UDP_HEADERS = 28;
+
+    // Histograms merged across engines: { registry prefix, name }
+    private static final String[][] LATENCIES = {
+        { "sender", "capture_delay_seconds" },
+        { "sender", "capture_to_send_seconds" },
+        { "sender", "capture_dsp_seconds" },
+        { "sender", "encode_seconds" },
+        { "sender", "srtp_protect_seconds" },
+        { "receiver", "srtp_unprotect_seconds" },
+        { "receiver", "decode_seconds" },
+        { "receiver", "network_delay_variation_seconds" },
+        { "receiver", "mouth_to_ear_seconds" },
+    };
+
+    private static final class Pair {
+        final StreamConfig rxConfig;
+        final AudioStreamReceiver receiver;
+        StreamConfig txConfig;
+        AudioStreamSender sender;
+
+        Pair(StreamConfig rxConfig, AudioStreamListener listener) {
+            this.rxConfig = rxConfig;
+            this.receiver = new AudioStreamReceiver(rxConfig, listener);
+        }
+    }
+
+    // Everything the report needs, taken at the start and the end of the measured window
+    private static final class Sample {
+        long nanos, cpuNanos, gcCount, gcMillis, allocated;
+        long framesSent, bytesSent, packetsReceived, recovered;
+        long played, concealed, underruns, lateDrops, lost;
+        long proxyReceived, proxyForwarded, proxyDropped;
+        final Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<>();
+        LatencyHistogram.Snapshot scheduling;
+        SyntheticAudio.Quality[] quality;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pairs = 4;
+        double seconds = 30, warmup = 5, micPpm = 0, speakerPpm = 0, minMos = 0, minSnr = Double.NEGATIVE_INFINITY;
+        long seed = 1;
+        String net = "clean", audioSpec = "tone:1000";
+        Path report = null;
+        List<String> engineArgs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--pairs": pairs = Integer.parseInt(value); break;
+                    case "--seconds": seconds = Double.parseDouble(value); break;
+                    case "--warmup": warmup = Double.parseDouble(value); break;
+                    case "--net": net = value; break;
+                    case "--audio": audioSpec = value; break;
+                    case "--mic-ppm": micPpm = Double.parseDouble(value); break;
+                    case "--speaker-ppm": speakerPpm = Double.parseDouble(value); break;
+                    case "--seed": seed = Long.parseLong(value); break;
+                    case "--report": report = Path.of(value); break;
+                    case "--min-mos": minMos = Double.parseDouble(value); break;
+                    case "--min-snr": minSnr = Double.parseDouble(value); break;
+                    case "--srtp":
+                        // 'auto' keys every pair with one fresh key, as if exchanged before the call
+                        engineArgs.add(args[i]);
+                        engineArgs.add(value.equals("auto") ? SrtpContext.generateKey() : value);
+                        break;
+                    default: engineArgs.add(args[i]); engineArgs.add(value);
+                }
+            }
+            if (pairs < 1) throw new IllegalArgumentException("--pairs must be at least 1");
+            String[] engineOptions = engineArgs.toArray(new String[0]);
+            AudioStreamCli.options(new StreamConfig(), engineOptions, 0);   // validate before opening anything
+            ImpairmentProxy.Profile profile = ImpairmentProxy.Profile.parse(net);
+            SyntheticAudio audio = SyntheticAudio.parse(audioSpec).withClockDrift(micPpm, speakerPpm);
+            boolean passed = run(pairs, seconds, warmup, profile, audio, seed, engineOptions, report, minMos, minSnr);
+            System.exit(passed ? 0 : 1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println("Usage: java LoadTest [--pairs N] [--seconds S] [--warmup S] [--net <profile|loss=..,burst=..,delay=..,jitter=..,reorder=..,hold=..,dup=..,rate=..,queue=..>]");
+            System.err.println("                     [--audio tone:<hz>[+<hz>]|wav:<file>] [--mic-ppm P] [--speaker-ppm P] [--seed N]");
+            System.err.println("                     [--report <file>] [--min-mos M] [--min-snr dB] [--srtp auto|<key>] [AudioStreamCli options]");
+            System.exit(2);
+        }
+    }
+
+    private static boolean run(int pairCount, double seconds, double warmup, ImpairmentProxy.Profile profile, SyntheticAudio audio,
+                               long seed, String[] engineOptions, Path reportFile, double minMos, double minSnr) throws Exception {
+        LongAdder errors = new LongAdder();
+        AudioStreamListener listener = new AudioStreamListener() {
+            public void onStarted() {}
+            public void onStopped() {}
+            public void onError(Exception e) {
+                errors.increment();
+                System.err.println("❌ " + e);
+            }
+            public void onEvent(String message) {}
+        };
+
+        List<Pair> pairs = new ArrayList<>();
+        try (ImpairmentProxy proxy = new ImpairmentProxy(profile, seed)) {
+            // Receivers on ephemeral ports first, then a proxy route and a sender aimed at each
+            for (int i = 0; i < pairCount; i++) {
+                Pair p = new Pair(AudioStreamCli.options(new StreamConfig(), engineOptions, 0).setPort(0).setAudioBackend(audio), listener);
+                pairs.add(p);
+                p.receiver.start();
+            }
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            for (Pair p : pairs) {
+                int port;
+                while ((port = p.receiver.getLocalPort()) < 0) {
+                    if (!p.receiver.isRunning()) throw new IOException("A receiver failed to start");
+                    Thread.sleep(5);
+                }
+                int relay = proxy.addRoute(new InetSocketAddress(loopback, port));
+                p.txConfig = AudioStreamCli.options(new StreamConfig(), engineOptions, 0)
+                        .setHost(loopback.getHostAddress()).setPort(relay).setAudioBackend(audio);
+                p.sender = new AudioStreamSender(p.txConfig, listener);
+            }
+            StreamConfig config = pairs.get(0).txConfig;
+            System.out.printf("🏁 %d pairs, %s, %s, fec %s, %s execution, %d CPUs%n", pairCount, config, audio,
+                    config.getFecMode(), config.getExecutionMode(), Runtime.getRuntime().availableProcessors());
+            System.out.println("🌩 Network: " + profile);
+
+            proxy.start();
+            for (Pair p : pairs) p.sender.start();
+
+            Thread.sleep((long) (warmup * 1000));
+            Sample start = sample(pairs, proxy, audio, config.getDeviceExecutor());
+            long end = start.nanos + (long) (seconds * 1e9);
+            for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                Thread.sleep(Math.min(10_000, (end - now) / 1_000_000 + 1));
+                if (end - System.nanoTime() > 1_000_000_000L) {
+                    Sample s = sample(pairs, proxy, audio, config.getDeviceExecutor());
+                    double elapsed = (s.nanos - start.nanos) / 1e9;
+                    System.out.printf("  %5.0f s  %8.0f packets/s  CPU %5.1f%%  GC %d%n", elapsed,
+                            (s.framesSent - start.framesSent) / elapsed, 100.0 * (s.cpuNanos - start.cpuNanos) / (s.nanos - start.nanos),
+                            s.gcCount - start.gcCount);
+                }
+            }
+            Sample stop = sample(pairs, proxy, audio, config.getDeviceExecutor());
+            for (Pair p : pairs) p.sender.stop();
+            for (Pair p : pairs) p.receiver.stop();
+
+            Map<String, String> results = report(pairCount, profile, config, audio, start, stop, errors.sum());
+            if (reportFile != null) {
+                StringBuilder text = new StringBuilder();
+                for (Map.Entry<String, String> e : results.entrySet()) text.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+                Files.write(reportFile, text.toString().getBytes(StandardCharsets.UTF_8));
+                System.out.println("📝 Report written to " + reportFile);
+            }
+            boolean passed = Double.parseDouble(results.get("mos")) >= minMos
+                    && !(Double.parseDouble(results.get("segmental_snr_db")) < minSnr);
+            if (!passed) System.out.println("❌ Below the quality threshold (MOS >= " + minMos + ", SNR >= " + minSnr + " dB)");
+            return passed;
+        } finally {
+            for (Pair p : pairs) {
+                if (p.sender != null) p.sender.stop();
+                p.receiver.stop();
+            }
+        }
+    }
+
+    private static Sample sample(List<Pair> pairs, ImpairmentProxy proxy, SyntheticAudio audio, MediaExecutor executor) {
+        Sample s = new Sample();
+        s.nanos = System.nanoTime();
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean) {
+            s.cpuNanos = ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            s.gcCount += Math.max(0, gc.getCollectionCount());
+            s.gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            // Live threads only (the engines' all outlive the window), less this one's sampling
+            long[] ids = threads.getAllThreadIds();
+            long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] > 0 && ids[i] != Thread.currentThread().getId()) s.allocated += bytes[i];
+            }
+        }
+        s.quality = new SyntheticAudio.Quality[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            Pair p = pairs.get(i);
+            s.framesSent += p.sender.getFramesSent();
+            s.bytesSent += p.sender.getBytesSent();
+            s.packetsReceived += p.receiver.getPacketsReceived();
+            s.recovered += p.receiver.getPacketsRecovered();
+            JitterBuffer jitter = p.receiver.getJitterBuffer();
+            if (jitter != null) {
+                s.played += jitter.getFramesPlayed();
+                s.concealed += jitter.getFramesConcealed();
+                s.underruns += jitter.getUnderruns();
+                s.lateDrops += jitter.getLateDrops();
+            }
+            ReceptionStats reception = p.receiver.getReceptionStats();
+            if (reception != null) s.lost += reception.getLost();
+            for (String[] latency : LATENCIES) {
+                MetricsRegistry metrics = latency[0].equals("sender") ? p.sender.getMetrics() : p.receiver.getMetrics();
+                LatencyHistogram.Snapshot snapshot = metrics.getHistogram(latency[1]).snapshot();
+                s.latencies.merge(latency[1], snapshot, LatencyHistogram.Snapshot::plus);
+            }
+            s.quality[i] = audio.quality(p.rxConfig);
+        }
+        s.proxyReceived = proxy.getReceived();
+        s.proxyForwarded = proxy.getForwarded();
+        s.proxyDropped = proxy.getDropped();
+        s.scheduling = executor.getSchedulingError().snapshot();
+        return s;
+    }
+
+    private static Map<String, String> report(int pairs, ImpairmentProxy.Profile profile, StreamConfig config, SyntheticAudio audio,
+                                              Sample a, Sample b, long errors) {
+        Map<String, String> r = new LinkedHashMap<>();
+        PrintStream out = System.out;
+        double wall = (b.nanos - a.nanos) / 1e9;
+        long frames = b.framesSent - a.framesSent;
+        long played = b.played - a.played, concealed = b.concealed - a.concealed;
+
+        out.printf("%n📦 Throughput over %.1f s%n", wall);
+        double packetRate = frames / wall;
+        double wireMbps = ((b.bytesSent - a.bytesSent) + (double) IP_UDP_HEADERS * (b.proxyReceived - a.proxyReceived)) * 8 / wall / 1e6;
+        out.printf("  media packets sent   %10.0f /s  (%.1f per pair)%n", packetRate, packetRate / pairs);
+        out.printf("  through the proxy    %10.0f /s in, %.0f /s out, %.2f Mbit/s on the wire%n",
+                (b.proxyReceived - a.proxyReceived) / wall, (b.proxyForwarded - a.proxyForwarded) / wall, wireMbps);
+        out.printf("  received             %10.0f /s, %d rebuilt by FEC%n", (b.packetsReceived - a.packetsReceived) / wall, b.recovered - a.recovered);
+        r.put("pairs", Integer.toString(pairs));
+        r.put("seconds", fmt(wall));
+        r.put("packets_per_second", fmt(packetRate));
+        r.put("wire_mbps", fmt(wireMbps));
+
+        out.println("🧮 CPU and memory");
+        double cpu = (b.cpuNanos - a.cpuNanos) / 1e9;
+        double cpuPercent = 100 * cpu / wall;
+        double perStream = cpu * 1e6 / (frames + played + concealed);
+        double allocRate = (b.allocated - a.allocated) / wall / 1e6;
+        out.printf("  process CPU          %10.1f %% of one core (%.1f %% of the machine)%n", cpuPercent,
+                cpuPercent / Runtime.getRuntime().availableProcessors());
+        out.printf("  per frame            %10.1f us (encode+send or receive+play)%n", perStream);
+        out.printf("  GC                   %10d collections, %d ms%n", b.gcCount - a.gcCount, b.gcMillis - a.gcMillis);
+        out.printf("  allocation           %10.2f MB/s (%.0f B per frame)%n", allocRate, (b.allocated - a.allocated) / (double) Math.max(1, frames + played + concealed));
+        r.put("cpu_percent", fmt(cpuPercent));
+        r.put("cpu_us_per_frame", fmt(perStream));
+        r.put("gc_collections", Long.toString(b.gcCount - a.gcCount));
+        r.put("gc_millis", Long.toString(b.gcMillis - a.gcMillis));
+        r.put("alloc_mb_per_second", fmt(allocRate));
+
+        out.printf("⏱ Latency, all pairs %11s %8s %8s %8s %8s%n", "p50", "p90", "p99", "p99.9", "max");
+        Map<String, LatencyHistogram.Snapshot> window = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> e : b.latencies.entrySet()) {
+            window.put(e.getKey(), e.getValue().minus(a.latencies.get(e.getKey())));
+        }
+        window.put("scheduling_error_seconds", b.scheduling.minus(a.scheduling));
+        for (Map.Entry<String, LatencyHistogram.Snapshot> e : window.entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue();
+            if (s.getCount() == 0) continue;            // e.g. capture DSP switched off
+            String name = e.getKey().replace("_seconds", "");
+            out.printf("  %-22s %9s %8s %8s %8s %8s%n", name, ms(s.getValueAt(0.5)), ms(s.getValueAt(0.9)),
+                    ms(s.getValueAt(0.99)), ms(s.getValueAt(0.999)), ms(s.getMax()));
+            r.put(name + "_p50_ms", fmt(s.getValueAt(0.5) / 1e6));
+            r.put(name + "_p99_ms", fmt(s.getValueAt(0.99) / 1e6));
+        }
+
+        out.println("🎧 Quality");
+        double residual = played + concealed == 0 ? 0 : 100.0 * concealed / (played + concealed);
+        out.printf("  network loss         %10.2f %% (%d dropped by the proxy), %d underruns, %d late%n",
+                100.0 * (b.proxyDropped - a.proxyDropped) / Math.max(1, b.proxyReceived - a.proxyReceived),
+                b.proxyDropped - a.proxyDropped, b.underruns - a.underruns, b.lateDrops - a.lateDrops);
+        out.printf("  concealed frames     %10.2f %% after FEC%n", residual);
+        r.put("concealed_percent", fmt(residual));
+
+        // One-way delay: the mic queue and send path, the proxy's fixed delay, then everything the
+        // receiver adds (its estimate already counts one ptime of packetisation)
+        double delayMillis = (window.get("capture_delay_seconds").getValueAt(0.5) + window.get("capture_to_send_seconds").getValueAt(0.5)
+                + window.get("mouth_to_ear_seconds").getValueAt(0.5)) / 1e6 - config.getPtimeMillis() + profile.getDelayMillis();
+        double rFactor = rFactor(config.getCodec(), residual, burstRatio(profile), delayMillis);
+        double mos = mos(rFactor);
+        out.printf("  E-model (G.107)      %10.1f R, MOS %.2f at %.0f ms one-way%n", rFactor, mos, delayMillis);
+        r.put("one_way_delay_ms", fmt(delayMillis));
+        r.put("r_factor", fmt(rFactor));
+        r.put("mos", fmt(mos));
+
+        double snr = Double.NaN, worst = Double.NaN, dropouts = Double.NaN;
+        if (audio.isScored()) {
+            SyntheticAudio.Quality total = null;
+            double[] perPair = new double[pairs];
+            for (int i = 0; i < pairs; i++) {
+                SyntheticAudio.Quality q = b.quality[i].minus(a.quality[i]);
+                total = total == null ? q : total.plus(q);
+                perPair[i] = q.getSegmentalSnr();
+            }
+            Arrays.sort(perPair);
+            snr = total.getSegmentalSnr();
+            worst = perPair[0];
+            dropouts = total.getDropoutPercent();
+            out.printf("  tone segmental SNR   %10.1f dB (worst pair %.1f dB), %.2f %% dropouts, %d device underruns%n",
+                    snr, worst, dropouts, total.getUnderruns());
+        } else {
+            out.println("  tone score           n/a (recorded audio is not scored; use --audio tone:<hz>)");
+        }
+        r.put("segmental_snr_db", fmt(snr));
+        r.put("worst_pair_snr_db", fmt(worst));
+        r.put("dropout_percent", fmt(dropouts));
+        r.put("errors", Long.toString(errors));
+        if (errors > 0) out.println("⚠ " + errors + " engine errors, see above");
+        return r;
+    }
+
+    // E-model transmission rating with the simplified delay impairment of Cole & Rosenbluth:
+    //   R = 93.2 - Id - Ie,eff,   Ie,eff = Ie + (95 - Ie) * Ppl / (Ppl / BurstR + Bpl)
+    // Ie from G.113: 0 for G.711, 7 for 32 kbit/s ADPCM (G.726). Concealment runs on decoded PCM
+    // for every codec here, so both get the G.711-with-PLC loss robustness, Bpl = 25.1.
+    // Narrowband scale: wideband rates score as if they were narrowband.
+    static double rFactor(String codec, double lossPercent, double burstRatio, double delayMillis) {
+        double ie = codec.equals(AudioCodec.DVI4) ? 7 : 0;
+        double bpl = 25.1;
+        double ieEff = ie + (95 - ie) * lossPercent / (lossPercent / burstRatio + bpl);
+        double id = 0.024 * delayMillis + (delayMillis > 177.3 ? 0.11 * (delayMillis - 177.3) : 0);
+        return 93.2 - id - ieEff;
+    }
+
+    static double mos(double r) {
+        if (r <= 0) return 1;
+        if (r >= 100) return 4.5;
+        return 1 + 0.035 * r + 7e-6 * r * (r - 60) * (100 - r);
+    }
+
+    // G.107 BurstR of the proxy's Gilbert-Elliott loss: 1 / (P(enter burst) + P(leave burst))
+    private static double burstRatio(ImpairmentProxy.Profile profile) {
+        double p = profile.getLossPercent() / 100;
+        if (p == 0) return 1;
+        double leave = 1 / profile.getBurstLength();
+        return 1 / (p * leave / (1 - p) + leave);
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    // Report values parse back with Double.parseDouble whatever the locale
+    private static String fmt(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,330 @@
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// 🧵 Execution model for the media engines, chosen per StreamConfig:
+//  - PLATFORM:   one OS thread per worker and per periodic task (the classic model)
+//  - VIRTUAL:    one virtual thread per worker and per task (JDK 21+, looked up reflectively so
+//                the code still builds and runs on older JDKs, where it falls back to PLATFORM)
+//  - EVENT_LOOP: periodic tasks multiplexed onto a few loop threads, one per core, each running
+//                a deadline heap against the media clock; blocking workers stay on OS threads, and
+//                so do periodic tasks that block on an audio line (StreamConfig.getDeviceExecutor)
+// Periodic tasks run at absolute deadlines (start + n * period), so scheduling error never
+// accumulates; a task that falls more than MAX_LATE_PERIODS behind is resynchronised to now
+// instead of bursting to catch up. Every executor records its scheduling error (actual start
+// minus deadline) in one histogram.
+public abstract class MediaExecutor {
+    public enum Mode { PLATFORM, VIRTUAL, EVENT_LOOP }
+
+    // One frame of work; 'deadline' is the System.nanoTime() the frame was due
+    public interface Task {
+        void run(long deadline);
+    }
+
+    private static final int MAX_LATE_PERIODS = 4;
+    // Event loops park until this close to a deadline, then spin, beating the OS timer slack
+    private static final long SPIN_NANOS = 100_000L;
+    private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+    private static final Map<Mode, MediaExecutor> SHARED = new EnumMap<>(Mode.class);
+
+    protected final LatencyHistogram schedulingError = new LatencyHistogram();
+
+    // Handle for a scheduled task; cancel() stops it before its next deadline
+    public static final class Periodic {
+        final String name;
+        final long periodNanos;
+        final Task task;
+        long deadline;
+        volatile boolean cancelled;
+        volatile Thread thread;     // thread-per-task executors only
+
+        Periodic(String name, long periodNanos, Task task, long firstDeadline) {
+            this.name = name;
+            this.periodNanos = periodNanos;
+            this.task = task;
+            this.deadline = firstDeadline;
+        }
+
+        public String getName() { return name; }
+        public boolean isCancelled() { return cancelled; }
+
+        public void cancel() {
+            cancelled = true;
+            Thread t = thread;
+            if (t != null) LockSupport.unpark(t);
+        }
+
+        // Moves to the next deadline after a run, resyncing if it fell far behind
+        void advance(long now) {
+            deadline += periodNanos;
+            if (now - deadline > MAX_LATE_PERIODS * periodNanos) deadline = now + periodNanos;
+        }
+    }
+
+    // Process-wide executor per mode; engines share it so a gateway's streams share its loops
+    public static synchronized MediaExecutor shared(Mode mode) {
+        return SHARED.computeIfAbsent(mode, m -> create(m, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // A private executor, e.g. for a benchmark; 'loops' only matters for EVENT_LOOP
+    public static MediaExecutor create(Mode mode, int loops) {
+        switch (mode) {
+            case VIRTUAL:
+                if (VIRTUAL_THREADS != null) return new ThreadPerTask(Mode.VIRTUAL, VIRTUAL_THREADS);
+                return new ThreadPerTask(Mode.PLATFORM, null);
+            case EVENT_LOOP:
+                return new EventLoops(Math.max(1, loops));
+            default:
+                return new ThreadPerTask(Mode.PLATFORM, null);
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() { return VIRTUAL_THREADS != null; }
+
+    // The mode actually in effect (VIRTUAL degrades to PLATFORM without JDK support)
+    public abstract Mode getMode();
+
+    // Starts a worker that blocks on a device or socket. Platform workers are daemon threads only
+    // if asked; virtual threads are always daemon.
+    public abstract Thread startWorker(String name, boolean daemon, Runnable body);
+
+    // Runs 'task' every 'periodNanos', first at now + period
+    public abstract Periodic schedule(String name, long periodNanos, Task task);
+
+    // Threads owned by the executor itself (event loops); thread-per-task executors own none
+    public abstract int getThreadCount();
+
+    // Stops owned threads; the shared executors are never shut down
+    public abstract void shutdown();
+
+    public LatencyHistogram getSchedulingError() { return schedulingError; }
+
+    // Tasks report their own errors; one that throws anyway is cancelled so it cannot take the
+    // other tasks on its loop down with it
+    static void fail(Periodic p, RuntimeException e) {
+        p.cancelled = true;
+        System.err.println("❌ Media task " + p.name + " cancelled: " + e);
+    }
+
+    // --- Media clock ---
+
+    // Sleeps until System.nanoTime() reaches 'deadline': park for the bulk, spin the last 'spinNanos'
+    public static void sleepUntil(long deadline, long spinNanos) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.currentThread().isInterrupted()) return;
+        }
+        while (deadline - System.nanoTime() > 0) Thread.onSpinWait();
+    }
+
+    // Thread.ofVirtual().factory(), or null before JDK 21 (or on 19/20 without --enable-preview)
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // --- One thread (platform or virtual) per worker and per periodic task ---
+
+    private static final class ThreadPerTask extends MediaExecutor {
+        private final Mode mode;
+        private final ThreadFactory virtual;    // null for platform threads
+
+        ThreadPerTask(Mode mode, ThreadFactory virtual) {
+            this.mode = mode;
+            this.virtual = virtual;
+        }
+
+        @Override
+        public Mode getMode() { return mode; }
+
+        @Override
+        public Thread startWorker(String name, boolean daemon, Runnable body) {
+            Thread t = newThread(name, daemon, body);
+            t.start();
+            return t;
+        }
+
+        @Override
+        public Periodic schedule(String name, long periodNanos, Task task) {
+            Periodic p = new Periodic(name, periodNanos, task, System.nanoTime() + periodNanos);
+            Thread t = newThread(name, true, () -> {
+                // Hundreds of these may exist, so they park to the deadline and never spin
+                while (!p.cancelled) {
+                    sleepUntil(p.deadline, 0);
+                    if (p.cancelled) break;
+                    long now = System.nanoTime();
+                    schedulingError.record(now - p.deadline);
+                    try {
+                        p.task.run(p.deadline);
+                    } catch (RuntimeException e) {
+                        fail(p, e);
+                    }
+                    p.advance(now);
+                }
+            });
+            p.thread = t;
+            t.start();
+            return p;
+        }
+
+        private Thread newThread(String name, boolean daemon, Runnable body) {
+            if (virtual == null) {
+                Thread t = new Thread(body, name);
+                t.setDaemon(daemon);
+                return t;
+            }
+            Thread t = virtual.newThread(body);
+            t.setName(name);
+            return t;
+        }
+
+        @Override
+        public int getThreadCount() { return 0; }
+
+        @Override
+        public void shutdown() {}
+    }
+
+    // --- A few loop threads, each running many periodic tasks off a deadline heap ---
+
+    private static final class EventLoops extends MediaExecutor {
+        private final Loop[] loops;
+
+        EventLoops(int count) {
+            loops = new Loop[count];
+            for (int i = 0; i < count; i++) {
+                loops[i] = new Loop("media-loop-" + i);
+                loops[i].thread.start();
+            }
+        }
+
+        @Override
+        public Mode getMode() { return Mode.EVENT_LOOP; }
+
+        // Blocking I/O would stall every task on a loop, so workers get their own OS thread
+        @Override
+        public Thread startWorker(String name, boolean daemon, Runnable body) {
+            Thread t = new Thread(body, name);
+            t.setDaemon(daemon);
+            t.start();
+            return t;
+        }
+
+        // New tasks go to the loop carrying the fewest
+        @Override
+        public Periodic schedule(String name, long periodNanos, Task task) {
+            Loop target = loops[0];
+            for (Loop loop : loops) if (loop.tasks.get() < target.tasks.get()) target = loop;
+            Periodic p = new Periodic(name, periodNanos, task, System.nanoTime() + periodNanos);
+            target.tasks.incrementAndGet();
+            target.incoming.add(p);
+            LockSupport.unpark(target.thread);
+            return p;
+        }
+
+        @Override
+        public int getThreadCount() { return loops.length; }
+
+        @Override
+        public void shutdown() {
+            for (Loop loop : loops) {
+                loop.running = false;
+                LockSupport.unpark(loop.thread);
+            }
+        }
+
+        private final class Loop implements Runnable {
+            final Thread thread;
+            final ConcurrentLinkedQueue<Periodic> incoming = new ConcurrentLinkedQueue<>();
+            final AtomicInteger tasks = new AtomicInteger();
+            volatile boolean running = true;
+            // Binary min-heap on deadline, owned by the loop thread
+            private Periodic[] heap = new Periodic[64];
+            private int size;
+
+            Loop(String name) {
+                thread = new Thread(this, name);
+                thread.setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                while (running) {
+                    for (Periodic p; (p = incoming.poll()) != null; ) push(p);
+                    if (size == 0) {
+                        LockSupport.parkNanos(10_000_000L);
+                        continue;
+                    }
+                    Periodic next = heap[0];
+                    if (next.cancelled) {
+                        pop();
+                        tasks.decrementAndGet();
+                        continue;
+                    }
+                    long now = System.nanoTime();
+                    long wait = next.deadline - now;
+                    if (wait > SPIN_NANOS) {
+                        // Wakes early for tasks scheduled meanwhile, which may be due sooner
+                        LockSupport.parkNanos(wait - SPIN_NANOS);
+                        continue;
+                    }
+                    if (wait > 0) {
+                        sleepUntil(next.deadline, SPIN_NANOS);
+                        now = System.nanoTime();
+                    }
+                    schedulingError.record(now - next.deadline);
+                    try {
+                        next.task.run(next.deadline);
+                    } catch (RuntimeException e) {
+                        // One failing task must not take the loop's other streams down with it
+                        fail(next, e);
+                    }
+                    next.advance(now);
+                    siftDown(0);
+                }
+            }
+
+            private void push(Periodic p) {
+                if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent].deadline - p.deadline <= 0) break;
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = p;
+            }
+
+            private void pop() {
+                heap[0] = heap[--size];
+                heap[size] = null;
+                if (size > 0) siftDown(0);
+            }
+
+            private void siftDown(int i) {
+                Periodic p = heap[i];
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && heap[child + 1].deadline - heap[child].deadline < 0) child++;
+                    if (p.deadline - heap[child].deadline <= 0) break;
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = p;
+            }
+        }
+    }
+}
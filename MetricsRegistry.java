@@ -0,0 +1,212 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+// 📊 Named metrics for one engine (sender, receiver, multi-stream engine), readable over JMX and
+// as plain text in the Prometheus exposition format (see MetricsServer).
+//  - counters:   LongAdder, incremented on the hot path without locks or contention
+//  - gauges:     sampled from their owner only when read, so they cost nothing per packet
+//  - histograms: LatencyHistogram, exported as a summary in seconds
+// Metric names are given without the registry prefix, e.g. "packets_sent_total".
+public class MetricsRegistry {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final class Entry {
+        final String help;
+        final Object metric;     // LongAdder, DoubleSupplier or LatencyHistogram
+
+        Entry(String help, Object metric) {
+            this.help = help;
+            this.metric = metric;
+        }
+    }
+
+    private final String prefix;
+    private final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private volatile ObjectName objectName;
+
+    // 'prefix' names the engine, e.g. "voip_sender"
+    public MetricsRegistry(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() { return prefix; }
+
+    public LongAdder counter(String name, String help) {
+        return (LongAdder) register(name, help, new LongAdder());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        register(name, help, supplier);
+    }
+
+    public LatencyHistogram histogram(String name, String help) {
+        return (LatencyHistogram) register(name, help, new LatencyHistogram());
+    }
+
+    // A registered histogram by name, or null; for harnesses that read results in-process
+    public LatencyHistogram getHistogram(String name) {
+        Entry e = entries.get(name);
+        return e != null && e.metric instanceof LatencyHistogram ? (LatencyHistogram) e.metric : null;
+    }
+
+    private Object register(String name, String help, Object metric) {
+        Entry existing = entries.putIfAbsent(name, new Entry(help, metric));
+        if (existing != null) throw new IllegalArgumentException("Metric already registered: " + prefix + "_" + name);
+        return metric;
+    }
+
+    // --- Plain-text exposition ---
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        scrape(out);
+        return out.toString();
+    }
+
+    public void scrape(StringBuilder out) {
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String name = prefix + "_" + e.getKey();
+            Object metric = e.getValue().metric;
+            out.append("# HELP ").append(name).append(' ').append(e.getValue().help).append('\n');
+            if (metric instanceof LongAdder) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ').append(((LongAdder) metric).sum()).append('\n');
+            } else if (metric instanceof DoubleSupplier) {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(((DoubleSupplier) metric).getAsDouble()).append('\n');
+            } else {
+                LatencyHistogram.Snapshot s = ((LatencyHistogram) metric).snapshot();
+                out.append("# TYPE ").append(name).append(" summary\n");
+                for (double q : QUANTILES) {
+                    out.append(name).append("{quantile=\"").append(q).append("\"} ").append(seconds(s.getValueAt(q))).append('\n');
+                }
+                out.append(name).append("_max ").append(seconds(s.getMax())).append('\n');
+                out.append(name).append("_sum ").append(seconds(s.getSum())).append('\n');
+                out.append(name).append("_count ").append(s.getCount()).append('\n');
+            }
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    // --- JMX ---
+
+    // Registers the registry as a DynamicMBean under "voip:type=<type>,name=<name>"; a second
+    // engine with the same name in this JVM gets an instance suffix instead of failing
+    public ObjectName registerMBean(String type, String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (int instance = 0; ; instance++) {
+            try {
+                ObjectName candidate = new ObjectName("voip:type=" + type + ",name=" + ObjectName.quote(name)
+                        + (instance == 0 ? "" : ",instance=" + instance));
+                server.registerMBean(new Bean(), candidate);
+                objectName = candidate;
+                return candidate;
+            } catch (InstanceAlreadyExistsException e) {
+                // try the next instance number
+            } catch (JMException e) {
+                throw new IllegalStateException("Cannot register metrics MBean", e);
+            }
+        }
+    }
+
+    public void unregisterMBean() {
+        ObjectName name = objectName;
+        if (name == null) return;
+        objectName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+    }
+
+    // Counters are Long attributes, gauges Double; a histogram becomes <name>_p50 .. _max, _count
+    private final class Bean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Entry e = entries.get(attribute);
+            if (e != null && e.metric instanceof LongAdder) return ((LongAdder) e.metric).sum();
+            if (e != null && e.metric instanceof DoubleSupplier) return ((DoubleSupplier) e.metric).getAsDouble();
+            int split = attribute.lastIndexOf('_');
+            e = split < 0 ? null : entries.get(attribute.substring(0, split));
+            if (e == null || !(e.metric instanceof LatencyHistogram)) throw new AttributeNotFoundException(attribute);
+            LatencyHistogram.Snapshot s = ((LatencyHistogram) e.metric).snapshot();
+            switch (attribute.substring(split + 1)) {
+                case "count": return s.getCount();
+                case "max": return seconds(s.getMax());
+                case "mean": return s.getMean() / 1e9;
+                case "p50": return seconds(s.getValueAt(0.5));
+                case "p90": return seconds(s.getValueAt(0.9));
+                case "p99": return seconds(s.getValueAt(0.99));
+                case "p999": return seconds(s.getValueAt(0.999));
+                default: throw new AttributeNotFoundException(attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    list.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException e) {
+                    // skipped, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) { return new AttributeList(); }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        // Rebuilt on every call so metrics registered after the bean still show up
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                String name = e.getKey(), help = e.getValue().help;
+                Object metric = e.getValue().metric;
+                if (metric instanceof LongAdder) {
+                    attributes.add(new MBeanAttributeInfo(name, "java.lang.Long", help, true, false, false));
+                } else if (metric instanceof DoubleSupplier) {
+                    attributes.add(new MBeanAttributeInfo(name, "java.lang.Double", help, true, false, false));
+                } else {
+                    attributes.add(new MBeanAttributeInfo(name + "_count", "java.lang.Long", help + " (samples)", true, false, false));
+                    for (String suffix : new String[] { "mean", "p50", "p90", "p99", "p999", "max" }) {
+                        attributes.add(new MBeanAttributeInfo(name + "_" + suffix, "java.lang.Double", help + " (" + suffix + ", s)", true, false, false));
+                    }
+                }
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "VoIP metrics: " + prefix,
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// 🌐 Plain-text scrape endpoint: GET http://127.0.0.1:<port>/metrics returns every registry in the
+// Prometheus text format. Bound to the loopback address only, served by one daemon thread, and
+// everything is computed per request, so an idle endpoint costs the media path nothing.
+public class MetricsServer {
+    private final HttpServer server;
+    private final MetricsRegistry[] registries;
+
+    private MetricsServer(HttpServer server, MetricsRegistry[] registries) {
+        this.server = server;
+        this.registries = registries;
+    }
+
+    public static MetricsServer start(int port, MetricsRegistry... registries) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        MetricsServer metrics = new MetricsServer(server, registries);
+        server.createContext("/metrics", metrics::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http-" + port);
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+        return metrics;
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(8192);
+            for (MetricsRegistry registry : registries) registry.scrape(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+// 📡 Headless receive engine: one UDP port, many concurrent callers.
+// A single selector thread drains the UdpTransport and demultiplexes datagrams by SSRC into
+// per-stream pipelines, and a single periodic tick on the configured MediaExecutor plays every
+// stream out once per frame period, so thread count stays fixed however many callers join.
+public class MultiStreamReceiver {
+    // Callbacks run on the tick thread (frames) or the selector thread (stream start)
+    public interface Listener {
+        default void onStreamStarted(ReceiveStream stream) {}
+        void onFrame(ReceiveStream stream, short[] pcm, int samples);
+        default void onTickEnd() {}
+        default void onStreamEnded(ReceiveStream stream) {}
+        default void onError(Exception e) {}
+    }
+
+    // Every stream on the engine shares one rate and ptime, so the tick can serve them all
+    private final StreamConfig config;
+    private final int port;
+    private final int frameSamples;
+    private final long frameNanos;
+    // Accepted media formats: every codec at the configured rate and ptime, picked per caller by
+    // the payload type it sends
+    private final int[] mediaTypes;
+    private final int[] mediaBytes;
+    private final Listener listener;
+    private final int maxStreams;
+    private final long idleTimeoutNanos;
+
+    private final Map<Long, ReceiveStream> streams = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private UdpTransport transport;
+    private Thread selectorThread;
+    // Selector-thread state
+    private final RtpHeader header = new RtpHeader();
+    private final SsrcTable lookup = new SsrcTable();
+    // Streams the tick thread evicted, for the selector thread to drop from 'lookup'
+    private final ConcurrentLinkedQueue<ReceiveStream> evicted = new ConcurrentLinkedQueue<>();
+    private MediaExecutor.Periodic ticker;
+    private SrtpContext srtp;                   // selector thread only; null without a key
+
+    // Engine-wide metrics; per-stream figures are summed over the live streams when scraped
+    private final MetricsRegistry metrics = new MetricsRegistry("voip_engine");
+    private final LongAdder datagramsReceived = metrics.counter("datagrams_received_total", "Datagrams read from the socket");
+    private final LongAdder invalidDatagrams = metrics.counter("datagrams_invalid_total", "Datagrams that were not RTP in the configured format");
+    private final LongAdder rejectedStreams = metrics.counter("streams_rejected_total", "New streams refused at the stream limit");
+    private final LongAdder srtpRejected = metrics.counter("srtp_rejected_total", "Datagrams failing SRTP authentication (wrong key, tampered, plain RTP)");
+    private final LongAdder srtpReplayed = metrics.counter("srtp_replayed_total", "SRTP packets dropped as replays or too old for the window");
+    private final LatencyHistogram tickTime = metrics.histogram("tick_seconds", "Time to play out every stream for one frame period");
+    private final LatencyHistogram tickLateness = metrics.histogram("tick_lateness_seconds", "How late each tick started against the media clock");
+
+    public MultiStreamReceiver(int port, Listener listener) {
+        this(new StreamConfig().setPort(port), listener);
+    }
+
+    public MultiStreamReceiver(StreamConfig config, Listener listener) {
+        this(config, listener, 1000, 5_000_000_000L);
+    }
+
+    public MultiStreamReceiver(StreamConfig config, Listener listener, int maxStreams, long idleTimeoutNanos) {
+        this.config = config;
+        this.port = config.getPort();
+        this.frameSamples = config.getFrameSamples();
+        this.frameNanos = config.getFrameNanos();
+        String[] codecs = { AudioCodec.PCMU, AudioCodec.DVI4 };
+        this.mediaTypes = new int[codecs.length];
+        this.mediaBytes = new int[codecs.length];
+        for (int i = 0; i < codecs.length; i++) {
+            AudioCodec codec = AudioCodec.create(codecs[i], config.getSampleRate());
+            mediaTypes[i] = codec.getPayloadType();
+            mediaBytes[i] = codec.getPayloadBytes(frameSamples);
+        }
+        this.pcm = new short[frameSamples];
+        this.listener = listener;
+        this.maxStreams = maxStreams;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+
+        metrics.gauge("streams", "Streams currently being played out", () -> streams.size());
+        metrics.gauge("packets_lost", "Packets lost on live streams", () -> sum(ReceiveStream::getPacketsLost));
+        metrics.gauge("packets_reordered", "Packets reordered on live streams", () -> sum(ReceiveStream::getPacketsReordered));
+        metrics.gauge("packets_recovered", "Packets rebuilt by FEC on live streams", () -> sum(ReceiveStream::getPacketsRecovered));
+        metrics.gauge("frames_concealed", "Frames concealed on live streams", () -> sum(s -> s.getJitterBuffer().getFramesConcealed()));
+        metrics.gauge("underruns", "Playout buffer underruns on live streams", () -> sum(s -> s.getJitterBuffer().getUnderruns()));
+        metrics.gauge("jitter_max_seconds", "Highest interarrival jitter among live streams",
+                () -> streams.values().stream().mapToDouble(s -> s.getJitterBuffer().getJitterMillis()).max().orElse(0) / 1000);
+        metrics.gauge("clock_drift_max_ppm", "Largest sender clock drift among live streams, signed",
+                () -> streams.values().stream().mapToDouble(ReceiveStream::getDriftPpm).reduce(0, (a, b) -> Math.abs(b) > Math.abs(a) ? b : a));
+        metrics.gauge("buffer_depth_frames_max", "Deepest playout buffer among live streams",
+                () -> streams.values().stream().mapToInt(s -> s.getJitterBuffer().depth()).max().orElse(0));
+    }
+
+    private long sum(ToLongFunction<ReceiveStream> counter) {
+        long total = 0;
+        for (ReceiveStream s : streams.values()) total += counter.applyAsLong(s);
+        return total;
+    }
+
+    public void start() throws IOException {
+        if (!running.compareAndSet(false, true)) return;
+        transport = UdpTransport.listen(config);
+        srtp = config.isSrtp() ? new SrtpContext(config.getSrtpKey()) : null;
+        metrics.registerMBean("MultiStreamReceiver", "udp-" + transport.getLocalPort());
+
+        MediaExecutor executor = config.getExecutor();
+        selectorThread = executor.startWorker("rx-selector-" + port, true, this::selectLoop);
+        ticker = executor.schedule("rx-playout-" + port, frameNanos, this::tick);
+    }
+
+    public void stop() {
+        if (!running.compareAndSet(true, false)) return;
+        ticker.cancel();
+        transport.close();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The selector thread is gone, so its table can be emptied here; a stream left in it would
+        // swallow its caller's packets after a restart
+        for (ReceiveStream s : streams.values()) {
+            s.markEnded();
+            s.getJitterBuffer().reset();
+            stopRecording(s);
+            listener.onStreamEnded(s);
+        }
+        streams.clear();
+        lookup.clear();
+        evicted.clear();
+        metrics.unregisterMBean();
+    }
+
+    // Sends from the listening socket, so replies reach callers on the address they send from.
+    // Non-blocking: returns false if the datagram could not be queued.
+    public boolean send(ByteBuffer datagram, SocketAddress to) throws IOException {
+        return transport.send(datagram, to);
+    }
+
+    public StreamConfig getConfig() { return config; }
+    public int getFrameSamples() { return frameSamples; }
+    public long getFrameNanos() { return frameNanos; }
+    public boolean isRunning() { return running.get(); }
+    public int getLocalPort() { return transport != null ? transport.getLocalPort() : port; }
+    public Collection<ReceiveStream> getStreams() { return Collections.unmodifiableCollection(streams.values()); }
+    public int getStreamCount() { return streams.size(); }
+    public long getDatagramsReceived() { return datagramsReceived.sum(); }
+    public long getInvalidDatagrams() { return invalidDatagrams.sum(); }
+    public long getRejectedStreams() { return rejectedStreams.sum(); }
+    public long getSrtpRejected() { return srtpRejected.sum(); }
+    public MetricsRegistry getMetrics() { return metrics; }
+
+    // --- Selector thread ---
+
+    private void selectLoop() {
+        UdpTransport.Handler handler = this::onDatagram;
+        try {
+            while (running.get()) {
+                // Drains everything queued on the socket per wakeup
+                transport.receiveBatch(handler, 256, 0);
+                forgetEvicted();
+            }
+        } catch (IOException e) {
+            if (running.get()) listener.onError(e);
+        }
+    }
+
+    // Random SSRCs never come back, so waiting for their next packet would keep every ended caller's
+    // buffers and decoder reachable for the life of the engine
+    private void forgetEvicted() {
+        ReceiveStream stream;
+        while ((stream = evicted.poll()) != null) {
+            // The SSRC may already belong to a new stream started after the eviction
+            if (lookup.get(stream.getSsrc()) == stream) lookup.remove(stream.getSsrc());
+        }
+    }
+
+    // A datagram that trips a parser is counted and dropped: it must not end the selector thread,
+    // and every stream on it, while isRunning() still says true
+    private void onDatagram(ByteBuffer datagram, SocketAddress from, long arrival) {
+        try {
+            handle(datagram, from, arrival);
+        } catch (RuntimeException e) {
+            invalidDatagrams.increment();
+        }
+    }
+
+    private void handle(ByteBuffer datagram, SocketAddress from, long arrival) {
+        datagramsReceived.increment();
+        // Senders' reports are for point-to-point receivers to answer; a bridge mixes at one fixed
+        // format, so there is nothing it could ask a caller to change
+        if (RtcpReport.isRtcp(datagram, datagram.limit())) return;
+        if (srtp != null) {
+            int length = srtp.unprotect(datagram);
+            if (length < 0) {
+                (length == SrtpContext.REPLAYED ? srtpReplayed : srtpRejected).increment();
+                return;
+            }
+            datagram.limit(length);
+        }
+        int payload = header.parse(datagram, 0, datagram.limit());
+        if (payload < 0) {
+            invalidDatagrams.increment();
+            return;
+        }
+        ReceiveStream stream = lookup.get(header.ssrc);
+        int type = header.payloadType;
+        if (type == RtpHeader.PT_CN || type == RtpHeader.PT_PARITY) {
+            // Silence and parity from a known caller keep it alive; they never start a stream
+            if (stream != null && !stream.isEnded()) stream.put(header, datagram, payload, from, arrival);
+            return;
+        }
+        int format = mediaFormat(datagram, payload);
+        if (format < 0) {
+            // A rate/ptime other than the one this engine was configured for, or an unknown codec
+            invalidDatagrams.increment();
+            return;
+        }
+        if (stream != null && stream.isEnded()) {
+            // Evicted by the tick thread since we last saw it; start over as a new stream
+            lookup.remove(header.ssrc);
+            stream = null;
+        }
+        if (stream != null && stream.getCodec().getPayloadType() != mediaTypes[format]) {
+            // A caller's codec is fixed for its SSRC; a sender restarting with another picks a new one
+            invalidDatagrams.increment();
+            return;
+        }
+        if (stream == null) {
+            if (streams.size() >= maxStreams) {
+                rejectedStreams.increment();
+                return;
+            }
+            stream = new ReceiveStream(header.ssrc, from, AudioCodec.forPayloadType(mediaTypes[format]), frameSamples, frameNanos,
+                    config.isDriftCompensation(), header);
+            lookup.put(header.ssrc, stream);
+            streams.put(header.ssrc, stream);
+            if (config.getRecordDirectory() != null) startRecording(stream);
+            listener.onStreamStarted(stream);
+        }
+        stream.put(header, datagram, payload, from, arrival);
+    }
+
+    private void startRecording(ReceiveStream stream) {
+        try {
+            stream.startRecording(new CallRecorder(CallRecorder.callDirectory(config.getRecordDirectory(), "rx", stream.getSsrc()),
+                    stream.getSsrc(), config.getSampleRate()));
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+    }
+
+    private void stopRecording(ReceiveStream stream) {
+        IOException error = stream.stopRecording();
+        if (error != null) listener.onError(error);
+    }
+
+    // Index into mediaTypes of the codec a media (or RED-wrapped media) packet carries, or -1
+    private int mediaFormat(ByteBuffer datagram, int payload) {
+        int type = header.payloadType, length = header.payloadLength;
+        for (int i = 0; i < mediaTypes.length; i++) {
+            if (type == mediaTypes[i] ? length == mediaBytes[i]
+                    : type == RtpHeader.PT_RED && FecDecoder.isRedundantFor(datagram, payload, length, mediaTypes[i], mediaBytes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Open-addressing SSRC -> stream table owned by the selector thread, so the per-packet
+    // lookup neither boxes the key nor allocates (the shared map is only touched per stream)
+    private static final class SsrcTable {
+        private long[] keys = new long[64];
+        private ReceiveStream[] values = new ReceiveStream[64];
+        private int size;
+
+        ReceiveStream get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        void put(long key, ReceiveStream value) {
+            if (2 * (size + 1) > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == null) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void clear() {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == null) return;
+            values[i] = null;
+            size--;
+            // Re-insert the rest of the probe run so later lookups don't stop at the hole
+            for (i = (i + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+                long k = keys[i];
+                ReceiveStream v = values[i];
+                values[i] = null;
+                size--;
+                put(k, v);
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            ReceiveStream[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new ReceiveStream[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldValues[i] != null) put(oldKeys[i], oldValues[i]);
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+
+    // --- Tick thread ---
+
+    private final short[] pcm;
+
+    private void tick(long deadline) {
+        try {
+            long now = System.nanoTime();
+            tickLateness.record(now - deadline);
+            Iterator<ReceiveStream> it = streams.values().iterator();
+            while (it.hasNext()) {
+                ReceiveStream stream = it.next();
+                // Idle time alone ends a stream: one that stopped while its buffer was still filling
+                // never plays out, so waiting for the buffer to drain would hold its slot forever
+                if (now - stream.getLastPacketNanos() > idleTimeoutNanos) {
+                    it.remove();
+                    stream.markEnded();
+                    stream.getJitterBuffer().reset();
+                    evicted.add(stream);
+                    stopRecording(stream);
+                    listener.onStreamEnded(stream);
+                    continue;
+                }
+                if (stream.playout(pcm)) listener.onFrame(stream, pcm, frameSamples);
+            }
+            if (!evicted.isEmpty()) transport.wakeup();
+            listener.onTickEnd();
+            tickTime.record(System.nanoTime() - now);
+        } catch (Exception e) {
+            // Never let one bad callback kill the playout schedule
+            listener.onError(e);
+        }
+    }
+
+    // Headless monitor: java MultiStreamReceiver [port] [ptime-ms] [rate-hz] [metrics-port]
+    public static void main(String[] args) throws Exception {
+        StreamConfig config = new StreamConfig().setPort(args.length > 0 ? Integer.parseInt(args[0]) : 50005);
+        if (args.length > 1) config.setPtimeMillis(Integer.parseInt(args[1]));
+        if (args.length > 2) config.setSampleRate(Integer.parseInt(args[2]));
+        if (args.length > 3) config.setMetricsPort(Integer.parseInt(args[3]));
+        serve(config);
+    }
+
+    // Runs a monitor until the process is killed, printing every stream every five seconds
+    public static void serve(StreamConfig config) throws Exception {
+        MultiStreamReceiver receiver = new MultiStreamReceiver(config, new Listener() {
+            public void onStreamStarted(ReceiveStream s) { System.out.println("🎧 Stream started: " + s.stats()); }
+            public void onFrame(ReceiveStream s, short[] pcm, int samples) {}
+            public void onStreamEnded(ReceiveStream s) { System.out.println("⏹ Stream ended: " + s.stats()); }
+            public void onError(Exception e) { System.err.println("❌ " + e); }
+        });
+        receiver.start();
+        System.out.println("📡 Listening on UDP " + receiver.getLocalPort());
+        if (config.getMetricsPort() > 0) {
+            MetricsServer server = MetricsServer.start(config.getMetricsPort(), receiver.getMetrics());
+            System.out.println("📊 Metrics on http://127.0.0.1:" + server.getPort() + "/metrics");
+        }
+        while (true) {
+            Thread.sleep(5000);
+            System.out.println("📊 streams=" + receiver.getStreamCount() + " datagrams=" + receiver.getDatagramsReceived()
+                    + " invalid=" + receiver.getInvalidDatagrams() + " rejected=" + receiver.getRejectedStreams());
+            for (ReceiveStream s : receiver.getStreams()) System.out.println("   " + s.stats());
+        }
+    }
+}
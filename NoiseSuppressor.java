@@ -0,0 +1,117 @@
+// 🔇 Spectral noise suppression for the capture path: a Wiener filter per FFT bin against a
+// minimum-tracking noise estimate, with the decision-directed a-priori SNR of Ephraim and Malah
+// to keep musical noise down. Blocks of about 8 ms (a power of two at any rate), 50% overlap
+// with a square-root Hann window on analysis and synthesis, so frames of any ptime go in and
+// come out delayed by two blocks. All buffers are allocated up front.
+// Not thread-safe: owned by the CaptureProcessor of one stream.
+public class NoiseSuppressor {
+    private static final float GAIN_FLOOR = 0.1f;          // -20 dB: never remove more than this
+    private static final float PRIOR_SMOOTHING = 0.98f;    // decision-directed weight of the last frame
+    private static final float POWER_SMOOTHING = 0.7f;
+    private static final double NOISE_RISE_DB_PER_SECOND = 3.0;
+
+    private final int hop, size;
+    private final Fft fft;
+    private final float[] window;
+    private final float[] analysis;        // last 'size' input samples
+    private final float[] re, im;
+    private final float[] overlap;         // second half of the previous synthesis block
+    private final float[] smoothedPower, noise, lastGain, lastPosterior;
+    private final float noiseRise;
+    private boolean primed;
+
+    // Input waiting for a full hop, and output waiting to be taken, as rings
+    private final float[] input;
+    private int inputFill;
+    private final float[] output;
+    private int outputRead, outputCount;
+
+    public NoiseSuppressor(int sampleRate, int maxFrameSamples) {
+        this.hop = Integer.highestOneBit(sampleRate / 100);   // 64 at 8 kHz, 128 at 16 kHz, 256 at 48 kHz
+        this.size = 2 * hop;
+        this.fft = new Fft(size);
+        this.window = new float[size];
+        for (int i = 0; i < size; i++) window[i] = (float) Math.sin(Math.PI * (i + 0.5) / size);
+        this.analysis = new float[size];
+        this.re = new float[size];
+        this.im = new float[size];
+        this.overlap = new float[hop];
+        int bins = hop + 1;
+        this.smoothedPower = new float[bins];
+        this.noise = new float[bins];
+        this.lastGain = new float[bins];
+        this.lastPosterior = new float[bins];
+        this.noiseRise = (float) Math.pow(10, NOISE_RISE_DB_PER_SECOND / 10 * hop / sampleRate);
+        this.input = new float[hop];
+        // One hop of priming keeps a whole frame available whatever the frame/hop alignment
+        this.output = new float[Integer.highestOneBit(maxFrameSamples + 2 * hop) * 2];
+        this.outputCount = hop;
+    }
+
+    // Samples of delay added to the stream
+    public int getLatencySamples() { return 2 * hop; }
+
+    // Denoises 'count' samples in place
+    public void process(float[] frame, int count) {
+        int mask = output.length - 1;
+        for (int i = 0; i < count; i++) {
+            input[inputFill++] = frame[i];
+            if (inputFill == hop) {
+                block();
+                inputFill = 0;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            frame[i] = output[outputRead];
+            outputRead = (outputRead + 1) & mask;
+        }
+        outputCount -= count;
+    }
+
+    private void block() {
+        System.arraycopy(analysis, hop, analysis, 0, hop);
+        System.arraycopy(input, 0, analysis, hop, hop);
+        for (int i = 0; i < size; i++) {
+            re[i] = analysis[i] * window[i];
+            im[i] = 0;
+        }
+        fft.forward(re, im);
+
+        for (int k = 0; k <= hop; k++) {
+            float power = re[k] * re[k] + im[k] * im[k];
+            if (!primed) {
+                smoothedPower[k] = power;
+                noise[k] = Math.max(power, 1e-3f);
+                lastGain[k] = 1;
+                lastPosterior[k] = 1;
+            } else {
+                smoothedPower[k] = POWER_SMOOTHING * smoothedPower[k] + (1 - POWER_SMOOTHING) * power;
+                // Minimum tracking: fall straight to a new minimum, creep up otherwise
+                noise[k] = smoothedPower[k] < noise[k] ? Math.max(smoothedPower[k], 1e-3f) : noise[k] * noiseRise;
+            }
+            float posterior = power / noise[k];
+            float prior = PRIOR_SMOOTHING * lastGain[k] * lastGain[k] * lastPosterior[k]
+                    + (1 - PRIOR_SMOOTHING) * Math.max(posterior - 1, 0);
+            float gain = Math.max(GAIN_FLOOR, prior / (1 + prior));
+            lastGain[k] = gain;
+            lastPosterior[k] = posterior;
+            re[k] *= gain;
+            im[k] *= gain;
+            if (k > 0 && k < hop) {
+                re[size - k] *= gain;
+                im[size - k] *= gain;
+            }
+        }
+        primed = true;
+
+        fft.inverse(re, im);
+        int mask = output.length - 1;
+        int write = (outputRead + outputCount) & mask;
+        for (int i = 0; i < hop; i++) {
+            output[write] = re[i] * window[i] + overlap[i];
+            write = (write + 1) & mask;
+            overlap[i] = re[hop + i] * window[hop + i];
+        }
+        outputCount += hop;
+    }
+}
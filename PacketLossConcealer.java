@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+// 🩹 Packet loss concealment after ITU-T G.711 Appendix I: instead of silence, a lost frame is
+// rebuilt by repeating the last pitch period of good speech, widening to two and three periods as
+// the erasure goes on, fading 20% per 10 ms and muting after 60 ms. The first good frame after a
+// loss is overlap-added with the synthetic signal so there is no click at either edge.
+// Works in 10 ms blocks at any supported rate (all constants scale from the 8 kHz originals).
+// Not thread-safe: owned by the DecodeStage that drives it.
+public class PacketLossConcealer {
+    private static final float ATTENUATION_PER_BLOCK = 0.2f;
+    private static final int MAX_ERASED_BLOCKS = 6;            // 60 ms, then mute
+    private static final float MIN_CORRELATION_POWER = 250f;
+
+    private final int blockSamples;        // 10 ms
+    private final int pitchMax;            // 15 ms (66 Hz)
+    private final int pitchDiff;           // search range below pitchMax, down to 5 ms (200 Hz)
+    private final int decimation;          // coarse pitch search step
+    private final int correlationLength;   // 20 ms compared at every candidate lag
+    private final int overlapIncrement;    // extra cross-fade per block of erasure, 4 ms
+    private final float attenuationPerSample;
+
+    // Last HISTORY samples of output, oldest first; also the pitch buffer while concealing
+    private final float[] history;
+    private final float[] pitchBuffer;
+    private final float[] lastQuarter;     // tail of the last good period, for the first overlap
+    private final float[] block;
+    private final float[] overlap;
+
+    private int erasedBlocks = 0;
+    private int pitch, pitchOverlap, pitchOffset, pitchBlockLength;
+
+    public PacketLossConcealer(int sampleRate) {
+        int scale = sampleRate / 8000;
+        this.blockSamples = sampleRate / 100;
+        this.pitchMax = 120 * scale;
+        this.pitchDiff = 80 * scale;
+        this.decimation = 2 * scale;
+        this.correlationLength = 160 * scale;
+        this.overlapIncrement = 32 * scale;
+        this.attenuationPerSample = ATTENUATION_PER_BLOCK / blockSamples;
+        int overlapMax = pitchMax >> 2;
+        this.history = new float[3 * pitchMax + overlapMax];
+        this.pitchBuffer = new float[history.length];
+        this.lastQuarter = new float[overlapMax];
+        this.block = new float[blockSamples];
+        this.overlap = new float[Math.max(overlapMax, blockSamples)];
+    }
+
+    // A real frame was decoded into pcm[0..samples): smooth the join if we were concealing, then
+    // remember it. 'samples' must be a whole number of 10 ms blocks.
+    public void good(short[] pcm, int samples) {
+        for (int off = 0; off < samples; off += blockSamples) {
+            if (erasedBlocks > 0) {
+                int length = Math.min(pitchOverlap + (erasedBlocks - 1) * overlapIncrement, blockSamples);
+                synthesize(overlap, length);
+                for (int i = 0; i < blockSamples; i++) block[i] = pcm[off + i];
+                fadeIn(block, overlap, length);
+                for (int i = 0; i < length; i++) pcm[off + i] = clamp(block[i]);
+                erasedBlocks = 0;
+            }
+            remember(pcm, off);
+        }
+    }
+
+    // A frame is missing: write a concealment frame of 'samples' samples into pcm.
+    public void conceal(short[] pcm, int samples) {
+        for (int off = 0; off < samples; off += blockSamples) {
+            concealBlock();
+            for (int i = 0; i < blockSamples; i++) pcm[off + i] = clamp(block[i]);
+            remember(pcm, off);
+        }
+    }
+
+    public boolean isConcealing() { return erasedBlocks > 0; }
+
+    // --- Appendix I state machine, one 10 ms block at a time ---
+
+    private void concealBlock() {
+        int end = pitchBuffer.length;
+        if (erasedBlocks == 0) {
+            // Start of an erasure: find the pitch of the last good speech and loop one period
+            System.arraycopy(history, 0, pitchBuffer, 0, history.length);
+            pitch = findPitch();
+            pitchOverlap = pitch >> 2;
+            System.arraycopy(pitchBuffer, end - pitchOverlap, lastQuarter, 0, pitchOverlap);
+            pitchOffset = 0;
+            pitchBlockLength = pitch;
+            int start = end - pitchBlockLength;
+            crossFade(lastQuarter, pitchBuffer, start - pitchOverlap, pitchBuffer, end - pitchOverlap, pitchOverlap);
+            // The looped tail must also continue the real history seamlessly
+            System.arraycopy(pitchBuffer, end - pitchOverlap, history, history.length - pitchOverlap, pitchOverlap);
+            synthesize(block, blockSamples);
+        } else if (erasedBlocks < 3) {
+            // 10 and 20 ms in: widen the loop by one more period to avoid a buzzy tone
+            int savedOffset = pitchOffset;
+            synthesize(overlap, pitchOverlap);
+            pitchOffset = savedOffset;
+            while (pitchOffset > pitch) pitchOffset -= pitch;
+            pitchBlockLength += pitch;
+            int start = end - pitchBlockLength;
+            crossFade(lastQuarter, pitchBuffer, start - pitchOverlap, pitchBuffer, end - pitchOverlap, pitchOverlap);
+            synthesize(block, blockSamples);
+            crossFade(overlap, block, 0, block, 0, pitchOverlap);
+            attenuate();
+        } else if (erasedBlocks >= MAX_ERASED_BLOCKS) {
+            Arrays.fill(block, 0f);
+        } else {
+            synthesize(block, blockSamples);
+            attenuate();
+        }
+        erasedBlocks++;
+    }
+
+    // Copies 'count' samples of the looped pitch buffer into out
+    private void synthesize(float[] out, int count) {
+        int start = pitchBuffer.length - pitchBlockLength;
+        int pos = 0;
+        while (count > 0) {
+            int n = Math.min(pitchBlockLength - pitchOffset, count);
+            System.arraycopy(pitchBuffer, start + pitchOffset, out, pos, n);
+            pitchOffset += n;
+            if (pitchOffset == pitchBlockLength) pitchOffset = 0;
+            pos += n;
+            count -= n;
+        }
+    }
+
+    private void attenuate() {
+        float gain = 1f - (erasedBlocks - 1) * ATTENUATION_PER_BLOCK;
+        for (int i = 0; i < blockSamples; i++) {
+            block[i] *= gain;
+            gain -= attenuationPerSample;
+        }
+    }
+
+    // Linear cross-fade from 'left' into 'right', written to 'out' (may alias 'right')
+    private static void crossFade(float[] left, float[] right, int rightOff, float[] out, int outOff, int count) {
+        float step = 1f / count;
+        float lw = 1f - step, rw = step;
+        for (int i = 0; i < count; i++) {
+            out[outOff + i] = lw * left[i] + rw * right[rightOff + i];
+            lw -= step;
+            rw += step;
+        }
+    }
+
+    // End of an erasure: fade the (already attenuated) synthetic signal out under the real frame
+    private void fadeIn(float[] real, float[] synthetic, int count) {
+        float step = 1f / count;
+        float gain = Math.max(0f, 1f - (erasedBlocks - 1) * ATTENUATION_PER_BLOCK);
+        float gainStep = step * gain;
+        float lw = (1f - step) * gain, rw = step;
+        for (int i = 0; i < count; i++) {
+            real[i] = lw * synthetic[i] + rw * real[i];
+            lw -= gainStep;
+            rw += step;
+        }
+    }
+
+    // Normalised cross-correlation of the last 20 ms against each lag, coarse (decimated) then
+    // refined around the best coarse match. Returns the pitch period in samples.
+    private int findPitch() {
+        float[] b = pitchBuffer;
+        int l = b.length - correlationLength;
+        int r = b.length - correlationLength - pitchMax;
+
+        float energy = 0f, corr = 0f;
+        for (int i = 0; i < correlationLength; i += decimation) {
+            energy += b[r + i] * b[r + i];
+            corr += b[r + i] * b[l + i];
+        }
+        float best = corr / (float) Math.sqrt(Math.max(energy, MIN_CORRELATION_POWER));
+        int bestMatch = 0;
+        for (int j = decimation; j <= pitchDiff; j += decimation) {
+            int rp = r + j;
+            energy -= b[rp - decimation] * b[rp - decimation];
+            energy += b[rp - decimation + correlationLength] * b[rp - decimation + correlationLength];
+            corr = 0f;
+            for (int i = 0; i < correlationLength; i += decimation) corr += b[rp + i] * b[l + i];
+            corr /= (float) Math.sqrt(Math.max(energy, MIN_CORRELATION_POWER));
+            if (corr >= best) {
+                best = corr;
+                bestMatch = j;
+            }
+        }
+
+        int from = Math.max(bestMatch - (decimation - 1), 0);
+        int to = Math.min(bestMatch + (decimation - 1), pitchDiff);
+        best = Float.NEGATIVE_INFINITY;
+        bestMatch = from;
+        for (int j = from; j <= to; j++) {
+            energy = 0f;
+            corr = 0f;
+            for (int i = 0; i < correlationLength; i++) {
+                energy += b[r + j + i] * b[r + j + i];
+                corr += b[r + j + i] * b[l + i];
+            }
+            corr /= (float) Math.sqrt(Math.max(energy, MIN_CORRELATION_POWER));
+            if (corr > best) {
+                best = corr;
+                bestMatch = j;
+            }
+        }
+        return pitchMax - bestMatch;
+    }
+
+    private void remember(short[] pcm, int off) {
+        System.arraycopy(history, blockSamples, history, 0, history.length - blockSamples);
+        int base = history.length - blockSamples;
+        for (int i = 0; i < blockSamples; i++) history[base + i] = pcm[off + i];
+    }
+
+    private static short clamp(float v) {
+        if (v > Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (v < Short.MIN_VALUE) return Short.MIN_VALUE;
+        return (short) v;
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+// 🎚 Per-caller receive pipeline inside MultiStreamReceiver: playout buffer, decode state and counters.
+// put() is only called from the selector thread, playout() only from the tick thread.
+public class ReceiveStream {
+    private static final int MAX_PAYLOAD = UdpTransport.MAX_DATAGRAM - RtpHeader.SIZE;
+
+    private final long ssrc;
+    private final AudioCodec codec;
+    private final int frameSamples;
+    private final int payloadBytes;
+    private final int clockRate;
+    private final JitterBuffer jitterBuffer;
+    private final DecodeStage decoder;
+    // Sender clock vs. the engine's tick clock, fed by the selector thread, applied by the tick
+    private final ClockDriftEstimator drift = new ClockDriftEstimator();
+    private final boolean compensateDrift;
+    // Selector-thread state: unwraps redundant/parity packets into the jitter buffer
+    private final FecDecoder fec = new FecDecoder(MAX_PAYLOAD);
+    private final FecDecoder.Sink sink = this::deliver;
+    private long currentArrival;
+    private boolean currentMarker;
+    // Optional tap of the media payloads; written by the selector thread, closed by the tick thread
+    private volatile CallRecorder recorder;
+    private volatile IOException recordingError;
+    private volatile SocketAddress source;
+    // Newest RTP timestamp, and its distance from the first packet's past any 32-bit wrap
+    private long newestTimestamp, newestExtended;
+    private volatile Object attachment;
+    private volatile boolean ended;
+
+    // Receive-side counters (single writer: the selector thread)
+    private final ReceptionStats reception = new ReceptionStats();
+    private volatile long bytesReceived, packetsRecovered;
+    private volatile long lastPacketNanos;
+    private final long createdNanos;
+
+    ReceiveStream(long ssrc, SocketAddress source, AudioCodec codec, int frameSamples, long frameNanos, boolean compensateDrift,
+            RtpHeader first) {
+        this.ssrc = ssrc;
+        this.source = source;
+        this.codec = codec;
+        this.frameSamples = frameSamples;
+        this.payloadBytes = codec.getPayloadBytes(frameSamples);
+        this.clockRate = codec.getClockRate();
+        this.jitterBuffer = new JitterBuffer(payloadBytes, frameNanos);
+        this.decoder = new DecodeStage(jitterBuffer, frameSamples, codec, false);
+        this.compensateDrift = compensateDrift;
+        this.newestTimestamp = first.timestamp;
+        this.createdNanos = System.nanoTime();
+        // Published to the tick thread before put() records its first packet: a zero here would
+        // read as idle since forever and get the stream evicted, its recording closed, before it began
+        this.lastPacketNanos = createdNanos;
+    }
+
+    // Selector thread: account for and queue one parsed packet (media, comfort noise, RED or parity)
+    void put(RtpHeader header, ByteBuffer buf, int payload, SocketAddress from, long arrivalNanos) {
+        source = from;
+        lastPacketNanos = arrivalNanos;
+        bytesReceived += header.payloadLength;
+        currentArrival = arrivalNanos;
+        currentMarker = header.marker;
+        if (header.payloadType == RtpHeader.PT_PARITY) {
+            // Parity packets have their own sequence space; they only feed the FEC decoder
+            fec.process(header, buf, payload, sink);
+            return;
+        }
+        reception.received(header.sequence);
+        fec.process(header, buf, payload, sink);
+    }
+
+    // Every original or rebuilt packet out of the FEC decoder lands here
+    private void deliver(int payloadType, int sequence, long timestamp, ByteBuffer data, int off, int len, boolean recovered) {
+        // Signed distance from the newest timestamp, so a packet older than the first (reordered,
+        // duplicated) lands just before it rather than 2^32 samples ahead
+        int delta = (int) (timestamp - newestTimestamp);
+        long extended = newestExtended + delta;
+        if (delta > 0) {
+            newestTimestamp = timestamp;
+            newestExtended = extended;
+        }
+        long mediaNanos = extended * 1_000_000_000L / clockRate;
+        if (!recovered) drift.update(currentArrival, mediaNanos);
+        if (payloadType == RtpHeader.PT_CN) {
+            // The caller has gone silent; a rebuilt descriptor is not worth a stale arrival time
+            if (!recovered) jitterBuffer.putSilence(sequence, mediaNanos, currentArrival, len > 0 ? data.get(off) & 0x7F : 127);
+        } else if (payloadType != codec.getPayloadType() || len != payloadBytes) {
+            return;
+        } else if (!recovered) {
+            jitterBuffer.put(sequence, mediaNanos, currentArrival, data, off, len);
+            record(payloadType, currentMarker, sequence, timestamp, data, off, len);
+        } else if (jitterBuffer.putRecovered(sequence, data, off, len)) {
+            packetsRecovered++;
+            record(payloadType, false, sequence, timestamp, data, off, len);
+        }
+        // Give the sender's protection scheme time to deliver before a frame's playout slot
+        int wanted = fec.getProtectionDelayFrames() + 1;
+        if (wanted > jitterBuffer.getMinDepth()) jitterBuffer.setMinDepth(wanted);
+    }
+
+    private void record(int payloadType, boolean marker, int sequence, long timestamp, ByteBuffer data, int off, int len) {
+        CallRecorder r = recorder;
+        if (r == null) return;
+        try {
+            r.append(payloadType, marker, sequence, timestamp, currentArrival, data, off, len);
+        } catch (IOException e) {
+            // Disk full or similar: stop recording this caller, keep the call going
+            recordingError = e;
+            recorder = null;
+        }
+    }
+
+    // Tick thread: produce exactly one frame of PCM. Returns false while the stream is (re)buffering.
+    boolean playout(short[] pcm) {
+        if (compensateDrift) decoder.setDriftPpm(drift.getPpm());
+        return decoder.next(pcm);
+    }
+
+    // Set by the tick thread when the stream is evicted, so the selector thread stops routing to it
+    void markEnded() { ended = true; }
+    public boolean isEnded() { return ended; }
+
+    // Starts taping this caller's payloads; the recorder is closed by stopRecording()
+    void startRecording(CallRecorder recorder) { this.recorder = recorder; }
+
+    // Closes the recording, if any. Returns the error that ended it early, or null.
+    IOException stopRecording() {
+        CallRecorder r = recorder;
+        recorder = null;
+        IOException error = recordingError;
+        if (r != null) {
+            try {
+                r.close();
+            } catch (IOException e) {
+                if (error == null) error = e;
+            }
+        }
+        return error;
+    }
+
+    // Lets a consumer such as ConferenceMixer hang its per-stream state off the stream
+    public void attach(Object attachment) { this.attachment = attachment; }
+    public Object attachment() { return attachment; }
+
+    public long getSsrc() { return ssrc; }
+    public SocketAddress getSource() { return source; }
+    public int getFrameSamples() { return frameSamples; }
+    // The codec this caller sends, picked from its payload type (a decoder instance; don't encode with it)
+    public AudioCodec getCodec() { return codec; }
+    public JitterBuffer getJitterBuffer() { return jitterBuffer; }
+    public long getPacketsReceived() { return reception.getReceived(); }
+    public long getBytesReceived() { return bytesReceived; }
+    public long getPacketsReordered() { return reception.getReordered(); }
+    public long getPacketsRecovered() { return packetsRecovered; }
+    public long getLastPacketNanos() { return lastPacketNanos; }
+    public long getCreatedNanos() { return createdNanos; }
+
+    // Cumulative packets lost: expected (from sequence numbers) minus received, as in RFC 3550
+    public long getPacketsLost() { return reception.getLost(); }
+    public ReceptionStats getReceptionStats() { return reception; }
+    // Measured sender clock drift against this engine, in ppm (0 for the first ~10 s)
+    public double getDriftPpm() { return drift.getPpm(); }
+
+    public String stats() {
+        return String.format("ssrc=%08x %s from=%s rx=%d lost=%d recovered=%d reordered=%d drift=%+.1fppm %s",
+                ssrc, codec, source, reception.getReceived(), reception.getLost(), packetsRecovered, reception.getReordered(),
+                drift.getPpm(), jitterBuffer.stats());
+    }
+}
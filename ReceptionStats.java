@@ -0,0 +1,50 @@
+// 🧮 RFC 3550 A.1 reception statistics for one source: extended highest sequence number, packets
+// received and reordered, and cumulative loss (expected minus received). Shared by ReceiveStream
+// and AudioStreamReceiver. Single writer (the receive thread); readers may be on any thread,
+// except intervalFractionLost(), which belongs to the writer.
+public class ReceptionStats {
+    private volatile long received, reordered;
+    private volatile long extendedHighest = -1;
+    private volatile long baseSequence;
+    private long expectedPrior, receivedPrior;
+
+    // Account for one packet as it arrived from the network (not one rebuilt by FEC)
+    public void received(int sequence) {
+        received++;
+        if (extendedHighest < 0) {
+            baseSequence = sequence;
+            extendedHighest = sequence;
+            return;
+        }
+        long ext = extendedHighest + (short) (sequence - (int) (extendedHighest & 0xFFFF));
+        if (ext > extendedHighest) {
+            extendedHighest = ext;
+        } else {
+            reordered++;
+        }
+    }
+
+    public long getReceived() { return received; }
+    public long getReordered() { return reordered; }
+    public long getExtendedHighest() { return extendedHighest; }
+
+    public long getExpected() {
+        return extendedHighest < 0 ? 0 : extendedHighest - baseSequence + 1;
+    }
+
+    // Cumulative packets lost, never negative (duplicates can push received above expected)
+    public long getLost() {
+        long lost = getExpected() - received;
+        return lost < 0 ? 0 : lost;
+    }
+
+    // RFC 3550 A.3: share of the packets expected since the previous call that never came, in
+    // 1/256ths as a receiver report carries it (0 when duplicates outnumber the losses)
+    public int intervalFractionLost() {
+        long expected = getExpected(), got = received;
+        long expectedInterval = expected - expectedPrior, lostInterval = expectedInterval - (got - receivedPrior);
+        expectedPrior = expected;
+        receivedPrior = got;
+        return expectedInterval == 0 || lostInterval <= 0 ? 0 : (int) Math.min(255, (lostInterval << 8) / expectedInterval);
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// 🏁 Call-recording benchmark: N concurrent recordings appended to by a few media threads (each
+// round-robins over its share of streams, like a receive loop), as fast as they go. Compares
+// CallRecorder's memory-mapped segments with a FileChannel.write() per packet, reporting packets/s,
+// MB/s, how many real-time streams that rate would sustain, and bytes allocated per packet.
+// Then prints disk bytes per stream-hour for every supported rate and ptime.
+//   java RecorderBenchmark [seconds-per-case] [stream counts, e.g. 10,100,1000] [directory]
+public class RecorderBenchmark {
+    private static final int PTIME = 20;
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3.0;
+        String[] counts = (args.length > 1 ? args[1] : "10,100,1000").split(",");
+        Path root = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("recorder-bench");
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        int frameSamples = StreamConfig.frameSamples(8000, PTIME);
+
+        System.out.println("8 kHz, " + PTIME + " ms frames, " + threads + " writer thread(s), " + seconds + " s per case, in " + root);
+        System.out.printf("%-14s %8s %12s %9s %14s %10s%n", "writer", "streams", "packets/s", "MB/s", "rt streams", "B/packet");
+        for (String count : counts) {
+            int streams = Integer.parseInt(count.trim());
+            run("mapped", streams, threads, frameSamples, seconds, root, true);
+            run("write/packet", streams, threads, frameSamples, seconds, root, false);
+        }
+
+        System.out.println();
+        System.out.println("Disk per stream-hour (continuous audio; silence suppression cuts it further)");
+        System.out.printf("%-8s %-6s %12s %10s%n", "rate", "ptime", "MB/hour", "overhead");
+        for (int rate : StreamConfig.SUPPORTED_RATES) {
+            for (int ptime : StreamConfig.SUPPORTED_PTIMES) {
+                long packets = 3_600_000L / ptime;
+                long payload = packets * StreamConfig.frameSamples(rate, ptime);
+                long records = packets * CallRecording.RECORD_HEADER;
+                long segments = (payload + records) / CallRecorder.DEFAULT_SEGMENT_BYTES + 1;
+                long disk = payload + records + segments * CallRecording.SEGMENT_HEADER + CallRecording.INDEX_HEADER + 8 * 3600;
+                System.out.printf("%-8s %-6s %12.1f %9.1f%%%n", rate / 1000 + " kHz", ptime + " ms",
+                        disk / 1e6, 100.0 * (disk - payload) / payload);
+            }
+        }
+    }
+
+    // One recording the old way: header and payload gathered into a heap buffer, one write() each
+    private static final class WriteRecorder {
+        private final FileChannel channel;
+        private final ByteBuffer record = ByteBuffer.allocate(CallRecording.RECORD_HEADER + UdpTransport.MAX_DATAGRAM);
+
+        WriteRecorder(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void append(int payloadType, int sequence, long timestamp, long nanos, ByteBuffer payload, int len) throws IOException {
+            record.clear();
+            record.putShort((short) len).put((byte) payloadType).put((byte) 0).putShort((short) sequence).putShort((short) 0)
+                    .putInt((int) timestamp).putLong(nanos);
+            for (int i = 0; i < len; i++) record.put(payload.get(i));
+            record.flip();
+            while (record.hasRemaining()) channel.write(record);
+        }
+
+        void close() throws IOException { channel.close(); }
+    }
+
+    private static void run(String name, int streams, int threads, int frameSamples, double seconds, Path root,
+            boolean mapped) throws Exception {
+        Path dir = Files.createDirectories(root.resolve(name.replace('/', '-') + "-" + streams));
+        CallRecorder[] recorders = new CallRecorder[streams];
+        WriteRecorder[] writers = new WriteRecorder[streams];
+        for (int i = 0; i < streams; i++) {
+            if (mapped) recorders[i] = new CallRecorder(dir.resolve("s" + i), i, 8000);
+            else writers[i] = new WriteRecorder(dir.resolve("s" + i + ".rec"));
+        }
+
+        AtomicBoolean measuring = new AtomicBoolean(false);
+        AtomicBoolean done = new AtomicBoolean(false);
+        long[] packets = new long[threads];
+        long[] allocated = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                ByteBuffer payload = ByteBuffer.allocateDirect(frameSamples);
+                byte[] noise = new byte[frameSamples];
+                new Random(id).nextBytes(noise);
+                payload.put(noise).clear();
+                long count = 0, allocStart = 0;
+                boolean counting = false;
+                try {
+                    for (int frame = 0; !done.get(); frame++) {
+                        if (!counting && measuring.get()) {
+                            counting = true;
+                            count = 0;
+                            allocStart = allocatedBytes();
+                        }
+                        long now = System.nanoTime();
+                        for (int s = id; s < streams; s += threads) {
+                            if (mapped) recorders[s].append(0, false, frame, frame * (long) frameSamples, now, payload, 0, frameSamples);
+                            else writers[s].append(0, frame, frame * (long) frameSamples, now, payload, frameSamples);
+                            count++;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                packets[id] = count;
+                allocated[id] = allocatedBytes() - allocStart;
+            }, "recorder-bench-" + t);
+            workers[t].start();
+        }
+
+        // Warm up (JIT, first segments mapped) before the measured window
+        Thread.sleep(Math.max(500, (long) (seconds * 300)));
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep((long) (seconds * 1000));
+        done.set(true);
+        for (Thread w : workers) w.join();
+        long elapsed = System.nanoTime() - start;
+        for (int i = 0; i < streams; i++) {
+            if (mapped) recorders[i].close();
+            else writers[i].close();
+        }
+
+        long total = 0, alloc = 0;
+        for (int t = 0; t < threads; t++) {
+            total += packets[t];
+            alloc += allocated[t];
+        }
+        double rate = total * 1e9 / elapsed;
+        System.out.printf("%-14s %8d %12.0f %9.1f %14.0f %10.3f%n", name, streams, rate,
+                rate * (CallRecording.RECORD_HEADER + frameSamples) / 1e6, rate / (1000.0 / PTIME),
+                alloc < 0 ? Double.NaN : (double) alloc / Math.max(1, total));
+        delete(dir);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// 🔁 Streaming sample-rate converter for 16-bit mono PCM, used when a device cannot run at the
+// wire rate. Downsampling averages each output span (a cheap anti-alias filter), upsampling
+// interpolates linearly. State carries across calls so frame boundaries are seamless.
+// setDriftPpm() trims the ratio for a device whose crystal runs fast or slow, in which case even
+// equal nominal rates are interpolated and a frame may come out a sample longer or shorter.
+public class Resampler {
+    private final int inRate, outRate;
+    private final double nominalStep;
+    private double step;            // input samples per output sample
+    private double position = 0;    // fractional read position relative to the current input frame
+    private short previous = 0;     // last input sample of the previous frame (for interpolation)
+
+    public Resampler(int inRate, int outRate) {
+        this.inRate = inRate;
+        this.outRate = outRate;
+        this.nominalStep = (double) inRate / outRate;
+        this.step = nominalStep;
+    }
+
+    // Positive when the output device consumes faster than its nominal rate
+    public void setDriftPpm(double ppm) {
+        step = nominalStep / (1.0 + ppm * 1e-6);
+    }
+
+    public boolean isPassThrough() { return step == 1.0; }
+    public int getInRate() { return inRate; }
+    public int getOutRate() { return outRate; }
+
+    // Output samples produced for 'inCount' input samples (exact when the rates divide evenly)
+    public int outputFor(int inCount) {
+        return (int) Math.ceil((inCount - position) / step);
+    }
+
+    // Converts inCount samples from 'in' into 'out' and returns the number of samples written
+    public int process(short[] in, int inCount, short[] out) {
+        if (step == 1.0) {
+            System.arraycopy(in, 0, out, 0, inCount);
+            return inCount;
+        }
+        int n = 0;
+        double pos = position;
+        if (step > 1.5) {
+            // Decimate: average the input samples covered by each output sample (a span straddling
+            // the previous frame, possible with drift trimming, averages just its part in this one)
+            while (pos + step <= inCount + 1e-9 && n < out.length) {
+                int from = Math.max(0, (int) pos), to = (int) (pos + step);
+                long sum = 0;
+                for (int i = from; i < to; i++) sum += in[i];
+                out[n++] = (short) (sum / Math.max(1, to - from));
+                pos += step;
+            }
+        } else {
+            // Interpolate between neighbours; index -1 is the previous frame's last sample
+            while (pos < inCount && n < out.length) {
+                int i = (int) Math.floor(pos);
+                double frac = pos - i;
+                int a = i < 0 ? previous : in[i];
+                int b = i + 1 < inCount ? in[i + 1] : in[inCount - 1];
+                out[n++] = (short) (a + (b - a) * frac);
+                pos += step;
+            }
+        }
+        position = pos - inCount;
+        if (inCount > 0) previous = in[inCount - 1];
+        return n;
+    }
+}
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+
+// 📨 RFC 3550 sender and receiver reports, the return channel for congestion control. Each is sent
+// on its own (reduced-size RTCP, RFC 5506) on the media port: packet types 200/201 sit where RTP
+// payload types 72/73 with the marker set would, which this link never uses (RFC 5761), so one
+// byte tells them apart from media.
+//   SR: header | sender SSRC | NTP timestamp (64) | RTP timestamp | packets sent | octets sent
+//   RR: header | reporter SSRC | source SSRC | fraction lost (8) + cumulative lost (24) |
+//       extended highest sequence | interarrival jitter | last SR (LSR) | delay since last SR (DLSR)
+// The NTP field carries the sender's monotonic clock: it only comes back as LSR, so the sender can
+// take round trip = now - LSR - DLSR without the two hosts' clocks agreeing.
+public class RtcpReport {
+    public static final int PT_SR = 200;
+    public static final int PT_RR = 201;
+    public static final int SR_SIZE = 28;                   // no report blocks
+    public static final int RR_SIZE = 32;                   // one report block
+
+    // Fields of the last parsed report (reused, no allocation per packet)
+    public int packetType;
+    public long ssrc;                                       // who sent the report
+    // SR only
+    public long ntp;                                        // middle 32 bits, 1/65536 s
+    public long rtpTimestamp, packetsSent, octetsSent;
+    // RR only: the one report block
+    public long sourceSsrc;
+    public int fractionLost;                                // 1/256ths
+    public long cumulativeLost, extendedHighest, jitter;   // jitter in RTP timestamp units
+    public long lastSr, delaySinceLastSr;                   // 1/65536 s
+
+    // True for an SR or RR (or any RTCP packet type) rather than RTP; works on SRTCP too, whose
+    // first bytes stay in the clear
+    public static boolean isRtcp(ByteBuffer buf, int len) {
+        if (len < 8 || (buf.get(0) & 0xC0) >> 6 != RtpHeader.VERSION) return false;
+        int type = buf.get(1) & 0xFF;
+        return type >= PT_SR && type <= 204;
+    }
+
+    // Writes an SR with no report blocks at 'off'; returns its length
+    public static int writeSenderReport(ByteBuffer buf, int off, long ssrc, long nanoTime, long rtpTimestamp, long packets, long octets) {
+        header(buf, off, 0, PT_SR, SR_SIZE);
+        buf.putInt(off + 4, (int) ssrc);
+        buf.putLong(off + 8, ntp(nanoTime));
+        buf.putInt(off + 16, (int) rtpTimestamp);
+        buf.putInt(off + 20, (int) packets);
+        buf.putInt(off + 24, (int) octets);
+        return SR_SIZE;
+    }
+
+    // Writes an RR with one report block at 'off'; returns its length
+    public static int writeReceiverReport(ByteBuffer buf, int off, long ssrc, long sourceSsrc, int fractionLost, long cumulativeLost,
+                                          long extendedHighest, long jitter, long lastSr, long delaySinceLastSr) {
+        header(buf, off, 1, PT_RR, RR_SIZE);
+        buf.putInt(off + 4, (int) ssrc);
+        buf.putInt(off + 8, (int) sourceSsrc);
+        // Cumulative loss is a signed 24-bit count: clamp rather than wrap
+        long lost = Math.max(-0x800000, Math.min(0x7FFFFF, cumulativeLost));
+        buf.putInt(off + 12, fractionLost << 24 | (int) (lost & 0xFFFFFF));
+        buf.putInt(off + 16, (int) extendedHighest);
+        buf.putInt(off + 20, (int) jitter);
+        buf.putInt(off + 24, (int) lastSr);
+        buf.putInt(off + 28, (int) delaySinceLastSr);
+        return RR_SIZE;
+    }
+
+    private static void header(ByteBuffer buf, int off, int count, int type, int size) {
+        buf.put(off, (byte) (RtpHeader.VERSION << 6 | count));
+        buf.put(off + 1, (byte) type);
+        buf.putShort(off + 2, (short) (size / 4 - 1));     // length in 32-bit words minus one
+    }
+
+    // Parses the report at 'off' into this instance. Returns false if it is not an SR, or an RR
+    // with at least one report block, that fits in 'len'.
+    public boolean parse(ByteBuffer buf, int off, int len) {
+        if (!isRtcp(buf, len)) return false;
+        int count = buf.get(off) & 0x1F;
+        int size = ((buf.getShort(off + 2) & 0xFFFF) + 1) * 4;
+        if (size > len) return false;
+        packetType = buf.get(off + 1) & 0xFF;
+        ssrc = buf.getInt(off + 4) & 0xFFFFFFFFL;
+        int block;
+        if (packetType == PT_SR) {
+            if (size < SR_SIZE) return false;
+            ntp = buf.getLong(off + 8) >>> 16 & 0xFFFFFFFFL;
+            rtpTimestamp = buf.getInt(off + 16) & 0xFFFFFFFFL;
+            packetsSent = buf.getInt(off + 20) & 0xFFFFFFFFL;
+            octetsSent = buf.getInt(off + 24) & 0xFFFFFFFFL;
+            block = off + SR_SIZE;
+        } else if (packetType == PT_RR) {
+            block = off + 8;
+        } else {
+            return false;
+        }
+        if (count == 0) return packetType == PT_SR;
+        if (block + 24 > off + size) return false;
+        sourceSsrc = buf.getInt(block) & 0xFFFFFFFFL;
+        int word = buf.getInt(block + 4);
+        fractionLost = word >>> 24;
+        cumulativeLost = word << 8 >> 8;
+        extendedHighest = buf.getInt(block + 8) & 0xFFFFFFFFL;
+        jitter = buf.getInt(block + 12) & 0xFFFFFFFFL;
+        lastSr = buf.getInt(block + 16) & 0xFFFFFFFFL;
+        delaySinceLastSr = buf.getInt(block + 20) & 0xFFFFFFFFL;
+        return true;
+    }
+
+    // A monotonic nanosecond clock as a 64-bit NTP-format value (32.32 fixed-point seconds)
+    public static long ntp(long nanoTime) {
+        long seconds = Math.floorDiv(nanoTime, 1_000_000_000L);
+        long fraction = (Math.floorMod(nanoTime, 1_000_000_000L) << 32) / 1_000_000_000L;
+        return seconds << 32 | fraction;
+    }
+
+    // The middle 32 bits of ntp(nanoTime): what LSR and round trips are measured in
+    public static long compact(long nanoTime) {
+        return ntp(nanoTime) >>> 16 & 0xFFFFFFFFL;
+    }
+
+    // Durations in the compact 1/65536 s format
+    public static long toCompact(long nanos) { return nanos * 65536 / 1_000_000_000L; }
+    public static long fromCompact(long units) { return units * 1_000_000_000L / 65536; }
+}
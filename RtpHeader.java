@@ -0,0 +1,146 @@
+import java.nio.ByteBuffer;
+
+// 📦 Compact RFC 3550 framing: 12-byte fixed header in front of every audio payload
+//
+//  0                   1                   2                   3
+//  |V=2|P|X|  CC   |M|     PT      |       sequence number         |
+//  |                           timestamp                           |
+//  |                             SSRC                              |
+public class RtpHeader {
+    public static final int SIZE = 12;
+    public static final int VERSION = 2;
+
+    // Static payload types from RFC 3551
+    public static final int PT_PCMU = 0;
+    public static final int PT_DVI4 = 5;    // IMA ADPCM, 4 bits per sample
+    public static final int PT_DVI4_16K = 6;
+    public static final int PT_CN = 13;     // RFC 3389 comfort noise
+    // Dynamic payload types this link uses for wideband µ-law (fixed mapping, nothing to signal)
+    public static final int PT_PCMU_16K = 96;
+    public static final int PT_PCMU_48K = 97;
+    // Loss protection (see FecEncoder): RFC 2198 redundant audio and XOR parity packets
+    public static final int PT_RED = 98;
+    public static final int PT_PARITY = 99;
+    public static final int PT_DVI4_48K = 100;
+
+    // Fields of the last parsed header (reused, no allocation per packet)
+    public int payloadType;
+    public boolean marker;
+    public int sequence;     // 16-bit, unsigned
+    public long timestamp;   // 32-bit, unsigned, in media clock units (samples)
+    public long ssrc;        // 32-bit, unsigned
+    public int payloadLength; // excludes CSRCs, header extension and padding
+
+    // Media clock rate of an audio payload type (see AudioCodec), or -1 if it is not one we can play
+    public static int clockRate(int payloadType) {
+        switch (payloadType) {
+            case PT_PCMU: case PT_DVI4: return 8000;
+            case PT_PCMU_16K: case PT_DVI4_16K: return 16000;
+            case PT_PCMU_48K: case PT_DVI4_48K: return 48000;
+            default: return -1;
+        }
+    }
+
+    public static int payloadTypeFor(int sampleRate) {
+        return payloadTypeFor(AudioCodec.PCMU, sampleRate);
+    }
+
+    // The payload type carrying 'codec' (AudioCodec.PCMU or DVI4) at 'sampleRate'
+    public static int payloadTypeFor(String codec, int sampleRate) {
+        boolean dvi4 = AudioCodec.DVI4.equals(codec);
+        if (!dvi4 && !AudioCodec.PCMU.equals(codec)) throw new IllegalArgumentException("Unknown codec " + codec);
+        switch (sampleRate) {
+            case 8000: return dvi4 ? PT_DVI4 : PT_PCMU;
+            case 16000: return dvi4 ? PT_DVI4_16K : PT_PCMU_16K;
+            case 48000: return dvi4 ? PT_DVI4_48K : PT_PCMU_48K;
+            default: throw new IllegalArgumentException("No payload type for " + sampleRate + " Hz");
+        }
+    }
+
+    // Writes a header at 'off' and returns the offset of the payload
+    public static int write(byte[] buf, int off, int payloadType, boolean marker, int sequence, long timestamp, long ssrc) {
+        buf[off] = (byte) (VERSION << 6);
+        buf[off + 1] = (byte) ((marker ? 0x80 : 0) | (payloadType & 0x7F));
+        buf[off + 2] = (byte) (sequence >> 8);
+        buf[off + 3] = (byte) sequence;
+        buf[off + 4] = (byte) (timestamp >> 24);
+        buf[off + 5] = (byte) (timestamp >> 16);
+        buf[off + 6] = (byte) (timestamp >> 8);
+        buf[off + 7] = (byte) timestamp;
+        buf[off + 8] = (byte) (ssrc >> 24);
+        buf[off + 9] = (byte) (ssrc >> 16);
+        buf[off + 10] = (byte) (ssrc >> 8);
+        buf[off + 11] = (byte) ssrc;
+        return off + SIZE;
+    }
+
+    // Parses the header at 'off' into this instance. Returns the payload offset,
+    // or -1 if the datagram is too short or not a version 2 packet.
+    public int parse(byte[] buf, int off, int len) {
+        if (len < SIZE || ((buf[off] & 0xC0) >> 6) != VERSION) return -1;
+
+        int csrcCount = buf[off] & 0x0F;
+        boolean padding = (buf[off] & 0x20) != 0;
+        boolean extension = (buf[off] & 0x10) != 0;
+        marker = (buf[off + 1] & 0x80) != 0;
+        payloadType = buf[off + 1] & 0x7F;
+        sequence = ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+        timestamp = readUInt32(buf, off + 4);
+        ssrc = readUInt32(buf, off + 8);
+
+        int payload = off + SIZE + 4 * csrcCount;
+        if (extension) {
+            if (payload + 4 > off + len) return -1;
+            int words = ((buf[payload + 2] & 0xFF) << 8) | (buf[payload + 3] & 0xFF);
+            payload += 4 + 4 * words;
+        }
+        int end = off + len;
+        if (padding) end -= buf[off + len - 1] & 0xFF;
+        if (payload > end) return -1;
+        payloadLength = end - payload;
+        return payload;
+    }
+
+    // Same as write(byte[], ...) for direct buffers; absolute, leaves position untouched
+    public static int write(ByteBuffer buf, int off, int payloadType, boolean marker, int sequence, long timestamp, long ssrc) {
+        buf.put(off, (byte) (VERSION << 6));
+        buf.put(off + 1, (byte) ((marker ? 0x80 : 0) | (payloadType & 0x7F)));
+        buf.putShort(off + 2, (short) sequence);     // network (big-endian) order is the
+        buf.putInt(off + 4, (int) timestamp);        // ByteBuffer default and is never changed
+        buf.putInt(off + 8, (int) ssrc);             // on transport buffers
+        return off + SIZE;
+    }
+
+    // Same as parse(byte[], ...) for direct buffers; absolute, leaves position untouched
+    public int parse(ByteBuffer buf, int off, int len) {
+        if (len < SIZE) return -1;
+        int b0 = buf.get(off);
+        if (((b0 & 0xC0) >> 6) != VERSION) return -1;
+
+        int csrcCount = b0 & 0x0F;
+        boolean padding = (b0 & 0x20) != 0;
+        boolean extension = (b0 & 0x10) != 0;
+        int b1 = buf.get(off + 1);
+        marker = (b1 & 0x80) != 0;
+        payloadType = b1 & 0x7F;
+        sequence = buf.getShort(off + 2) & 0xFFFF;
+        timestamp = buf.getInt(off + 4) & 0xFFFFFFFFL;
+        ssrc = buf.getInt(off + 8) & 0xFFFFFFFFL;
+
+        int payload = off + SIZE + 4 * csrcCount;
+        if (extension) {
+            if (payload + 4 > off + len) return -1;
+            payload += 4 + 4 * (buf.getShort(payload + 2) & 0xFFFF);
+        }
+        int end = off + len;
+        if (padding) end -= buf.get(off + len - 1) & 0xFF;
+        if (payload > end) return -1;
+        payloadLength = end - payload;
+        return payload;
+    }
+
+    private static long readUInt32(byte[] buf, int off) {
+        return ((long) (buf[off] & 0xFF) << 24) | ((buf[off + 1] & 0xFF) << 16)
+                | ((buf[off + 2] & 0xFF) << 8) | (buf[off + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,122 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 🏁 Scaling benchmark for the execution models: N synthetic receive streams, each a periodic task
+// doing one frame of real playout work (jitter-buffer put, poll and µ-law decode) per ptime, with
+// start phases spread over one period like independent callers. Reports per mode and stream count
+// the platform threads alive, CPU used (100% = one core), share of due frames that ran, and the frame
+// scheduling error (task start minus its media-clock deadline).
+//   java SchedulingBenchmark [seconds-per-case] [ptime-ms] [stream counts, e.g. 100,500,1000]
+public class SchedulingBenchmark {
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 5.0;
+        int ptime = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String[] counts = (args.length > 2 ? args[2] : "100,500,1000,2000").split(",");
+
+        List<MediaExecutor.Mode> modes = new ArrayList<>();
+        modes.add(MediaExecutor.Mode.PLATFORM);
+        if (MediaExecutor.isVirtualThreadSupported()) {
+            modes.add(MediaExecutor.Mode.VIRTUAL);
+        } else {
+            System.out.println("⚠ Virtual threads need JDK 21+ (running " + System.getProperty("java.version") + "), VIRTUAL skipped");
+        }
+        modes.add(MediaExecutor.Mode.EVENT_LOOP);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("ptime " + ptime + " ms, " + cores + " core(s), " + seconds + " s per case");
+        System.out.printf("%-11s %8s %8s %8s %9s %10s %10s %10s%n",
+                "mode", "streams", "threads", "CPU %", "ran", "p50 us", "p99 us", "max us");
+        for (MediaExecutor.Mode mode : modes) {
+            for (String count : counts) {
+                run(mode, Integer.parseInt(count.trim()), ptime, cores, seconds);
+            }
+        }
+    }
+
+    // One synthetic caller: a frame arrives and one is played out every period
+    private static final class Stream implements MediaExecutor.Task {
+        private final JitterBuffer jitter;
+        private final DecodeStage decoder;
+        private final byte[] payload;
+        private final short[] pcm;
+        private final long frameNanos;
+        private int sequence;
+
+        Stream(int frameSamples, long frameNanos, Random random) {
+            this.frameNanos = frameNanos;
+            this.jitter = new JitterBuffer(frameSamples, frameNanos);
+            this.decoder = new DecodeStage(jitter, frameSamples, 8000);
+            this.payload = new byte[frameSamples];
+            this.pcm = new short[frameSamples];
+            random.nextBytes(payload);
+        }
+
+        @Override
+        public void run(long deadline) {
+            jitter.put(sequence & 0xFFFF, sequence * frameNanos, deadline, payload, 0, payload.length);
+            sequence++;
+            decoder.next(pcm);
+        }
+    }
+
+    private static void run(MediaExecutor.Mode mode, int streams, int ptime, int cores, double seconds) throws Exception {
+        MediaExecutor executor = MediaExecutor.create(mode, cores);
+        long period = ptime * 1_000_000L;
+        int frameSamples = StreamConfig.frameSamples(8000, ptime);
+        LatencyHistogram error = new LatencyHistogram();
+        LongAdder frames = new LongAdder();
+        AtomicLong measureFrom = new AtomicLong(Long.MAX_VALUE);
+        Random random = new Random(7);
+
+        // Spread the first deadlines over one period, as independent calls would be
+        List<MediaExecutor.Periodic> tasks = new ArrayList<>(streams);
+        long start = System.nanoTime();
+        for (int i = 0; i < streams; i++) {
+            MediaExecutor.sleepUntil(start + i * period / streams, 0);
+            Stream stream = new Stream(frameSamples, period, random);
+            tasks.add(executor.schedule("stream-" + i, period, deadline -> {
+                long late = System.nanoTime() - deadline;
+                stream.run(deadline);
+                if (deadline >= measureFrom.get()) {
+                    error.record(late);
+                    frames.increment();
+                }
+            }));
+        }
+
+        // Warm up (JIT, jitter buffers filled) before the measured window
+        Thread.sleep(Math.max(1000, (long) (seconds * 300)));
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long cpuBefore = processCpuNanos(os);
+        long windowStart = System.nanoTime();
+        measureFrom.set(windowStart);
+        Thread.sleep((long) (seconds * 1000));
+        long cpu = processCpuNanos(os) - cpuBefore;
+        long windowEnd = System.nanoTime();
+        long counted = frames.sum();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        for (MediaExecutor.Periodic task : tasks) task.cancel();
+        executor.shutdown();
+        Thread.sleep(2 * ptime + 50);   // let cancelled thread-per-task threads exit before the next case
+
+        LatencyHistogram.Snapshot s = error.snapshot();
+        double expected = (double) streams * (windowEnd - windowStart) / period;
+        System.out.printf("%-11s %8d %8d %8s %8.1f%% %10.1f %10.1f %10.1f%n",
+                executor.getMode(), streams, threads, cpu < 0 ? "n/a" : String.format("%.1f", 100.0 * cpu / (windowEnd - windowStart)),
+                100.0 * Math.min(counted, expected) / expected,
+                s.getValueAt(0.5) / 1000.0, s.getValueAt(0.99) / 1000.0, s.getMax() / 1000.0);
+    }
+
+    private static long processCpuNanos(OperatingSystemMXBean os) {
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+}
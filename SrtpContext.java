@@ -0,0 +1,345 @@
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+// 🔐 SRTP (RFC 3711) packet protection with its default suite, AES_CM_128_HMAC_SHA1_80: AES in
+// counter mode encrypts the payload, an HMAC-SHA1 tag (80 bits) over header, payload and
+// rollover counter authenticates the packet, and a 64-packet window per SSRC drops replays.
+// RTCP reports (RtcpReport) travel as SRTCP under their own session keys.
+// Session keys come from a 30-byte master key + salt (an SDES "inline" value, base64) through
+// the RFC's key derivation, once per context. Packets are transformed in place in their buffer:
+// the keystream comes from one AES/ECB Cipher initialised once, HMAC runs on one MessageDigest,
+// and per-SSRC state (highest index, so rollover counter and last sequence, plus the replay
+// bitmap) lives in primitive arrays, so a packet costs no allocation and no Cipher re-init
+// (AES-GCM through JCA needs both for every packet).
+// Not thread-safe: one per sending or receiving thread.
+public final class SrtpContext {
+    public static final int MASTER_KEY_BYTES = 16, MASTER_SALT_BYTES = 14;
+    public static final int TAG_BYTES = 10;
+    // SRTCP adds the E flag + 31-bit SRTCP index word ahead of the tag
+    public static final int CONTROL_OVERHEAD = 4 + TAG_BYTES;
+    // unprotect() results that are not a length
+    public static final int REJECTED = -1;      // malformed, or authentication failed
+    public static final int REPLAYED = -2;      // seen before, or older than the replay window
+
+    // Key derivation labels (RFC 3711 4.3.2). FecEncoder's parity packets run their own sequence
+    // space under the media SSRC, so they take keys from labels past the RFC's own: the same
+    // SSRC and index must never meet the same keystream twice.
+    private static final int LABEL_MEDIA = 0x00, LABEL_CONTROL = 0x03, LABEL_PARITY = 0x06;
+    private static final int SESSION_KEY_BYTES = 16, SESSION_AUTH_BYTES = 20;
+    private static final int REPLAY_WINDOW = 64;
+    private static final int BLOCK = 16, HMAC_BLOCK = 64;
+    private static final int MAX_BLOCKS = (UdpTransport.MAX_DATAGRAM + BLOCK - 1) / BLOCK;
+
+    // Session keys and per-SSRC state of one key set. Per-SSRC state is open-addressed in
+    // primitive arrays; keys carry bit 32 so SSRC 0 is not an empty slot.
+    private static final class Keys {
+        final Cipher aes;
+        final byte[] salt;
+        final byte[] innerPad = new byte[HMAC_BLOCK], outerPad = new byte[HMAC_BLOCK];
+        long[] ssrcs = new long[16];
+        long[] highest = new long[16];     // highest index authenticated (sent); -1 before any
+        long[] window = new long[16];      // bit n: index highest - n seen
+        int size;
+
+        Keys(Cipher aes, byte[] salt, byte[] authKey) {
+            this.aes = aes;
+            this.salt = salt;
+            for (int i = 0; i < HMAC_BLOCK; i++) {
+                byte k = i < authKey.length ? authKey[i] : 0;
+                innerPad[i] = (byte) (k ^ 0x36);
+                outerPad[i] = (byte) (k ^ 0x5C);
+            }
+        }
+
+        int find(long ssrc) {
+            long key = ssrc | 1L << 32;
+            int mask = ssrcs.length - 1;
+            for (int i = hash(key) & mask; ssrcs[i] != 0; i = (i + 1) & mask) {
+                if (ssrcs[i] == key) return i;
+            }
+            return -1;
+        }
+
+        // The SSRC's slot, created (with no packet seen) if needed
+        int slot(long ssrc) {
+            int found = find(ssrc);
+            if (found >= 0) return found;
+            if (2 * (size + 1) > ssrcs.length) grow();
+            int i = insert(ssrc | 1L << 32);
+            highest[i] = -1;
+            window[i] = 0;
+            size++;
+            return i;
+        }
+
+        private int insert(long key) {
+            int mask = ssrcs.length - 1;
+            int i = hash(key) & mask;
+            while (ssrcs[i] != 0) i = (i + 1) & mask;
+            ssrcs[i] = key;
+            return i;
+        }
+
+        private void grow() {
+            long[] oldSsrcs = ssrcs, oldHighest = highest, oldWindow = window;
+            ssrcs = new long[oldSsrcs.length * 2];
+            highest = new long[ssrcs.length];
+            window = new long[ssrcs.length];
+            for (int j = 0; j < oldSsrcs.length; j++) {
+                if (oldSsrcs[j] == 0) continue;
+                int i = insert(oldSsrcs[j]);
+                highest[i] = oldHighest[j];
+                window[i] = oldWindow[j];
+            }
+        }
+
+        private static int hash(long key) { return Long.hashCode(key * 0x9E3779B97F4A7C15L); }
+    }
+
+    private final Keys media, control, parity;
+    private final MessageDigest sha1;
+    private final byte[] counters = new byte[MAX_BLOCKS * BLOCK];
+    private final byte[] keystream = new byte[MAX_BLOCKS * BLOCK];
+    private final ByteBuffer keystreamWords = ByteBuffer.wrap(keystream);
+    private final byte[] digest = new byte[20];
+    private final byte[] roc = new byte[4];
+
+    // Contexts for one master key + salt (StreamConfig.getSrtpKey())
+    public SrtpContext(byte[] master) {
+        if (master.length != MASTER_KEY_BYTES + MASTER_SALT_BYTES) {
+            throw new IllegalArgumentException("SRTP master key must be " + (MASTER_KEY_BYTES + MASTER_SALT_BYTES) + " bytes (key + salt)");
+        }
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] masterSalt = new byte[MASTER_SALT_BYTES];
+            System.arraycopy(master, MASTER_KEY_BYTES, masterSalt, 0, MASTER_SALT_BYTES);
+            Cipher prf = Cipher.getInstance("AES/ECB/NoPadding");
+            prf.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(master, 0, MASTER_KEY_BYTES, "AES"));
+            media = derive(prf, masterSalt, LABEL_MEDIA);
+            control = derive(prf, masterSalt, LABEL_CONTROL);
+            parity = derive(prf, masterSalt, LABEL_PARITY);
+        } catch (GeneralSecurityException e) {
+            // AES and SHA-1 are mandatory in every Java platform
+            throw new IllegalStateException("SRTP crypto unavailable", e);
+        }
+    }
+
+    // A fresh random master key + salt in the base64 form StreamConfig.setSrtpKey() takes
+    public static String generateKey() {
+        byte[] master = new byte[MASTER_KEY_BYTES + MASTER_SALT_BYTES];
+        new SecureRandom().nextBytes(master);
+        return Base64.getEncoder().encodeToString(master);
+    }
+
+    // Encrypts the RTP packet in [0, length) and appends its tag. Returns the SRTP length; the
+    // buffer is left at position 0 with its limit there.
+    public int protect(ByteBuffer packet, int length) {
+        packet.limit(length + TAG_BYTES).position(0);
+        int header = headerLength(packet, length);
+        if (header < 0) throw new IllegalArgumentException("Not an RTP packet");
+        Keys keys = keysFor(packet);
+        int sequence = packet.getShort(2) & 0xFFFF;
+        long ssrc = packet.getInt(8) & 0xFFFFFFFFL;
+        int slot = keys.slot(ssrc);
+        long index = estimateIndex(keys.highest[slot], sequence);
+        if (index > keys.highest[slot]) keys.highest[slot] = index;
+        transform(keys, packet, header, length, ssrc, index);
+        authenticate(keys, packet, length, index >>> 16);
+        for (int i = 0; i < TAG_BYTES; i++) packet.put(length + i, digest[i]);
+        return length + TAG_BYTES;
+    }
+
+    // Authenticates, replay-checks and decrypts the SRTP packet in [0, limit). Returns the RTP
+    // length (the caller trims its limit to it), or REJECTED / REPLAYED with the buffer untouched.
+    public int unprotect(ByteBuffer packet) {
+        int length = packet.limit() - TAG_BYTES;
+        int header = headerLength(packet, length);
+        if (header < 0) return REJECTED;
+        Keys keys = keysFor(packet);
+        int sequence = packet.getShort(2) & 0xFFFF;
+        long ssrc = packet.getInt(8) & 0xFFFFFFFFL;
+        int slot = keys.find(ssrc);
+        long index = estimateIndex(slot >= 0 ? keys.highest[slot] : -1, sequence);
+        if (index < 0 || replayed(keys, slot, index)) return REPLAYED;
+
+        authenticate(keys, packet, length, index >>> 16);
+        if (!tagMatches(packet, length)) return REJECTED;
+        transform(keys, packet, header, length, ssrc, index);
+        accept(keys, slot, ssrc, index);
+        return length;
+    }
+
+    // SRTCP (RFC 3711 3.4): encrypts the RTCP packet in [0, length) past its first 8 bytes, appends
+    // the E flag + SRTCP index and the tag. Returns the SRTCP length; position 0, limit there.
+    public int protectRtcp(ByteBuffer packet, int length) {
+        packet.limit(length + CONTROL_OVERHEAD).position(0);
+        if (length < 8) throw new IllegalArgumentException("Not an RTCP packet");
+        long ssrc = packet.getInt(4) & 0xFFFFFFFFL;
+        int slot = control.slot(ssrc);
+        long index = (control.highest[slot] + 1) & 0x7FFFFFFF;
+        control.highest[slot] = index;
+        transform(control, packet, 8, length, ssrc, index);
+        int word = (int) (0x80000000L | index);
+        packet.putInt(length, word);
+        authenticate(control, packet, length, word & 0xFFFFFFFFL);
+        for (int i = 0; i < TAG_BYTES; i++) packet.put(length + 4 + i, digest[i]);
+        return length + CONTROL_OVERHEAD;
+    }
+
+    // Authenticates, replay-checks and decrypts the SRTCP packet in [0, limit). Returns the RTCP
+    // length, or REJECTED / REPLAYED with the buffer untouched.
+    public int unprotectRtcp(ByteBuffer packet) {
+        int length = packet.limit() - CONTROL_OVERHEAD;
+        if (length < 8 || (packet.get(0) & 0xC0) >> 6 != RtpHeader.VERSION) return REJECTED;
+        int word = packet.getInt(length);
+        long index = word & 0x7FFFFFFF;
+        long ssrc = packet.getInt(4) & 0xFFFFFFFFL;
+        int slot = control.find(ssrc);
+        if (replayed(control, slot, index)) return REPLAYED;
+
+        // The trailer word sits where SRTP puts the rollover counter, right after the packet
+        authenticate(control, packet, length, word & 0xFFFFFFFFL);
+        if (!tagMatches(packet, length + 4)) return REJECTED;
+        if (word < 0) transform(control, packet, 8, length, ssrc, index);
+        accept(control, slot, ssrc, index);
+        return length;
+    }
+
+    // Seen before, or too old for the window, on the SSRC's slot (-1 for an SSRC not seen yet)
+    private static boolean replayed(Keys keys, int slot, long index) {
+        if (slot < 0 || index > keys.highest[slot]) return false;
+        long age = keys.highest[slot] - index;
+        return age >= REPLAY_WINDOW || (keys.window[slot] >>> age & 1) != 0;
+    }
+
+    // Moves the window for an authenticated packet: only those do, so forgeries cannot push real
+    // packets out of it
+    private static void accept(Keys keys, int slot, long ssrc, long index) {
+        if (slot < 0) slot = keys.slot(ssrc);
+        if (index > keys.highest[slot]) {
+            long shift = index - keys.highest[slot];
+            keys.window[slot] = (shift >= REPLAY_WINDOW ? 0 : keys.window[slot] << shift) | 1;
+            keys.highest[slot] = index;
+        } else {
+            keys.window[slot] |= 1L << (keys.highest[slot] - index);
+        }
+    }
+
+    // Compares 'digest' with the tag at 'at' in constant time
+    private boolean tagMatches(ByteBuffer packet, int at) {
+        int diff = 0;
+        for (int i = 0; i < TAG_BYTES; i++) diff |= digest[i] ^ packet.get(at + i);
+        return diff == 0;
+    }
+
+    // The payload type is in the clear, so both ends pick the same key set from it
+    private Keys keysFor(ByteBuffer packet) {
+        return (packet.get(1) & 0x7F) == RtpHeader.PT_PARITY ? parity : media;
+    }
+
+    // Packet index (rollover counter x 2^16 + sequence) nearest the newest seen (RFC 3711
+    // appendix A); -1 if it would fall before the first packet of the stream
+    private static long estimateIndex(long newest, int sequence) {
+        if (newest < 0) return sequence;
+        long rollover = newest >>> 16;
+        int last = (int) (newest & 0xFFFF);
+        long guess;
+        if (last < 32768) guess = sequence - last > 32768 ? rollover - 1 : rollover;
+        else guess = last - 32768 > sequence ? rollover + 1 : rollover;
+        return guess < 0 ? -1 : guess << 16 | sequence;
+    }
+
+    // Fixed header, CSRCs and header extension: what stays in the clear. -1 if malformed.
+    private static int headerLength(ByteBuffer packet, int length) {
+        if (length < RtpHeader.SIZE || (packet.get(0) & 0xC0) >> 6 != RtpHeader.VERSION) return -1;
+        int header = RtpHeader.SIZE + 4 * (packet.get(0) & 0x0F);
+        if ((packet.get(0) & 0x10) != 0) {
+            if (header + 4 > length) return -1;
+            header += 4 + 4 * (packet.getShort(header + 2) & 0xFFFF);
+        }
+        return header <= length ? header : -1;
+    }
+
+    // AES-CM: XORs [from, to) with the keystream for this SSRC and index (RFC 3711 4.1.1)
+    private void transform(Keys keys, ByteBuffer packet, int from, int to, long ssrc, long index) {
+        int blocks = (to - from + BLOCK - 1) / BLOCK;
+        for (int b = 0, at = 0; b < blocks; b++, at += BLOCK) {
+            System.arraycopy(keys.salt, 0, counters, at, MASTER_SALT_BYTES);
+            counters[at + 4] ^= (byte) (ssrc >> 24);
+            counters[at + 5] ^= (byte) (ssrc >> 16);
+            counters[at + 6] ^= (byte) (ssrc >> 8);
+            counters[at + 7] ^= (byte) ssrc;
+            for (int i = 0; i < 6; i++) counters[at + 8 + i] ^= (byte) (index >> (40 - 8 * i));
+            counters[at + 14] = (byte) (b >> 8);
+            counters[at + 15] = (byte) b;
+        }
+        encrypt(keys.aes, blocks * BLOCK);
+        int i = from, k = 0;
+        for (; i + 8 <= to; i += 8, k += 8) packet.putLong(i, packet.getLong(i) ^ keystreamWords.getLong(k));
+        for (; i < to; i++, k++) packet.put(i, (byte) (packet.get(i) ^ keystream[k]));
+    }
+
+    // HMAC-SHA1 over [0, length) and the rollover counter, into 'digest' (RFC 2104, on a
+    // MessageDigest so nothing is allocated per packet)
+    private void authenticate(Keys keys, ByteBuffer packet, int length, long rollover) {
+        int limit = packet.limit(), position = packet.position();
+        sha1.update(keys.innerPad);
+        packet.position(0).limit(length);
+        sha1.update(packet);
+        packet.limit(limit).position(position);
+        roc[0] = (byte) (rollover >> 24);
+        roc[1] = (byte) (rollover >> 16);
+        roc[2] = (byte) (rollover >> 8);
+        roc[3] = (byte) rollover;
+        sha1.update(roc);
+        try {
+            sha1.digest(digest, 0, digest.length);
+            sha1.update(keys.outerPad);
+            sha1.update(digest);
+            sha1.digest(digest, 0, digest.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);     // 'digest' is always SHA-1 sized
+        }
+    }
+
+    // Encrypts the first 'length' bytes of 'counters' into 'keystream'
+    private void encrypt(Cipher aes, int length) {
+        try {
+            aes.update(counters, 0, length, keystream, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);     // 'keystream' is sized for the largest datagram
+        }
+    }
+
+    // Session keys for one label set, key derivation rate 0: AES-CM under the master key with
+    // IV = (label || 0) XOR master salt (RFC 3711 4.3.1)
+    private Keys derive(Cipher prf, byte[] masterSalt, int label) throws GeneralSecurityException {
+        byte[] sessionKey = derive(prf, masterSalt, label, SESSION_KEY_BYTES);
+        byte[] authKey = derive(prf, masterSalt, label + 1, SESSION_AUTH_BYTES);
+        byte[] salt = derive(prf, masterSalt, label + 2, MASTER_SALT_BYTES);
+        Cipher aes = Cipher.getInstance("AES/ECB/NoPadding");
+        aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sessionKey, "AES"));
+        return new Keys(aes, salt, authKey);
+    }
+
+    private byte[] derive(Cipher prf, byte[] masterSalt, int label, int length) {
+        int blocks = (length + BLOCK - 1) / BLOCK;
+        for (int b = 0, at = 0; b < blocks; b++, at += BLOCK) {
+            System.arraycopy(masterSalt, 0, counters, at, MASTER_SALT_BYTES);
+            counters[at + 7] ^= (byte) label;
+            counters[at + 14] = (byte) (b >> 8);
+            counters[at + 15] = (byte) b;
+        }
+        encrypt(prf, blocks * BLOCK);
+        byte[] key = new byte[length];
+        System.arraycopy(keystream, 0, key, 0, length);
+        return key;
+    }
+}
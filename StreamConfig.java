@@ -0,0 +1,285 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+// ⚙ Settings shared by the headless sender and receiver (and the UIs/CLI that drive them)
+public class StreamConfig {
+    public static final int[] SUPPORTED_PTIMES = { 10, 20, 30, 40, 60 };
+    public static final int[] SUPPORTED_RATES = { 8000, 16000, 48000 };
+
+    private String host = "127.0.0.1";
+    private int port = 50005;
+    private int ptimeMillis = 40;
+    private int sampleRate = 8000;
+    private String codec = AudioCodec.PCMU;
+    private boolean vadEnabled = false;
+    private int comfortNoiseIntervalMillis = 500;
+    private FecEncoder.Mode fecMode = FecEncoder.Mode.NONE;
+    private int fecGroupSize = 4;
+    private boolean driftCompensation = true;
+    private boolean echoCancellation = false;
+    private int echoTailMillis = 128;
+    private boolean noiseSuppression = false;
+    private boolean autoGain = false;
+    private EchoReference echoReference = null;
+    private int metricsPort = 0;
+    private MediaExecutor.Mode executionMode = MediaExecutor.Mode.PLATFORM;
+    private long statsIntervalNanos = 10_000_000_000L;
+    private Path recordDirectory = null;
+    private AudioBackend audioBackend = AudioDevices.JAVA_SOUND;
+    private final List<InetSocketAddress> fanOut = new ArrayList<>();
+    private String multicastGroup = null;
+    private String multicastInterface = null;
+    private int multicastTtl = 1;
+    private byte[] srtpKey = null;
+    private int reportIntervalMillis = 1000;
+    private boolean adaptiveBitrate = false;
+
+    public StreamConfig() {}
+
+    public StreamConfig(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() { return host; }
+    public StreamConfig setHost(String host) { this.host = host; return this; }
+
+    public int getPort() { return port; }
+    public StreamConfig setPort(int port) { this.port = port; return this; }
+
+    // Extra unicast destinations: every frame is encoded once and sent to host:port and to each of these
+    public List<InetSocketAddress> getFanOut() { return Collections.unmodifiableList(fanOut); }
+    public StreamConfig addFanOut(String host, int port) {
+        fanOut.add(InetSocketAddress.createUnresolved(host, port));
+        return this;
+    }
+
+    // Every send target, host:port first; unresolved, the sender resolves them once at start
+    public List<InetSocketAddress> getDestinations() {
+        List<InetSocketAddress> all = new ArrayList<>(1 + fanOut.size());
+        all.add(InetSocketAddress.createUnresolved(host, port));
+        all.addAll(fanOut);
+        return all;
+    }
+
+    // "host[:port], host[:port], ..." as typed in the UI or CLI: the first becomes host:port, the
+    // rest the fan-out list. A missing port means 'defaultPort'; IPv6 literals go in brackets.
+    public StreamConfig setDestinations(String list, int defaultPort) {
+        fanOut.clear();
+        boolean first = true;
+        for (String item : list.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) continue;
+            URI uri;
+            try {
+                uri = URI.create("udp://" + item);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Bad destination: " + item);
+            }
+            if (uri.getHost() == null) throw new IllegalArgumentException("Bad destination: " + item);
+            String h = uri.getHost().startsWith("[") ? uri.getHost().substring(1, uri.getHost().length() - 1) : uri.getHost();
+            int p = uri.getPort() > 0 ? uri.getPort() : defaultPort;
+            if (first) {
+                host = h;
+                port = p;
+                first = false;
+            } else {
+                addFanOut(h, p);
+            }
+        }
+        if (first) throw new IllegalArgumentException("No destination given");
+        return this;
+    }
+
+    // Receivers: multicast group to join on 'port' (null for unicast only). Senders just use the
+    // group address as their host; fan-out and multicast can be combined.
+    public String getMulticastGroup() { return multicastGroup; }
+    public StreamConfig setMulticastGroup(String multicastGroup) { this.multicastGroup = multicastGroup; return this; }
+
+    // Interface to join on / send multicast from, e.g. "eth0"; null picks the first suitable one
+    public String getMulticastInterface() { return multicastInterface; }
+    public StreamConfig setMulticastInterface(String multicastInterface) { this.multicastInterface = multicastInterface; return this; }
+
+    // Router hops multicast audio may cross; 1 keeps it on the local subnet
+    public int getMulticastTtl() { return multicastTtl; }
+    public StreamConfig setMulticastTtl(int multicastTtl) {
+        if (multicastTtl < 0 || multicastTtl > 255) throw new IllegalArgumentException("Unsupported multicast TTL: " + multicastTtl);
+        this.multicastTtl = multicastTtl;
+        return this;
+    }
+
+    // Packetization time: audio per datagram. Shorter frames cut latency, longer ones packet rate.
+    public int getPtimeMillis() { return ptimeMillis; }
+    public StreamConfig setPtimeMillis(int ptimeMillis) {
+        if (!contains(SUPPORTED_PTIMES, ptimeMillis)) throw new IllegalArgumentException("Unsupported ptime: " + ptimeMillis + " ms");
+        this.ptimeMillis = ptimeMillis;
+        return this;
+    }
+
+    // Wire sample rate; devices that cannot run at it are resampled
+    public int getSampleRate() { return sampleRate; }
+    public StreamConfig setSampleRate(int sampleRate) {
+        if (!contains(SUPPORTED_RATES, sampleRate)) throw new IllegalArgumentException("Unsupported sample rate: " + sampleRate + " Hz");
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    // Sender's codec (AudioCodec.PCMU or DVI4). Receivers need no setting: they decode whatever
+    // payload type arrives.
+    public String getCodec() { return codec; }
+    public StreamConfig setCodec(String codec) {
+        String name = codec.toUpperCase();
+        RtpHeader.payloadTypeFor(name, sampleRate);     // rejects unknown names
+        this.codec = name;
+        return this;
+    }
+    public AudioCodec newCodec() { return AudioCodec.create(codec, sampleRate); }
+
+    // Silence suppression on the send loop (VAD + comfort noise); off keeps a constant packet rate
+    public boolean isVadEnabled() { return vadEnabled; }
+    public StreamConfig setVadEnabled(boolean vadEnabled) { this.vadEnabled = vadEnabled; return this; }
+
+    // How often a comfort-noise descriptor is repeated while the sender is silent
+    public int getComfortNoiseIntervalMillis() { return comfortNoiseIntervalMillis; }
+    public StreamConfig setComfortNoiseIntervalMillis(int millis) { this.comfortNoiseIntervalMillis = millis; return this; }
+
+    // Sender-side loss protection; receivers recognise it on the wire and need no setting
+    public FecEncoder.Mode getFecMode() { return fecMode; }
+    public StreamConfig setFecMode(FecEncoder.Mode fecMode) { this.fecMode = fecMode; return this; }
+
+    // Packets per XOR parity packet in PARITY mode: smaller groups repair more, cost more
+    public int getFecGroupSize() { return fecGroupSize; }
+    public StreamConfig setFecGroupSize(int fecGroupSize) {
+        if (fecGroupSize < 2 || fecGroupSize > 16) throw new IllegalArgumentException("Unsupported FEC group size: " + fecGroupSize);
+        this.fecGroupSize = fecGroupSize;
+        return this;
+    }
+
+    // Capture DSP on the sender (CaptureProcessor), each stage off by default. Echo cancellation
+    // also needs the far-end signal: share one EchoReference with a receiver in the same process.
+    public boolean isEchoCancellation() { return echoCancellation; }
+    public StreamConfig setEchoCancellation(boolean echoCancellation) { this.echoCancellation = echoCancellation; return this; }
+    // Longest echo path the canceller models; cost grows linearly with it
+    public int getEchoTailMillis() { return echoTailMillis; }
+    public StreamConfig setEchoTailMillis(int millis) {
+        if (millis < 8 || millis > 500) throw new IllegalArgumentException("Unsupported echo tail: " + millis + " ms");
+        this.echoTailMillis = millis;
+        return this;
+    }
+    public boolean isNoiseSuppression() { return noiseSuppression; }
+    public StreamConfig setNoiseSuppression(boolean noiseSuppression) { this.noiseSuppression = noiseSuppression; return this; }
+    public boolean isAutoGain() { return autoGain; }
+    public StreamConfig setAutoGain(boolean autoGain) { this.autoGain = autoGain; return this; }
+    public boolean isCaptureProcessing() { return echoCancellation || noiseSuppression || autoGain; }
+    // Receivers write what they play into it, senders read it; null is none
+    public EchoReference getEchoReference() { return echoReference; }
+    public StreamConfig setEchoReference(EchoReference echoReference) { this.echoReference = echoReference; return this; }
+
+    // --- Values derived from ptime and rate; everything sizes its buffers from these ---
+
+    public int getFrameSamples() { return frameSamples(sampleRate, ptimeMillis); }
+    public int getPcmFrameBytes() { return getFrameSamples() * 2; }
+    public long getFrameNanos() { return ptimeMillis * 1_000_000L; }
+    public int getPayloadType() { return RtpHeader.payloadTypeFor(codec, sampleRate); }
+    public int getPayloadBytes() { return newCodec().getPayloadBytes(getFrameSamples()); }
+    // Device line buffer: five frames, never less than 100 ms so slow devices don't starve
+    public int getLineBufferBytes(int deviceRate) {
+        int millis = Math.max(5 * ptimeMillis, 100);
+        return frameSamples(deviceRate, millis) * 2;
+    }
+
+    public static int frameSamples(int sampleRate, int millis) {
+        return sampleRate * millis / 1000;
+    }
+
+    // Receivers always estimate sender/device clock drift; this decides whether they correct it
+    public boolean isDriftCompensation() { return driftCompensation; }
+    public StreamConfig setDriftCompensation(boolean driftCompensation) { this.driftCompensation = driftCompensation; return this; }
+
+    // Loopback port for the plain-text metrics endpoint (MetricsServer); 0 leaves it off.
+    // JMX exposure needs no setting: every engine registers its metrics while running.
+    public int getMetricsPort() { return metricsPort; }
+    public StreamConfig setMetricsPort(int metricsPort) { this.metricsPort = metricsPort; return this; }
+
+    // Threading of the engines: OS threads, virtual threads (JDK 21+) or shared event loops
+    public MediaExecutor.Mode getExecutionMode() { return executionMode; }
+    public StreamConfig setExecutionMode(MediaExecutor.Mode executionMode) { this.executionMode = executionMode; return this; }
+    public MediaExecutor getExecutor() { return MediaExecutor.shared(executionMode); }
+    // For periodic tasks that block on an audio line (a speaker write waits for queue room, close
+    // waits for it to drain): the configured executor, except that EVENT_LOOP gives each one a
+    // thread of its own, since a task blocked on its loop stalls every other stream on that loop
+    public MediaExecutor getDeviceExecutor() {
+        return MediaExecutor.shared(executionMode == MediaExecutor.Mode.EVENT_LOOP ? MediaExecutor.Mode.PLATFORM : executionMode);
+    }
+
+    // Root directory for call recordings (one subdirectory per stream, see CallRecorder); null is off
+    public Path getRecordDirectory() { return recordDirectory; }
+    public StreamConfig setRecordDirectory(Path recordDirectory) { this.recordDirectory = recordDirectory; return this; }
+
+    // SRTP (SrtpContext) with a pre-shared master key + salt: 30 bytes in base64, as in an SDES
+    // "inline:" attribute (which is also accepted); SrtpContext.generateKey() makes one. Both ends
+    // need the same key. Null or empty sends and accepts plain RTP.
+    public byte[] getSrtpKey() { return srtpKey; }
+    public boolean isSrtp() { return srtpKey != null; }
+    public StreamConfig setSrtpKey(String key) {
+        if (key == null || key.trim().isEmpty()) {
+            srtpKey = null;
+            return this;
+        }
+        String value = key.trim();
+        if (value.startsWith("inline:")) value = value.substring(7);
+        int lifetime = value.indexOf('|');
+        if (lifetime >= 0) value = value.substring(0, lifetime);
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("SRTP key is not base64");
+        }
+        if (decoded.length != SrtpContext.MASTER_KEY_BYTES + SrtpContext.MASTER_SALT_BYTES) {
+            throw new IllegalArgumentException("SRTP key must decode to " + (SrtpContext.MASTER_KEY_BYTES + SrtpContext.MASTER_SALT_BYTES)
+                    + " bytes, got " + decoded.length);
+        }
+        srtpKey = decoded;
+        return this;
+    }
+
+    // Receiver reports (RtcpReport) back to the sender, and sender reports for round-trip time, about
+    // this often; 0 sends none. Receivers follow their own setting, senders just answer what arrives.
+    public int getReportIntervalMillis() { return reportIntervalMillis; }
+    public StreamConfig setReportIntervalMillis(int millis) {
+        if (millis != 0 && (millis < 100 || millis > 60_000)) throw new IllegalArgumentException("Unsupported report interval: " + millis + " ms");
+        this.reportIntervalMillis = millis;
+        return this;
+    }
+
+    // Sender: follow receiver reports down and back up a ladder of codec, packing and redundancy
+    // (BitrateController). The configured codec, ptime and FEC mode are the top of the ladder.
+    public boolean isAdaptiveBitrate() { return adaptiveBitrate; }
+    public StreamConfig setAdaptiveBitrate(boolean adaptiveBitrate) { this.adaptiveBitrate = adaptiveBitrate; return this; }
+
+    // Capture and playback lines: the sound card by default, SyntheticAudio for headless runs
+    public AudioBackend getAudioBackend() { return audioBackend; }
+    public StreamConfig setAudioBackend(AudioBackend audioBackend) { this.audioBackend = audioBackend; return this; }
+
+    // How often the running stream reports its counters through AudioStreamListener.onEvent
+    public long getStatsIntervalNanos() { return statsIntervalNanos; }
+    public StreamConfig setStatsIntervalNanos(long statsIntervalNanos) { this.statsIntervalNanos = statsIntervalNanos; return this; }
+
+    @Override
+    public String toString() {
+        String to = fanOut.isEmpty() ? host + ":" + port : host + ":" + port + " +" + fanOut.size();
+        return to + " (" + codec + " " + sampleRate / 1000 + " kHz, " + ptimeMillis + " ms" + (srtpKey != null ? ", SRTP" : "")
+                + (adaptiveBitrate ? ", adaptive" : "") + ")";
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) if (v == value) return true;
+        return false;
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// 🧪 Headless AudioBackend for soak and load tests: the mic plays a looped signal (tones or a
+// recorded WAV) and the speaker is a null sink that discards what it is given, both paced by the
+// real-time clock like a sound card, optionally with a crystal that runs fast or slow.
+// With tones the sink also scores what it plays: every 20 ms block is projected onto the tone
+// frequencies, whatever does not fit them is noise (codec error, concealment, drops, glitches).
+// Tone frequencies are multiples of 50 Hz so every block holds whole cycles at any delay.
+// One instance can serve any number of streams; quality(config) reports the sinks one config opened.
+//   SyntheticAudio.parse("tone:1000")  tone:400+1000  wav:/path/to/speech.wav
+public final class SyntheticAudio implements AudioBackend {
+    private static final int BLOCKS_PER_SECOND = 50;
+    private static final double TONE_PEAK = 12000;     // sum of all tones, well inside 16 bits
+    private static final double SNR_FLOOR = -10, SNR_CEILING = 35;  // usual segmental SNR clamps
+
+    private final String description;
+    private final int[] tones;                  // Hz; null for a recording
+    private final short[] recording;            // mono PCM at recordingRate; null for tones
+    private final int recordingRate;
+    private final double sourcePpm, sinkPpm;
+    // One second of tone per sample rate, shared by every source at that rate
+    private final Map<Integer, short[]> toneCache;
+    private final List<NullSink> sinks = new CopyOnWriteArrayList<>();
+
+    private SyntheticAudio(String description, int[] tones, short[] recording, int recordingRate,
+                           double sourcePpm, double sinkPpm, Map<Integer, short[]> toneCache) {
+        this.description = description;
+        this.tones = tones;
+        this.recording = recording;
+        this.recordingRate = recordingRate;
+        this.sourcePpm = sourcePpm;
+        this.sinkPpm = sinkPpm;
+        this.toneCache = toneCache;
+    }
+
+    public static SyntheticAudio tones(int... hz) {
+        if (hz.length == 0) throw new IllegalArgumentException("At least one tone is needed");
+        StringBuilder description = new StringBuilder("tone:");
+        for (int f : hz) {
+            if (f <= 0 || f % BLOCKS_PER_SECOND != 0) {
+                throw new IllegalArgumentException("Tone frequencies must be multiples of 50 Hz (whole cycles per 20 ms): " + f);
+            }
+            if (description.length() > 5) description.append('+');
+            description.append(f);
+        }
+        return new SyntheticAudio(description.toString(), hz.clone(), null, 0, 0, 0, new ConcurrentHashMap<>());
+    }
+
+    // 16-bit PCM WAV, first channel if there are several. Rates the engines cannot run at natively
+    // are converted to AudioDevices.FALLBACK_RATE, as a sound card would be opened there.
+    public static SyntheticAudio wav(Path file) throws IOException {
+        ByteBuffer wav = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (wav.remaining() < 12 || wav.getInt(0) != 0x46464952 || wav.getInt(8) != 0x45564157) {
+            throw new IOException("Not a RIFF/WAVE file: " + file);
+        }
+        int channels = 0, rate = 0, bits = 0;
+        short[] pcm = null;
+        for (int at = 12; at + 8 <= wav.limit() && pcm == null; ) {
+            int id = wav.getInt(at), size = wav.getInt(at + 4), body = at + 8;
+            if (size < 0 || body + size > wav.limit()) size = wav.limit() - body;  // truncated file
+            if (id == 0x20746d66) {                                                  // "fmt "
+                if (wav.getShort(body) != 1) throw new IOException("Only uncompressed PCM WAV is supported: " + file);
+                channels = wav.getShort(body + 2);
+                rate = wav.getInt(body + 4);
+                bits = wav.getShort(body + 14);
+            } else if (id == 0x61746164) {                                           // "data"
+                if (bits != 16 || channels < 1) throw new IOException("Only 16-bit PCM WAV is supported: " + file);
+                pcm = new short[size / (2 * channels)];
+                for (int i = 0; i < pcm.length; i++) pcm[i] = wav.getShort(body + 2 * channels * i);
+            }
+            at = body + size + (size & 1);
+        }
+        if (pcm == null || pcm.length == 0) throw new IOException("No audio in " + file);
+        boolean supported = false;
+        for (int r : StreamConfig.SUPPORTED_RATES) supported |= r == rate;
+        if (!supported) {
+            Resampler resampler = new Resampler(rate, AudioDevices.FALLBACK_RATE);
+            short[] converted = new short[resampler.outputFor(pcm.length)];
+            pcm = Arrays.copyOf(converted, resampler.process(pcm, pcm.length, converted));
+            rate = AudioDevices.FALLBACK_RATE;
+        }
+        return new SyntheticAudio("wav:" + file.getFileName(), null, pcm, rate, 0, 0, new ConcurrentHashMap<>());
+    }
+
+    // "tone:<hz>[+<hz>...]" or "wav:<file>"
+    public static SyntheticAudio parse(String spec) throws IOException {
+        if (spec.startsWith("wav:")) return wav(Path.of(spec.substring(4)));
+        if (!spec.startsWith("tone:")) throw new IllegalArgumentException("Audio source must be tone:<hz>[+<hz>...] or wav:<file>");
+        String[] parts = spec.substring(5).split("\\+");
+        int[] hz = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) hz[i] = Integer.parseInt(parts[i].trim());
+        return tones(hz);
+    }
+
+    // Same signal with the mic and speaker crystals off by the given ppm (positive runs fast)
+    public SyntheticAudio withClockDrift(double sourcePpm, double sinkPpm) {
+        return new SyntheticAudio(description, tones, recording, recordingRate, sourcePpm, sinkPpm, toneCache);
+    }
+
+    public boolean isScored() { return tones != null; }
+
+    @Override
+    public Source openCapture(StreamConfig config) {
+        int rate = tones != null ? config.getSampleRate() : recordingRate;
+        short[] signal = tones != null ? toneCache.computeIfAbsent(rate, this::tone) : recording;
+        return new LoopSource(signal, rate, sourcePpm, config.getLineBufferBytes(rate) / 2);
+    }
+
+    @Override
+    public Sink openPlayback(StreamConfig config, int sampleRate) {
+        NullSink sink = new NullSink(config, sampleRate, sinkPpm, config.getLineBufferBytes(sampleRate) / 2, tones);
+        sinks.add(sink);
+        return sink;
+    }
+
+    // What the sinks opened for this config have played so far
+    public Quality quality(StreamConfig config) {
+        Quality total = new Quality(0, 0, 0, 0, 0);
+        for (NullSink sink : sinks) if (sink.config == config) total = total.plus(sink.quality());
+        return total;
+    }
+
+    // The whole signal at 'rate': one second, since every tone is a whole number of hertz
+    private short[] tone(int rate) {
+        short[] signal = new short[rate];
+        double amplitude = TONE_PEAK / tones.length;
+        for (int i = 0; i < rate; i++) {
+            double v = 0;
+            for (int f : tones) v += Math.sin(2 * Math.PI * f * (long) i / rate);
+            signal[i] = (short) Math.round(amplitude * v);
+        }
+        return signal;
+    }
+
+    @Override
+    public String toString() {
+        return description + (sourcePpm != 0 || sinkPpm != 0 ? String.format(" (mic %+.0f ppm, speaker %+.0f ppm)", sourcePpm, sinkPpm) : "");
+    }
+
+    // Frames the sink has played, and how they scored
+    public static final class Quality {
+        private final long blocks;              // 20 ms blocks since the stream first became audible
+        private final long dropouts;            // of which more than 10 dB below the tone level
+        private final double snrSum;            // clamped per-block SNR, summed
+        private final long underruns;           // times the device queue ran dry
+        private final long samples;
+
+        Quality(long blocks, long dropouts, double snrSum, long underruns, long samples) {
+            this.blocks = blocks;
+            this.dropouts = dropouts;
+            this.snrSum = snrSum;
+            this.underruns = underruns;
+            this.samples = samples;
+        }
+
+        Quality plus(Quality q) {
+            return new Quality(blocks + q.blocks, dropouts + q.dropouts, snrSum + q.snrSum, underruns + q.underruns, samples + q.samples);
+        }
+
+        public Quality minus(Quality q) {
+            return new Quality(blocks - q.blocks, dropouts - q.dropouts, snrSum - q.snrSum, underruns - q.underruns, samples - q.samples);
+        }
+
+        public long getBlocks() { return blocks; }
+        public long getSamplesPlayed() { return samples; }
+        public long getUnderruns() { return underruns; }
+        // Mean per-block tone-to-noise ratio in dB (NaN before anything was heard)
+        public double getSegmentalSnr() { return blocks == 0 ? Double.NaN : snrSum / blocks; }
+        public double getDropoutPercent() { return blocks == 0 ? Double.NaN : 100.0 * dropouts / blocks; }
+    }
+
+    // Mic stand-in: sample n of the loop becomes readable at start + n / rate, measured on a clock
+    // that runs 'ppm' fast or slow. A reader that falls more than the line buffer behind loses the
+    // oldest samples, as an overflowing capture line does.
+    private static final class LoopSource implements Source {
+        private final short[] signal;
+        private final int rate;
+        private final double samplesPerNano;
+        private final long capacity;
+        private long startNanos;
+        private long delivered;                 // samples read since start
+        private int position;                   // in the loop
+
+        LoopSource(short[] signal, int rate, double ppm, long capacity) {
+            this.signal = signal;
+            this.rate = rate;
+            this.samplesPerNano = rate * (1 + ppm * 1e-6) / 1e9;
+            this.capacity = capacity;
+        }
+
+        @Override public int getSampleRate() { return rate; }
+        @Override public void start() { startNanos = System.nanoTime(); }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) {
+            int samples = len / 2;
+            long captured = captured();
+            if (captured - delivered > capacity) {
+                long lost = captured - delivered - capacity;
+                delivered += lost;
+                position = (int) ((position + lost) % signal.length);
+            }
+            MediaExecutor.sleepUntil(startNanos + (long) Math.ceil((delivered + samples) / samplesPerNano), 0);
+            for (int i = 0, j = off; i < samples; i++, j += 2) {
+                short s = signal[position];
+                buffer[j] = (byte) s;
+                buffer[j + 1] = (byte) (s >> 8);
+                if (++position == signal.length) position = 0;
+            }
+            delivered += samples;
+            return samples * 2;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.max(0, Math.min(capacity, captured() - delivered)) * 2;
+        }
+
+        @Override public void close() {}
+
+        private long captured() {
+            return (long) ((System.nanoTime() - startNanos) * samplesPerNano);
+        }
+    }
+
+    // Speaker stand-in: a device queue of 'capacity' samples drained at 'rate' on a clock that runs
+    // 'ppm' fast or slow. Counts an underrun whenever the queue empties while the clock keeps going,
+// and scores the silence played until the next write as part of what the listener heard.
+    private static final class NullSink implements Sink {
+        private final StreamConfig config;
+        private final int rate;
+        private final double samplesPerNano;
+        private final long capacity;
+        private long startNanos, consumedTicks;
+        private long queued;
+        private long gap;                       // samples of silence played since the queue ran dry
+        private boolean started, playing, written;
+
+        // Scoring, written by the playout thread only
+        private final int blockSamples;
+        private final double[][] cos, sin;      // per tone, one block of reference
+        private final double expectedPower;     // mean square of the undisturbed signal
+        private final short[] block;
+        private int blockFill;
+        private boolean audible;
+        private volatile long blocks, dropouts, underruns, samples;
+        private volatile double snrSum;
+
+        NullSink(StreamConfig config, int rate, double ppm, long capacity, int[] tones) {
+            this.config = config;
+            this.rate = rate;
+            this.samplesPerNano = rate * (1 + ppm * 1e-6) / 1e9;
+            this.capacity = capacity;
+            this.blockSamples = rate / BLOCKS_PER_SECOND;
+            this.block = new short[blockSamples];
+            int n = tones != null ? tones.length : 0;
+            this.cos = new double[n][blockSamples];
+            this.sin = new double[n][blockSamples];
+            for (int t = 0; t < n; t++) {
+                for (int i = 0; i < blockSamples; i++) {
+                    double phase = 2 * Math.PI * tones[t] * i / rate;
+                    cos[t][i] = Math.cos(phase);
+                    sin[t][i] = Math.sin(phase);
+                }
+            }
+            double amplitude = n > 0 ? TONE_PEAK / n : 0;
+            this.expectedPower = n * amplitude * amplitude / 2;
+        }
+
+        @Override public int getSampleRate() { return rate; }
+
+        @Override
+        public void start() {
+            if (started) return;
+            started = true;
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public int write(byte[] buffer, int off, int len) {
+            int n = len / 2;
+            advance();
+            if (cos.length > 0) {
+                // The listener heard silence wherever the queue ran dry, then this
+                for (; gap > 0; gap--) {
+                    block[blockFill++] = 0;
+                    if (blockFill == blockSamples) score();
+                }
+                for (int i = 0, j = off; i < n; i++, j += 2) {
+                    block[blockFill++] = (short) ((buffer[j + 1] << 8) | (buffer[j] & 0xFF));
+                    if (blockFill == blockSamples) score();
+                }
+            }
+            // Like a sound card, block until the queue has room for all of it
+            while (queued + n > capacity) {
+                MediaExecutor.sleepUntil(System.nanoTime() + (long) ((queued + n - capacity) / samplesPerNano), 0);
+                advance();
+            }
+            queued += n;
+            playing = true;
+            written = true;
+            samples += n;
+            return n * 2;
+        }
+
+        @Override public int getBufferSize() { return (int) capacity * 2; }
+
+        @Override
+        public int available() {
+            advance();
+            return (int) (capacity - queued) * 2;
+        }
+
+        @Override
+        public void drain() {
+            advance();
+            MediaExecutor.sleepUntil(System.nanoTime() + (long) (queued / samplesPerNano), 0);
+            advance();
+        }
+
+        @Override public void close() {}
+
+        Quality quality() {
+            return new Quality(blocks, dropouts, snrSum, underruns, samples);
+        }
+
+        // Plays out what the device clock has consumed since the last call
+        private void advance() {
+            if (!started) return;
+            long ticks = (long) ((System.nanoTime() - startNanos) * samplesPerNano);
+            long elapsed = ticks - consumedTicks;
+            consumedTicks = ticks;
+            if (elapsed >= queued) {
+                if (written && elapsed > queued) gap += elapsed - queued;
+                if (playing && elapsed > queued) {
+                    underruns++;
+                    playing = false;
+                }
+                queued = 0;
+            } else {
+                queued -= elapsed;
+            }
+        }
+
+        // Tone energy by projection onto each frequency (exact: whole cycles per block); the rest is noise
+        private void score() {
+            blockFill = 0;
+            double total = 0, tone = 0;
+            for (int i = 0; i < blockSamples; i++) total += (double) block[i] * block[i];
+            for (int t = 0; t < cos.length; t++) {
+                double c = 0, s = 0;
+                for (int i = 0; i < blockSamples; i++) {
+                    c += block[i] * cos[t][i];
+                    s += block[i] * sin[t][i];
+                }
+                tone += 2 * (c * c + s * s) / blockSamples;
+            }
+            boolean loud = total / blockSamples >= expectedPower / 10;
+            if (!audible) {
+                if (!loud) return;      // still buffering before the first sound
+                audible = true;
+            }
+            double noise = Math.max(total - tone, 1e-9);
+            double snr = tone > 0 ? 10 * Math.log10(tone / noise) : SNR_FLOOR;
+            snrSum += Math.max(SNR_FLOOR, Math.min(SNR_CEILING, snr));
+            if (!loud) dropouts++;
+            blocks++;
+        }
+    }
+}
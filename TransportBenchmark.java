@@ -0,0 +1,125 @@
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 🏁 Loopback throughput: classic DatagramSocket (new DatagramPacket per send, heap receive)
+// vs. UdpTransport (direct pooled buffers, batched non-blocking receive).
+// Reports packets/sec delivered and bytes allocated per packet on the send and receive threads.
+//   java TransportBenchmark [seconds-per-case]
+public class TransportBenchmark {
+    private static final int PACKET = RtpHeader.SIZE + 320;
+
+    public static void main(String[] args) throws Exception {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3.0;
+        System.out.printf("%-22s %12s %12s %14s %14s%n", "case", "sent/s", "received/s", "send B/pkt", "recv B/pkt");
+        classic(seconds * 0.3, false);
+        classic(seconds, true);
+        nio(seconds * 0.3, false);
+        nio(seconds, true);
+    }
+
+    private static void classic(double seconds, boolean report) throws Exception {
+        DatagramSocket rx = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        rx.setReceiveBufferSize(4 * 1024 * 1024);
+        rx.setSoTimeout(200);
+        DatagramSocket tx = new DatagramSocket();
+        InetAddress target = InetAddress.getLoopbackAddress();
+        int port = rx.getLocalPort();
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] received = new long[1];
+        long[] rxAlloc = new long[1];
+
+        Thread receiver = new Thread(() -> {
+            byte[] buf = new byte[1500];
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            long before = allocatedBytes();
+            while (running.get()) {
+                try {
+                    packet.setLength(buf.length);
+                    rx.receive(packet);
+                    received[0]++;
+                } catch (SocketTimeoutException e) {
+                    // check the flag again
+                } catch (Exception e) {
+                    break;
+                }
+            }
+            rxAlloc[0] = allocatedBytes() - before;
+        });
+        receiver.start();
+
+        byte[] data = new byte[PACKET];
+        long sent = 0;
+        long before = allocatedBytes();
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < end) {
+            tx.send(new DatagramPacket(data, data.length, target, port));
+            sent++;
+        }
+        long txAlloc = allocatedBytes() - before;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(300);
+        running.set(false);
+        receiver.join();
+        tx.close();
+        rx.close();
+        if (report) print("classic DatagramSocket", sent, received[0], elapsed, txAlloc, rxAlloc[0]);
+    }
+
+    private static void nio(double seconds, boolean report) throws Exception {
+        UdpTransport rx = UdpTransport.bind(0);
+        UdpTransport tx = UdpTransport.open();
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), rx.getLocalPort());
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] received = new long[1];
+        long[] rxAlloc = new long[1];
+
+        Thread receiver = new Thread(() -> {
+            UdpTransport.Handler handler = (datagram, from, arrival) -> received[0]++;
+            long before = allocatedBytes();
+            try {
+                while (running.get()) rx.receiveBatch(handler, 256, 200);
+            } catch (Exception e) {
+                // closed
+            }
+            rxAlloc[0] = allocatedBytes() - before;
+        });
+        receiver.start();
+
+        ByteBuffer packet = UdpTransport.acquireBuffer();
+        packet.limit(PACKET);
+        long sent = 0;
+        long before = allocatedBytes();
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9);
+        while (System.nanoTime() < end) {
+            if (tx.send(packet, target)) sent++;
+        }
+        long txAlloc = allocatedBytes() - before;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(300);
+        running.set(false);
+        receiver.join();
+        UdpTransport.releaseBuffer(packet);
+        tx.close();
+        rx.close();
+        if (report) print("UdpTransport (NIO)", sent, received[0], elapsed, txAlloc, rxAlloc[0]);
+    }
+
+    private static void print(String name, long sent, long received, double elapsed, long txAlloc, long rxAlloc) {
+        System.out.printf("%-22s %12.0f %12.0f %14.2f %14.2f%n", name, sent / elapsed, received / elapsed,
+                (double) txAlloc / Math.max(1, sent), (double) rxAlloc / Math.max(1, received));
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
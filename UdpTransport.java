@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Enumeration;
+import java.util.function.Consumer;
+
+// 🚚 Zero-copy datagram transport: a non-blocking DatagramChannel with direct buffers from a
+// shared pool. Receives are drained in batches per selector wakeup to cut syscalls and wakeups.
+// Neither send nor receive allocates per datagram (TransportBenchmark measures both).
+public class UdpTransport implements AutoCloseable {
+    // Large enough for 60 ms of 48 kHz µ-law (2880 bytes); anything over the MTU gets IP-fragmented
+    public static final int MAX_DATAGRAM = 4096;
+    private static final DirectBufferPool POOL = new DirectBufferPool(256, MAX_DATAGRAM);
+    // There is one key, and drain() finds out what is readable; select(action) also skips the
+    // selected-key set, whose HashSet node per wakeup was the receive path's only allocation
+    private static final Consumer<SelectionKey> READY = key -> {};
+
+    // Called once per datagram of a batch. 'datagram' is the transport's receive buffer,
+    // flipped to the datagram bytes; it is reused for the next datagram once this returns.
+    public interface Handler {
+        void onDatagram(ByteBuffer datagram, SocketAddress from, long arrivalNanos) throws IOException;
+    }
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer receiveBuffer;
+    private volatile MembershipKey membership;
+
+    private volatile long datagramsSent, datagramsReceived, sendDrops, wakeups;
+
+    private UdpTransport(DatagramChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        // Owned for the transport's lifetime: close() may race with a receive on another thread
+        this.receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    }
+
+    // Listening transport bound to 'port' (0 for an ephemeral port)
+    public static UdpTransport bind(int port) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            // Many streams arrive in bursts on the same tick; give the kernel room to queue them
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+            channel.bind(new InetSocketAddress(port));
+            return new UdpTransport(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Listening transport bound to 'port' that also joins multicast 'group' on 'nif'. The port is
+    // shared (SO_REUSEADDR) so several receivers on one host can listen to the same group.
+    public static UdpTransport bindMulticast(int port, InetAddress group, NetworkInterface nif) throws IOException {
+        if (!group.isMulticastAddress()) throw new IllegalArgumentException("Not a multicast group: " + group.getHostAddress());
+        DatagramChannel channel = DatagramChannel.open(
+                group instanceof Inet4Address ? StandardProtocolFamily.INET : StandardProtocolFamily.INET6);
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+            channel.bind(new InetSocketAddress(port));
+            UdpTransport transport = new UdpTransport(channel);
+            transport.membership = channel.join(group, nif);
+            return transport;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // The receive side of 'config': its port, joined to its multicast group if it names one
+    public static UdpTransport listen(StreamConfig config) throws IOException {
+        if (config.getMulticastGroup() == null) return bind(config.getPort());
+        InetAddress group = InetAddress.getByName(config.getMulticastGroup());
+        return bindMulticast(config.getPort(), group, multicastInterface(config.getMulticastInterface(), group));
+    }
+
+    // The named interface, or else the first one that is up, not loopback and does multicast with
+    // an address of the group's family (loopback as a last resort, for single-host tests)
+    public static NetworkInterface multicastInterface(String name, InetAddress group) throws IOException {
+        if (name != null) {
+            NetworkInterface nif = NetworkInterface.getByName(name);
+            if (nif == null) throw new SocketException("No network interface " + name);
+            return nif;
+        }
+        NetworkInterface fallback = null;
+        for (Enumeration<NetworkInterface> all = NetworkInterface.getNetworkInterfaces(); all.hasMoreElements(); ) {
+            NetworkInterface nif = all.nextElement();
+            if (!nif.isUp() || !hasAddressLike(nif, group)) continue;
+            if (nif.isLoopback()) {
+                fallback = nif;
+            } else if (nif.supportsMulticast()) {
+                return nif;
+            }
+        }
+        if (fallback == null) throw new SocketException("No multicast-capable interface for " + group.getHostAddress());
+        return fallback;
+    }
+
+    private static boolean hasAddressLike(NetworkInterface nif, InetAddress group) {
+        for (Enumeration<InetAddress> a = nif.getInetAddresses(); a.hasMoreElements(); ) {
+            if ((a.nextElement() instanceof Inet4Address) == (group instanceof Inet4Address)) return true;
+        }
+        return false;
+    }
+
+    // Sending transport on an ephemeral port (it can still receive replies)
+    public static UdpTransport open() throws IOException {
+        return bind(0);
+    }
+
+    // Borrow a direct buffer for building outgoing datagrams; give it back with releaseBuffer()
+    public static ByteBuffer acquireBuffer() { return POOL.acquire(); }
+    public static void releaseBuffer(ByteBuffer buf) { POOL.release(buf); }
+    public static DirectBufferPool getPool() { return POOL; }
+
+    // Sends buf's remaining bytes. Non-blocking: returns false (and counts a drop) if the
+    // socket send buffer is full. The buffer's position is restored so it can be resent.
+    public boolean send(ByteBuffer buf, SocketAddress to) throws IOException {
+        int position = buf.position();
+        int sent = channel.send(buf, to);
+        buf.position(position);
+        if (sent == 0) {
+            sendDrops++;
+            return false;
+        }
+        datagramsSent++;
+        return true;
+    }
+
+    // Fan-out: sends buf's remaining bytes to every target from the same buffer, so a frame is
+    // built once whatever the audience. Returns how many were queued; the rest count as drops.
+    public int sendAll(ByteBuffer buf, SocketAddress[] targets) throws IOException {
+        int position = buf.position();
+        int queued = 0;
+        for (SocketAddress to : targets) {
+            if (channel.send(buf, to) > 0) queued++;
+            buf.position(position);
+        }
+        datagramsSent += queued;
+        sendDrops += targets.length - queued;
+        return queued;
+    }
+
+    // Multicast send options: how many router hops datagrams may cross (1 = this subnet) and,
+    // optionally, the interface they leave by
+    public void setMulticastOptions(int ttl, NetworkInterface nif) throws IOException {
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, ttl);
+        if (nif != null) channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+    }
+
+    // Waits up to timeoutMillis (0 = forever) for at least one datagram, then drains up to
+    // 'maxBatch' of them into 'handler'. Returns the number handled; 0 on timeout or wakeup().
+    public int receiveBatch(Handler handler, int maxBatch, long timeoutMillis) throws IOException {
+        int handled = drain(handler, maxBatch);
+        if (handled > 0) return handled;
+        try {
+            if (selector.select(READY, timeoutMillis) == 0) return 0;
+        } catch (ClosedSelectorException e) {
+            throw new AsynchronousCloseException(); // close() from another thread
+        }
+        wakeups++;
+        return drain(handler, maxBatch);
+    }
+
+    // Drains without waiting; useful from an external event loop
+    public int drain(Handler handler, int maxBatch) throws IOException {
+        int handled = 0;
+        while (handled < maxBatch) {
+            receiveBuffer.clear();
+            SocketAddress from = channel.receive(receiveBuffer);
+            if (from == null) break;
+            long arrival = System.nanoTime();
+            receiveBuffer.flip();
+            handled++;
+            datagramsReceived++;
+            handler.onDatagram(receiveBuffer, from, arrival);
+        }
+        return handled;
+    }
+
+    // Unblocks a receiveBatch() waiting in another thread
+    public void wakeup() { selector.wakeup(); }
+
+    public boolean isOpen() { return channel.isOpen(); }
+    public DatagramChannel getChannel() { return channel; }
+    public int getLocalPort() { return channel.socket().getLocalPort(); }
+    public long getDatagramsSent() { return datagramsSent; }
+    public long getDatagramsReceived() { return datagramsReceived; }
+    public long getSendDrops() { return sendDrops; }
+    public long getWakeups() { return wakeups; }
+    // Joined group, or null for a unicast transport
+    public InetAddress getMulticastGroup() {
+        MembershipKey key = membership;
+        return key != null ? key.group() : null;
+    }
+
+    @Override
+    public void close() {
+        MembershipKey key = membership;
+        if (key != null) key.drop();
+        selector.wakeup();
+        try {
+            selector.close();
+        } catch (IOException ignored) { /* closing anyway */ }
+        try {
+            channel.close();
+        } catch (IOException ignored) { /* closing anyway */ }
+    }
+}
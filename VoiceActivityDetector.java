@@ -0,0 +1,80 @@
+// 🗣 Energy + zero-crossing voice activity detector for the send loop. Tracks an adaptive noise
+// floor (also used as the comfort-noise level) and holds speech for a hangover period so word
+// endings and short pauses are not clipped. While frames are called speech the floor can still
+// rise, to the quietest frame of the last few seconds: talk has pauses that quiet within that
+// window, steady noise louder than the floor does not, and would otherwise be sent forever.
+public class VoiceActivityDetector {
+    private static final double MIN_SPEECH_DBOV = -55.0;   // never call anything quieter speech
+    private static final double MARGIN_DB = 9.0;           // loud frames: this far above the floor
+    private static final double VOICED_ZCR = 0.25;         // voiced speech crosses zero rarely, hiss often
+    private static final int MIN_WINDOW_MILLIS = 5000;     // no pause in this long: it is not talk
+
+    private final int hangoverFrames;
+    private final int halfWindowFrames;
+    private double noiseFloorDbov = -70.0;
+    // Running minimum of frame levels over the last one to two half windows (no per-frame history)
+    private double currentMinDbov = 0.0, previousMinDbov = 0.0;
+    private int windowFrames = 0;
+    private int hangover = 0;
+    private boolean speech = false;
+    private double lastLevelDbov = -96.0;
+
+    public VoiceActivityDetector(int ptimeMillis) {
+        this.hangoverFrames = Math.max(1, 300 / ptimeMillis); // ~300 ms
+        this.halfWindowFrames = Math.max(1, MIN_WINDOW_MILLIS / 2 / ptimeMillis);
+    }
+
+    // Classifies one frame and updates the noise estimate. Returns true while speech is active.
+    public boolean process(short[] frame, int samples) {
+        long energy = 0;
+        int crossings = 0;
+        for (int i = 0; i < samples; i++) {
+            int s = frame[i];
+            energy += (long) s * s;
+            if (i > 0 && ((s ^ frame[i - 1]) < 0)) crossings++;
+        }
+        double level = energy == 0 ? -96.0 : 10 * Math.log10((double) energy / samples / (32768.0 * 32768.0));
+        double zcr = (double) crossings / Math.max(1, samples - 1);
+        lastLevelDbov = level;
+        trackMinimum(level);
+
+        boolean loud = level > noiseFloorDbov + MARGIN_DB;
+        boolean voiced = level > noiseFloorDbov + MARGIN_DB / 2 && zcr < VOICED_ZCR;
+        boolean active = level > MIN_SPEECH_DBOV && (loud || voiced);
+
+        if (active) {
+            hangover = hangoverFrames;
+            // Nothing quieter than the floor for a whole window: the floor is too low, lift it
+            double windowMin = Math.min(currentMinDbov, previousMinDbov);
+            if (windowFrames >= halfWindowFrames && windowMin > noiseFloorDbov) {
+                noiseFloorDbov += (windowMin - noiseFloorDbov) * 0.05;
+            }
+        } else {
+            // Follow the floor down fast and up slowly; not all the way down to one quiet frame,
+            // which would leave the louder frames of the same noise a margin above it
+            noiseFloorDbov += (level - noiseFloorDbov) * (level < noiseFloorDbov ? 0.3 : 0.05);
+            if (hangover > 0) hangover--;
+        }
+        speech = active || hangover > 0;
+        return speech;
+    }
+
+    private void trackMinimum(double level) {
+        if (windowFrames == 0 || level < currentMinDbov) currentMinDbov = level;
+        if (windowFrames == 0) previousMinDbov = level;
+        if (++windowFrames % halfWindowFrames == 0) {
+            previousMinDbov = currentMinDbov;
+            currentMinDbov = 0.0;
+        }
+    }
+
+    public boolean isSpeech() { return speech; }
+    public double getNoiseFloorDbov() { return noiseFloorDbov; }
+    public double getLastLevelDbov() { return lastLevelDbov; }
+
+    // Noise level as an RFC 3389 comfort-noise byte: -dBov, 0..127
+    public int getComfortNoiseLevel() {
+        int level = (int) Math.round(-noiseFloorDbov);
+        return level < 0 ? 0 : Math.min(level, 127);
+    }
+}